@@ -0,0 +1,128 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wizecommerce.hecuba.benchmarks;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.wizecommerce.hecuba.CassandraParamsBean;
+import com.wizecommerce.hecuba.CassandraResultSet;
+import com.wizecommerce.hecuba.HecubaClientManager;
+import com.wizecommerce.hecuba.HecubaConstants.CassandraClientImplementation;
+import com.wizecommerce.hecuba.HecubaObjectFactory;
+
+/**
+ * A client manager of each backend over a column family of {@link #ROWS} rows with {@link #COLUMNS} columns each, one
+ * of which is indexed by value.
+ */
+@State(Scope.Benchmark)
+public class ClientManagerState {
+	public static final int ROWS = 10000;
+	public static final int COLUMNS = 20;
+	public static final String INDEXED_COLUMN = "indexed_column";
+	public static final List<String> READ_COLUMNS = Arrays.asList("column_1", "column_2", "column_3");
+	// every indexed value points to ROWS / INDEXED_VALUES rows.
+	public static final int INDEXED_VALUES = 100;
+
+	// writes of the write benchmarks go to their own rows, so that they do not change the rows that are read.
+	private static final long FIRST_WRITE_KEY = 1000000L;
+
+	private static boolean loaded;
+
+	@Param({ "HECTOR", "ASTYANAX", "DATASTAX", "DATASTAX_SHARED" })
+	public CassandraClientImplementation clientImplementation;
+
+	HecubaClientManager<Long> clientManager;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		EmbeddedCassandra.start();
+
+		CassandraParamsBean parameters = EmbeddedCassandra.getParameters();
+		parameters.setSiColumns(INDEXED_COLUMN);
+		clientManager = HecubaObjectFactory.getInstance().getHecubaClientManagerWithLongKeys(parameters,
+				clientImplementation);
+
+		load(clientManager);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		clientManager.shutDown();
+	}
+
+	private static synchronized void load(HecubaClientManager<Long> clientManager) throws Exception {
+		if (loaded) {
+			return;
+		}
+
+		for (long key = 0; key < ROWS; key++) {
+			Map<String, Object> row = new HashMap<>();
+			for (int column = 0; column < COLUMNS - 1; column++) {
+				row.put("column_" + column, "value_" + key + "_" + column);
+			}
+			row.put(INDEXED_COLUMN, indexedValue(key));
+			clientManager.updateRow(key, row);
+		}
+		loaded = true;
+	}
+
+	static String indexedValue(long value) {
+		return "indexed_value_" + (value % INDEXED_VALUES);
+	}
+
+	static long randomKey() {
+		return ThreadLocalRandom.current().nextLong(ROWS);
+	}
+
+	static long randomWriteKey() {
+		return FIRST_WRITE_KEY + ThreadLocalRandom.current().nextLong(ROWS);
+	}
+
+	static String randomIndexedValue() {
+		return indexedValue(ThreadLocalRandom.current().nextInt(INDEXED_VALUES));
+	}
+
+	/**
+	 * Reads every value of every row, so that lazily decoded results are paid for by the benchmark that read them.
+	 */
+	static void consume(CassandraResultSet<Long, String> resultSet, Blackhole blackhole) {
+		if (!resultSet.hasResults()) {
+			return;
+		}
+
+		while (true) {
+			blackhole.consume(resultSet.getKey());
+			for (String columnName : resultSet.getColumnNames()) {
+				blackhole.consume(resultSet.getString(columnName));
+			}
+			if (!resultSet.hasNextResult()) {
+				break;
+			}
+			resultSet.nextResult();
+		}
+	}
+}
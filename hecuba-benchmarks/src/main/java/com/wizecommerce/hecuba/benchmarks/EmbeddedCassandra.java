@@ -0,0 +1,71 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wizecommerce.hecuba.benchmarks;
+
+import org.cassandraunit.DataLoader;
+import org.cassandraunit.dataset.xml.ClassPathXmlDataSet;
+import org.cassandraunit.utils.EmbeddedCassandraServerHelper;
+
+import com.wizecommerce.hecuba.CassandraParamsBean;
+import com.wizecommerce.hecuba.HecubaConstants;
+import com.wizecommerce.hecuba.util.ConfigUtils;
+
+/**
+ * The cassandra-unit embedded server the benchmarks run against, configured like the one of the integration tests.
+ * It is started once per JVM, that is once per JMH fork.
+ */
+final class EmbeddedCassandra {
+	static final String CLUSTER_NAME = "TestCluster";
+	static final String LOCATION = "127.0.0.1";
+	static final String PORT = "9171";
+	static final String CQL_PORT = "9142";
+	static final String DATACENTER = "datacenter1";
+	static final String KEYSPACE = "HecubaBenchmarks";
+	static final String COLUMN_FAMILY = "Benchmark";
+
+	private static final String DATASET = "hecuba-benchmarks-dataset.xml";
+
+	private static boolean started;
+
+	private EmbeddedCassandra() {
+	}
+
+	static synchronized void start() throws Exception {
+		if (started) {
+			return;
+		}
+
+		ConfigUtils.getInstance().getConfiguration().setProperty(HecubaConstants.GLOBAL_PROP_NAME_PREFIX + ".consistencypolicy.read", "ONE");
+		ConfigUtils.getInstance().getConfiguration().setProperty(HecubaConstants.GLOBAL_PROP_NAME_PREFIX + ".consistencypolicy.write", "ONE");
+
+		EmbeddedCassandraServerHelper.startEmbeddedCassandra();
+		new DataLoader(CLUSTER_NAME, LOCATION + ":" + PORT).load(new ClassPathXmlDataSet(DATASET));
+		started = true;
+	}
+
+	static CassandraParamsBean getParameters() {
+		CassandraParamsBean parameters = new CassandraParamsBean();
+
+		parameters.setClustername(CLUSTER_NAME);
+		parameters.setLocationURLs(LOCATION);
+		parameters.setThriftPorts(PORT);
+		parameters.setCqlPort(CQL_PORT);
+		parameters.setDataCenter(DATACENTER);
+		parameters.setKeyspace(KEYSPACE);
+		parameters.setColumnFamily(COLUMN_FAMILY);
+
+		return parameters;
+	}
+}
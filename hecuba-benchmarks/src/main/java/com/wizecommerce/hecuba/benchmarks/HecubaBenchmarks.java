@@ -0,0 +1,58 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wizecommerce.hecuba.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the usual JMH command line options, e.g. "ReadBenchmark -p clientImplementation=DATASTAX".
+ *
+ * Unless a mode is given with -bm, every benchmark is run twice: for throughput in ops/s and for the distribution of
+ * the latencies (p50, p90, p99 etc.) in microseconds. The allocation rate is reported by the GC profiler in both.
+ */
+public class HecubaBenchmarks {
+
+	public static void main(String[] args) throws Exception {
+		final CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+
+		if (!commandLineOptions.getBenchModes().isEmpty()) {
+			new Runner(withDefaults(commandLineOptions).build()).run();
+			return;
+		}
+
+		new Runner(withDefaults(commandLineOptions)
+				.mode(Mode.Throughput)
+				.timeUnit(TimeUnit.SECONDS)
+				.build()).run();
+		new Runner(withDefaults(commandLineOptions)
+				.mode(Mode.SampleTime)
+				.timeUnit(TimeUnit.MICROSECONDS)
+				.build()).run();
+	}
+
+	private static OptionsBuilder withDefaults(Options commandLineOptions) {
+		final OptionsBuilder options = new OptionsBuilder();
+		options.parent(commandLineOptions);
+		options.addProfiler(GCProfiler.class);
+		return options;
+	}
+}
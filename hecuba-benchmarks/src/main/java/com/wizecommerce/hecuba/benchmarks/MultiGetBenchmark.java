@@ -0,0 +1,71 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wizecommerce.hecuba.benchmarks;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Multi-gets of random sets of rows.
+ */
+@State(Scope.Thread)
+public class MultiGetBenchmark {
+	// key sets are drawn up front, so that building them is not part of the measurement.
+	private static final int KEY_SETS = 64;
+
+	@Param({ "10", "100", "1000" })
+	public int keyCount;
+
+	private Set<Long>[] keySets;
+	private int next;
+
+	@SuppressWarnings("unchecked")
+	@Setup(Level.Trial)
+	public void setUp() {
+		keySets = new Set[KEY_SETS];
+		for (int i = 0; i < KEY_SETS; i++) {
+			Set<Long> keys = new HashSet<>();
+			while (keys.size() < keyCount) {
+				keys.add(ThreadLocalRandom.current().nextLong(ClientManagerState.ROWS));
+			}
+			keySets[i] = keys;
+		}
+	}
+
+	@Benchmark
+	public void multiGet(ClientManagerState state, Blackhole blackhole) throws Exception {
+		ClientManagerState.consume(state.clientManager.readAllColumns(nextKeys()), blackhole);
+	}
+
+	@Benchmark
+	public void multiGetColumns(ClientManagerState state, Blackhole blackhole) throws Exception {
+		ClientManagerState.consume(state.clientManager.readColumns(nextKeys(), ClientManagerState.READ_COLUMNS),
+				blackhole);
+	}
+
+	private Set<Long> nextKeys() {
+		next = (next + 1) % KEY_SETS;
+		return keySets[next];
+	}
+}
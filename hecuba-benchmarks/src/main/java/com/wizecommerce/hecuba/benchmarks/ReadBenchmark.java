@@ -0,0 +1,41 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wizecommerce.hecuba.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Single row reads.
+ */
+public class ReadBenchmark {
+
+	@Benchmark
+	public void singleGet(ClientManagerState state, Blackhole blackhole) throws Exception {
+		ClientManagerState.consume(state.clientManager.readAllColumns(ClientManagerState.randomKey()), blackhole);
+	}
+
+	@Benchmark
+	public String singleColumn(ClientManagerState state) {
+		return state.clientManager.readString(ClientManagerState.randomKey(), "column_1");
+	}
+
+	@Benchmark
+	public void columnSlice(ClientManagerState state, Blackhole blackhole) {
+		// column_10 to column_19 in UTF8 order.
+		ClientManagerState.consume(state.clientManager.readColumnSlice(ClientManagerState.randomKey(), "column_10",
+				"column_19", false, 10), blackhole);
+	}
+}
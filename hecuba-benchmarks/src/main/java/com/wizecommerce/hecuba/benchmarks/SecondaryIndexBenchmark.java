@@ -0,0 +1,46 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wizecommerce.hecuba.benchmarks;
+
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Writes of an indexed column, which also read its old value and update the secondary index, and lookups through the
+ * secondary index.
+ */
+public class SecondaryIndexBenchmark {
+
+	@Benchmark
+	public void indexedWrite(ClientManagerState state) {
+		// keeps the indexed values within the same set, so that lookups keep finding the same number of rows.
+		state.clientManager.updateString(ClientManagerState.randomKey(), ClientManagerState.INDEXED_COLUMN,
+				ClientManagerState.randomIndexedValue());
+	}
+
+	@Benchmark
+	public List<Long> retrieveKeys(ClientManagerState state) {
+		return state.clientManager.retrieveKeysBySecondaryIndex(ClientManagerState.INDEXED_COLUMN,
+				ClientManagerState.randomIndexedValue());
+	}
+
+	@Benchmark
+	public void retrieveRows(ClientManagerState state, Blackhole blackhole) {
+		ClientManagerState.consume(state.clientManager.retrieveBySecondaryIndex(ClientManagerState.INDEXED_COLUMN,
+				ClientManagerState.randomIndexedValue()), blackhole);
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wizecommerce.hecuba.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Writes of rows of different widths, without secondary indexes.
+ */
+@State(Scope.Thread)
+public class UpdateRowBenchmark {
+
+	@Param({ "1", "10", "100" })
+	public int width;
+
+	private Map<String, Object> row;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		row = new HashMap<>();
+		for (int column = 0; column < width; column++) {
+			row.put("write_column_" + column, "value_" + column);
+		}
+	}
+
+	@Benchmark
+	public void updateRow(ClientManagerState state) throws Exception {
+		state.clientManager.updateRow(ClientManagerState.randomWriteKey(), row);
+	}
+
+	@Benchmark
+	public void updateString(ClientManagerState state) {
+		state.clientManager.updateString(ClientManagerState.randomWriteKey(), "write_column_0", "value_0");
+	}
+}
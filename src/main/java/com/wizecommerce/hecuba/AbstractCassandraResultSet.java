@@ -18,6 +18,10 @@ import java.sql.Timestamp;
 import java.util.Collection;
 import java.util.Date;
 
+import com.wizecommerce.hecuba.util.HecubaValueCodec;
+import com.wizecommerce.hecuba.util.HecubaValueCodecs;
+import com.wizecommerce.hecuba.util.PrimitiveValueParser;
+
 public abstract class AbstractCassandraResultSet<K, N> implements CassandraResultSet<K, N> {
 
 	public final String getString(N fieldName, String defaultValue) {
@@ -33,7 +37,7 @@ public abstract class AbstractCassandraResultSet<K, N> implements CassandraResul
 	@Override
 	public final Boolean getBoolean(N fieldName, Boolean defaultValue) {
 		final String value = getString(fieldName);
-		return value == null ? defaultValue : Boolean.valueOf("true".equalsIgnoreCase(value) || "1".equals(value));
+		return value == null ? defaultValue : decode(fieldName, value, HecubaValueCodecs.BOOLEAN);
 	}
 
 	@Override
@@ -46,7 +50,8 @@ public abstract class AbstractCassandraResultSet<K, N> implements CassandraResul
 
 		try {
 			final String dateString = getString(fieldName);
-			return dateString == null ? defaultDate : HecubaConstants.DATE_FORMATTER.parseDateTime(dateString).toDate();
+			return dateString == null ? defaultDate : decode(fieldName, dateString,
+					HecubaValueCodecs.getInstance().getDateCodec());
 		} catch (IllegalArgumentException e) {
 			return defaultDate;
 		}
@@ -61,7 +66,7 @@ public abstract class AbstractCassandraResultSet<K, N> implements CassandraResul
 	public final Integer getInteger(N fieldName, int defaultInt) {
 		try {
 			final String value = getString(fieldName);
-			return value == null ? defaultInt : Integer.parseInt(value);
+			return value == null ? defaultInt : decode(fieldName, value, HecubaValueCodecs.INTEGER);
 		} catch (NumberFormatException e) {
 			return defaultInt;
 		}
@@ -73,7 +78,7 @@ public abstract class AbstractCassandraResultSet<K, N> implements CassandraResul
 		if (string == null) {
 			return defaultInt;
 		} else {
-			return Integer.parseInt(string);
+			return decode(fieldName, string, HecubaValueCodecs.INTEGER);
 		}
 	}
 
@@ -87,7 +92,7 @@ public abstract class AbstractCassandraResultSet<K, N> implements CassandraResul
 		try {
 			final String value = getString(fieldName);
 
-			return value == null ? defaultLong : Long.parseLong(value);
+			return value == null ? defaultLong : decode(fieldName, value, HecubaValueCodecs.LONG);
 		} catch (NumberFormatException e) {
 			return defaultLong;
 		}
@@ -99,7 +104,7 @@ public abstract class AbstractCassandraResultSet<K, N> implements CassandraResul
 		if (string == null) {
 			return defaultLong;
 		} else {
-			return Long.parseLong(string);
+			return decode(fieldName, string, HecubaValueCodecs.LONG);
 		}
 	}
 
@@ -112,7 +117,7 @@ public abstract class AbstractCassandraResultSet<K, N> implements CassandraResul
 	public final Double getDouble(N fieldName, double defaultDouble) {
 		try {
 			final String value = getString(fieldName);
-			return value == null ? defaultDouble : Double.parseDouble(value);
+			return value == null ? defaultDouble : decode(fieldName, value, HecubaValueCodecs.DOUBLE);
 		} catch (NumberFormatException e) {
 			return defaultDouble;
 		}
@@ -124,7 +129,7 @@ public abstract class AbstractCassandraResultSet<K, N> implements CassandraResul
 		if (string == null) {
 			return defaultDouble;
 		} else {
-			return Double.parseDouble(string);
+			return decode(fieldName, string, HecubaValueCodecs.DOUBLE);
 		}
 	}
 
@@ -137,13 +142,64 @@ public abstract class AbstractCassandraResultSet<K, N> implements CassandraResul
 	public final Float getFloat(N fieldName, Float defaultValue) {
 		try {
 			final String string = getString(fieldName);
-			return string == null ? defaultValue : Float.parseFloat(string);
+			return string == null ? defaultValue : decode(fieldName, string, HecubaValueCodecs.FLOAT);
 		} catch (NumberFormatException e) {
 			return defaultValue;
 		}
 
 	}
 
+	@Override
+	public long getLongValue(N fieldName, long defaultLong) {
+		if (hasCodec(fieldName)) {
+			return getLong(fieldName, defaultLong);
+		}
+		return PrimitiveValueParser.parseLong(getRawValue(fieldName), defaultLong);
+	}
+
+	@Override
+	public int getIntValue(N fieldName, int defaultInt) {
+		if (hasCodec(fieldName)) {
+			return getInteger(fieldName, defaultInt);
+		}
+		return PrimitiveValueParser.parseInt(getRawValue(fieldName), defaultInt);
+	}
+
+	@Override
+	public double getDoubleValue(N fieldName, double defaultDouble) {
+		if (hasCodec(fieldName)) {
+			return getDouble(fieldName, defaultDouble);
+		}
+		return PrimitiveValueParser.parseDouble(getRawValue(fieldName), defaultDouble);
+	}
+
+	@Override
+	public boolean getBooleanValue(N fieldName, boolean defaultValue) {
+		if (hasCodec(fieldName)) {
+			return getBoolean(fieldName, defaultValue);
+		}
+		return PrimitiveValueParser.parseBoolean(getRawValue(fieldName), defaultValue);
+	}
+
+	/**
+	 * Used by the primitive getters, so that they can parse the value as the client returned it. Implementations
+	 * should return a CharSequence, a ByteBuffer with the UTF-8 bytes of the text, a Number or a Boolean, and null if
+	 * there is no such column.
+	 */
+	protected Object getRawValue(N fieldName) {
+		return getString(fieldName);
+	}
+
+	private boolean hasCodec(N fieldName) {
+		return HecubaValueCodecs.getInstance().hasCodecs() && fieldName instanceof String &&
+				HecubaValueCodecs.getInstance().getCodec((String) fieldName) != null;
+	}
+
+	private <T> T decode(N fieldName, String value, HecubaValueCodec<T> defaultCodec) {
+		return HecubaValueCodecs.getInstance().decode(fieldName instanceof String ? (String) fieldName : null, value,
+				defaultCodec);
+	}
+
 	@Override
 	public final Boolean hasColumn(String columnName) {
 		Boolean result = false;
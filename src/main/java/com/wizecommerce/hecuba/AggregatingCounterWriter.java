@@ -0,0 +1,275 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wizecommerce.hecuba;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.AtomicLongMap;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Sums counter updates from any number of threads and writes the sum of each counter with a single
+ * {@link HecubaClientManager#updateCounterAsync(Object, String, long)}, so that hot counters cost one counter write
+ * per flush rather than one per update, on every backend.
+ *
+ * Deltas are summed in stripes, one per group of threads, so that threads updating the same counters do not contend
+ * with each other. Everything pending is written every flushIntervalMillis, and as soon as about flushThreshold
+ * updates are pending. A flush waits for its writes to complete, so flushes never overlap.
+ *
+ * Pending deltas are lost if the writer is not closed, so at most the updates of the last flush interval are lost on
+ * a crash; call {@link #close()} before shutting down the client manager. Counter writes are not idempotent, so the
+ * deltas of failed writes are logged and dropped rather than retried.
+ *
+ * @param <K> - type of the row keys
+ */
+public class AggregatingCounterWriter<K> {
+
+	private static final Logger log = Logger.getLogger(AggregatingCounterWriter.class);
+
+	private final HecubaClientManager<K> clientManager;
+	private final int stripeFlushThreshold;
+	private final Stripe<K>[] stripes;
+	private final AtomicLongMap<Counter<K>> writing = AtomicLongMap.create();
+	private final AtomicLong writtenCount = new AtomicLong();
+	private final AtomicLong failedCount = new AtomicLong();
+	private final ScheduledExecutorService flushExecutor;
+	private final Runnable flushTask;
+	private volatile boolean closed;
+
+	/**
+	 * @param clientManager       - writes the counters.
+	 * @param flushThreshold      - number of pending updates after which they are written.
+	 * @param flushIntervalMillis - maximum time an update is pending for, i.e. the updates lost on a crash.
+	 */
+	@SuppressWarnings("unchecked")
+	public AggregatingCounterWriter(HecubaClientManager<K> clientManager, int flushThreshold, long flushIntervalMillis) {
+		this.clientManager = clientManager;
+
+		final int stripeCount = Runtime.getRuntime().availableProcessors() * 2;
+		this.stripeFlushThreshold = Math.max(1, flushThreshold / stripeCount);
+		stripes = new Stripe[stripeCount];
+		for (int i = 0; i < stripeCount; i++) {
+			stripes[i] = new Stripe<>();
+		}
+
+		final String columnFamily = clientManager.getColumnFamilyName();
+		flushExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true)
+				.setNameFormat("hecuba-counter-writer-" + columnFamily).build());
+		flushTask = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					writePending();
+				} catch (Throwable t) {
+					log.error("Counter writer of " + columnFamily + " failed to write counters", t);
+				}
+			}
+		};
+		flushExecutor.scheduleWithFixedDelay(flushTask, flushIntervalMillis, flushIntervalMillis,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Adds the given value, which may be negative, to a counter.
+	 */
+	public void updateCounter(K key, String counterColumnName, long value) {
+		if (closed) {
+			throw new IllegalStateException("Counter writer of " + clientManager.getColumnFamilyName() +
+					" has been closed");
+		}
+		if (value == 0) {
+			return;
+		}
+
+		// thread ids are handed out in sequence, so they spread evenly over the stripes.
+		final Stripe<K> stripe = stripes[(int) (Thread.currentThread().getId() % stripes.length)];
+		stripe.deltas.addAndGet(new Counter<>(key, counterColumnName), value);
+		if (stripe.updates.incrementAndGet() == stripeFlushThreshold) {
+			try {
+				flushExecutor.execute(flushTask);
+			} catch (RejectedExecutionException e) {
+				// closing, which writes everything pending.
+			}
+		}
+	}
+
+	public void incrementCounter(K key, String counterColumnName) {
+		updateCounter(key, counterColumnName, 1);
+	}
+
+	public void decrementCounter(K key, String counterColumnName) {
+		updateCounter(key, counterColumnName, -1);
+	}
+
+	/**
+	 * @return the sum of the updates of a counter which have not been written yet, including those being written.
+	 */
+	public long getPendingValue(K key, String counterColumnName) {
+		final Counter<K> counter = new Counter<>(key, counterColumnName);
+		long value = writing.get(counter);
+		for (Stripe<K> stripe : stripes) {
+			value += stripe.deltas.get(counter);
+		}
+		return value;
+	}
+
+	/**
+	 * @return the value of a counter as read from Cassandra plus its pending updates. While the counter is being
+	 *         written the value may be off by the updates being written.
+	 */
+	public Long getCounterValue(K key, String counterColumnName) {
+		final Long value = clientManager.getCounterValue(key, counterColumnName);
+		return (value != null ? value : 0L) + getPendingValue(key, counterColumnName);
+	}
+
+	/**
+	 * Blocks until all the updates made before this call have been written, or have failed.
+	 */
+	public void flush() throws InterruptedException {
+		try {
+			flushExecutor.submit(flushTask).get();
+		} catch (RejectedExecutionException e) {
+			writePending();
+		} catch (ExecutionException e) {
+			throw Throwables.propagate(e.getCause());
+		}
+	}
+
+	/**
+	 * Writes everything pending and rejects further updates.
+	 */
+	public void close() throws InterruptedException {
+		closed = true;
+		flushExecutor.shutdown();
+		flushExecutor.awaitTermination(1, TimeUnit.MINUTES);
+		writePending();
+	}
+
+	/**
+	 * @return the number of counter writes, each of which may sum any number of updates.
+	 */
+	public long getWrittenCount() {
+		return writtenCount.get();
+	}
+
+	/**
+	 * @return the number of counter writes that failed.
+	 */
+	public long getFailedCount() {
+		return failedCount.get();
+	}
+
+	private synchronized void writePending() throws InterruptedException {
+		final Map<Counter<K>, Long> pending = new HashMap<>();
+		for (Stripe<K> stripe : stripes) {
+			stripe.updates.set(0);
+			for (Counter<K> counter : stripe.deltas.asMap().keySet()) {
+				// taken out atomically, so that updates made meanwhile are left for the next flush.
+				final long delta = stripe.deltas.remove(counter);
+				if (delta != 0) {
+					writing.addAndGet(counter, delta);
+					final Long sum = pending.get(counter);
+					pending.put(counter, sum == null ? delta : sum + delta);
+				}
+			}
+		}
+
+		final List<ListenableFuture<Void>> writes = new ArrayList<>(pending.size());
+		for (Map.Entry<Counter<K>, Long> entry : pending.entrySet()) {
+			// the deltas of the stripes may cancel out.
+			if (entry.getValue() != 0) {
+				writes.add(write(entry.getKey(), entry.getValue()));
+			}
+		}
+
+		try {
+			Futures.successfulAsList(writes).get();
+		} catch (ExecutionException e) {
+			// successfulAsList does not fail.
+		}
+		writing.removeAllZeros();
+	}
+
+	private ListenableFuture<Void> write(final Counter<K> counter, final long delta) {
+		ListenableFuture<Void> future;
+		try {
+			future = clientManager.updateCounterAsync(counter.key, counter.columnName, delta);
+		} catch (RuntimeException e) {
+			future = Futures.immediateFailedFuture(e);
+		}
+
+		Futures.addCallback(future, new FutureCallback<Void>() {
+			@Override
+			public void onSuccess(Void result) {
+				writtenCount.incrementAndGet();
+				writing.addAndGet(counter, -delta);
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				log.warn("Counter writer failed to add " + delta + " to counter " + counter.columnName + " of row " +
+						counter.key + " of " + clientManager.getColumnFamilyName(), t);
+				failedCount.incrementAndGet();
+				writing.addAndGet(counter, -delta);
+			}
+		});
+		return future;
+	}
+
+	private static class Stripe<K> {
+		final AtomicLongMap<Counter<K>> deltas = AtomicLongMap.create();
+		final AtomicLong updates = new AtomicLong();
+	}
+
+	private static final class Counter<K> {
+		final K key;
+		final String columnName;
+
+		Counter(K key, String columnName) {
+			this.key = key;
+			this.columnName = columnName;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Counter)) {
+				return false;
+			}
+			final Counter<?> other = (Counter<?>) o;
+			return Objects.equal(key, other.key) && Objects.equal(columnName, other.columnName);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(key, columnName);
+		}
+	}
+}
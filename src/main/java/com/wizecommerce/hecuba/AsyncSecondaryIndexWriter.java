@@ -0,0 +1,255 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wizecommerce.hecuba;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Writes secondary index entries in the background, so that a write to an indexed column costs the caller a single
+ * write to the main column family.
+ *
+ * Index mutations are queued per (secondary index key, row key); a newer mutation of the same entry replaces the
+ * queued one, so a column updated many times in a row is indexed once. A single thread writes the queue in batches.
+ * When the queue is full the callers block until there is room again. {@link #flush()} waits for everything queued
+ * before it to be written.
+ *
+ * Index entries become visible some time after the row is written, and failed batches are logged and dropped, so this
+ * is only suitable for indexes which may lag behind the data.
+ *
+ * @param <K> - type of the row keys
+ */
+public class AsyncSecondaryIndexWriter<K> {
+
+	private static final Logger log = Logger.getLogger(AsyncSecondaryIndexWriter.class);
+
+	/**
+	 * Writes a batch of index mutations, as a single batch if the client supports one.
+	 */
+	public interface BatchWriter<K> {
+		void write(List<IndexMutation<K>> mutations) throws Exception;
+	}
+
+	public static class IndexMutation<K> {
+		private final String secondaryIndexKey;
+		private final K key;
+		private final boolean deletion;
+		private final long timestamp;
+		private final int ttl;
+
+		private long sequence;
+
+		IndexMutation(String secondaryIndexKey, K key, boolean deletion, long timestamp, int ttl) {
+			this.secondaryIndexKey = secondaryIndexKey;
+			this.key = key;
+			this.deletion = deletion;
+			this.timestamp = timestamp;
+			this.ttl = ttl;
+		}
+
+		public String getSecondaryIndexKey() {
+			return secondaryIndexKey;
+		}
+
+		public K getKey() {
+			return key;
+		}
+
+		public boolean isDeletion() {
+			return deletion;
+		}
+
+		/**
+		 * @return the timestamp of the mutation, or a value less than one to let the client pick one.
+		 */
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		/**
+		 * @return the time to live of an insertion, or a value less than one for none.
+		 */
+		public int getTtl() {
+			return ttl;
+		}
+	}
+
+	private final String name;
+	private final BatchWriter<K> batchWriter;
+	private final int maxPending;
+	private final int batchSize;
+
+	// guards everything below and is notified whenever any of it changes.
+	private final Object lock = new Object();
+	private final LinkedHashMap<Map.Entry<String, K>, IndexMutation<K>> pending = new LinkedHashMap<>();
+	private long sequence;
+	private int inFlight;
+	private long failedCount;
+	private boolean stopped;
+
+	private final Thread writerThread;
+
+	/**
+	 * @param name        - used to name the writer thread, e.g. the column family of the index.
+	 * @param batchWriter - writes the index mutations.
+	 * @param maxPending  - number of index entries that may be queued before callers block.
+	 * @param batchSize   - maximum number of index mutations written in one batch.
+	 */
+	public AsyncSecondaryIndexWriter(String name, BatchWriter<K> batchWriter, int maxPending, int batchSize) {
+		this.name = name;
+		this.batchWriter = batchWriter;
+		this.maxPending = maxPending;
+		this.batchSize = batchSize;
+
+		writerThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writePending();
+			}
+		}, "hecuba-si-writer-" + name);
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	public void insert(String secondaryIndexKey, K key, long timestamp, int ttl) {
+		enqueue(new IndexMutation<K>(secondaryIndexKey, key, false, timestamp, ttl));
+	}
+
+	public void delete(String secondaryIndexKey, K key, long timestamp) {
+		enqueue(new IndexMutation<K>(secondaryIndexKey, key, true, timestamp, -1));
+	}
+
+	private void enqueue(IndexMutation<K> mutation) {
+		final Map.Entry<String, K> entry = new SimpleImmutableEntry<>(mutation.getSecondaryIndexKey(), mutation.getKey());
+
+		synchronized (lock) {
+			while (!stopped && pending.size() >= maxPending && !pending.containsKey(entry)) {
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException(e);
+				}
+			}
+			if (stopped) {
+				throw new IllegalStateException("Secondary index writer " + name + " has been shut down");
+			}
+
+			final IndexMutation<K> queued = pending.remove(entry);
+			if (queued != null && queued.getTimestamp() > 0 && mutation.getTimestamp() > 0 &&
+					queued.getTimestamp() > mutation.getTimestamp()) {
+				// Cassandra would have kept the queued one anyway.
+				mutation = queued;
+			}
+
+			// re-queued at the end, so that the queue stays in the order of the sequence numbers.
+			mutation.sequence = ++sequence;
+			pending.put(entry, mutation);
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Blocks until all the index mutations queued before this call have been written, or have failed.
+	 */
+	public void flush() throws InterruptedException {
+		synchronized (lock) {
+			final long flushSequence = sequence;
+			while (inFlight > 0 || (!pending.isEmpty() && pending.values().iterator().next().sequence <= flushSequence)) {
+				lock.wait();
+			}
+		}
+	}
+
+	/**
+	 * Writes what is queued and stops the writer thread. Index mutations queued afterwards are rejected.
+	 */
+	public void shutDown() {
+		synchronized (lock) {
+			stopped = true;
+			lock.notifyAll();
+		}
+
+		try {
+			writerThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public int getPendingCount() {
+		synchronized (lock) {
+			return pending.size();
+		}
+	}
+
+	/**
+	 * @return the number of index mutations that could not be written.
+	 */
+	public long getFailedCount() {
+		synchronized (lock) {
+			return failedCount;
+		}
+	}
+
+	private void writePending() {
+		while (true) {
+			final List<IndexMutation<K>> batch = new ArrayList<>();
+
+			synchronized (lock) {
+				while (pending.isEmpty() && !stopped) {
+					try {
+						lock.wait();
+					} catch (InterruptedException e) {
+						// only shutDown stops the writer.
+					}
+				}
+				if (pending.isEmpty()) {
+					return;
+				}
+
+				final Iterator<IndexMutation<K>> iterator = pending.values().iterator();
+				while (iterator.hasNext() && batch.size() < batchSize) {
+					batch.add(iterator.next());
+					iterator.remove();
+				}
+				inFlight = batch.size();
+				lock.notifyAll();
+			}
+
+			boolean written = false;
+			try {
+				batchWriter.write(batch);
+				written = true;
+			} catch (Throwable t) {
+				log.error("Secondary index writer " + name + " failed to write " + batch.size() + " index mutations", t);
+			}
+
+			synchronized (lock) {
+				inFlight = 0;
+				if (!written) {
+					failedCount += batch.size();
+				}
+				lock.notifyAll();
+			}
+		}
+	}
+}
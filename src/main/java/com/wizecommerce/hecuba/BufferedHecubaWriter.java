@@ -0,0 +1,403 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wizecommerce.hecuba;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Buffers column updates from any number of threads and writes them row by row with
+ * {@link HecubaClientManager#updateRowAsync(Object, Map, Map, Map)}, so that many small updates of a row cost a
+ * single write of the row, on every backend.
+ *
+ * Updates are buffered in stripes by row key, each with a lock of its own, and merged per row: a newer value of a
+ * column replaces the buffered one, unless both have timestamps and the buffered one is newer. A stripe is written
+ * once it holds batchSize rows, and every row is written at most lingerMillis after it was first buffered. At most
+ * maxInFlight rows are written at once; when the buffer of a stripe is full, or too many rows are being written, the
+ * callers block until there is room again. The writes of a row key are sent one after the other, in the order they
+ * were taken from the buffer.
+ *
+ * Every update returns a future which completes once its row has been written, or fails with the error of the write.
+ * {@link #flush()} waits for everything buffered before it to be written. Buffered updates are lost if the writer is
+ * not closed, so call {@link #close()} before shutting down the client manager.
+ *
+ * @param <K> - type of the row keys
+ */
+public class BufferedHecubaWriter<K> {
+
+	private static final Logger log = Logger.getLogger(BufferedHecubaWriter.class);
+
+	private final HecubaClientManager<K> clientManager;
+	private final int maxBufferedRows;
+	private final int batchSize;
+	private final long lingerNanos;
+	private final Semaphore inFlight;
+
+	private final Stripe<K>[] stripes;
+	private final Set<ListenableFuture<Void>> writing = Collections
+			.newSetFromMap(new ConcurrentHashMap<ListenableFuture<Void>, Boolean>());
+	private final ConcurrentMap<K, BufferedRow<K>> writingRows = new ConcurrentHashMap<>();
+	private final AtomicLong writtenCount = new AtomicLong();
+	private final AtomicLong failedCount = new AtomicLong();
+	private final ScheduledExecutorService lingerExecutor;
+	private volatile boolean closed;
+
+	/**
+	 * @param clientManager   - writes the rows.
+	 * @param maxBufferedRows - number of rows that may be buffered before callers block.
+	 * @param batchSize       - number of rows a stripe buffers before they are written.
+	 * @param lingerMillis    - maximum time a row is buffered for.
+	 * @param maxInFlight     - maximum number of rows being written at once.
+	 */
+	@SuppressWarnings("unchecked")
+	public BufferedHecubaWriter(HecubaClientManager<K> clientManager, int maxBufferedRows, int batchSize,
+			long lingerMillis, int maxInFlight) {
+		this.clientManager = clientManager;
+		this.batchSize = Math.max(1, batchSize);
+		this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+		this.inFlight = new Semaphore(maxInFlight);
+
+		// enough stripes for the writing threads not to wait for each other, but not so many that a stripe never
+		// fills up a batch.
+		final int stripeCount = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() * 2,
+				maxBufferedRows / this.batchSize));
+		this.maxBufferedRows = Math.max(this.batchSize, maxBufferedRows / stripeCount);
+		stripes = new Stripe[stripeCount];
+		for (int i = 0; i < stripeCount; i++) {
+			stripes[i] = new Stripe<>();
+		}
+
+		final String columnFamily = clientManager.getColumnFamilyName();
+		lingerExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true)
+				.setNameFormat("hecuba-buffered-writer-" + columnFamily).build());
+		lingerExecutor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					writeLingering();
+				} catch (Throwable t) {
+					log.error("Buffered writer of " + columnFamily + " failed to write rows", t);
+				}
+			}
+		}, lingerMillis, Math.max(1, lingerMillis / 2), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Buffers an update of a column, with the timestamp and time to live of the client manager.
+	 *
+	 * @return a future which completes once the row of the column has been written.
+	 */
+	public ListenableFuture<Void> update(K key, String columnName, Object value) {
+		return update(key, columnName, value, -1, -1);
+	}
+
+	/**
+	 * Buffers an update of a column.
+	 *
+	 * @param timestamp - timestamp of the update, or a value less than one to let the client pick one.
+	 * @param ttl       - time to live of the column, or a value less than one for none.
+	 *
+	 * @return a future which completes once the row of the column has been written.
+	 */
+	public ListenableFuture<Void> update(K key, String columnName, Object value, long timestamp, int ttl) {
+		final Map<String, Long> timestamps = timestamp > 0 ? Collections.singletonMap(columnName, timestamp) : null;
+		final Map<String, Integer> ttls = ttl > 0 ? Collections.singletonMap(columnName, ttl) : null;
+		return updateRow(key, Collections.singletonMap(columnName, value), timestamps, ttls);
+	}
+
+	/**
+	 * Buffers an update of the given columns of a row, with the semantics of
+	 * {@link HecubaClientManager#updateRow(Object, Map, Map, Map)}.
+	 *
+	 * @return a future which completes once the row has been written.
+	 */
+	public ListenableFuture<Void> updateRow(K key, Map<String, Object> row, Map<String, Long> timestamps,
+			Map<String, Integer> ttls) {
+		final Stripe<K> stripe = stripes[(key.hashCode() & Integer.MAX_VALUE) % stripes.length];
+		final List<BufferedRow<K>> batch;
+		final SettableFuture<Void> written;
+
+		synchronized (stripe) {
+			while (!closed && stripe.rows.size() >= maxBufferedRows && !stripe.rows.containsKey(key)) {
+				try {
+					stripe.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException(e);
+				}
+			}
+			if (closed) {
+				throw new IllegalStateException("Buffered writer of " + clientManager.getColumnFamilyName() +
+						" has been closed");
+			}
+
+			BufferedRow<K> bufferedRow = stripe.rows.get(key);
+			if (bufferedRow == null) {
+				bufferedRow = new BufferedRow<>(key);
+				stripe.rows.put(key, bufferedRow);
+			}
+			bufferedRow.merge(row, timestamps, ttls);
+			written = bufferedRow.written;
+
+			batch = stripe.rows.size() >= batchSize ? takeRows(stripe, true, 0) : null;
+		}
+
+		if (batch != null) {
+			write(batch);
+		}
+		return written;
+	}
+
+	/**
+	 * Blocks until all the updates buffered before this call have been written, or have failed.
+	 */
+	public void flush() throws InterruptedException {
+		for (Stripe<K> stripe : stripes) {
+			final List<BufferedRow<K>> batch;
+			synchronized (stripe) {
+				batch = takeRows(stripe, true, 0);
+			}
+			write(batch);
+		}
+
+		final List<ListenableFuture<Void>> pending = new ArrayList<>(writing);
+		try {
+			Futures.successfulAsList(pending).get();
+		} catch (ExecutionException e) {
+			// successfulAsList does not fail.
+		}
+	}
+
+	/**
+	 * Writes everything buffered and rejects further updates.
+	 */
+	public void close() throws InterruptedException {
+		closed = true;
+		for (Stripe<K> stripe : stripes) {
+			synchronized (stripe) {
+				stripe.notifyAll();
+			}
+		}
+		lingerExecutor.shutdown();
+		lingerExecutor.awaitTermination(1, TimeUnit.MINUTES);
+		flush();
+	}
+
+	public int getBufferedCount() {
+		int count = 0;
+		for (Stripe<K> stripe : stripes) {
+			synchronized (stripe) {
+				count += stripe.rows.size();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return the number of rows written, counting every write of a row.
+	 */
+	public long getWrittenCount() {
+		return writtenCount.get();
+	}
+
+	/**
+	 * @return the number of rows that could not be written.
+	 */
+	public long getFailedCount() {
+		return failedCount.get();
+	}
+
+	private void writeLingering() {
+		final long bufferedBefore = System.nanoTime() - lingerNanos;
+		for (Stripe<K> stripe : stripes) {
+			final List<BufferedRow<K>> batch;
+			synchronized (stripe) {
+				batch = takeRows(stripe, false, bufferedBefore);
+			}
+			write(batch);
+		}
+	}
+
+	/**
+	 * Takes rows of the given stripe and queues each behind the write of its key still in progress, if any. Must be
+	 * called holding the lock of the stripe, which all the writes of a key go through, so that the writes of a key are
+	 * queued in the order they were taken in.
+	 */
+	private List<BufferedRow<K>> takeRows(Stripe<K> stripe, boolean all, long bufferedBefore) {
+		final List<BufferedRow<K>> batch = stripe.takeRows(all, bufferedBefore);
+		for (BufferedRow<K> row : batch) {
+			writing.add(row.written);
+			final BufferedRow<K> previous = writingRows.put(row.key, row);
+			if (previous != null) {
+				synchronized (previous) {
+					if (!previous.done) {
+						previous.next = row;
+						row.queued = true;
+					}
+				}
+			}
+		}
+		return batch;
+	}
+
+	private void write(List<BufferedRow<K>> batch) {
+		for (final BufferedRow<K> row : batch) {
+			// a queued row is sent by the write it is queued behind, with its permit.
+			if (!row.queued) {
+				// the backpressure on the writing threads when the cluster can't keep up.
+				inFlight.acquireUninterruptibly();
+				send(row);
+			}
+		}
+	}
+
+	private void send(final BufferedRow<K> row) {
+		ListenableFuture<Void> future;
+		try {
+			future = clientManager.updateRowAsync(row.key, row.columns, row.timestamps.isEmpty() ? null
+					: row.timestamps, row.ttls.isEmpty() ? null : row.ttls);
+		} catch (RuntimeException e) {
+			future = Futures.immediateFailedFuture(e);
+		}
+
+		Futures.addCallback(future, new FutureCallback<Void>() {
+			@Override
+			public void onSuccess(Void result) {
+				writtenCount.incrementAndGet();
+				done();
+				row.written.set(null);
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				log.warn("Buffered writer failed to write row " + row.key + " of " +
+						clientManager.getColumnFamilyName(), t);
+				failedCount.incrementAndGet();
+				done();
+				row.written.setException(t);
+			}
+
+			private void done() {
+				final BufferedRow<K> next;
+				synchronized (row) {
+					row.done = true;
+					next = row.next;
+				}
+				writing.remove(row.written);
+				writingRows.remove(row.key, row);
+				if (next != null) {
+					send(next);
+				} else {
+					inFlight.release();
+				}
+			}
+		});
+	}
+
+	private static class Stripe<K> {
+		// in the order the rows were first buffered in.
+		final LinkedHashMap<K, BufferedRow<K>> rows = new LinkedHashMap<>();
+
+		/**
+		 * Takes all the rows, or those first buffered before the given System.nanoTime(), and wakes up the callers
+		 * waiting for room. Must be called holding the lock of the stripe.
+		 */
+		List<BufferedRow<K>> takeRows(boolean all, long bufferedBefore) {
+			if (rows.isEmpty()) {
+				return Collections.emptyList();
+			}
+
+			final List<BufferedRow<K>> taken = new ArrayList<>();
+			final Iterator<BufferedRow<K>> iterator = rows.values().iterator();
+			while (iterator.hasNext()) {
+				final BufferedRow<K> row = iterator.next();
+				if (!all && row.bufferedAt - bufferedBefore >= 0) {
+					break;
+				}
+				taken.add(row);
+				iterator.remove();
+			}
+
+			if (!taken.isEmpty()) {
+				notifyAll();
+			}
+			return taken;
+		}
+	}
+
+	private static class BufferedRow<K> {
+		final K key;
+		final long bufferedAt = System.nanoTime();
+		final Map<String, Object> columns = new HashMap<>();
+		final Map<String, Long> timestamps = new HashMap<>();
+		final Map<String, Integer> ttls = new HashMap<>();
+		final SettableFuture<Void> written = SettableFuture.create();
+		// set when the row is taken, if the previous write of its key is still in progress.
+		boolean queued;
+		// guarded by the row: the next write of the key, sent once this one is done.
+		BufferedRow<K> next;
+		boolean done;
+
+		BufferedRow(K key) {
+			this.key = key;
+		}
+
+		void merge(Map<String, Object> row, Map<String, Long> newTimestamps, Map<String, Integer> newTtls) {
+			for (Map.Entry<String, Object> column : row.entrySet()) {
+				final String columnName = column.getKey();
+				final Long timestamp = newTimestamps == null ? null : newTimestamps.get(columnName);
+				final Long bufferedTimestamp = timestamps.get(columnName);
+				if (timestamp != null && timestamp > 0 && bufferedTimestamp != null && bufferedTimestamp > timestamp) {
+					// Cassandra would have kept the buffered one anyway.
+					continue;
+				}
+
+				columns.put(columnName, column.getValue());
+				put(timestamps, columnName, timestamp);
+				put(ttls, columnName, newTtls == null ? null : newTtls.get(columnName));
+			}
+		}
+
+		private static <V extends Number> void put(Map<String, V> map, String columnName, V value) {
+			if (value != null && value.longValue() > 0) {
+				map.put(columnName, value);
+			} else {
+				map.remove(columnName);
+			}
+		}
+	}
+}
@@ -0,0 +1,603 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wizecommerce.hecuba;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang.math.NumberUtils;
+
+import com.google.common.base.Function;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.wizecommerce.hecuba.datastax.CompositeCassandraResultSet;
+
+/**
+ * A read-through row cache in front of any other client manager.
+ *
+ * Rows are cached whole, as returned by readAllColumns, in a cache bounded by the number of rows and with a time to
+ * live. Single and multiple column reads of a key are served from its cached row, so a row is read from Cassandra at
+ * most once per time to live however many of its columns are read. Writes and deletes made through this manager
+ * invalidate the rows they touch, including rows being read while they are written, and writes made by anyone else
+ * become visible once the cached row expires. Columns missing from a row which readAllColumns may have cut short (see
+ * {@link HecubaClientManager#readAllColumns(Object)}) are read from the underlying manager. Counters, column slices
+ * and secondary index lookups always go to the underlying manager.
+ *
+ * The cache is configured per column family, see {@link HecubaConstants#getRowCacheProperties(String, String)}, and
+ * {@link HecubaObjectFactory} wraps the managers of the column families it is enabled for. The configuration setters
+ * are passed on to the underlying manager, and switching column families or clusters empties the cache.
+ *
+ * @param <K> - type of the row keys
+ */
+public class CachingHecubaClientManager<K> extends HecubaClientManager<K> {
+
+	private static final Map<String, String> EMPTY_ROW = Collections.emptyMap();
+	// the number of columns readAllColumns reads when no maxColumnCount is set, on Hector.
+	private static final int DEFAULT_COLUMN_COUNT = 100;
+	private static final int GENERATION_STRIPES = 1024;
+
+	private final HecubaClientManager<K> delegate;
+	private final Cache<K, Map<String, String>> rowCache;
+	// bumped by the writes of the keys of each stripe, so that a row read before a write is not cached after it.
+	private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+	public CachingHecubaClientManager(CassandraParamsBean parameters, HecubaClientManager<K> delegate) {
+		super(parameters);
+		this.delegate = delegate;
+
+		final String columnFamily = parameters.getColumnFamily();
+		final long maxSize = NumberUtils.toLong(getRowCacheProperty(columnFamily, HecubaConstants.ROW_CACHE_MAX_SIZE), 10000);
+		final long ttlSeconds = NumberUtils.toLong(getRowCacheProperty(columnFamily, HecubaConstants.ROW_CACHE_TTL_SECONDS), 60);
+
+		rowCache = CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+				.recordStats().build();
+
+		log.info("Row cache for " + columnFamily + " holds up to " + maxSize + " rows for " + ttlSeconds + " seconds");
+	}
+
+	/**
+	 * @param columnFamily - name of the column family
+	 *
+	 * @return whether the row cache is enabled for the given column family.
+	 */
+	public static boolean isEnabled(String columnFamily) {
+		return Boolean.parseBoolean(getRowCacheProperty(columnFamily, HecubaConstants.ROW_CACHE_ENABLED));
+	}
+
+	private static String getRowCacheProperty(String columnFamily, String option) {
+		return getColumnFamilyProperty(HecubaConstants.getRowCacheProperties(columnFamily, option));
+	}
+
+	public HecubaClientManager<K> getDelegate() {
+		return delegate;
+	}
+
+	/**
+	 * @return hit, miss, load and eviction counts of the row cache.
+	 */
+	public CacheStats getRowCacheStats() {
+		return rowCache.stats();
+	}
+
+	public long getRowCacheSize() {
+		return rowCache.size();
+	}
+
+	/**
+	 * Drops the cached row of the given key, e.g. when it is known to have been changed by another client.
+	 */
+	public void invalidate(K key) {
+		generations.incrementAndGet(getStripe(key));
+		rowCache.invalidate(key);
+	}
+
+	public void invalidateAll() {
+		for (int i = 0; i < GENERATION_STRIPES; i++) {
+			generations.incrementAndGet(i);
+		}
+		rowCache.invalidateAll();
+	}
+
+	// ====================================================
+	// Configuration
+	// ====================================================
+
+	@Override
+	public void setColumnFamily(String columnFamily) {
+		delegate.setColumnFamily(columnFamily);
+		super.setColumnFamily(columnFamily);
+		invalidateAll();
+	}
+
+	@Override
+	public void setClusterName(String clusterName) {
+		delegate.setClusterName(clusterName);
+		super.setClusterName(clusterName);
+		invalidateAll();
+	}
+
+	@Override
+	public void setLocationURL(String locationURL) {
+		delegate.setLocationURL(locationURL);
+		super.setLocationURL(locationURL);
+	}
+
+	@Override
+	protected <T> ListenableFuture<T> sendHedge(Callable<ListenableFuture<T>> read) throws Exception {
+		return delegate.sendHedge(read);
+	}
+
+	@Override
+	public void setColumnsToIndexOnColumnNameAndValue(List<String> columnNames) {
+		// also called by the constructor of HecubaClientManager, before there is a delegate to pass it on to.
+		if (delegate != null) {
+			delegate.setColumnsToIndexOnColumnNameAndValue(columnNames);
+		}
+		super.setColumnsToIndexOnColumnNameAndValue(columnNames);
+	}
+
+	// ====================================================
+	// Cached reads
+	// ====================================================
+
+	@Override
+	public String readString(K key, String columnName) {
+		final Map<String, String> row = getRow(key);
+		final String value = row.get(columnName);
+		return value == null && isTruncated(row) ? delegate.readString(key, columnName) : value;
+	}
+
+	@Override
+	public CassandraResultSet<K, String> readAllColumns(K key) throws Exception {
+		return new CassandraMapResultSet<K, String>(key, getRow(key));
+	}
+
+	@Override
+	public CassandraResultSet<K, String> readColumns(K key, List<String> columnNames) throws Exception {
+		if (CollectionUtils.isEmpty(columnNames)) {
+			return readAllColumns(key);
+		}
+
+		return new CassandraMapResultSet<K, String>(key, selectColumns(key, getRow(key), columnNames));
+	}
+
+	@Override
+	public CassandraResultSet<K, String> readAllColumns(Set<K> keys) throws Exception {
+		return toResultSet(getRows(keys));
+	}
+
+	@Override
+	public CassandraResultSet<K, String> readColumns(Set<K> keys, List<String> columnNames) throws Exception {
+		if (CollectionUtils.isEmpty(columnNames)) {
+			return readAllColumns(keys);
+		}
+
+		Map<K, Map<String, String>> rows = getRows(keys);
+		for (Map.Entry<K, Map<String, String>> entry : rows.entrySet()) {
+			entry.setValue(selectColumns(entry.getKey(), entry.getValue(), columnNames));
+		}
+		return toResultSet(rows);
+	}
+
+	@Override
+	public ListenableFuture<CassandraResultSet<K, String>> readAllColumnsAsync(final K key) {
+		Map<String, String> row = rowCache.getIfPresent(key);
+		if (row != null) {
+			return Futures.<CassandraResultSet<K, String>> immediateFuture(new CassandraMapResultSet<K, String>(key, row));
+		}
+
+		final long generation = getGeneration(key);
+		return Futures.transform(delegate.readAllColumnsAsync(key),
+				new Function<CassandraResultSet<K, String>, CassandraResultSet<K, String>>() {
+					@Override
+					public CassandraResultSet<K, String> apply(CassandraResultSet<K, String> resultSet) {
+						Map<String, String> row = resultSet.hasResults() ? toRow(resultSet) : EMPTY_ROW;
+						cacheRow(key, row, generation);
+						return new CassandraMapResultSet<K, String>(key, row);
+					}
+				});
+	}
+
+	@Override
+	public ListenableFuture<String> readStringAsync(final K key, final String columnName) {
+		return Futures.transform(readAllColumnsAsync(key), new AsyncFunction<CassandraResultSet<K, String>, String>() {
+			@Override
+			public ListenableFuture<String> apply(CassandraResultSet<K, String> resultSet) {
+				final String value = resultSet.getString(columnName);
+				if (value == null && resultSet.getColumnNames().size() >= getTruncatedColumnCount()) {
+					return delegate.readStringAsync(key, columnName);
+				}
+				return Futures.immediateFuture(value);
+			}
+		});
+	}
+
+	private Map<String, String> getRow(final K key) {
+		final long generation = getGeneration(key);
+		final Map<String, String> row;
+		try {
+			row = rowCache.get(key, new Callable<Map<String, String>>() {
+				@Override
+				public Map<String, String> call() throws Exception {
+					CassandraResultSet<K, String> resultSet = delegate.readAllColumns(key);
+					return resultSet != null && resultSet.hasResults() ? toRow(resultSet) : EMPTY_ROW;
+				}
+			});
+		} catch (ExecutionException | UncheckedExecutionException e) {
+			throw Throwables.propagate(e.getCause());
+		}
+
+		// the cache does not cancel loads, so a row read before a write may have been cached after the write.
+		if (getGeneration(key) != generation) {
+			rowCache.invalidate(key);
+		}
+		return row;
+	}
+
+	private Map<K, Map<String, String>> getRows(Set<K> keys) throws Exception {
+		Map<K, Map<String, String>> rows = new LinkedHashMap<>(rowCache.getAllPresent(keys));
+		if (rows.size() == keys.size()) {
+			return rows;
+		}
+
+		Set<K> keysToRead = new HashSet<>(keys);
+		keysToRead.removeAll(rows.keySet());
+		Set<K> missingKeys = new HashSet<>(keysToRead);
+
+		Map<K, Long> generations = new HashMap<>();
+		for (K key : keysToRead) {
+			generations.put(key, getGeneration(key));
+		}
+
+		CassandraResultSet<K, String> resultSet = delegate.readAllColumns(keysToRead);
+		if (resultSet != null && resultSet.hasResults()) {
+			while (true) {
+				K key = resultSet.getKey();
+				Map<String, String> row = toRow(resultSet);
+				if (generations.containsKey(key)) {
+					cacheRow(key, row, generations.get(key));
+				}
+				rows.put(key, row);
+				missingKeys.remove(key);
+
+				if (!resultSet.hasNextResult()) {
+					break;
+				}
+				resultSet.nextResult();
+			}
+		}
+
+		// whatever did not come back has no columns, which is worth remembering too.
+		for (K key : missingKeys) {
+			cacheRow(key, EMPTY_ROW, generations.get(key));
+		}
+
+		return rows;
+	}
+
+	private Map<String, String> toRow(CassandraResultSet<K, String> resultSet) {
+		Map<String, String> row = new HashMap<>();
+		for (String columnName : resultSet.getColumnNames()) {
+			row.put(columnName, resultSet.getString(columnName));
+		}
+		return Collections.unmodifiableMap(row);
+	}
+
+	/**
+	 * Caches a row read while the generation of its key was the given one, unless a write went by meanwhile.
+	 */
+	private void cacheRow(K key, Map<String, String> row, long generation) {
+		rowCache.put(key, row);
+		// checked after the row is cached, as the write may invalidate the key between a check and the put.
+		if (getGeneration(key) != generation) {
+			rowCache.invalidate(key);
+		}
+	}
+
+	private long getGeneration(K key) {
+		return generations.get(getStripe(key));
+	}
+
+	private int getStripe(K key) {
+		final int hash = key.hashCode();
+		return ((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % GENERATION_STRIPES;
+	}
+
+	/**
+	 * @return whether readAllColumns may have left columns of the row out.
+	 */
+	private boolean isTruncated(Map<String, String> row) {
+		return row.size() >= getTruncatedColumnCount();
+	}
+
+	private int getTruncatedColumnCount() {
+		return maxColumnCount > 0 ? maxColumnCount : DEFAULT_COLUMN_COUNT;
+	}
+
+	private Map<String, String> selectColumns(K key, Map<String, String> row, List<String> columnNames)
+			throws Exception {
+		Map<String, String> columns = new HashMap<>();
+		List<String> missingColumnNames = new ArrayList<>();
+		for (String columnName : columnNames) {
+			String value = row.get(columnName);
+			if (value != null) {
+				columns.put(columnName, value);
+			} else {
+				missingColumnNames.add(columnName);
+			}
+		}
+
+		if (!missingColumnNames.isEmpty() && isTruncated(row)) {
+			CassandraResultSet<K, String> resultSet = delegate.readColumns(key, missingColumnNames);
+			if (resultSet != null && resultSet.hasResults()) {
+				columns.putAll(toRow(resultSet));
+			}
+		}
+		return columns;
+	}
+
+	private CassandraResultSet<K, String> toResultSet(Map<K, Map<String, String>> rows) {
+		List<CassandraResultSet<K, String>> resultSets = new ArrayList<>(rows.size());
+		for (Map.Entry<K, Map<String, String>> entry : rows.entrySet()) {
+			if (!entry.getValue().isEmpty()) {
+				resultSets.add(new CassandraMapResultSet<K, String>(entry.getKey(), entry.getValue()));
+			}
+		}
+
+		if (resultSets.isEmpty()) {
+			return new CassandraMapResultSet<K, String>(EMPTY_ROW);
+		}
+		return new CompositeCassandraResultSet<>(resultSets);
+	}
+
+	// ====================================================
+	// Invalidating writes
+	// ====================================================
+
+	@Override
+	public void updateString(K key, String columnName, String value, long timestamp, int ttl) {
+		try {
+			delegate.updateString(key, columnName, value, timestamp, ttl);
+		} finally {
+			invalidate(key);
+		}
+	}
+
+	@Override
+	public void updateByteBuffer(K key, String columnName, ByteBuffer value) {
+		try {
+			delegate.updateByteBuffer(key, columnName, value);
+		} finally {
+			invalidate(key);
+		}
+	}
+
+	@Override
+	public void updateRow(K key, Map<String, Object> row, Map<String, Long> timestamps, Map<String, Integer> ttls)
+			throws Exception {
+		try {
+			delegate.updateRow(key, row, timestamps, ttls);
+		} finally {
+			invalidate(key);
+		}
+	}
+
+	@Override
+	public void deleteColumn(K key, String columnName) {
+		try {
+			delegate.deleteColumn(key, columnName);
+		} finally {
+			invalidate(key);
+		}
+	}
+
+	@Override
+	public void deleteColumns(K key, List<String> columnNameList) {
+		try {
+			delegate.deleteColumns(key, columnNameList);
+		} finally {
+			invalidate(key);
+		}
+	}
+
+	@Override
+	public void deleteRow(K key, long timestamp) {
+		try {
+			delegate.deleteRow(key, timestamp);
+		} finally {
+			invalidate(key);
+		}
+	}
+
+	@Override
+	public ListenableFuture<Void> updateStringAsync(K key, String columnName, String value, long timestamp, int ttl) {
+		return invalidateOnCompletion(key, delegate.updateStringAsync(key, columnName, value, timestamp, ttl));
+	}
+
+	@Override
+	public ListenableFuture<Void> updateRowAsync(K key, Map<String, Object> row, Map<String, Long> timestamps,
+			Map<String, Integer> ttls) {
+		return invalidateOnCompletion(key, delegate.updateRowAsync(key, row, timestamps, ttls));
+	}
+
+	@Override
+	public ListenableFuture<Void> deleteColumnAsync(K key, String columnName) {
+		return invalidateOnCompletion(key, delegate.deleteColumnAsync(key, columnName));
+	}
+
+	@Override
+	public ListenableFuture<Void> deleteRowAsync(K key, long timestamp) {
+		return invalidateOnCompletion(key, delegate.deleteRowAsync(key, timestamp));
+	}
+
+	/**
+	 * @return a future which completes only after the row of the given key has been invalidated, so that a read
+	 *         following the completion of a write never sees the row cached before it.
+	 */
+	private <T> ListenableFuture<T> invalidateOnCompletion(final K key, ListenableFuture<T> future) {
+		final SettableFuture<T> result = SettableFuture.create();
+		Futures.addCallback(future, new FutureCallback<T>() {
+			@Override
+			public void onSuccess(T value) {
+				invalidate(key);
+				result.set(value);
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				invalidate(key);
+				result.setException(t);
+			}
+		});
+		return result;
+	}
+
+	// ====================================================
+	// Pass through
+	// ====================================================
+
+	@Override
+	public CassandraColumn readColumnInfo(K key, String columnName) {
+		return delegate.readColumnInfo(key, columnName);
+	}
+
+	@Override
+	public CassandraResultSet<K, String> readColumnSlice(K key, String start, String end, boolean reversed, int count) {
+		return delegate.readColumnSlice(key, start, end, reversed, count);
+	}
+
+	@Override
+	public CassandraResultSet<K, String> readColumnSlice(Set<K> keys, String start, String end, boolean reversed) {
+		return delegate.readColumnSlice(keys, start, end, reversed);
+	}
+
+	@Override
+	public Long getCounterValue(K key, String counterColumnName) {
+		return delegate.getCounterValue(key, counterColumnName);
+	}
+
+	@Override
+	public void updateCounter(K key, String counterColumnName, long value) {
+		delegate.updateCounter(key, counterColumnName, value);
+	}
+
+	@Override
+	public void incrementCounter(K key, String counterColumnName) {
+		delegate.incrementCounter(key, counterColumnName);
+	}
+
+	@Override
+	public void decrementCounter(K key, String counterColumnName) {
+		delegate.decrementCounter(key, counterColumnName);
+	}
+
+	@Override
+	@SuppressWarnings("rawtypes")
+	public CassandraResultSet readAllColumnsBySecondaryIndex(Map<String, String> parameters, int limit) {
+		return delegate.readAllColumnsBySecondaryIndex(parameters, limit);
+	}
+
+	@Override
+	public CassandraResultSet<K, String> retrieveBySecondaryIndex(String columnName, String columnValue) {
+		return delegate.retrieveBySecondaryIndex(columnName, columnValue);
+	}
+
+	@Override
+	public CassandraResultSet<K, String> retrieveBySecondaryIndex(String columnName, List<String> columnValue) {
+		return delegate.retrieveBySecondaryIndex(columnName, columnValue);
+	}
+
+	@Override
+	public CassandraResultSet<K, String> retrieveByColumnNameBasedSecondaryIndex(String columnName) {
+		return delegate.retrieveByColumnNameBasedSecondaryIndex(columnName);
+	}
+
+	@Override
+	public List<K> retrieveKeysBySecondaryIndex(String columnName, String columnValue) {
+		return delegate.retrieveKeysBySecondaryIndex(columnName, columnValue);
+	}
+
+	@Override
+	public Map<String, List<K>> retrieveKeysBySecondaryIndex(String columnName, List<String> columnValues) {
+		return delegate.retrieveKeysBySecondaryIndex(columnName, columnValues);
+	}
+
+	@Override
+	public List<K> retrieveKeysByColumnNameBasedSecondaryIndex(String columnName) {
+		return delegate.retrieveKeysByColumnNameBasedSecondaryIndex(columnName);
+	}
+
+	@Override
+	public ListenableFuture<CassandraResultSet<K, String>> retrieveBySecondaryIndexAsync(String columnName,
+			String columnValue) {
+		return delegate.retrieveBySecondaryIndexAsync(columnName, columnValue);
+	}
+
+	@Override
+	public ListenableFuture<List<K>> retrieveKeysBySecondaryIndexAsync(String columnName, String columnValue) {
+		return delegate.retrieveKeysBySecondaryIndexAsync(columnName, columnValue);
+	}
+
+	@Override
+	public ListenableFuture<Long> getCounterValueAsync(K key, String counterColumnName) {
+		return delegate.getCounterValueAsync(key, counterColumnName);
+	}
+
+	@Override
+	public ListenableFuture<Void> updateCounterAsync(K key, String counterColumnName, long value) {
+		return delegate.updateCounterAsync(key, counterColumnName, value);
+	}
+
+	@Override
+	public void scan(List<TokenRange> ranges, int parallelism, int pageSize, RowScanCallback<K> callback)
+			throws Exception {
+		delegate.scan(ranges, parallelism, pageSize, callback);
+	}
+
+	@Override
+	protected void scanRange(TokenRange range, int pageSize, RowScanCallback<K> callback) throws Exception {
+		delegate.scanRange(range, pageSize, callback);
+	}
+
+	@Override
+	public void flushSecondaryIndexes() throws InterruptedException {
+		delegate.flushSecondaryIndexes();
+	}
+
+	@Override
+	protected void logDownedHosts() {
+		delegate.logDownedHosts();
+	}
+
+	@Override
+	public void shutDown() {
+		shutDownAsyncExecutor();
+		rowCache.invalidateAll();
+		delegate.shutDown();
+	}
+}
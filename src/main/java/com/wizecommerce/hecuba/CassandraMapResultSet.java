@@ -21,9 +21,15 @@ import java.util.Map;
 import java.util.UUID;
 
 public class CassandraMapResultSet<K, N> extends AbstractCassandraResultSet<K, N>{
+	private K key;
 	private Map<String, String> map;
 	
 	public CassandraMapResultSet(Map<String, String> map) {
+		this(null, map);
+	}
+
+	public CassandraMapResultSet(K key, Map<String, String> map) {
+		this.key = key;
 		this.map = map;
 	}
 
@@ -46,7 +52,7 @@ public class CassandraMapResultSet<K, N> extends AbstractCassandraResultSet<K, N
 
 	@Override
 	public K getKey() {
-		return null;
+		return key;
 	}
 
 	@Override
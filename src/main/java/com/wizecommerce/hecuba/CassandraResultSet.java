@@ -68,6 +68,19 @@ public interface CassandraResultSet<K, N> {
 
 	public abstract Double getDouble(N fieldName, Double defaultDouble);
 
+	/**
+	 * Primitive versions of the getters, which parse the value without creating a String or boxing the result where
+	 * the client allows it. Like the other getters with a primitive default, they return the default value for a
+	 * missing, null or unparsable value.
+	 */
+	public abstract long getLongValue(N fieldName, long defaultLong);
+
+	public abstract int getIntValue(N fieldName, int defaultInt);
+
+	public abstract double getDoubleValue(N fieldName, double defaultDouble);
+
+	public abstract boolean getBooleanValue(N fieldName, boolean defaultValue);
+
 	public abstract byte[] getByteArray(N fieldName);
 
 	public abstract Collection<N> getColumnNames();
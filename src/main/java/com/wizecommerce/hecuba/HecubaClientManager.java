@@ -16,11 +16,33 @@ package com.wizecommerce.hecuba;
 
 import java.nio.ByteBuffer;
 import java.util.*;
-
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.configuration.Configuration;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
 import org.apache.log4j.Logger;
 
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.wizecommerce.hecuba.util.ConfigUtils;
+import com.wizecommerce.hecuba.util.HecubaValueCodecs;
 
 /**
  * This is a convenience class that will enable a user to interact with Column Families. It is
@@ -49,6 +71,13 @@ public abstract class HecubaClientManager<K> {
 	// we will match each and every column name with the given pattern and create a secondary index out of this.
 	protected String secondaryIdxByColumnPattern = null;
 
+	// the compiled secondaryIdxByColumnPattern, and whether it matches the column names seen lately, so that writes
+	// neither compile nor run the expression for every column.
+	private static final int SECONDARY_IDX_BY_COLUMN_MATCHES_MAX_SIZE = 10000;
+	private Pattern compiledSecondaryIdxByColumnPattern;
+	private final Cache<String, Boolean> secondaryIdxByColumnMatches = CacheBuilder.newBuilder().maximumSize(
+			SECONDARY_IDX_BY_COLUMN_MATCHES_MAX_SIZE).build();
+
 	protected boolean isClientAdapterDebugMessagesEnabled;
 
 
@@ -76,11 +105,28 @@ public abstract class HecubaClientManager<K> {
 	 */
 
 	protected List<String> columnsToIndexOnColumnNameAndValue;
+	// the columnsToIndexOnColumnNameAndValue, to look the columns being written up in.
+	private Set<String> indexedColumnNames = Collections.emptySet();
 	protected boolean isSecondaryIndexByColumnNameAndValueEnabled = false;
 	protected boolean isSecondaryIndexesByColumnNamesEnabled = false;
 
 	protected static Logger log = Logger.getLogger(HecubaClientManager.class);
 
+	// backs the *Async methods of the clients which do not have a non-blocking API of their own. Created lazily so
+	// that users of the blocking API alone never pay for the threads.
+	private volatile ListeningExecutorService asyncExecutor;
+
+	// the values the columns indexed by name and value were last indexed with, per row, so that maintaining the
+	// indexes need not read the old values back from Cassandra. Null unless enabled, see initIndexedValueCache.
+	private Cache<K, Map<String, String>> indexedValueCache;
+
+	// writes the secondary indexes in the background. Null unless enabled, see createSecondaryIndexWriter.
+	protected AsyncSecondaryIndexWriter<K> secondaryIndexWriter;
+
+	// how the rows found through secondary indexes are read, see readAllColumnsByIndexJoin.
+	private int indexJoinChunkSize = 100;
+	private int indexJoinParallelism = 4;
+
 	/**
 	 * Creates an instance of the Hecuba client manager to make the calls to Cassandra cluster easier.
 	 *
@@ -98,18 +144,21 @@ public abstract class HecubaClientManager<K> {
 		this.password = parameters.getPassword();
 
 		if (StringUtils.isNotBlank(parameters.getSiColumns())) {
-			columnsToIndexOnColumnNameAndValue = Arrays.asList(StringUtils.split(parameters.getSiColumns(), ":"));
-			Collections.sort(columnsToIndexOnColumnNameAndValue);
+			final List<String> columnNames = Arrays.asList(StringUtils.split(parameters.getSiColumns(), ":"));
+			Collections.sort(columnNames);
+			setColumnsToIndexOnColumnNameAndValue(columnNames);
 			isSecondaryIndexByColumnNameAndValueEnabled = true;
 		}
 
 		String siByColumnsPattern = parameters.getSiByColumnsPattern();
 		if (StringUtils.isNotEmpty(siByColumnsPattern)) {
 			this.secondaryIdxByColumnPattern = siByColumnsPattern;
+			this.compiledSecondaryIdxByColumnPattern = Pattern.compile(siByColumnsPattern);
 			this.isSecondaryIndexesByColumnNamesEnabled = true;
 		}
 
 		init();
+		initIndexedValueCache();
 	}
 
 	/**
@@ -146,6 +195,87 @@ public abstract class HecubaClientManager<K> {
 	private void init() {
 		this.isClientAdapterDebugMessagesEnabled = ConfigUtils.getInstance().getConfiguration().getBoolean(
 				HecubaConstants.ENABLE_DEBUG_MESSAGES, false);
+
+		indexJoinChunkSize = NumberUtils.toInt(getColumnFamilyProperty(HecubaConstants.getIndexJoinProperties(
+				columnFamily, HecubaConstants.INDEX_JOIN_CHUNK_SIZE)), indexJoinChunkSize);
+		indexJoinParallelism = NumberUtils.toInt(getColumnFamilyProperty(HecubaConstants.getIndexJoinProperties(
+				columnFamily, HecubaConstants.INDEX_JOIN_PARALLELISM)), indexJoinParallelism);
+	}
+
+	/**
+	 * Secondary Index Value Cache ==============================
+	 *
+	 * Every write to a column indexed by name and value has to delete the index entry of its previous value, so by
+	 * default the previous value is read from Cassandra before the index is written, which doubles the round trips of
+	 * indexed writes. When the secondary index value cache is enabled the values columns were last indexed with by
+	 * this manager are remembered instead, and only read on a cache miss.
+	 *
+	 * This is only safe when the indexed columns of a row are not changed by other clients within the time to live of
+	 * the cache; otherwise the index entry of a value written elsewhere would be left behind.
+	 */
+	private void initIndexedValueCache() {
+		if (!isSecondaryIndexByColumnNameAndValueEnabled || !Boolean.parseBoolean(getColumnFamilyProperty(
+				HecubaConstants.getSecondaryIndexValueCacheProperties(columnFamily,
+						HecubaConstants.SECONDARY_INDEX_VALUE_CACHE_ENABLED)))) {
+			return;
+		}
+
+		final long maxSize = NumberUtils.toLong(getColumnFamilyProperty(HecubaConstants
+				.getSecondaryIndexValueCacheProperties(columnFamily, HecubaConstants.SECONDARY_INDEX_VALUE_CACHE_MAX_SIZE)),
+				100000);
+		final long ttlSeconds = NumberUtils.toLong(getColumnFamilyProperty(HecubaConstants
+				.getSecondaryIndexValueCacheProperties(columnFamily,
+						HecubaConstants.SECONDARY_INDEX_VALUE_CACHE_TTL_SECONDS)), 0);
+
+		CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder().maximumSize(maxSize);
+		if (ttlSeconds > 0) {
+			cacheBuilder.expireAfterWrite(ttlSeconds, TimeUnit.SECONDS);
+		}
+		indexedValueCache = cacheBuilder.build();
+
+		log.info("Secondary index value cache for " + columnFamily + " holds up to " + maxSize + " rows");
+	}
+
+	/**
+	 * Creates the asynchronous secondary index writer of this manager if it is enabled for the column family. Client
+	 * implementations which support it call this once they are ready to write, and route their index mutations
+	 * through {@link HecubaClientManager#secondaryIndexWriter} when it is not null.
+	 *
+	 * @param columnFamily - name of the column family, as configured.
+	 * @param batchWriter  - writes a batch of index mutations to the secondary index column family.
+	 */
+	protected AsyncSecondaryIndexWriter<K> createSecondaryIndexWriter(String columnFamily,
+			AsyncSecondaryIndexWriter.BatchWriter<K> batchWriter) {
+		if (!Boolean.parseBoolean(getColumnFamilyProperty(HecubaConstants.getSecondaryIndexWriterProperties(
+				columnFamily, HecubaConstants.SECONDARY_INDEX_WRITER_ASYNC)))) {
+			return null;
+		}
+
+		final int maxPending = NumberUtils.toInt(getColumnFamilyProperty(HecubaConstants
+				.getSecondaryIndexWriterProperties(columnFamily, HecubaConstants.SECONDARY_INDEX_WRITER_MAX_PENDING)),
+				10000);
+		final int batchSize = NumberUtils.toInt(getColumnFamilyProperty(HecubaConstants
+				.getSecondaryIndexWriterProperties(columnFamily, HecubaConstants.SECONDARY_INDEX_WRITER_BATCH_SIZE)),
+				100);
+
+		log.info("Secondary indexes of " + columnFamily + " are written asynchronously, in batches of up to " +
+				batchSize);
+		return new AsyncSecondaryIndexWriter<>(columnFamily, batchWriter, maxPending, batchSize);
+	}
+
+	/**
+	 * @param properties - global and column family specific names of a property, in this order.
+	 *
+	 * @return the value of the most specific of the properties which is set, null if none is.
+	 */
+	protected static String getColumnFamilyProperty(String[] properties) {
+		final Configuration configuration = ConfigUtils.getInstance().getConfiguration();
+
+		String value = null;
+		for (String property : properties) {
+			value = configuration.getString(property, value);
+		}
+		return value;
 	}
 
 	/**
@@ -160,6 +290,7 @@ public abstract class HecubaClientManager<K> {
 
 	public void setColumnsToIndexOnColumnNameAndValue(List<String> columnNames) {
 		this.columnsToIndexOnColumnNameAndValue = columnNames;
+		this.indexedColumnNames = columnNames != null ? new HashSet<>(columnNames) : Collections.<String> emptySet();
 	}
 
 	/**
@@ -215,7 +346,7 @@ public abstract class HecubaClientManager<K> {
 	 * @param value      - value to be inserted.
 	 */
 	public void updateBoolean(K key, String columnName, Boolean value) {
-		updateString(key, columnName, value ? "true" : "false");
+		updateString(key, columnName, HecubaValueCodecs.getInstance().encode(columnName, value));
 	}
 
 	/**
@@ -228,7 +359,7 @@ public abstract class HecubaClientManager<K> {
 	 * @param value      - value to be inserted.
 	 */
 	public void updateDate(K key, String columnName, Date value) {
-		updateString(key, columnName, HecubaConstants.DATE_FORMATTER.print(value.getTime()));
+		updateString(key, columnName, HecubaValueCodecs.getInstance().encode(columnName, value));
 	}
 
 	/**
@@ -241,7 +372,7 @@ public abstract class HecubaClientManager<K> {
 	 * @param value      - value to be inserted.
 	 */
 	public void updateDouble(K key, String columnName, Double value) {
-		updateString(key, columnName, value.toString());
+		updateString(key, columnName, HecubaValueCodecs.getInstance().encode(columnName, value));
 	}
 
 	/**
@@ -254,7 +385,7 @@ public abstract class HecubaClientManager<K> {
 	 * @param value      - value to be inserted.
 	 */
 	public void updateLong(K key, String columnName, Long value) {
-		updateString(key, columnName, value.toString());
+		updateString(key, columnName, HecubaValueCodecs.getInstance().encode(columnName, value));
 	}
 
 	/**
@@ -267,7 +398,7 @@ public abstract class HecubaClientManager<K> {
 	 * @param value      - value to be inserted.
 	 */
 	public void updateInteger(K key, String columnName, Integer value) {
-		updateString(key, columnName, value.toString());
+		updateString(key, columnName, HecubaValueCodecs.getInstance().encode(columnName, value));
 	}
 
 	// ====================================================================================
@@ -327,6 +458,36 @@ public abstract class HecubaClientManager<K> {
 	 */
 	public abstract CassandraColumn readColumnInfo(K key, String columnName);
 
+	/**
+	 * Reads the value of a column for each of the given keys, fetching only that column.
+	 *
+	 * @param keys       - keys of the rows to be read.
+	 * @param columnName - name of the column to be read.
+	 *
+	 * @return the values of the column by key. Keys without the column are left out.
+	 *
+	 * @throws Exception Error occurred during read
+	 */
+	public Map<K, String> readStrings(Set<K> keys, String columnName) throws Exception {
+		final Map<K, String> values = new HashMap<>();
+		final CassandraResultSet<K, String> resultSet = readColumns(keys, Collections.singletonList(columnName));
+		if (resultSet != null) {
+			// rows without the column may come first, so every row is looked at regardless of hasResults().
+			while (true) {
+				final String value = resultSet.getString(columnName);
+				if (value != null) {
+					values.put(resultSet.getKey(), value);
+				}
+
+				if (!resultSet.hasNextResult()) {
+					break;
+				}
+				resultSet.nextResult();
+			}
+		}
+		return values;
+	}
+
 	/**
 	 * Reads the value of a column related to a given key and returns it as a boolean.
 	 * 
@@ -354,7 +515,8 @@ public abstract class HecubaClientManager<K> {
 	 */
 	public Boolean readBoolean(K key, String columnName, boolean defaultValue) {
 		final String value = readString(key, columnName);
-		return value == null ? defaultValue : ("true".equalsIgnoreCase(value) || "1".equals(value));
+		return value == null ? defaultValue : HecubaValueCodecs.getInstance().decode(columnName, value,
+				HecubaValueCodecs.BOOLEAN);
 	}
 
 	public Date readDate(K key, String columnName) {
@@ -364,7 +526,8 @@ public abstract class HecubaClientManager<K> {
 	public Date readDate(K key, String columnName, Date defaultDate) {
 
 		final String value = readString(key, columnName);
-		return value == null ? defaultDate : HecubaConstants.DATE_FORMATTER.parseDateTime(value).toDate();
+		return value == null ? defaultDate : HecubaValueCodecs.getInstance().decode(columnName, value,
+				HecubaValueCodecs.getInstance().getDateCodec());
 
 	}
 
@@ -374,7 +537,7 @@ public abstract class HecubaClientManager<K> {
 
 	public Integer readInteger(K key, String columnName, Integer defaultInt) {
 		final String value = readString(key, columnName);
-		return value == null ? defaultInt : Integer.parseInt(value);
+		return value == null ? defaultInt : HecubaValueCodecs.getInstance().decode(columnName, value, HecubaValueCodecs.INTEGER);
 	}
 
 	public Long readLong(K key, String columnName) {
@@ -383,7 +546,7 @@ public abstract class HecubaClientManager<K> {
 
 	public Long readLong(K key, String columnName, long defaultLong) {
 		final String value = readString(key, columnName);
-		return value == null ? defaultLong : Long.parseLong(value);
+		return value == null ? defaultLong : HecubaValueCodecs.getInstance().decode(columnName, value, HecubaValueCodecs.LONG);
 	}
 
 	public Double readDouble(K key, String columnName) {
@@ -392,7 +555,7 @@ public abstract class HecubaClientManager<K> {
 
 	public Double readDouble(K key, String columnName, double defaultDouble) {
 		final String value = readString(key, columnName);
-		return value == null ? defaultDouble : Double.parseDouble(value);
+		return value == null ? defaultDouble : HecubaValueCodecs.getInstance().decode(columnName, value, HecubaValueCodecs.DOUBLE);
 	}
 
 	/**
@@ -692,6 +855,416 @@ public abstract class HecubaClientManager<K> {
 	 */
 	public abstract List<K> retrieveKeysByColumnNameBasedSecondaryIndex(String columnName);
 
+	// ====================================================
+	// Full table scans
+	// ====================================================
+
+	/**
+	 * Reads every row of the column family by splitting the token ring into ranges and scanning them concurrently,
+	 * see {@link HecubaClientManager#scan(List, int, int, RowScanCallback)}.
+	 *
+	 * @param splits      - number of token ranges to split the ring into.
+	 * @param parallelism - maximum number of ranges scanned at the same time.
+	 * @param pageSize    - number of rows fetched from Cassandra per request.
+	 * @param callback    - receives the rows, see {@link RowScanCallback}.
+	 */
+	public void scan(int splits, int parallelism, int pageSize, RowScanCallback<K> callback) throws Exception {
+		scan(TokenRange.fullRing().split(splits), parallelism, pageSize, callback);
+	}
+
+	/**
+	 * Reads every row of the given token ranges, scanning up to the given number of ranges at the same time and
+	 * fetching the rows of each range a page at a time. Blocks until all the ranges are scanned. The first failure
+	 * stops the scan and is thrown; the ranges reported scanned until then need not be scanned again, and a range can
+	 * be resumed from the token of the last row it delivered. Assumes the cluster uses the Murmur3Partitioner.
+	 *
+	 * @param ranges      - token ranges to scan, e.g. {@link TokenRange#split(int)} of {@link TokenRange#fullRing()}.
+	 * @param parallelism - maximum number of ranges scanned at the same time.
+	 * @param pageSize    - number of rows fetched from Cassandra per request.
+	 * @param callback    - receives the rows, see {@link RowScanCallback}.
+	 */
+	public void scan(List<TokenRange> ranges, int parallelism, final int pageSize, final RowScanCallback<K> callback)
+			throws Exception {
+		if (parallelism <= 0 || pageSize <= 0) {
+			throw new IllegalArgumentException("Parallelism and page size must be positive: " + parallelism + ", "
+					+ pageSize);
+		}
+		if (ranges.isEmpty()) {
+			return;
+		}
+
+		final ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, ranges.size()),
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("hecuba-scan-" + columnFamily + "-%d").build());
+		try {
+			final CompletionService<TokenRange> completionService = new ExecutorCompletionService<>(executor);
+			for (final TokenRange range : ranges) {
+				completionService.submit(new Callable<TokenRange>() {
+					@Override
+					public TokenRange call() throws Exception {
+						if (!range.isEmpty()) {
+							scanRange(range, pageSize, callback);
+						}
+						callback.onRangeScanned(range);
+						return range;
+					}
+				});
+			}
+
+			for (int i = 0; i < ranges.size(); i++) {
+				try {
+					completionService.take().get();
+				} catch (ExecutionException e) {
+					Throwables.propagateIfPossible(e.getCause(), Exception.class);
+					throw e;
+				}
+			}
+		} finally {
+			// interrupts the scans still running when one failed.
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Reads the rows of a (non empty) token range in token order, a page at a time, and hands them to the callback.
+	 */
+	protected abstract void scanRange(TokenRange range, int pageSize, RowScanCallback<K> callback) throws Exception;
+
+	// ====================================================
+	// Asynchronous API
+	// ====================================================
+
+	/**
+	 * Asynchronous version of {@link HecubaClientManager#readAllColumns(Object)}.
+	 * 
+	 * By default the blocking call is run on a bounded thread pool (see {@link HecubaConstants#ASYNC_EXECUTOR_THREADS}
+	 * and {@link HecubaConstants#ASYNC_EXECUTOR_QUEUE_SIZE}). Clients with a non-blocking driver override this to
+	 * avoid parking a thread per request.
+	 *
+	 * @param key - key of the row to be read.
+	 *
+	 * @return a future holding the CassandraResultSet
+	 */
+	public ListenableFuture<CassandraResultSet<K, String>> readAllColumnsAsync(final K key) {
+		return submitAsync(new Callable<CassandraResultSet<K, String>>() {
+			@Override
+			public CassandraResultSet<K, String> call() throws Exception {
+				return readAllColumns(key);
+			}
+		});
+	}
+
+	/**
+	 * Asynchronous version of {@link HecubaClientManager#readAllColumns(Set)}.
+	 *
+	 * @param keys - Set of keys to retrieve
+	 *
+	 * @return a future holding the CassandraResultSet
+	 */
+	public ListenableFuture<CassandraResultSet<K, String>> readAllColumnsAsync(final Set<K> keys) {
+		return submitAsync(new Callable<CassandraResultSet<K, String>>() {
+			@Override
+			public CassandraResultSet<K, String> call() throws Exception {
+				return readAllColumns(keys);
+			}
+		});
+	}
+
+	/**
+	 * @return true if the rows found through secondary indexes are read with
+	 *         {@link HecubaClientManager#readAllColumnsByIndexJoin(Iterator)}.
+	 */
+	protected boolean isIndexJoinEnabled() {
+		return indexJoinChunkSize > 0;
+	}
+
+	/**
+	 * Reads the rows of the keys found through a secondary index in chunks, several at once, as the result set is
+	 * iterated. See {@link IndexJoinResultSet} and {@link HecubaConstants#INDEX_JOIN_CHUNK_SIZE}.
+	 *
+	 * @param keys - keys of the rows to read. Duplicates are read once.
+	 *
+	 * @return the rows of the keys, in chunks of the order of the keys.
+	 */
+	protected CassandraResultSet<K, String> readAllColumnsByIndexJoin(Iterator<K> keys) {
+		return new IndexJoinResultSet<>(this, keys, indexJoinChunkSize, indexJoinParallelism);
+	}
+
+	/**
+	 * Asynchronous version of {@link HecubaClientManager#readColumns(Object, List)}.
+	 *
+	 * @param key         - key of the column family row
+	 * @param columnNames - List of column names
+	 *
+	 * @return a future holding the CassandraResultSet
+	 */
+	public ListenableFuture<CassandraResultSet<K, String>> readColumnsAsync(final K key, final List<String> columnNames) {
+		return submitAsync(new Callable<CassandraResultSet<K, String>>() {
+			@Override
+			public CassandraResultSet<K, String> call() throws Exception {
+				return readColumns(key, columnNames);
+			}
+		});
+	}
+
+	/**
+	 * Asynchronous version of {@link HecubaClientManager#readColumns(Set, List)}.
+	 *
+	 * @param keys        - Set of keys for which specified columns need to be retrieved
+	 * @param columnNames - List of column names
+	 *
+	 * @return a future holding the CassandraResultSet
+	 */
+	public ListenableFuture<CassandraResultSet<K, String>> readColumnsAsync(final Set<K> keys,
+			final List<String> columnNames) {
+		return submitAsync(new Callable<CassandraResultSet<K, String>>() {
+			@Override
+			public CassandraResultSet<K, String> call() throws Exception {
+				return readColumns(keys, columnNames);
+			}
+		});
+	}
+
+	/**
+	 * Asynchronous version of {@link HecubaClientManager#readColumnSlice(Object, String, String, boolean, int)}.
+	 *
+	 * @return a future holding the CassandraResultSet
+	 */
+	public ListenableFuture<CassandraResultSet<K, String>> readColumnSliceAsync(final K key, final String start,
+			final String end, final boolean reversed, final int count) {
+		return submitAsync(new Callable<CassandraResultSet<K, String>>() {
+			@Override
+			public CassandraResultSet<K, String> call() throws Exception {
+				return readColumnSlice(key, start, end, reversed, count);
+			}
+		});
+	}
+
+	/**
+	 * Asynchronous version of {@link HecubaClientManager#readString(Object, String)}.
+	 *
+	 * @return a future holding the value for the given key and column, or null if there is none.
+	 */
+	public ListenableFuture<String> readStringAsync(final K key, final String columnName) {
+		return submitAsync(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return readString(key, columnName);
+			}
+		});
+	}
+
+	/**
+	 * Asynchronous version of {@link HecubaClientManager#getCounterValue(Object, String)}.
+	 *
+	 * @return a future holding the value of the counter
+	 */
+	public ListenableFuture<Long> getCounterValueAsync(final K key, final String counterColumnName) {
+		return submitAsync(new Callable<Long>() {
+			@Override
+			public Long call() throws Exception {
+				return getCounterValue(key, counterColumnName);
+			}
+		});
+	}
+
+	/**
+	 * Asynchronous version of {@link HecubaClientManager#updateString(Object, String, String, long, int)}.
+	 *
+	 * @return a future which completes once the column (and its secondary indexes, if any) are written.
+	 */
+	public ListenableFuture<Void> updateStringAsync(final K key, final String columnName, final String value,
+			final long timestamp, final int ttl) {
+		return submitAsync(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				updateString(key, columnName, value, timestamp, ttl);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Asynchronous version of {@link HecubaClientManager#updateRow(Object, Map, Map, Map)}.
+	 *
+	 * @return a future which completes once the row (and its secondary indexes, if any) are written.
+	 */
+	public ListenableFuture<Void> updateRowAsync(final K key, final Map<String, Object> row,
+			final Map<String, Long> timestamps, final Map<String, Integer> ttls) {
+		return submitAsync(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				updateRow(key, row, timestamps, ttls);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Asynchronous version of {@link HecubaClientManager#updateCounter(Object, String, long)}.
+	 *
+	 * @return a future which completes once the counter is updated.
+	 */
+	public ListenableFuture<Void> updateCounterAsync(final K key, final String counterColumnName, final long value) {
+		return submitAsync(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				updateCounter(key, counterColumnName, value);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Asynchronous version of {@link HecubaClientManager#deleteColumn(Object, String)}.
+	 *
+	 * @return a future which completes once the column is deleted.
+	 */
+	public ListenableFuture<Void> deleteColumnAsync(final K key, final String columnName) {
+		return submitAsync(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				deleteColumn(key, columnName);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Asynchronous version of {@link HecubaClientManager#deleteRow(Object, long)}.
+	 *
+	 * @return a future which completes once the row is deleted.
+	 */
+	public ListenableFuture<Void> deleteRowAsync(final K key, final long timestamp) {
+		return submitAsync(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				deleteRow(key, timestamp);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Asynchronous version of {@link HecubaClientManager#retrieveBySecondaryIndex(String, String)}.
+	 *
+	 * @return a future holding the CassandraResultSet, or null if there are no matching rows.
+	 */
+	public ListenableFuture<CassandraResultSet<K, String>> retrieveBySecondaryIndexAsync(final String columnName,
+			final String columnValue) {
+		return submitAsync(new Callable<CassandraResultSet<K, String>>() {
+			@Override
+			public CassandraResultSet<K, String> call() throws Exception {
+				return retrieveBySecondaryIndex(columnName, columnValue);
+			}
+		});
+	}
+
+	/**
+	 * Asynchronous version of {@link HecubaClientManager#retrieveBySecondaryIndex(String, List)}.
+	 *
+	 * @return a future holding the CassandraResultSet, or null if there are no matching rows.
+	 */
+	public ListenableFuture<CassandraResultSet<K, String>> retrieveBySecondaryIndexAsync(final String columnName,
+			final List<String> columnValues) {
+		return submitAsync(new Callable<CassandraResultSet<K, String>>() {
+			@Override
+			public CassandraResultSet<K, String> call() throws Exception {
+				return retrieveBySecondaryIndex(columnName, columnValues);
+			}
+		});
+	}
+
+	/**
+	 * Asynchronous version of {@link HecubaClientManager#retrieveKeysBySecondaryIndex(String, String)}.
+	 *
+	 * @return a future holding the list of keys, or null if there are no matching rows.
+	 */
+	public ListenableFuture<List<K>> retrieveKeysBySecondaryIndexAsync(final String columnName,
+			final String columnValue) {
+		return submitAsync(new Callable<List<K>>() {
+			@Override
+			public List<K> call() throws Exception {
+				return retrieveKeysBySecondaryIndex(columnName, columnValue);
+			}
+		});
+	}
+
+	/**
+	 * Sends a read of the asynchronous API as a duplicate of the same read sent before, see
+	 * {@link HedgingHecubaClientManager}. Clients which pick the replica of each request send the duplicate to another
+	 * replica than the first read went to; by default the read is just sent.
+	 *
+	 * @param read - calls the asynchronous method of this manager, on the calling thread.
+	 */
+	protected <T> ListenableFuture<T> sendHedge(Callable<ListenableFuture<T>> read) throws Exception {
+		return read.call();
+	}
+
+	/**
+	 * Runs a blocking call on the shared, bounded executor of this manager. When the queue of the executor is full the
+	 * call is run on the calling thread, which throttles the callers instead of failing their requests.
+	 */
+	protected <T> ListenableFuture<T> submitAsync(Callable<T> call) {
+		return getAsyncExecutor().submit(call);
+	}
+
+	protected ListeningExecutorService getAsyncExecutor() {
+		ListeningExecutorService executor = asyncExecutor;
+		if (executor == null) {
+			synchronized (this) {
+				executor = asyncExecutor;
+				if (executor == null) {
+					final Configuration configuration = ConfigUtils.getInstance().getConfiguration();
+					final int threads = configuration.getInt(HecubaConstants.ASYNC_EXECUTOR_THREADS, 16);
+					final int queueSize = configuration.getInt(HecubaConstants.ASYNC_EXECUTOR_QUEUE_SIZE, 1000);
+					ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(threads, threads, 60L,
+							TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactoryBuilder()
+									.setDaemon(true).setNameFormat("hecuba-async-" + columnFamily + "-%d").build(),
+							new ThreadPoolExecutor.CallerRunsPolicy());
+					threadPoolExecutor.allowCoreThreadTimeOut(true);
+					executor = MoreExecutors.listeningDecorator(threadPoolExecutor);
+					asyncExecutor = executor;
+				}
+			}
+		}
+		return executor;
+	}
+
+	/**
+	 * Stops the executor backing the asynchronous API, if it was ever started. Client implementations should call this
+	 * from {@link HecubaClientManager#shutDown()}.
+	 */
+	protected void shutDownAsyncExecutor() {
+		ListeningExecutorService executor;
+		synchronized (this) {
+			executor = asyncExecutor;
+			asyncExecutor = null;
+		}
+		if (executor != null) {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Blocks until the secondary index entries of all the writes made so far are written. Only needed when the
+	 * secondary indexes are written asynchronously, see {@link HecubaConstants#getSecondaryIndexWriterProperties}.
+	 */
+	public void flushSecondaryIndexes() throws InterruptedException {
+		if (secondaryIndexWriter != null) {
+			secondaryIndexWriter.flush();
+		}
+	}
+
+	/**
+	 * Writes the pending secondary index entries and stops the asynchronous secondary index writer, if any. Client
+	 * implementations should call this from {@link HecubaClientManager#shutDown()}.
+	 */
+	protected void shutDownSecondaryIndexWriter() {
+		if (secondaryIndexWriter != null) {
+			secondaryIndexWriter.shutDown();
+		}
+	}
+
 	// ====================================================
 	// Utils
 	// ====================================================
@@ -822,13 +1395,115 @@ public abstract class HecubaClientManager<K> {
 	}
 
 	protected boolean isSecondaryIndexByColumnNameEnabledForColumn(String columnName) {
-		return isSecondaryIndexesByColumnNamesEnabled && StringUtils.isNotEmpty(columnName) && columnName.matches(
-				secondaryIdxByColumnPattern);
+		if (!isSecondaryIndexesByColumnNamesEnabled || StringUtils.isEmpty(columnName)) {
+			return false;
+		}
+
+		Boolean matches = secondaryIdxByColumnMatches.getIfPresent(columnName);
+		if (matches == null) {
+			matches = compiledSecondaryIdxByColumnPattern.matcher(columnName).matches();
+			secondaryIdxByColumnMatches.put(columnName, matches);
+		}
+		return matches;
 	}
 
 	protected boolean isSecondaryIndexByColumnNameAndValueEnabledForColumn(String columnName) {
-		return isSecondaryIndexByColumnNameAndValueEnabled && Collections.binarySearch(
-				columnsToIndexOnColumnNameAndValue, columnName) >= 0;
+		return isSecondaryIndexByColumnNameAndValueEnabled && indexedColumnNames.contains(columnName);
+	}
+
+	/**
+	 * Returns the value the given column, which is indexed by name and value, was last indexed with, from the
+	 * secondary index value cache if possible and from Cassandra otherwise.
+	 */
+	protected String getIndexedValue(K key, String columnName) {
+		final Map<String, String> indexedValues = indexedValueCache != null ? indexedValueCache.getIfPresent(key) : null;
+		if (indexedValues != null) {
+			final String value = indexedValues.get(columnName);
+			if (value != null) {
+				return value.isEmpty() ? null : value;
+			}
+		}
+
+		final String value = readString(key, columnName);
+		setIndexedValue(key, columnName, value);
+		return value;
+	}
+
+	/**
+	 * Multi column version of {@link HecubaClientManager#getIndexedValue(Object, String)}, which reads all the values
+	 * the cache doesn't know in one go.
+	 *
+	 * @return the values of the given columns. Columns without a value are missing from the map.
+	 */
+	protected Map<String, String> getIndexedValues(K key, List<String> columnNames) throws Exception {
+		final Map<String, String> values = new HashMap<>();
+		final Map<String, String> indexedValues = indexedValueCache != null ? indexedValueCache.getIfPresent(key) : null;
+
+		List<String> columnsToRead = columnNames;
+		if (indexedValues != null) {
+			columnsToRead = new ArrayList<>();
+			for (String columnName : columnNames) {
+				final String value = indexedValues.get(columnName);
+				if (value == null) {
+					columnsToRead.add(columnName);
+				} else if (!value.isEmpty()) {
+					values.put(columnName, value);
+				}
+			}
+		}
+
+		if (CollectionUtils.isNotEmpty(columnsToRead)) {
+			final CassandraResultSet<K, String> resultSet = readColumns(key, columnsToRead);
+			final boolean hasResults = resultSet != null && resultSet.hasResults();
+			for (String columnName : columnsToRead) {
+				final String value = hasResults ? resultSet.getString(columnName) : null;
+				if (value != null) {
+					values.put(columnName, value);
+				}
+				setIndexedValue(key, columnName, value);
+			}
+		}
+
+		return values;
+	}
+
+	/**
+	 * Remembers the value a column was indexed with, if the secondary index value cache is enabled and the column is
+	 * indexed by name and value. A null value records that the column is known to have no value.
+	 */
+	protected void setIndexedValue(K key, String columnName, String value) {
+		if (indexedValueCache == null || !isSecondaryIndexByColumnNameAndValueEnabledForColumn(columnName)) {
+			return;
+		}
+
+		Map<String, String> indexedValues = indexedValueCache.getIfPresent(key);
+		if (indexedValues == null) {
+			indexedValues = new ConcurrentHashMap<>();
+			final Map<String, String> existing = indexedValueCache.asMap().putIfAbsent(key, indexedValues);
+			if (existing != null) {
+				indexedValues = existing;
+			}
+		}
+		indexedValues.put(columnName, value != null ? value : "");
+	}
+
+	/**
+	 * Forgets the indexed values of a row, e.g. once it is deleted.
+	 */
+	protected void invalidateIndexedValues(K key) {
+		if (indexedValueCache != null) {
+			indexedValueCache.invalidate(key);
+		}
+	}
+
+	protected List<String> getColumnsIndexedByNameAndValue(List<String> columnNames) {
+		List<String> indexedColumns = new ArrayList<>();
+		for (String columnName : columnNames) {
+			if (isSecondaryIndexByColumnNameAndValueEnabledForColumn(columnName)) {
+				indexedColumns.add(columnName);
+			}
+		}
+		return indexedColumns;
 	}
 
 	protected abstract void logDownedHosts();
@@ -50,6 +50,83 @@ public abstract class HecubaConstants {
 	public static final String AUTHENTICATION_PASSWORD = getPropertyName("password");
 	public static final String ENABLE_DEBUG_MESSAGES = getPropertyName("hectorpools.enabledebugmessages");
 
+	/******************************
+	 * Asynchronous API Options
+	 ******************************/
+	public static final String ASYNC_EXECUTOR_THREADS = getPropertyName("async.executor.threads");
+	public static final String ASYNC_EXECUTOR_QUEUE_SIZE = getPropertyName("async.executor.queueSize");
+
+	/******************************
+	 * Value Codec Options
+	 ******************************/
+	// "legacy" (DATE_FORMATTER, the default) or "millis" (milliseconds since the epoch)
+	public static final String VALUE_CODEC_DATE_FORMAT = getPropertyName("codec.dateFormat");
+
+	/******************************
+	 * Row Cache Options
+	 *
+	 * Set globally as GLOBAL_PROP_NAME_PREFIX + ".rowcache." + option or for a single column family as
+	 * GLOBAL_PROP_NAME_PREFIX + "." + columnFamily + ".rowcache." + option, see getRowCacheProperties.
+	 ******************************/
+	public static final String ROW_CACHE_ENABLED = "enabled";
+	public static final String ROW_CACHE_MAX_SIZE = "maxSize";
+	public static final String ROW_CACHE_TTL_SECONDS = "ttlSeconds";
+
+	/******************************
+	 * Secondary Index Value Cache Options
+	 *
+	 * Set globally as GLOBAL_PROP_NAME_PREFIX + ".secondaryIndexValueCache." + option or for a single column family
+	 * as GLOBAL_PROP_NAME_PREFIX + "." + columnFamily + ".secondaryIndexValueCache." + option, see
+	 * getSecondaryIndexValueCacheProperties.
+	 ******************************/
+	public static final String SECONDARY_INDEX_VALUE_CACHE_ENABLED = "enabled";
+	public static final String SECONDARY_INDEX_VALUE_CACHE_MAX_SIZE = "maxSize";
+	public static final String SECONDARY_INDEX_VALUE_CACHE_TTL_SECONDS = "ttlSeconds";
+
+	/******************************
+	 * Asynchronous Secondary Index Writer Options
+	 *
+	 * Set globally as GLOBAL_PROP_NAME_PREFIX + ".secondaryIndexWriter." + option or for a single column family as
+	 * GLOBAL_PROP_NAME_PREFIX + "." + columnFamily + ".secondaryIndexWriter." + option, see
+	 * getSecondaryIndexWriterProperties.
+	 ******************************/
+	public static final String SECONDARY_INDEX_WRITER_ASYNC = "async";
+	public static final String SECONDARY_INDEX_WRITER_MAX_PENDING = "maxPending";
+	public static final String SECONDARY_INDEX_WRITER_BATCH_SIZE = "batchSize";
+
+	/******************************
+	 * Metrics Options
+	 *
+	 * Metrics are enabled by setting METRICS_ENABLED to true, globally as GLOBAL_PROP_NAME_PREFIX +
+	 * ".metrics.enabled" or for a single column family as GLOBAL_PROP_NAME_PREFIX + "." + columnFamily +
+	 * ".metrics.enabled", see getMetricsProperties.
+	 ******************************/
+	public static final String METRICS_ENABLED = "enabled";
+	public static final String METRICS_JMX_ENABLED = getPropertyName("metrics.jmx.enabled");
+	public static final String METRICS_REPORT_INTERVAL_SECONDS = getPropertyName("metrics.reportIntervalSeconds");
+
+	/******************************
+	 * Hedged Read Options
+	 *
+	 * Globally as GLOBAL_PROP_NAME_PREFIX + ".hedgedReads." + option, or for a single column family as
+	 * GLOBAL_PROP_NAME_PREFIX + "." + columnFamily + ".hedgedReads." + option, see getHedgedReadProperties.
+	 ******************************/
+	public static final String HEDGED_READS_ENABLED = "enabled";
+	public static final String HEDGED_READS_PERCENTILE = "percentile";
+	public static final String HEDGED_READS_MIN_DELAY_MILLIS = "minDelayMillis";
+	public static final String HEDGED_READS_BUDGET_PERCENT = "budgetPercent";
+
+	/******************************
+	 * Secondary Index Join Options
+	 *
+	 * Rows found through a secondary index are read in chunks of INDEX_JOIN_CHUNK_SIZE keys, with up to
+	 * INDEX_JOIN_PARALLELISM chunks read at once, see IndexJoinResultSet. A chunk size of 0 reads all the rows with a
+	 * single multi-get instead. Globally as GLOBAL_PROP_NAME_PREFIX + ".indexJoin." + option, or for a single column
+	 * family as GLOBAL_PROP_NAME_PREFIX + "." + columnFamily + ".indexJoin." + option, see getIndexJoinProperties.
+	 ******************************/
+	public static final String INDEX_JOIN_CHUNK_SIZE = "chunkSize";
+	public static final String INDEX_JOIN_PARALLELISM = "parallelism";
+
 	/******************************
 	 * Astynax Specific Options
 	 ******************************/
@@ -71,6 +148,7 @@ public abstract class HecubaConstants {
 	public static final String HECTOR_RETRY_DOWN_HOST_DELAY = getPropertyName("hectorpools.retrydownedhostsinseconds");
 	public static final String HECTOR_THRIFT_SOCKET_TIMEOUT = getPropertyName("hectorpools.thriftsockettimeout");
 	public static final String HECTOR_USE_THRIFT_FRAME_TRANSPORT = getPropertyName("hectorpools.usethriftframedtransport");
+	public static final String HECTOR_DRAIN_TIMEOUT_SECONDS = getPropertyName("hectorpools.draintimeoutinseconds");
 
 	/***************************
 	 * DataStax Specific Options
@@ -83,6 +161,8 @@ public abstract class HecubaConstants {
 	public static final String DATASTAX_DATACENTER = getPropertyName("datastax.Datacenter");
 	public static final String DATASTAX_STATEMENT_CACHE_MAX_SIZE = getPropertyName("datastax.statement.CacheMaxSize");
 	public static final String DATASTAX_STATEMENT_FETCH_SIZE = getPropertyName("datastax.statement.FetchSize");
+	public static final String DATASTAX_MULTIGET_CHUNK_SIZE = getPropertyName("datastax.multiget.ChunkSize");
+	public static final String DATASTAX_MULTIGET_PARALLELISM = getPropertyName("datastax.multiget.Parallelism");
 
 	public static enum HECTOR_LOAD_BALANCY_POLICIES {
 		LeastActiveBalancingPolicy, DynamicLoadBalancingPolicy, RoundRobinBalancingPolicy,
@@ -96,6 +176,30 @@ public abstract class HecubaConstants {
 		return new String[] { getPropertyName(dotJoiner.join("consistencypolicy", operation)), getPropertyName(dotJoiner.join(columnFamily, "consistencypolicy", operation)) };
 	}
 
+	public static String[] getRowCacheProperties(String columnFamily, String option) {
+		return new String[] { getPropertyName(dotJoiner.join("rowcache", option)), getPropertyName(dotJoiner.join(columnFamily, "rowcache", option)) };
+	}
+
+	public static String[] getSecondaryIndexValueCacheProperties(String columnFamily, String option) {
+		return new String[] { getPropertyName(dotJoiner.join("secondaryIndexValueCache", option)), getPropertyName(dotJoiner.join(columnFamily, "secondaryIndexValueCache", option)) };
+	}
+
+	public static String[] getSecondaryIndexWriterProperties(String columnFamily, String option) {
+		return new String[] { getPropertyName(dotJoiner.join("secondaryIndexWriter", option)), getPropertyName(dotJoiner.join(columnFamily, "secondaryIndexWriter", option)) };
+	}
+
+	public static String[] getMetricsProperties(String columnFamily, String option) {
+		return new String[] { getPropertyName(dotJoiner.join("metrics", option)), getPropertyName(dotJoiner.join(columnFamily, "metrics", option)) };
+	}
+
+	public static String[] getHedgedReadProperties(String columnFamily, String option) {
+		return new String[] { getPropertyName(dotJoiner.join("hedgedReads", option)), getPropertyName(dotJoiner.join(columnFamily, "hedgedReads", option)) };
+	}
+
+	public static String[] getIndexJoinProperties(String columnFamily, String option) {
+		return new String[] { getPropertyName(dotJoiner.join("indexJoin", option)), getPropertyName(dotJoiner.join(columnFamily, "indexJoin", option)) };
+	}
+
 	public static String getSecondaryIndexColumnFamilyProperty(String columnFamily) {
 		return getPropertyName(dotJoiner.join(columnFamily, "secondaryIndexCF"));
 	}
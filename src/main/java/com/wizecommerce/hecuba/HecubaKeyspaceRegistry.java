@@ -0,0 +1,99 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wizecommerce.hecuba;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Hands out the client managers of the column families of a keyspace, one per column family, so that an application
+ * using many column families does not configure a manager for each of them.
+ *
+ * The managers are views of a column family over resources shared by the keyspace: the connection pools of the
+ * Hector and Astyanax managers, the session of the DataStax managers and, with the shared DataStax manager, its
+ * prepared statements. Metrics are always recorded in the {@link com.wizecommerce.hecuba.metrics.HecubaMetrics}
+ * registry. Managers are created by {@link HecubaObjectFactory}, so they are configured as if they were created one
+ * by one, and are created the first time their column family is asked for.
+ *
+ * @param <K> - type of the row keys
+ */
+public class HecubaKeyspaceRegistry<K> {
+
+	private final CassandraParamsBean keyspaceParameters;
+	private final Class<K> keyClass;
+	private final ConcurrentMap<String, HecubaClientManager<K>> clientManagers = new ConcurrentHashMap<>();
+
+	/**
+	 * @param keyspaceParameters - parameters of the managers, but for their column family.
+	 */
+	public HecubaKeyspaceRegistry(CassandraParamsBean keyspaceParameters, Class<K> keyClass) {
+		this.keyspaceParameters = new CassandraParamsBean(keyspaceParameters);
+		this.keyClass = keyClass;
+	}
+
+	public HecubaClientManager<K> getClientManager(String columnFamily) {
+		final CassandraParamsBean parameters = new CassandraParamsBean(keyspaceParameters);
+		parameters.setColumnFamily(columnFamily);
+		return getClientManager(parameters);
+	}
+
+	/**
+	 * @param parameters - parameters of the manager of a column family of the keyspace, which are only used when the
+	 *            manager is created.
+	 */
+	public HecubaClientManager<K> getClientManager(CassandraParamsBean parameters) {
+		if (!StringUtils.equals(parameters.getKeyspace(), keyspaceParameters.getKeyspace())) {
+			throw new IllegalArgumentException("Column family " + parameters.getColumnFamily() + " of keyspace "
+					+ parameters.getKeyspace() + " does not belong to keyspace " + keyspaceParameters.getKeyspace());
+		}
+
+		final String columnFamily = parameters.getColumnFamily();
+		HecubaClientManager<K> clientManager = clientManagers.get(columnFamily);
+		if (clientManager == null) {
+			synchronized (clientManagers) {
+				clientManager = clientManagers.get(columnFamily);
+				if (clientManager == null) {
+					clientManager = createClientManager(parameters);
+					clientManagers.put(columnFamily, clientManager);
+				}
+			}
+		}
+		return clientManager;
+	}
+
+	public List<HecubaClientManager<K>> getClientManagers() {
+		return new ArrayList<>(clientManagers.values());
+	}
+
+	/**
+	 * Shuts the managers down, and with the last of them the resources of the keyspace.
+	 */
+	public void shutDown() {
+		synchronized (clientManagers) {
+			for (HecubaClientManager<K> clientManager : clientManagers.values()) {
+				clientManager.shutDown();
+			}
+			clientManagers.clear();
+		}
+	}
+
+	protected HecubaClientManager<K> createClientManager(CassandraParamsBean parameters) {
+		return HecubaObjectFactory.getInstance().getHecubaClientManager(parameters, keyClass);
+	}
+}
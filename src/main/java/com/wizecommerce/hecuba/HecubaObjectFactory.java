@@ -33,38 +33,84 @@ public class HecubaObjectFactory {
 
 	public HecubaClientManager<Long> getHecubaClientManagerWithLongKeys(CassandraParamsBean parameters,
 			HecubaConstants.CassandraClientImplementation cassandraManagerType) {
+		final HecubaClientManager<Long> clientManager;
 		switch (cassandraManagerType) {
 		case ASTYANAX:
-			return new AstyanaxBasedHecubaClientManager<>(parameters,
+			clientManager = new AstyanaxBasedHecubaClientManager<>(parameters,
 					com.netflix.astyanax.serializers.LongSerializer.get());
+			break;
 		case HECTOR:
-			return new HectorBasedHecubaClientManager<>(parameters,
+			clientManager = new HectorBasedHecubaClientManager<>(parameters,
 					me.prettyprint.cassandra.serializers.LongSerializer.get());
+			break;
 		case DATASTAX:
-			return new DataStaxBasedHecubaClientManager<>(parameters, DataType.bigint());
+			clientManager = new DataStaxBasedHecubaClientManager<>(parameters, DataType.bigint());
+			break;
 		case DATASTAX_SHARED:
-			return new DataStaxBasedSharedHecubaClientManager<>(parameters, DataType.bigint());
+			clientManager = new DataStaxBasedSharedHecubaClientManager<>(parameters, DataType.bigint());
+			break;
 		default:
 			throw new RuntimeException("Unhandled CassandraManagerType: " + cassandraManagerType);
 		}
+		return decorate(parameters, clientManager, cassandraManagerType);
 	}
 
 	public HecubaClientManager<String> getHecubaClientManagerWithStringKeys(CassandraParamsBean parameters,
 			HecubaConstants.CassandraClientImplementation cassandraManagerType) {
+		final HecubaClientManager<String> clientManager;
 		switch (cassandraManagerType) {
 		case ASTYANAX:
-			return new AstyanaxBasedHecubaClientManager<String>(parameters,
+			clientManager = new AstyanaxBasedHecubaClientManager<String>(parameters,
 					com.netflix.astyanax.serializers.StringSerializer.get());
+			break;
 		case HECTOR:
-			return new HectorBasedHecubaClientManager<String>(parameters,
+			clientManager = new HectorBasedHecubaClientManager<String>(parameters,
 					me.prettyprint.cassandra.serializers.StringSerializer.get());
+			break;
 		case DATASTAX:
-			return new DataStaxBasedHecubaClientManager<>(parameters, DataType.text());
+			clientManager = new DataStaxBasedHecubaClientManager<>(parameters, DataType.text());
+			break;
 		case DATASTAX_SHARED:
-			return new DataStaxBasedSharedHecubaClientManager<>(parameters, DataType.text());
+			clientManager = new DataStaxBasedSharedHecubaClientManager<>(parameters, DataType.text());
+			break;
 		default:
 			throw new RuntimeException("Unhandled CassandraManagerType: " + cassandraManagerType);
 		}
+		return decorate(parameters, clientManager, cassandraManagerType);
+	}
+
+	/**
+	 * Wraps a backend manager in the optional layers enabled for its column family: hedged reads closest to the
+	 * backend, then metrics, so that they measure what hedging achieves, then the row cache.
+	 */
+	private <K> HecubaClientManager<K> decorate(CassandraParamsBean parameters, HecubaClientManager<K> clientManager,
+			HecubaConstants.CassandraClientImplementation cassandraManagerType) {
+		final String backend = cassandraManagerType.name();
+		return withRowCache(parameters, withMetrics(parameters, withHedgedReads(parameters, clientManager, backend),
+				backend));
+	}
+
+	private <K> HecubaClientManager<K> withHedgedReads(CassandraParamsBean parameters,
+			HecubaClientManager<K> clientManager, String backend) {
+		if (HedgingHecubaClientManager.isEnabled(parameters.getColumnFamily())) {
+			return new HedgingHecubaClientManager<>(parameters, clientManager, backend);
+		}
+		return clientManager;
+	}
+
+	private <K> HecubaClientManager<K> withMetrics(CassandraParamsBean parameters,
+			HecubaClientManager<K> clientManager, String backend) {
+		if (InstrumentedHecubaClientManager.isEnabled(parameters.getColumnFamily())) {
+			return new InstrumentedHecubaClientManager<>(parameters, clientManager, backend);
+		}
+		return clientManager;
+	}
+
+	private <K> HecubaClientManager<K> withRowCache(CassandraParamsBean parameters, HecubaClientManager<K> clientManager) {
+		if (CachingHecubaClientManager.isEnabled(parameters.getColumnFamily())) {
+			return new CachingHecubaClientManager<>(parameters, clientManager);
+		}
+		return clientManager;
 	}
 
 	@SuppressWarnings("unchecked")
@@ -0,0 +1,597 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wizecommerce.hecuba;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.commons.lang.math.NumberUtils;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.wizecommerce.hecuba.metrics.HecubaMetrics;
+import com.wizecommerce.hecuba.metrics.HecubaOperation;
+import com.wizecommerce.hecuba.metrics.OperationMetrics;
+
+/**
+ * Hedges the idempotent single row reads of another client manager: readAllColumns, readColumns and readString of a
+ * key, and the key lookups of a secondary index value.
+ *
+ * When a read has not answered after the configured percentile of the recent read latencies (95th by default, but
+ * never less than minDelayMillis, 5 by default) the same read is sent again, and whichever answers first is returned.
+ * The duplicate is sent with {@link HecubaClientManager#sendHedge(Callable)}: on DataStax it goes to the replica with
+ * the lowest recent latency other than the one the first read went to, while Hector and Astyanax send it wherever
+ * their load balancing policy picks. Duplicates are capped at budgetPercent of the reads (5 by default), so a slow
+ * cluster is not sent even more requests.
+ *
+ * Reads go through the asynchronous methods of the underlying manager: natively asynchronous on DataStax, and on the
+ * thread pool of the manager on Hector and Astyanax. Hedges sent and won are counted in the {@link HecubaMetrics} of
+ * the READ and INDEX_LOOKUP operations. Everything else goes straight to the underlying manager.
+ *
+ * Hedged reads are configured per column family, see {@link HecubaConstants#getHedgedReadProperties(String, String)},
+ * and {@link HecubaObjectFactory} wraps the managers of the column families they are enabled for. The configuration
+ * setters are passed on to the underlying manager; the hedging settings stay those of the column family the manager
+ * was built for.
+ *
+ * @param <K> - type of the row keys
+ */
+public class HedgingHecubaClientManager<K> extends HecubaClientManager<K> {
+
+	private static final ScheduledExecutorService hedgeScheduler = Executors.newSingleThreadScheduledExecutor(
+			new ThreadFactoryBuilder().setDaemon(true).setNameFormat("hecuba-hedged-reads").build());
+
+	// sends the hedges, so that a backend running a read on the thread sending it (e.g. the thread pool of the Hector
+	// and Astyanax managers when it is saturated) never holds the scheduler up. Hedges which find every thread busy
+	// are not sent.
+	private static final int MAX_HEDGE_THREADS = 32;
+	private static final ExecutorService hedgeSender = new ThreadPoolExecutor(0, MAX_HEDGE_THREADS, 60,
+			TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactoryBuilder().setDaemon(true)
+					.setNameFormat("hecuba-hedged-reads-sender-%d").build(), new ThreadPoolExecutor.AbortPolicy());
+
+	private static final long HIGHEST_TRACKABLE_LATENCY = TimeUnit.MINUTES.toMicros(1);
+	private static final long DELAY_UPDATE_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+	// the budget is kept in thousandths of a hedge, and can be saved up for at most this many hedges.
+	private static final long MAX_BUDGET = 10 * 1000;
+
+	private final HecubaClientManager<K> delegate;
+	private final String backend;
+	private volatile OperationMetrics reads;
+	private volatile OperationMetrics indexLookups;
+
+	private final double percentile;
+	private final long minDelayNanos;
+	private final long budgetPerRead;
+	private final AtomicLong budget = new AtomicLong();
+
+	private final Recorder latencies = new Recorder(HIGHEST_TRACKABLE_LATENCY, 2);
+	// guarded by this.
+	private Histogram intervalLatencies;
+	private volatile long delayNanos;
+	private volatile long nextDelayUpdate;
+
+	/**
+	 * @param backend - name of the backend of the delegate in the metrics, e.g. one of
+	 *                {@link HecubaConstants.CassandraClientImplementation}
+	 */
+	public HedgingHecubaClientManager(CassandraParamsBean parameters, HecubaClientManager<K> delegate,
+			String backend) {
+		super(parameters);
+		this.delegate = delegate;
+		this.backend = backend;
+
+		final String columnFamily = parameters.getColumnFamily();
+		useMetricsOf(columnFamily);
+
+		percentile = NumberUtils.toDouble(getHedgedReadProperty(columnFamily,
+				HecubaConstants.HEDGED_READS_PERCENTILE), 95);
+		minDelayNanos = TimeUnit.MILLISECONDS.toNanos(NumberUtils.toLong(getHedgedReadProperty(columnFamily,
+				HecubaConstants.HEDGED_READS_MIN_DELAY_MILLIS), 5));
+		budgetPerRead = Math.round(NumberUtils.toDouble(getHedgedReadProperty(columnFamily,
+				HecubaConstants.HEDGED_READS_BUDGET_PERCENT), 5) * 10);
+		delayNanos = minDelayNanos;
+		nextDelayUpdate = System.nanoTime() + DELAY_UPDATE_INTERVAL;
+
+		log.info("Reads of " + columnFamily + " are hedged after the " + percentile + "th percentile latency, at least " +
+				TimeUnit.NANOSECONDS.toMillis(minDelayNanos) + " ms, for up to " + budgetPerRead / 10.0 + "% of reads");
+	}
+
+	/**
+	 * @param columnFamily - name of the column family
+	 *
+	 * @return whether hedged reads are enabled for the given column family.
+	 */
+	public static boolean isEnabled(String columnFamily) {
+		return Boolean.parseBoolean(getHedgedReadProperty(columnFamily, HecubaConstants.HEDGED_READS_ENABLED));
+	}
+
+	private static String getHedgedReadProperty(String columnFamily, String option) {
+		return getColumnFamilyProperty(HecubaConstants.getHedgedReadProperties(columnFamily, option));
+	}
+
+	public HecubaClientManager<K> getDelegate() {
+		return delegate;
+	}
+
+	private void useMetricsOf(String columnFamily) {
+		reads = HecubaMetrics.getInstance().getOperationMetrics(backend, columnFamily, HecubaOperation.READ);
+		indexLookups = HecubaMetrics.getInstance().getOperationMetrics(backend, columnFamily,
+				HecubaOperation.INDEX_LOOKUP);
+	}
+
+	/**
+	 * @return the current delay before a read is hedged, in microseconds.
+	 */
+	public long getHedgeDelay() {
+		return TimeUnit.NANOSECONDS.toMicros(delayNanos);
+	}
+
+	// ====================================================
+	// Configuration
+	// ====================================================
+
+	@Override
+	public void setColumnFamily(String columnFamily) {
+		delegate.setColumnFamily(columnFamily);
+		super.setColumnFamily(columnFamily);
+		useMetricsOf(columnFamily);
+	}
+
+	@Override
+	public void setClusterName(String clusterName) {
+		delegate.setClusterName(clusterName);
+		super.setClusterName(clusterName);
+	}
+
+	@Override
+	public void setLocationURL(String locationURL) {
+		delegate.setLocationURL(locationURL);
+		super.setLocationURL(locationURL);
+	}
+
+	@Override
+	protected <T> ListenableFuture<T> sendHedge(Callable<ListenableFuture<T>> read) throws Exception {
+		return delegate.sendHedge(read);
+	}
+
+	@Override
+	public void setColumnsToIndexOnColumnNameAndValue(List<String> columnNames) {
+		// also called by the constructor of HecubaClientManager, before there is a delegate to pass it on to.
+		if (delegate != null) {
+			delegate.setColumnsToIndexOnColumnNameAndValue(columnNames);
+		}
+		super.setColumnsToIndexOnColumnNameAndValue(columnNames);
+	}
+
+	// ====================================================
+	// Hedged reads
+	// ====================================================
+
+	@Override
+	public CassandraResultSet<K, String> readAllColumns(K key) throws Exception {
+		return get(readAllColumnsAsync(key));
+	}
+
+	@Override
+	public ListenableFuture<CassandraResultSet<K, String>> readAllColumnsAsync(final K key) {
+		return hedge(reads, new Callable<ListenableFuture<CassandraResultSet<K, String>>>() {
+			@Override
+			public ListenableFuture<CassandraResultSet<K, String>> call() {
+				return delegate.readAllColumnsAsync(key);
+			}
+		});
+	}
+
+	@Override
+	public CassandraResultSet<K, String> readColumns(K key, List<String> columnNames) throws Exception {
+		return get(readColumnsAsync(key, columnNames));
+	}
+
+	@Override
+	public ListenableFuture<CassandraResultSet<K, String>> readColumnsAsync(final K key, final List<String> columnNames) {
+		return hedge(reads, new Callable<ListenableFuture<CassandraResultSet<K, String>>>() {
+			@Override
+			public ListenableFuture<CassandraResultSet<K, String>> call() {
+				return delegate.readColumnsAsync(key, columnNames);
+			}
+		});
+	}
+
+	@Override
+	public String readString(K key, String columnName) {
+		return getUnchecked(readStringAsync(key, columnName));
+	}
+
+	@Override
+	public ListenableFuture<String> readStringAsync(final K key, final String columnName) {
+		return hedge(reads, new Callable<ListenableFuture<String>>() {
+			@Override
+			public ListenableFuture<String> call() {
+				return delegate.readStringAsync(key, columnName);
+			}
+		});
+	}
+
+	@Override
+	public List<K> retrieveKeysBySecondaryIndex(String columnName, String columnValue) {
+		return getUnchecked(retrieveKeysBySecondaryIndexAsync(columnName, columnValue));
+	}
+
+	@Override
+	public ListenableFuture<List<K>> retrieveKeysBySecondaryIndexAsync(final String columnName,
+			final String columnValue) {
+		return hedge(indexLookups, new Callable<ListenableFuture<List<K>>>() {
+			@Override
+			public ListenableFuture<List<K>> call() {
+				return delegate.retrieveKeysBySecondaryIndexAsync(columnName, columnValue);
+			}
+		});
+	}
+
+	private <T> ListenableFuture<T> hedge(final OperationMetrics metrics, final Callable<ListenableFuture<T>> read) {
+		final SettableFuture<T> result = SettableFuture.create();
+		// the reads sent that have not answered yet; the read fails when all of them failed.
+		final AtomicInteger pending = new AtomicInteger(1);
+
+		addBudget();
+
+		// scheduled first, as the backend may run the read on this thread.
+		hedgeScheduler.schedule(new Runnable() {
+			@Override
+			public void run() {
+				if (result.isDone() || !takeBudget()) {
+					return;
+				}
+
+				try {
+					hedgeSender.execute(new Runnable() {
+						@Override
+						public void run() {
+							if (!result.isDone()) {
+								pending.incrementAndGet();
+								send(read, true, metrics, result, pending);
+							}
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					returnBudget();
+				}
+			}
+		}, getDelayNanos(), TimeUnit.NANOSECONDS);
+
+		send(read, false, metrics, result, pending);
+
+		return result;
+	}
+
+	private <T> void send(Callable<ListenableFuture<T>> read, final boolean hedge, final OperationMetrics metrics,
+			final SettableFuture<T> result, final AtomicInteger pending) {
+		final long start = System.nanoTime();
+		ListenableFuture<T> future;
+		try {
+			future = hedge ? delegate.sendHedge(read) : read.call();
+		} catch (Exception e) {
+			future = Futures.immediateFailedFuture(e);
+		}
+
+		Futures.addCallback(future, new FutureCallback<T>() {
+			@Override
+			public void onSuccess(T value) {
+				final long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+				latencies.recordValue(Math.min(micros, HIGHEST_TRACKABLE_LATENCY));
+
+				final boolean won = result.set(value);
+				if (hedge) {
+					metrics.recordHedge(won);
+				}
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				if (hedge) {
+					metrics.recordHedge(false);
+				}
+				if (pending.decrementAndGet() == 0) {
+					result.setException(t);
+				}
+			}
+		});
+	}
+
+	private long getDelayNanos() {
+		if (System.nanoTime() - nextDelayUpdate >= 0) {
+			updateDelay();
+		}
+		return delayNanos;
+	}
+
+	private synchronized void updateDelay() {
+		final long now = System.nanoTime();
+		if (now - nextDelayUpdate < 0) {
+			return;
+		}
+		nextDelayUpdate = now + DELAY_UPDATE_INTERVAL;
+
+		intervalLatencies = latencies.getIntervalHistogram(intervalLatencies);
+		if (intervalLatencies.getTotalCount() > 0) {
+			final long delay = TimeUnit.MICROSECONDS.toNanos(intervalLatencies.getValueAtPercentile(percentile));
+			delayNanos = Math.max(minDelayNanos, delay);
+		}
+	}
+
+	private void addBudget() {
+		while (true) {
+			final long current = budget.get();
+			if (current >= MAX_BUDGET || budget.compareAndSet(current, Math.min(MAX_BUDGET, current + budgetPerRead))) {
+				return;
+			}
+		}
+	}
+
+	private void returnBudget() {
+		budget.addAndGet(1000);
+	}
+
+	private boolean takeBudget() {
+		while (true) {
+			final long current = budget.get();
+			if (current < 1000) {
+				return false;
+			}
+			if (budget.compareAndSet(current, current - 1000)) {
+				return true;
+			}
+		}
+	}
+
+	private static <T> T get(ListenableFuture<T> future) throws Exception {
+		try {
+			return Uninterruptibles.getUninterruptibly(future);
+		} catch (ExecutionException e) {
+			Throwables.propagateIfInstanceOf(e.getCause(), Exception.class);
+			throw Throwables.propagate(e.getCause());
+		}
+	}
+
+	private static <T> T getUnchecked(ListenableFuture<T> future) {
+		try {
+			return Uninterruptibles.getUninterruptibly(future);
+		} catch (ExecutionException e) {
+			throw Throwables.propagate(e.getCause());
+		}
+	}
+
+	// ====================================================
+	// Everything else
+	// ====================================================
+
+	@Override
+	public void updateString(K key, String columnName, String value, long timestamp, int ttl) {
+		delegate.updateString(key, columnName, value, timestamp, ttl);
+	}
+
+	@Override
+	public void updateByteBuffer(K key, String columnName, ByteBuffer value) {
+		delegate.updateByteBuffer(key, columnName, value);
+	}
+
+	@Override
+	public void updateRow(K key, Map<String, Object> row, Map<String, Long> timestamps, Map<String, Integer> ttls)
+			throws Exception {
+		delegate.updateRow(key, row, timestamps, ttls);
+	}
+
+	@Override
+	public CassandraColumn readColumnInfo(K key, String columnName) {
+		return delegate.readColumnInfo(key, columnName);
+	}
+
+	@Override
+	public Map<K, String> readStrings(Set<K> keys, String columnName) throws Exception {
+		return delegate.readStrings(keys, columnName);
+	}
+
+	@Override
+	public CassandraResultSet<K, String> readColumnSlice(K key, String start, String end, boolean reversed, int count) {
+		return delegate.readColumnSlice(key, start, end, reversed, count);
+	}
+
+	@Override
+	public CassandraResultSet<K, String> readColumnSlice(Set<K> keys, String start, String end, boolean reversed) {
+		return delegate.readColumnSlice(keys, start, end, reversed);
+	}
+
+	@Override
+	public CassandraResultSet<K, String> readAllColumns(Set<K> keys) throws Exception {
+		return delegate.readAllColumns(keys);
+	}
+
+	@Override
+	public CassandraResultSet<K, String> readColumns(Set<K> keys, List<String> columnNames) throws Exception {
+		return delegate.readColumns(keys, columnNames);
+	}
+
+	@Override
+	public Long getCounterValue(K key, String counterColumnName) {
+		return delegate.getCounterValue(key, counterColumnName);
+	}
+
+	@Override
+	public void updateCounter(K key, String counterColumnName, long value) {
+		delegate.updateCounter(key, counterColumnName, value);
+	}
+
+	@Override
+	public void incrementCounter(K key, String counterColumnName) {
+		delegate.incrementCounter(key, counterColumnName);
+	}
+
+	@Override
+	public void decrementCounter(K key, String counterColumnName) {
+		delegate.decrementCounter(key, counterColumnName);
+	}
+
+	@Override
+	public void deleteColumn(K key, String columnName) {
+		delegate.deleteColumn(key, columnName);
+	}
+
+	@Override
+	public void deleteColumns(K key, List<String> columnNameList) {
+		delegate.deleteColumns(key, columnNameList);
+	}
+
+	@Override
+	public void deleteRow(K key, long timestamp) {
+		delegate.deleteRow(key, timestamp);
+	}
+
+	@Override
+	@SuppressWarnings("rawtypes")
+	public CassandraResultSet readAllColumnsBySecondaryIndex(Map<String, String> parameters, int limit) {
+		return delegate.readAllColumnsBySecondaryIndex(parameters, limit);
+	}
+
+	@Override
+	public CassandraResultSet<K, String> retrieveBySecondaryIndex(String columnName, String columnValue) {
+		return delegate.retrieveBySecondaryIndex(columnName, columnValue);
+	}
+
+	@Override
+	public CassandraResultSet<K, String> retrieveBySecondaryIndex(String columnName, List<String> columnValue) {
+		return delegate.retrieveBySecondaryIndex(columnName, columnValue);
+	}
+
+	@Override
+	public CassandraResultSet<K, String> retrieveByColumnNameBasedSecondaryIndex(String columnName) {
+		return delegate.retrieveByColumnNameBasedSecondaryIndex(columnName);
+	}
+
+	@Override
+	public Map<String, List<K>> retrieveKeysBySecondaryIndex(String columnName, List<String> columnValues) {
+		return delegate.retrieveKeysBySecondaryIndex(columnName, columnValues);
+	}
+
+	@Override
+	public List<K> retrieveKeysByColumnNameBasedSecondaryIndex(String columnName) {
+		return delegate.retrieveKeysByColumnNameBasedSecondaryIndex(columnName);
+	}
+
+	@Override
+	public ListenableFuture<CassandraResultSet<K, String>> readAllColumnsAsync(Set<K> keys) {
+		return delegate.readAllColumnsAsync(keys);
+	}
+
+	@Override
+	public ListenableFuture<CassandraResultSet<K, String>> readColumnsAsync(Set<K> keys, List<String> columnNames) {
+		return delegate.readColumnsAsync(keys, columnNames);
+	}
+
+	@Override
+	public ListenableFuture<CassandraResultSet<K, String>> readColumnSliceAsync(K key, String start, String end,
+			boolean reversed, int count) {
+		return delegate.readColumnSliceAsync(key, start, end, reversed, count);
+	}
+
+	@Override
+	public ListenableFuture<Long> getCounterValueAsync(K key, String counterColumnName) {
+		return delegate.getCounterValueAsync(key, counterColumnName);
+	}
+
+	@Override
+	public ListenableFuture<Void> updateStringAsync(K key, String columnName, String value, long timestamp, int ttl) {
+		return delegate.updateStringAsync(key, columnName, value, timestamp, ttl);
+	}
+
+	@Override
+	public ListenableFuture<Void> updateRowAsync(K key, Map<String, Object> row, Map<String, Long> timestamps,
+			Map<String, Integer> ttls) {
+		return delegate.updateRowAsync(key, row, timestamps, ttls);
+	}
+
+	@Override
+	public ListenableFuture<Void> updateCounterAsync(K key, String counterColumnName, long value) {
+		return delegate.updateCounterAsync(key, counterColumnName, value);
+	}
+
+	@Override
+	public ListenableFuture<Void> deleteColumnAsync(K key, String columnName) {
+		return delegate.deleteColumnAsync(key, columnName);
+	}
+
+	@Override
+	public ListenableFuture<Void> deleteRowAsync(K key, long timestamp) {
+		return delegate.deleteRowAsync(key, timestamp);
+	}
+
+	@Override
+	public ListenableFuture<CassandraResultSet<K, String>> retrieveBySecondaryIndexAsync(String columnName,
+			String columnValue) {
+		return delegate.retrieveBySecondaryIndexAsync(columnName, columnValue);
+	}
+
+	@Override
+	public ListenableFuture<CassandraResultSet<K, String>> retrieveBySecondaryIndexAsync(String columnName,
+			List<String> columnValues) {
+		return delegate.retrieveBySecondaryIndexAsync(columnName, columnValues);
+	}
+
+	@Override
+	public void scan(List<TokenRange> ranges, int parallelism, int pageSize, RowScanCallback<K> callback)
+			throws Exception {
+		delegate.scan(ranges, parallelism, pageSize, callback);
+	}
+
+	@Override
+	protected void scanRange(TokenRange range, int pageSize, RowScanCallback<K> callback) throws Exception {
+		delegate.scanRange(range, pageSize, callback);
+	}
+
+	@Override
+	public void flushSecondaryIndexes() throws InterruptedException {
+		delegate.flushSecondaryIndexes();
+	}
+
+	@Override
+	protected void logDownedHosts() {
+		delegate.logDownedHosts();
+	}
+
+	@Override
+	public void shutDown() {
+		shutDownAsyncExecutor();
+		delegate.shutDown();
+	}
+}
@@ -0,0 +1,198 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wizecommerce.hecuba;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Reads the rows of the keys a secondary index lookup yields, while the lookup is still going on: the keys are taken
+ * in chunks of chunkSize distinct keys, each read with a multi-get of its own, and up to parallelism chunks are read
+ * ahead of the one being iterated. The rows come back chunk after chunk, so neither the keys nor the rows are ever
+ * all held at once, and the first rows are available as soon as their chunk is read.
+ *
+ * Keys are only taken from the iterator when a chunk is dispatched, so an iterator which reads the secondary index
+ * lazily overlaps the index reads with the reads of the rows.
+ */
+public class IndexJoinResultSet<K> extends AbstractCassandraResultSet<K, String> {
+	private final HecubaClientManager<K> clientManager;
+	private final Iterator<K> keys;
+	private final int chunkSize;
+	private final int parallelism;
+
+	// keys listed under several index values are read once.
+	private final Set<K> dispatchedKeys = new HashSet<>();
+	private final Deque<ListenableFuture<CassandraResultSet<K, String>>> chunks = new ArrayDeque<>();
+	private CassandraResultSet<K, String> current;
+	private boolean onFirstResult;
+
+	/**
+	 * @param clientManager - reads the chunks, with {@link HecubaClientManager#readAllColumnsAsync(Set)}.
+	 * @param keys          - keys of the rows to read, in the order they should be read in.
+	 * @param chunkSize     - maximum number of keys read by a multi-get.
+	 * @param parallelism   - maximum number of multi-gets in flight.
+	 */
+	public IndexJoinResultSet(HecubaClientManager<K> clientManager, Iterator<K> keys, int chunkSize, int parallelism) {
+		this.clientManager = clientManager;
+		this.keys = keys;
+		this.chunkSize = Math.max(1, chunkSize);
+		this.parallelism = Math.max(1, parallelism);
+
+		current = nextChunk();
+		if (current == null) {
+			current = new CassandraMapResultSet<>(Collections.<String, String> emptyMap());
+		}
+	}
+
+	/**
+	 * @return the rows of the next chunk, null if there are no more.
+	 */
+	private CassandraResultSet<K, String> nextChunk() {
+		dispatch();
+		final ListenableFuture<CassandraResultSet<K, String>> chunk = chunks.poll();
+		if (chunk == null) {
+			return null;
+		}
+
+		// keep the window full while the caller iterates this chunk.
+		dispatch();
+		try {
+			return Uninterruptibles.getUninterruptibly(chunk);
+		} catch (ExecutionException e) {
+			throw Throwables.propagate(e.getCause());
+		}
+	}
+
+	private void dispatch() {
+		while (chunks.size() < parallelism) {
+			final Set<K> chunk = new HashSet<>();
+			while (chunk.size() < chunkSize && keys.hasNext()) {
+				final K key = keys.next();
+				if (dispatchedKeys.add(key)) {
+					chunk.add(key);
+				}
+			}
+			if (chunk.isEmpty()) {
+				return;
+			}
+			chunks.add(clientManager.readAllColumnsAsync(chunk));
+		}
+	}
+
+	@Override
+	public boolean hasResults() {
+		if (current.hasResults()) {
+			return true;
+		}
+		for (CassandraResultSet<K, String> next = nextChunk(); next != null; next = nextChunk()) {
+			current = next;
+			if (current.hasResults()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean hasNextResult() {
+		if (onFirstResult || current.hasNextResult()) {
+			return true;
+		}
+		for (CassandraResultSet<K, String> next = nextChunk(); next != null; next = nextChunk()) {
+			current = next;
+			if (current.hasResults()) {
+				onFirstResult = true;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void nextResult() {
+		if (onFirstResult) {
+			// hasNextResult already moved us onto the first result of the next chunk
+			onFirstResult = false;
+		} else {
+			current.nextResult();
+		}
+	}
+
+	@Override
+	public String getString(String fieldName) {
+		return current.getString(fieldName);
+	}
+
+	@Override
+	public long getLongValue(String fieldName, long defaultLong) {
+		return current.getLongValue(fieldName, defaultLong);
+	}
+
+	@Override
+	public int getIntValue(String fieldName, int defaultInt) {
+		return current.getIntValue(fieldName, defaultInt);
+	}
+
+	@Override
+	public double getDoubleValue(String fieldName, double defaultDouble) {
+		return current.getDoubleValue(fieldName, defaultDouble);
+	}
+
+	@Override
+	public boolean getBooleanValue(String fieldName, boolean defaultValue) {
+		return current.getBooleanValue(fieldName, defaultValue);
+	}
+
+	@Override
+	public byte[] getByteArray(String fieldName) {
+		return current.getByteArray(fieldName);
+	}
+
+	@Override
+	public Collection<String> getColumnNames() {
+		return current.getColumnNames();
+	}
+
+	@Override
+	public K getKey() {
+		return current.getKey();
+	}
+
+	@Override
+	public UUID getUUID(String fieldName) {
+		return current.getUUID(fieldName);
+	}
+
+	@Override
+	public String getHost() {
+		return current.getHost();
+	}
+
+	@Override
+	public long getExecutionLatency() {
+		return current.getExecutionLatency();
+	}
+}
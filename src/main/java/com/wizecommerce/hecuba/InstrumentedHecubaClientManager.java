@@ -0,0 +1,632 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wizecommerce.hecuba;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.wizecommerce.hecuba.metrics.HecubaMetrics;
+import com.wizecommerce.hecuba.metrics.HecubaOperation;
+import com.wizecommerce.hecuba.metrics.OperationMetrics;
+
+/**
+ * Records the latency, errors and sizes of every operation of another client manager in {@link HecubaMetrics}.
+ *
+ * Operations are timed around the calls to the underlying manager; asynchronous ones until their futures complete.
+ * Row and column counts are those of the request, e.g. the number of keys of a multi-get, as counting what came back
+ * would mean reading through the result sets. Byte counts are the characters of the values written, and of the
+ * values read as strings.
+ *
+ * Metrics are enabled per column family, see {@link HecubaConstants#getMetricsProperties(String, String)}, and
+ * {@link HecubaObjectFactory} wraps the managers of the column families they are enabled for. The configuration
+ * setters are passed on to the underlying manager, and switching column families switches the metrics too.
+ *
+ * @param <K> - type of the row keys
+ */
+public class InstrumentedHecubaClientManager<K> extends HecubaClientManager<K> {
+
+	private final HecubaClientManager<K> delegate;
+
+	private final String backend;
+
+	private volatile OperationMetrics reads;
+	private volatile OperationMetrics multiGets;
+	private volatile OperationMetrics slices;
+	private volatile OperationMetrics writes;
+	private volatile OperationMetrics deletes;
+	private volatile OperationMetrics counters;
+	private volatile OperationMetrics indexLookups;
+
+	/**
+	 * @param backend - name of the backend of the delegate in the metrics, e.g. one of
+	 *                {@link HecubaConstants.CassandraClientImplementation}
+	 */
+	public InstrumentedHecubaClientManager(CassandraParamsBean parameters, HecubaClientManager<K> delegate,
+			String backend) {
+		super(parameters);
+		this.delegate = delegate;
+		this.backend = backend;
+		useMetricsOf(parameters.getColumnFamily());
+	}
+
+	private void useMetricsOf(String columnFamily) {
+		final HecubaMetrics metrics = HecubaMetrics.getInstance();
+		reads = metrics.getOperationMetrics(backend, columnFamily, HecubaOperation.READ);
+		multiGets = metrics.getOperationMetrics(backend, columnFamily, HecubaOperation.MULTIGET);
+		slices = metrics.getOperationMetrics(backend, columnFamily, HecubaOperation.SLICE);
+		writes = metrics.getOperationMetrics(backend, columnFamily, HecubaOperation.WRITE);
+		deletes = metrics.getOperationMetrics(backend, columnFamily, HecubaOperation.DELETE);
+		counters = metrics.getOperationMetrics(backend, columnFamily, HecubaOperation.COUNTER);
+		indexLookups = metrics.getOperationMetrics(backend, columnFamily, HecubaOperation.INDEX_LOOKUP);
+	}
+
+	/**
+	 * @param columnFamily - name of the column family
+	 *
+	 * @return whether metrics are enabled for the given column family.
+	 */
+	public static boolean isEnabled(String columnFamily) {
+		return Boolean.parseBoolean(getColumnFamilyProperty(HecubaConstants.getMetricsProperties(columnFamily,
+				HecubaConstants.METRICS_ENABLED)));
+	}
+
+	public HecubaClientManager<K> getDelegate() {
+		return delegate;
+	}
+
+	// ====================================================
+	// Configuration
+	// ====================================================
+
+	@Override
+	public void setColumnFamily(String columnFamily) {
+		delegate.setColumnFamily(columnFamily);
+		super.setColumnFamily(columnFamily);
+		useMetricsOf(columnFamily);
+	}
+
+	@Override
+	public void setClusterName(String clusterName) {
+		delegate.setClusterName(clusterName);
+		super.setClusterName(clusterName);
+	}
+
+	@Override
+	public void setLocationURL(String locationURL) {
+		delegate.setLocationURL(locationURL);
+		super.setLocationURL(locationURL);
+	}
+
+	@Override
+	protected <T> ListenableFuture<T> sendHedge(Callable<ListenableFuture<T>> read) throws Exception {
+		return delegate.sendHedge(read);
+	}
+
+	@Override
+	public void setColumnsToIndexOnColumnNameAndValue(List<String> columnNames) {
+		// also called by the constructor of HecubaClientManager, before there is a delegate to pass it on to.
+		if (delegate != null) {
+			delegate.setColumnsToIndexOnColumnNameAndValue(columnNames);
+		}
+		super.setColumnsToIndexOnColumnNameAndValue(columnNames);
+	}
+
+	// ====================================================
+	// Reads
+	// ====================================================
+
+	@Override
+	public String readString(K key, String columnName) {
+		final long start = System.nanoTime();
+		try {
+			final String value = delegate.readString(key, columnName);
+			reads.record(start, 1, 1, value == null ? 0 : value.length());
+			return value;
+		} catch (RuntimeException e) {
+			reads.recordError(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public CassandraColumn readColumnInfo(K key, String columnName) {
+		final long start = System.nanoTime();
+		try {
+			final CassandraColumn column = delegate.readColumnInfo(key, columnName);
+			reads.record(start, 1, 1, 0);
+			return column;
+		} catch (RuntimeException e) {
+			reads.recordError(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public CassandraResultSet<K, String> readAllColumns(K key) throws Exception {
+		final long start = System.nanoTime();
+		try {
+			final CassandraResultSet<K, String> resultSet = delegate.readAllColumns(key);
+			reads.record(start, 1, 0, 0);
+			return resultSet;
+		} catch (Exception e) {
+			reads.recordError(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public CassandraResultSet<K, String> readColumns(K key, List<String> columnNames) throws Exception {
+		final long start = System.nanoTime();
+		try {
+			final CassandraResultSet<K, String> resultSet = delegate.readColumns(key, columnNames);
+			reads.record(start, 1, size(columnNames), 0);
+			return resultSet;
+		} catch (Exception e) {
+			reads.recordError(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public CassandraResultSet<K, String> readAllColumns(Set<K> keys) throws Exception {
+		final long start = System.nanoTime();
+		try {
+			final CassandraResultSet<K, String> resultSet = delegate.readAllColumns(keys);
+			multiGets.record(start, keys.size(), 0, 0);
+			return resultSet;
+		} catch (Exception e) {
+			multiGets.recordError(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public CassandraResultSet<K, String> readColumns(Set<K> keys, List<String> columnNames) throws Exception {
+		final long start = System.nanoTime();
+		try {
+			final CassandraResultSet<K, String> resultSet = delegate.readColumns(keys, columnNames);
+			multiGets.record(start, keys.size(), keys.size() * size(columnNames), 0);
+			return resultSet;
+		} catch (Exception e) {
+			multiGets.recordError(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public Map<K, String> readStrings(Set<K> keys, String columnName) throws Exception {
+		final long start = System.nanoTime();
+		try {
+			final Map<K, String> values = delegate.readStrings(keys, columnName);
+			multiGets.record(start, keys.size(), keys.size(), getByteCount(values));
+			return values;
+		} catch (Exception e) {
+			multiGets.recordError(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public CassandraResultSet<K, String> readColumnSlice(K key, String start, String end, boolean reversed, int count) {
+		final long startNanos = System.nanoTime();
+		try {
+			final CassandraResultSet<K, String> resultSet = delegate.readColumnSlice(key, start, end, reversed, count);
+			slices.record(startNanos, 1, 0, 0);
+			return resultSet;
+		} catch (RuntimeException e) {
+			slices.recordError(startNanos);
+			throw e;
+		}
+	}
+
+	@Override
+	public CassandraResultSet<K, String> readColumnSlice(Set<K> keys, String start, String end, boolean reversed) {
+		final long startNanos = System.nanoTime();
+		try {
+			final CassandraResultSet<K, String> resultSet = delegate.readColumnSlice(keys, start, end, reversed);
+			slices.record(startNanos, keys.size(), 0, 0);
+			return resultSet;
+		} catch (RuntimeException e) {
+			slices.recordError(startNanos);
+			throw e;
+		}
+	}
+
+	@Override
+	public ListenableFuture<CassandraResultSet<K, String>> readAllColumnsAsync(K key) {
+		return record(reads, System.nanoTime(), 1, 0, delegate.readAllColumnsAsync(key));
+	}
+
+	@Override
+	public ListenableFuture<CassandraResultSet<K, String>> readAllColumnsAsync(Set<K> keys) {
+		return record(multiGets, System.nanoTime(), keys.size(), 0, delegate.readAllColumnsAsync(keys));
+	}
+
+	@Override
+	public ListenableFuture<CassandraResultSet<K, String>> readColumnsAsync(K key, List<String> columnNames) {
+		return record(reads, System.nanoTime(), 1, size(columnNames), delegate.readColumnsAsync(key, columnNames));
+	}
+
+	@Override
+	public ListenableFuture<CassandraResultSet<K, String>> readColumnsAsync(Set<K> keys, List<String> columnNames) {
+		return record(multiGets, System.nanoTime(), keys.size(), keys.size() * size(columnNames),
+				delegate.readColumnsAsync(keys, columnNames));
+	}
+
+	@Override
+	public ListenableFuture<CassandraResultSet<K, String>> readColumnSliceAsync(K key, String start, String end,
+			boolean reversed, int count) {
+		return record(slices, System.nanoTime(), 1, 0, delegate.readColumnSliceAsync(key, start, end, reversed, count));
+	}
+
+	@Override
+	public ListenableFuture<String> readStringAsync(K key, String columnName) {
+		return record(reads, System.nanoTime(), 1, 1, delegate.readStringAsync(key, columnName));
+	}
+
+	// ====================================================
+	// Writes and deletes
+	// ====================================================
+
+	@Override
+	public void updateString(K key, String columnName, String value, long timestamp, int ttl) {
+		final long start = System.nanoTime();
+		try {
+			delegate.updateString(key, columnName, value, timestamp, ttl);
+			writes.record(start, 1, 1, value == null ? 0 : value.length());
+		} catch (RuntimeException e) {
+			writes.recordError(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public void updateByteBuffer(K key, String columnName, ByteBuffer value) {
+		final long start = System.nanoTime();
+		try {
+			delegate.updateByteBuffer(key, columnName, value);
+			writes.record(start, 1, 1, value == null ? 0 : value.remaining());
+		} catch (RuntimeException e) {
+			writes.recordError(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public void updateRow(K key, Map<String, Object> row, Map<String, Long> timestamps, Map<String, Integer> ttls)
+			throws Exception {
+		final long start = System.nanoTime();
+		try {
+			delegate.updateRow(key, row, timestamps, ttls);
+			writes.record(start, 1, row.size(), getByteCount(row));
+		} catch (Exception e) {
+			writes.recordError(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public void deleteColumn(K key, String columnName) {
+		final long start = System.nanoTime();
+		try {
+			delegate.deleteColumn(key, columnName);
+			deletes.record(start, 1, 1, 0);
+		} catch (RuntimeException e) {
+			deletes.recordError(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public void deleteColumns(K key, List<String> columnNameList) {
+		final long start = System.nanoTime();
+		try {
+			delegate.deleteColumns(key, columnNameList);
+			deletes.record(start, 1, size(columnNameList), 0);
+		} catch (RuntimeException e) {
+			deletes.recordError(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public void deleteRow(K key, long timestamp) {
+		final long start = System.nanoTime();
+		try {
+			delegate.deleteRow(key, timestamp);
+			deletes.record(start, 1, 0, 0);
+		} catch (RuntimeException e) {
+			deletes.recordError(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public ListenableFuture<Void> updateStringAsync(K key, String columnName, String value, long timestamp, int ttl) {
+		final long start = System.nanoTime();
+		return record(writes, start, 1, 1, value == null ? 0 : value.length(),
+				delegate.updateStringAsync(key, columnName, value, timestamp, ttl));
+	}
+
+	@Override
+	public ListenableFuture<Void> updateRowAsync(K key, Map<String, Object> row, Map<String, Long> timestamps,
+			Map<String, Integer> ttls) {
+		final long start = System.nanoTime();
+		return record(writes, start, 1, row.size(), getByteCount(row),
+				delegate.updateRowAsync(key, row, timestamps, ttls));
+	}
+
+	@Override
+	public ListenableFuture<Void> deleteColumnAsync(K key, String columnName) {
+		return record(deletes, System.nanoTime(), 1, 1, delegate.deleteColumnAsync(key, columnName));
+	}
+
+	@Override
+	public ListenableFuture<Void> deleteRowAsync(K key, long timestamp) {
+		return record(deletes, System.nanoTime(), 1, 0, delegate.deleteRowAsync(key, timestamp));
+	}
+
+	@Override
+	public void scan(List<TokenRange> ranges, int parallelism, int pageSize, RowScanCallback<K> callback)
+			throws Exception {
+		delegate.scan(ranges, parallelism, pageSize, callback);
+	}
+
+	@Override
+	protected void scanRange(TokenRange range, int pageSize, RowScanCallback<K> callback) throws Exception {
+		delegate.scanRange(range, pageSize, callback);
+	}
+
+	@Override
+	public void flushSecondaryIndexes() throws InterruptedException {
+		delegate.flushSecondaryIndexes();
+	}
+
+	// ====================================================
+	// Counters
+	// ====================================================
+
+	@Override
+	public Long getCounterValue(K key, String counterColumnName) {
+		final long start = System.nanoTime();
+		try {
+			final Long value = delegate.getCounterValue(key, counterColumnName);
+			counters.record(start, 1, 1, 0);
+			return value;
+		} catch (RuntimeException e) {
+			counters.recordError(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public void updateCounter(K key, String counterColumnName, long value) {
+		final long start = System.nanoTime();
+		try {
+			delegate.updateCounter(key, counterColumnName, value);
+			counters.record(start, 1, 1, 0);
+		} catch (RuntimeException e) {
+			counters.recordError(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public void incrementCounter(K key, String counterColumnName) {
+		final long start = System.nanoTime();
+		try {
+			delegate.incrementCounter(key, counterColumnName);
+			counters.record(start, 1, 1, 0);
+		} catch (RuntimeException e) {
+			counters.recordError(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public void decrementCounter(K key, String counterColumnName) {
+		final long start = System.nanoTime();
+		try {
+			delegate.decrementCounter(key, counterColumnName);
+			counters.record(start, 1, 1, 0);
+		} catch (RuntimeException e) {
+			counters.recordError(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public ListenableFuture<Long> getCounterValueAsync(K key, String counterColumnName) {
+		return record(counters, System.nanoTime(), 1, 1, delegate.getCounterValueAsync(key, counterColumnName));
+	}
+
+	@Override
+	public ListenableFuture<Void> updateCounterAsync(K key, String counterColumnName, long value) {
+		return record(counters, System.nanoTime(), 1, 1, delegate.updateCounterAsync(key, counterColumnName, value));
+	}
+
+	// ====================================================
+	// Secondary index lookups
+	// ====================================================
+
+	@Override
+	@SuppressWarnings("rawtypes")
+	public CassandraResultSet readAllColumnsBySecondaryIndex(Map<String, String> parameters, int limit) {
+		final long start = System.nanoTime();
+		try {
+			final CassandraResultSet resultSet = delegate.readAllColumnsBySecondaryIndex(parameters, limit);
+			indexLookups.record(start, 0, 0, 0);
+			return resultSet;
+		} catch (RuntimeException e) {
+			indexLookups.recordError(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public CassandraResultSet<K, String> retrieveBySecondaryIndex(String columnName, String columnValue) {
+		final long start = System.nanoTime();
+		try {
+			final CassandraResultSet<K, String> resultSet = delegate.retrieveBySecondaryIndex(columnName, columnValue);
+			indexLookups.record(start, 0, 0, 0);
+			return resultSet;
+		} catch (RuntimeException e) {
+			indexLookups.recordError(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public CassandraResultSet<K, String> retrieveBySecondaryIndex(String columnName, List<String> columnValue) {
+		final long start = System.nanoTime();
+		try {
+			final CassandraResultSet<K, String> resultSet = delegate.retrieveBySecondaryIndex(columnName, columnValue);
+			indexLookups.record(start, 0, 0, 0);
+			return resultSet;
+		} catch (RuntimeException e) {
+			indexLookups.recordError(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public CassandraResultSet<K, String> retrieveByColumnNameBasedSecondaryIndex(String columnName) {
+		final long start = System.nanoTime();
+		try {
+			final CassandraResultSet<K, String> resultSet = delegate.retrieveByColumnNameBasedSecondaryIndex(
+					columnName);
+			indexLookups.record(start, 0, 0, 0);
+			return resultSet;
+		} catch (RuntimeException e) {
+			indexLookups.recordError(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public List<K> retrieveKeysBySecondaryIndex(String columnName, String columnValue) {
+		final long start = System.nanoTime();
+		try {
+			final List<K> keys = delegate.retrieveKeysBySecondaryIndex(columnName, columnValue);
+			indexLookups.record(start, size(keys), 0, 0);
+			return keys;
+		} catch (RuntimeException e) {
+			indexLookups.recordError(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public Map<String, List<K>> retrieveKeysBySecondaryIndex(String columnName, List<String> columnValues) {
+		final long start = System.nanoTime();
+		try {
+			final Map<String, List<K>> keys = delegate.retrieveKeysBySecondaryIndex(columnName, columnValues);
+			indexLookups.record(start, 0, 0, 0);
+			return keys;
+		} catch (RuntimeException e) {
+			indexLookups.recordError(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public List<K> retrieveKeysByColumnNameBasedSecondaryIndex(String columnName) {
+		final long start = System.nanoTime();
+		try {
+			final List<K> keys = delegate.retrieveKeysByColumnNameBasedSecondaryIndex(columnName);
+			indexLookups.record(start, size(keys), 0, 0);
+			return keys;
+		} catch (RuntimeException e) {
+			indexLookups.recordError(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public ListenableFuture<CassandraResultSet<K, String>> retrieveBySecondaryIndexAsync(String columnName,
+			String columnValue) {
+		return record(indexLookups, System.nanoTime(), 0, 0, delegate.retrieveBySecondaryIndexAsync(columnName,
+				columnValue));
+	}
+
+	@Override
+	public ListenableFuture<CassandraResultSet<K, String>> retrieveBySecondaryIndexAsync(String columnName,
+			List<String> columnValues) {
+		return record(indexLookups, System.nanoTime(), 0, 0, delegate.retrieveBySecondaryIndexAsync(columnName,
+				columnValues));
+	}
+
+	@Override
+	public ListenableFuture<List<K>> retrieveKeysBySecondaryIndexAsync(String columnName, String columnValue) {
+		return record(indexLookups, System.nanoTime(), 0, 0, delegate.retrieveKeysBySecondaryIndexAsync(columnName,
+				columnValue));
+	}
+
+	// ====================================================
+	// Helpers
+	// ====================================================
+
+	private <T> ListenableFuture<T> record(OperationMetrics metrics, long start, int rows, int columns,
+			ListenableFuture<T> future) {
+		return record(metrics, start, rows, columns, 0, future);
+	}
+
+	private <T> ListenableFuture<T> record(final OperationMetrics metrics, final long start, final int rows,
+			final int columns, final long bytes, ListenableFuture<T> future) {
+		Futures.addCallback(future, new FutureCallback<T>() {
+			@Override
+			public void onSuccess(T result) {
+				metrics.record(start, rows, columns, bytes);
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				metrics.recordError(start);
+			}
+		});
+		return future;
+	}
+
+	private static int size(List<?> list) {
+		return list == null ? 0 : list.size();
+	}
+
+	private static long getByteCount(Map<?, ?> row) {
+		long bytes = 0;
+		for (Object value : row.values()) {
+			if (value instanceof CharSequence) {
+				bytes += ((CharSequence) value).length();
+			}
+		}
+		return bytes;
+	}
+
+	@Override
+	protected void logDownedHosts() {
+		delegate.logDownedHosts();
+	}
+
+	@Override
+	public void shutDown() {
+		shutDownAsyncExecutor();
+		delegate.shutDown();
+	}
+}
@@ -16,15 +16,21 @@ package com.wizecommerce.hecuba;
 
 import org.json.simple.JSONObject;
 
+import com.wizecommerce.hecuba.util.PrimitiveValueParser;
+
 import java.sql.Timestamp;
 import java.util.Date;
 
 
+/**
+ * Reads the fields of a JSON object decoded by json-simple. See {@link LazyJSONResultSet} for JSON which is decoded
+ * as its fields are read.
+ */
 public class JSONResultSet {
 
 	final JSONObject decoder;
 
-	private JSONResultSet() {
+	protected JSONResultSet() {
 
 		decoder = null;
 	}
@@ -40,7 +46,7 @@ public class JSONResultSet {
 	}
 
 	public String getString(String fieldName, String defaultValue) {
-		String value = (String) decoder.get(fieldName);
+		String value = (String) getValue(fieldName);
 
 		if ((value == null) || value.equals("")) {
 			return defaultValue;
@@ -56,7 +62,7 @@ public class JSONResultSet {
 
 	public Boolean getBoolean(String fieldName, Boolean defaultValue) {
 
-		Boolean value = (Boolean) decoder.get(fieldName);
+		Boolean value = (Boolean) getValue(fieldName);
 
 		return (value == null) ? defaultValue : value;
 	}
@@ -68,7 +74,7 @@ public class JSONResultSet {
 
 	public Integer getInteger(String fieldName, Integer defaultInt) {
 
-		Long value = (Long) decoder.get(fieldName);
+		Long value = (Long) getValue(fieldName);
 
 		return (value == null) ? defaultInt : value.intValue();
 	}
@@ -80,7 +86,7 @@ public class JSONResultSet {
 
 	public Long getLong(String fieldName, Long defaultLong) {
 
-		Long value = (Long) decoder.get(fieldName);
+		Long value = (Long) getValue(fieldName);
 
 		return (value == null) ? defaultLong : value;
 
@@ -93,7 +99,7 @@ public class JSONResultSet {
 
 	public Double getDouble(String fieldName, Double defaultDouble) {
 
-		Double value = (Double) decoder.get(fieldName);
+		Double value = (Double) getValue(fieldName);
 
 		return (value == null) ? defaultDouble : value;
 
@@ -105,7 +111,7 @@ public class JSONResultSet {
 
 	public float getFloat(String fieldName, Float defaultValue) {
 
-		Float value = (Float) decoder.get(fieldName);
+		Float value = (Float) getValue(fieldName);
 
 		return (value == null) ? defaultValue : value;
 	}
@@ -113,7 +119,7 @@ public class JSONResultSet {
 
 	// numeric values seem to come in as Longs, need to downcast
 	public Byte getByte(String fieldName) {
-		final Long value = (Long) decoder.get(fieldName);
+		final Long value = (Long) getValue(fieldName);
 
 		return (value == null) ? null : value.byteValue();
 	}
@@ -146,7 +152,7 @@ public class JSONResultSet {
 	@Deprecated
 	public Date getDate(String fieldName, Date defaultDate) {
 
-		Long epoch = (Long) decoder.get(fieldName);
+		Long epoch = (Long) getValue(fieldName);
 
 		return (epoch == null) ? defaultDate : new Date(epoch);
 	}
@@ -161,7 +167,7 @@ public class JSONResultSet {
 	public java.sql.Date getSQLDate(String fieldName,
 		java.sql.Date defaultDate) {
 
-		Long epoch = (Long) decoder.get(fieldName);
+		Long epoch = (Long) getValue(fieldName);
 
 		return (epoch == null) ? defaultDate : new java.sql.Date(epoch);
 	}
@@ -175,7 +181,7 @@ public class JSONResultSet {
 	@Deprecated
 	public Timestamp getSQLTimeStamp(String fieldName, Timestamp defaultDate) {
 
-		Long epoch = (Long) decoder.get(fieldName);
+		Long epoch = (Long) getValue(fieldName);
 
 		return (epoch == null) ? defaultDate : new Timestamp(epoch);
 
@@ -183,10 +189,34 @@ public class JSONResultSet {
 
 	public byte[] getByteArray(String fieldName) {
 
-		byte[] value = (byte[]) decoder.get(fieldName);
+		byte[] value = (byte[]) getValue(fieldName);
 
 		return value;
 	}
 
+	public long getLongValue(String fieldName, long defaultLong) {
+		return PrimitiveValueParser.parseLong(getValue(fieldName), defaultLong);
+	}
+
+	public int getIntValue(String fieldName, int defaultInt) {
+		return PrimitiveValueParser.parseInt(getValue(fieldName), defaultInt);
+	}
+
+	public double getDoubleValue(String fieldName, double defaultDouble) {
+		return PrimitiveValueParser.parseDouble(getValue(fieldName), defaultDouble);
+	}
+
+	public boolean getBooleanValue(String fieldName, boolean defaultValue) {
+		return PrimitiveValueParser.parseBoolean(getValue(fieldName), defaultValue);
+	}
+
+	/**
+	 * @return the value of the field as json-simple decodes it: a String, Long, Double, Boolean, JSONObject or
+	 *         JSONArray, null if there is no such field.
+	 */
+	protected Object getValue(String fieldName) {
+		return decoder.get(fieldName);
+	}
+
 
 }
@@ -0,0 +1,242 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wizecommerce.hecuba;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.codec.binary.Base64;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.wizecommerce.hecuba.util.PrimitiveValueParser;
+
+/**
+ * A {@link JSONResultSet} which decodes its JSON object with Gson's streaming parser as its fields are read, rather
+ * than all of it up front.
+ *
+ * The object is read up to the field asked for, and the fields read on the way are kept, so fields which are never
+ * asked for, and follow those which are, are never decoded. Numbers are kept as the text they are stored as, so the
+ * primitive getters parse them without boxing them. Nested objects and arrays are decoded as Gson
+ * {@link JsonElement}s.
+ *
+ * The JSON is only checked as far as it is read, so invalid JSON gives an {@link IllegalArgumentException} when a
+ * field is read rather than when the result set is created. Instances are not thread safe.
+ */
+public class LazyJSONResultSet extends JSONResultSet {
+
+	private static final char[] NULL_VALUE = "null".toCharArray();
+
+	private final Map<String, Object> fields = new HashMap<>();
+	// null once the whole object has been read.
+	private JsonReader reader;
+
+	public LazyJSONResultSet(String json) {
+		this(new StringReader(json));
+	}
+
+	public LazyJSONResultSet(byte[] json) {
+		this(new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8));
+	}
+
+	private LazyJSONResultSet(Reader json) {
+		reader = new JsonReader(json);
+		try {
+			reader.beginObject();
+		} catch (IOException | IllegalStateException e) {
+			throw new IllegalArgumentException("The value is not a JSON object", e);
+		}
+	}
+
+	/**
+	 * Creates a result set reading the JSON stored in a column straight from the value the client returned, without
+	 * decoding it to a String first where the client returns the bytes.
+	 *
+	 * @return null if there is no such column, or it holds the "null" Hecuba stores for null values.
+	 */
+	public static LazyJSONResultSet fromColumn(CassandraResultSet<?, String> resultSet, String columnName) {
+		final Object value = resultSet instanceof AbstractCassandraResultSet ?
+				((AbstractCassandraResultSet<?, String>) resultSet).getRawValue(columnName) :
+				resultSet.getString(columnName);
+
+		if (value == null || isStoredNull(value)) {
+			return null;
+		}
+
+		if (value instanceof ByteBuffer) {
+			final ByteBuffer buffer = (ByteBuffer) value;
+			if (buffer.hasArray()) {
+				return new LazyJSONResultSet(new InputStreamReader(new ByteArrayInputStream(buffer.array(), buffer
+						.arrayOffset() + buffer.position(), buffer.remaining()), StandardCharsets.UTF_8));
+			}
+			final byte[] bytes = new byte[buffer.remaining()];
+			buffer.duplicate().get(bytes);
+			return new LazyJSONResultSet(bytes);
+		}
+		return new LazyJSONResultSet(value.toString());
+	}
+
+	private static boolean isStoredNull(Object value) {
+		if (value instanceof ByteBuffer) {
+			final ByteBuffer buffer = (ByteBuffer) value;
+			if (buffer.remaining() != NULL_VALUE.length) {
+				return false;
+			}
+			for (int i = 0; i < NULL_VALUE.length; i++) {
+				if (Character.toLowerCase((char) buffer.get(buffer.position() + i)) != NULL_VALUE[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return "null".equalsIgnoreCase(value.toString());
+	}
+
+	@Override
+	public String getString(String fieldName, String defaultValue) {
+		final Object value = getField(fieldName);
+		if (value == null) {
+			return defaultValue;
+		}
+
+		final String string = value instanceof JsonNumber ? ((JsonNumber) value).text : value.toString();
+		return string.isEmpty() ? defaultValue : string;
+	}
+
+	@Override
+	public float getFloat(String fieldName, Float defaultValue) {
+		final Object value = getPrimitiveValue(fieldName);
+		return value == null ? defaultValue : (float) PrimitiveValueParser.parseDouble(value, defaultValue);
+	}
+
+	@Override
+	public byte[] getByteArray(String fieldName) {
+		// JSON has no binary values, so they are stored in base64.
+		final Object value = getField(fieldName);
+		return value instanceof String ? Base64.decodeBase64((String) value) : null;
+	}
+
+	@Override
+	public long getLongValue(String fieldName, long defaultLong) {
+		return PrimitiveValueParser.parseLong(getPrimitiveValue(fieldName), defaultLong);
+	}
+
+	@Override
+	public int getIntValue(String fieldName, int defaultInt) {
+		return PrimitiveValueParser.parseInt(getPrimitiveValue(fieldName), defaultInt);
+	}
+
+	@Override
+	public double getDoubleValue(String fieldName, double defaultDouble) {
+		return PrimitiveValueParser.parseDouble(getPrimitiveValue(fieldName), defaultDouble);
+	}
+
+	@Override
+	public boolean getBooleanValue(String fieldName, boolean defaultValue) {
+		return PrimitiveValueParser.parseBoolean(getPrimitiveValue(fieldName), defaultValue);
+	}
+
+	/**
+	 * @return the value of the field as json-simple would decode it, but for nested objects and arrays, which are
+	 *         {@link JsonElement}s.
+	 */
+	@Override
+	protected Object getValue(String fieldName) {
+		final Object value = getField(fieldName);
+		return value instanceof JsonNumber ? ((JsonNumber) value).toNumber() : value;
+	}
+
+	private Object getPrimitiveValue(String fieldName) {
+		final Object value = getField(fieldName);
+		return value instanceof JsonNumber ? ((JsonNumber) value).text : value;
+	}
+
+	private Object getField(String fieldName) {
+		if (fields.containsKey(fieldName) || reader == null) {
+			return fields.get(fieldName);
+		}
+
+		try {
+			while (reader.hasNext()) {
+				final String name = reader.nextName();
+				final Object value = readValue();
+				fields.put(name, value);
+				if (name.equals(fieldName)) {
+					return value;
+				}
+			}
+			reader.endObject();
+			reader.close();
+			reader = null;
+			return null;
+		} catch (IOException | IllegalStateException | JsonParseException e) {
+			reader = null;
+			throw new IllegalArgumentException("The value is not a valid JSON object", e);
+		}
+	}
+
+	private Object readValue() throws IOException {
+		switch (reader.peek()) {
+		case STRING:
+			return reader.nextString();
+		case NUMBER:
+			return new JsonNumber(reader.nextString());
+		case BOOLEAN:
+			return reader.nextBoolean() ? Boolean.TRUE : Boolean.FALSE;
+		case NULL:
+			reader.nextNull();
+			return null;
+		default:
+			return new JsonParser().parse(reader);
+		}
+	}
+
+	/**
+	 * A number as the text it is stored as.
+	 */
+	private static class JsonNumber {
+		final String text;
+
+		JsonNumber(String text) {
+			this.text = text;
+		}
+
+		/**
+		 * @return a Long for integers, a Double for anything else, like json-simple.
+		 */
+		Number toNumber() {
+			for (int i = 0; i < text.length(); i++) {
+				final char c = text.charAt(i);
+				if (c == '.' || c == 'e' || c == 'E') {
+					return Double.valueOf(text);
+				}
+			}
+			try {
+				return Long.valueOf(text);
+			} catch (NumberFormatException e) {
+				return Double.valueOf(text);
+			}
+		}
+	}
+}
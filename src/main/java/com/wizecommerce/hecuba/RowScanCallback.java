@@ -0,0 +1,41 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wizecommerce.hecuba;
+
+/**
+ * Receives the rows of a scan by token range, see {@link HecubaClientManager#scan(java.util.List, int, int,
+ * RowScanCallback)}.
+ *
+ * The ranges of a scan are read concurrently, so implementations must be thread safe. The rows of a single range
+ * arrive in token order on a single thread.
+ */
+public interface RowScanCallback<K> {
+
+	/**
+	 * Called for each row of the scanned ranges. Throwing stops the scan.
+	 *
+	 * @param range the range being scanned.
+	 * @param token the token of the row.
+	 * @param row   the result set positioned at the row. It is only valid until this method returns and must not be
+	 *              moved to another row.
+	 */
+	void onRow(TokenRange range, long token, CassandraResultSet<K, String> row) throws Exception;
+
+	/**
+	 * Called once all the rows of the range were delivered; a checkpoint after which the range need not be scanned
+	 * again.
+	 */
+	void onRangeScanned(TokenRange range) throws Exception;
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wizecommerce.hecuba;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.wizecommerce.hecuba.util.Murmur3Tokens;
+
+/**
+ * A range of the Murmur3Partitioner token ring, from its start token (exclusive) to its end token (inclusive). Ranges
+ * do not wrap around the ring; the whole ring is (minimum token, maximum token].
+ *
+ * A scan of a range can be resumed from the token of the last row it delivered with
+ * <code>new TokenRange(lastToken, range.getEnd())</code>.
+ */
+public final class TokenRange {
+	private final long start;
+	private final long end;
+
+	/**
+	 * @param start the token after which the range starts.
+	 * @param end   the last token of the range, not less than the start.
+	 */
+	public TokenRange(long start, long end) {
+		if (start > end) {
+			throw new IllegalArgumentException("The range (" + start + ", " + end + "] wraps around the ring");
+		}
+		this.start = start;
+		this.end = end;
+	}
+
+	public static TokenRange fullRing() {
+		return new TokenRange(Murmur3Tokens.MINIMUM_TOKEN, Murmur3Tokens.MAXIMUM_TOKEN);
+	}
+
+	public long getStart() {
+		return start;
+	}
+
+	public long getEnd() {
+		return end;
+	}
+
+	public boolean isEmpty() {
+		return start == end;
+	}
+
+	public boolean contains(long token) {
+		return token > start && token <= end;
+	}
+
+	/**
+	 * @return the range split into the given number of adjacent ranges of (nearly) the same width, in token order.
+	 *         Ranges narrower than the number of splits give fewer.
+	 */
+	public List<TokenRange> split(int splits) {
+		if (splits <= 0) {
+			throw new IllegalArgumentException("The number of splits must be positive: " + splits);
+		}
+
+		final BigInteger width = BigInteger.valueOf(end).subtract(BigInteger.valueOf(start));
+		final BigInteger count = BigInteger.valueOf(splits).min(width.max(BigInteger.ONE));
+
+		final List<TokenRange> ranges = new ArrayList<>(count.intValue());
+		long splitStart = start;
+		for (int i = 1; i <= count.intValue(); i++) {
+			final long splitEnd = i == count.intValue() ? end : BigInteger.valueOf(start).add(
+					width.multiply(BigInteger.valueOf(i)).divide(count)).longValue();
+			ranges.add(new TokenRange(splitStart, splitEnd));
+			splitStart = splitEnd;
+		}
+		return ranges;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof TokenRange)) {
+			return false;
+		}
+		final TokenRange other = (TokenRange) o;
+		return start == other.start && end == other.end;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (int) (start ^ (start >>> 32)) + (int) (end ^ (end >>> 32));
+	}
+
+	@Override
+	public String toString() {
+		return "(" + start + ", " + end + "]";
+	}
+}
@@ -38,6 +38,7 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.exception.ExceptionUtils;
 
 import com.google.common.base.Joiner;
+import com.google.common.collect.Iterables;
 import com.netflix.astyanax.*;
 import com.netflix.astyanax.clock.ClockType;
 import com.netflix.astyanax.connectionpool.Host;
@@ -45,6 +46,7 @@ import com.netflix.astyanax.connectionpool.HostStats;
 import com.netflix.astyanax.connectionpool.NodeDiscoveryType;
 import com.netflix.astyanax.connectionpool.OperationResult;
 import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
+import com.netflix.astyanax.connectionpool.exceptions.NotFoundException;
 import com.netflix.astyanax.connectionpool.impl.*;
 import com.netflix.astyanax.impl.AstyanaxConfigurationImpl;
 import com.netflix.astyanax.model.*;
@@ -56,6 +58,7 @@ import com.netflix.astyanax.thrift.ThriftFamilyFactory;
 import com.wizecommerce.hecuba.*;
 import com.wizecommerce.hecuba.util.ClientManagerUtils;
 import com.wizecommerce.hecuba.util.ConfigUtils;
+import com.wizecommerce.hecuba.util.Murmur3Tokens;
 
 
 /**
@@ -73,6 +76,10 @@ public class AstyanaxBasedHecubaClientManager<K> extends HecubaClientManager<K>
 	AstyanaxContext<Cluster> clusterContext;
 	Serializer<K> keySerializer;
 
+	// contexts by cluster, keyspace, hosts, port and user, see initialize().
+	private static final Map<String, SharedContext> sharedContexts = new HashMap<>();
+	private String sharedContextKey;
+
 	private Clock clock = ClockType.ASYNC_MICRO.get();
 
 	public AstyanaxBasedHecubaClientManager() {
@@ -97,16 +104,43 @@ public class AstyanaxBasedHecubaClientManager<K> extends HecubaClientManager<K>
 	}
 
 	public void initialize(String clusterName, String locationUrls, String port, String keyspaceName) {
-		astyanaxConfigurationImpl = new AstyanaxConfigurationImpl();
+		// the managers of the column families of a keyspace share its context, and so its connection pool.
+		final String key = Joiner.on('|').useForNull("").join(clusterName, keyspaceName, locationUrls, port, username);
+		synchronized (sharedContexts) {
+			if (sharedContextKey != null) {
+				releaseSharedContext();
+			}
+
+			SharedContext shared = sharedContexts.get(key);
+			if (shared == null) {
+				shared = createSharedContext(clusterName, locationUrls, port, keyspaceName);
+				sharedContexts.put(key, shared);
+			}
+			shared.users++;
+			sharedContextKey = key;
+
+			astyanaxConfigurationImpl = shared.astyanaxConfigurationImpl;
+			connectionPoolConfigurationImpl = shared.connectionPoolConfigurationImpl;
+			connectionPoolMonitor = shared.connectionPoolMonitor;
+			context = shared.context;
+			clusterContext = shared.clusterContext;
+			keyspace = context.getEntity();
+		}
+	}
+
+	private SharedContext createSharedContext(String clusterName, String locationUrls, String port,
+			String keyspaceName) {
+		final SharedContext shared = new SharedContext();
+		shared.astyanaxConfigurationImpl = new AstyanaxConfigurationImpl();
 		final Configuration configuration = ConfigUtils.getInstance().getConfiguration();
-		astyanaxConfigurationImpl.setDiscoveryType(NodeDiscoveryType.valueOf(configuration.getString(
+		shared.astyanaxConfigurationImpl.setDiscoveryType(NodeDiscoveryType.valueOf(configuration.getString(
 				HecubaConstants.ASTYANAX_NODE_DISCOVERY_TYPE, "RING_DESCRIBE")));
-		astyanaxConfigurationImpl.setConnectionPoolType(ConnectionPoolType.
+		shared.astyanaxConfigurationImpl.setConnectionPoolType(ConnectionPoolType.
 				valueOf(configuration.getString(
 						HecubaConstants.ASTYANAX_CONNECTION_POOL_TYPE,
 						"TOKEN_AWARE")));
 
-		connectionPoolConfigurationImpl = new ConnectionPoolConfigurationImpl("MyConnectionPool").setPort(
+		shared.connectionPoolConfigurationImpl = new ConnectionPoolConfigurationImpl("MyConnectionPool").setPort(
 				Integer.parseInt(port)).setSeeds(getListOfNodesAndPorts(locationUrls, port)).setMaxConnsPerHost(
 						configuration.getInteger(HecubaConstants.ASTYANAX_MAX_CONNS_PER_HOST, 3));
 
@@ -117,26 +151,34 @@ public class AstyanaxBasedHecubaClientManager<K> extends HecubaClientManager<K>
 				configuration.getInteger(HecubaConstants.ASTYANAX_LATENCY_AWARE_WINDOW_SIZE, 100),
 				configuration.getFloat(HecubaConstants.ASTYANAX_LATENCY_AWARE_BADNESS_INTERVAL, 0.5f));
 		// Enabled SMA. Omit this to use round robin with a token range.
-		connectionPoolConfigurationImpl.setLatencyScoreStrategy(smaLatencyScoreStrategyImpl);
+		shared.connectionPoolConfigurationImpl.setLatencyScoreStrategy(smaLatencyScoreStrategyImpl);
 
 		if(StringUtils.isNotBlank(username) && StringUtils.isNotBlank(password)) {
 
 			SimpleAuthenticationCredentials simpleAuth =new SimpleAuthenticationCredentials(username, password);
-			connectionPoolConfigurationImpl.setAuthenticationCredentials(simpleAuth);
+			shared.connectionPoolConfigurationImpl.setAuthenticationCredentials(simpleAuth);
 		}
 
-		connectionPoolMonitor = new CountingConnectionPoolMonitor();
-		context = new AstyanaxContext.Builder().forCluster(clusterName).forKeyspace(keyspaceName)
-				.withAstyanaxConfiguration(astyanaxConfigurationImpl)
-				.withConnectionPoolConfiguration(connectionPoolConfigurationImpl)
-				.withConnectionPoolMonitor(connectionPoolMonitor).buildKeyspace(
+		shared.connectionPoolMonitor = new CountingConnectionPoolMonitor();
+		shared.context = new AstyanaxContext.Builder().forCluster(clusterName).forKeyspace(keyspaceName)
+				.withAstyanaxConfiguration(shared.astyanaxConfigurationImpl)
+				.withConnectionPoolConfiguration(shared.connectionPoolConfigurationImpl)
+				.withConnectionPoolMonitor(shared.connectionPoolMonitor).buildKeyspace(
 						ThriftFamilyFactory.getInstance());
 
-		context.start();
-		keyspace = context.getEntity();
+		shared.context.start();
+		shared.clusterContext = initiateClusterContext(clusterName);
+		return shared;
+	}
 
-		if (clusterContext == null) {
-			initiateClusterContext(clusterName);
+	private void releaseSharedContext() {
+		final SharedContext shared = sharedContexts.get(sharedContextKey);
+		sharedContextKey = null;
+		if (shared != null && --shared.users == 0) {
+			sharedContexts.values().remove(shared);
+			shared.clusterContext.shutdown();
+			shared.context.shutdown();
+			shared.connectionPoolConfigurationImpl.shutdown();
 		}
 	}
 
@@ -154,6 +196,7 @@ public class AstyanaxBasedHecubaClientManager<K> extends HecubaClientManager<K>
 
 		try {
 			m.execute();
+			setIndexedValue(key, columnName, value);
 		} catch (ConnectionException e) {
 			log.error(ExceptionUtils.getStackTrace(e));
 		}
@@ -165,7 +208,7 @@ public class AstyanaxBasedHecubaClientManager<K> extends HecubaClientManager<K>
 		// index on it.
 		if (isSecondaryIndexByColumnNameAndValueEnabledForColumn(columnName)) {
 			// first retrieve the old value of this column to delete it from the secondary index.
-			final String oldValue = readString(key, columnName);
+			final String oldValue = getIndexedValue(key, columnName);
 			updateSecondaryIndexColumnFamily(key, columnName, value, ttl, mutationBatch, oldValue);
 		}
 
@@ -233,7 +276,7 @@ public class AstyanaxBasedHecubaClientManager<K> extends HecubaClientManager<K>
 			// we will set the ttls if defined, if we pass that as null so that internally it will NOT set the ttls.
 			final Integer ttl = ttls == null ? null : ttls.get(columnName);
 
-			String valueToInsert = ClientManagerUtils.getInstance().convertValueForStorage(value);
+			String valueToInsert = ClientManagerUtils.getInstance().convertValueForStorage(columnName, value);
 
 			// if timestamps are set, pass that on to the columnListMutation. The tricky thing here is once you set
 			// a timestamp that will be used from that point beyond. So if a timestamp is NOT defined at least for one
@@ -261,6 +304,10 @@ public class AstyanaxBasedHecubaClientManager<K> extends HecubaClientManager<K>
 			OperationResult<Void> result = m.execute();
 			log.debug("Row Inserted into Cassandra. Exec Time = " + result.getLatency() + ", Host used = " +
 					result.getHost().getHostName());
+
+			for (String columnName : row.keySet()) {
+				setIndexedValue(key, columnName, ClientManagerUtils.getInstance().convertValueForStorage(columnName, row.get(columnName)));
+			}
 		} catch (ConnectionException e) {
 			if (log.isDebugEnabled()) {
 				log.debug("HecubaClientManager error while updating key " + key.toString());
@@ -278,8 +325,12 @@ public class AstyanaxBasedHecubaClientManager<K> extends HecubaClientManager<K>
 
 	private Column<String> readColumn(K key, String columnName) {
 		try {
-			OperationResult<ColumnList<String>> result = keyspace.prepareQuery(columnFamily).getKey(key).execute();
-			return result.getResult().getColumnByName(columnName);
+			// Only fetch the column, rather than the whole row.
+			OperationResult<Column<String>> result = keyspace.prepareQuery(columnFamily).getKey(key).getColumn(
+					columnName).execute();
+			return result.getResult();
+		} catch (NotFoundException e) {
+			return null;
 		} catch (ConnectionException e) {
 			if (log.isDebugEnabled()) {
 				log.debug("HecubaClientManager error while reading key " + key.toString() + ". " +
@@ -422,10 +473,9 @@ public class AstyanaxBasedHecubaClientManager<K> extends HecubaClientManager<K>
 
 		// first check whether this is a column we have a seconday index on.
 		if (isSecondaryIndexByColumnNameAndValueEnabledForColumn(columnName)) {
-			final Column<String> oldColumn = readColumn(key, columnName);
-			if (oldColumn != null) {
-				m.withRow(secondaryIndexColumnFamily, getSecondaryIndexKey(columnName, oldColumn.getStringValue()))
-				.deleteColumn(key);
+			final String oldValue = getIndexedValue(key, columnName);
+			if (oldValue != null) {
+				m.withRow(secondaryIndexColumnFamily, getSecondaryIndexKey(columnName, oldValue)).deleteColumn(key);
 			}
 		}
 
@@ -438,6 +488,7 @@ public class AstyanaxBasedHecubaClientManager<K> extends HecubaClientManager<K>
 
 		try {
 			m.execute();
+			setIndexedValue(key, columnName, null);
 		} catch (ConnectionException e) {
 			log.error(ExceptionUtils.getStackTrace(e));
 		}
@@ -464,7 +515,7 @@ public class AstyanaxBasedHecubaClientManager<K> extends HecubaClientManager<K>
 
 				if (isSecondaryIndexesByColumnNamesEnabled) {
 					for (String columnName : oldValues.getColumnNames()) {
-						if (columnName.matches(secondaryIdxByColumnPattern)) {
+						if (isSecondaryIndexByColumnNameEnabledForColumn(columnName)) {
 							m.withRow(secondaryIndexColumnFamily, getSecondaryIndexKey(columnName, "")).setTimestamp(
 									timestamp).deleteColumn(key);
 						}
@@ -475,6 +526,7 @@ public class AstyanaxBasedHecubaClientManager<K> extends HecubaClientManager<K>
 			// now delete the main row.
 			m.withRow(columnFamily, key).setTimestamp(timestamp).delete();
 			m.execute();
+			invalidateIndexedValues(key);
 		} catch (ConnectionException e) {
 			log.error(ExceptionUtils.getStackTrace(e));
 		} catch (Exception e) {
@@ -521,6 +573,10 @@ public class AstyanaxBasedHecubaClientManager<K> extends HecubaClientManager<K>
 			Map<String, List<K>> keysMap = retrieveKeysFromSecondaryIndex(columnName, columnValues);
 
 			if (MapUtils.isNotEmpty(keysMap)) {
+				if (isIndexJoinEnabled()) {
+					return readAllColumnsByIndexJoin(Iterables.concat(keysMap.values()).iterator());
+				}
+
 				Set<K> keys = new HashSet<>();
 				for (List<K> keysForColValue : keysMap.values()) {
 					keys.addAll(keysForColValue);
@@ -555,6 +611,52 @@ public class AstyanaxBasedHecubaClientManager<K> extends HecubaClientManager<K>
 	}
 
 
+	@Override
+	public Map<K, String> readStrings(Set<K> keys, String columnName) throws Exception {
+		final OperationResult<Rows<K, String>> result = keyspace.prepareQuery(columnFamily).getKeySlice(keys)
+				.withColumnSlice(columnName).execute();
+		final Map<K, String> values = new HashMap<>();
+		for (Row<K, String> row : result.getResult()) {
+			final Column<String> column = row.getColumns().getColumnByName(columnName);
+			if (column != null) {
+				values.put(row.getKey(), column.getStringValue());
+			}
+		}
+		return values;
+	}
+
+	@Override
+	protected void scanRange(TokenRange range, int pageSize, RowScanCallback<K> callback) throws Exception {
+		final int columnCount = maxColumnCount > 0 ? maxColumnCount : Integer.MAX_VALUE;
+
+		// pages start after the token of the last row of the previous page, as Cassandra's own Hadoop input does.
+		long start = range.getStart();
+		while (start < range.getEnd()) {
+			final Rows<K, String> rows = keyspace.prepareQuery(columnFamily).getKeyRange(null, null,
+					Long.toString(start), Long.toString(range.getEnd()), pageSize)
+					.withColumnRange((String) null, (String) null, false, columnCount).execute().getResult();
+
+			for (Row<K, String> row : rows) {
+				start = Murmur3Tokens.getToken(keySerializer.toByteBuffer(row.getKey()));
+
+				// deleted rows are returned without columns until they are compacted away.
+				if (row.getColumns().isEmpty()) {
+					continue;
+				}
+
+				final Map<String, String> values = new LinkedHashMap<>();
+				for (Column<String> column : row.getColumns()) {
+					values.put(column.getName(), column.getStringValue());
+				}
+				callback.onRow(range, start, new CassandraMapResultSet<K, String>(row.getKey(), values));
+			}
+
+			if (rows.size() < pageSize) {
+				break;
+			}
+		}
+	}
+
 	@Override
 	public CassandraResultSet<K, String> readColumns(Set<K> keys, List<String> columnNames) throws Exception {
 		if (CollectionUtils.isNotEmpty(columnNames)) {
@@ -600,7 +702,7 @@ public class AstyanaxBasedHecubaClientManager<K> extends HecubaClientManager<K>
 		try {
 			final OperationResult<Rows<K, String>> rowSliceQueryResult = keyspace.prepareQuery(columnFamily)
 					.getKeySlice(keys).withColumnRange(
-							start, end, reversed, Integer.MAX_VALUE).execute();
+							start, end, reversed, maxColumnCount > 0 ? maxColumnCount : Integer.MAX_VALUE).execute();
 			return new AstyanaxResultSet<K, String>(rowSliceQueryResult);
 		} catch (ConnectionException e) {
 			log.warn("error while executing a row slice query ", e);
@@ -742,9 +844,21 @@ public class AstyanaxBasedHecubaClientManager<K> extends HecubaClientManager<K>
 
 	@Override
 	public void shutDown() {
-		clusterContext.shutdown();
-		context.shutdown();
-		connectionPoolConfigurationImpl.shutdown();
+		shutDownAsyncExecutor();
+		synchronized (sharedContexts) {
+			if (sharedContextKey != null) {
+				releaseSharedContext();
+			}
+		}
+	}
+
+	private static class SharedContext {
+		AstyanaxConfigurationImpl astyanaxConfigurationImpl;
+		ConnectionPoolConfigurationImpl connectionPoolConfigurationImpl;
+		CountingConnectionPoolMonitor connectionPoolMonitor;
+		AstyanaxContext<Keyspace> context;
+		AstyanaxContext<Cluster> clusterContext;
+		int users;
 	}
 
 }
@@ -80,6 +80,12 @@ public class AstyanaxResultSet<K, String> extends AbstractCassandraResultSet<K,
 		return "null".equalsIgnoreCase(value) ? null : value;
 	}
 
+	@Override
+	protected Object getRawValue(String fieldName) {
+		final Column<String> column = columns.getColumnByName(fieldName);
+		return column == null ? null : column.getByteBufferValue();
+	}
+
 	@Override
 	public byte[] getByteArray(String fieldName) {
 		if (hasColumn(fieldName.toString())) {
@@ -27,6 +27,26 @@ public class CompositeCassandraResultSet<K> extends AbstractCassandraResultSet<K
 		return current.getString(fieldName);
 	}
 
+	@Override
+	public long getLongValue(String fieldName, long defaultLong) {
+		return current.getLongValue(fieldName, defaultLong);
+	}
+
+	@Override
+	public int getIntValue(String fieldName, int defaultInt) {
+		return current.getIntValue(fieldName, defaultInt);
+	}
+
+	@Override
+	public double getDoubleValue(String fieldName, double defaultDouble) {
+		return current.getDoubleValue(fieldName, defaultDouble);
+	}
+
+	@Override
+	public boolean getBooleanValue(String fieldName, boolean defaultValue) {
+		return current.getBooleanValue(fieldName, defaultValue);
+	}
+
 	@Override
 	public byte[] getByteArray(String fieldName) {
 		return current.getByteArray(fieldName);
@@ -63,7 +83,7 @@ public class CompositeCassandraResultSet<K> extends AbstractCassandraResultSet<K
 
 	@Override
 	public boolean hasNextResult() {
-		if (current.hasNextResult()) {
+		if (onFirstResult || current.hasNextResult()) {
 			return true;
 		}
 		while (iterator.hasNext()) {
@@ -78,8 +98,10 @@ public class CompositeCassandraResultSet<K> extends AbstractCassandraResultSet<K
 
 	@Override
 	public void nextResult() {
-		if (!onFirstResult) {
+		if (onFirstResult) {
+			// hasNextResult already moved us onto the first result of the next delegate
 			onFirstResult = false;
+		} else {
 			current.nextResult();
 		}
 	}
@@ -1,7 +1,11 @@
 package com.wizecommerce.hecuba.datastax;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.concurrent.ThreadSafe;
@@ -11,8 +15,10 @@ import org.slf4j.LoggerFactory;
 
 import com.datastax.driver.core.Cluster;
 import com.datastax.driver.core.Cluster.Builder;
+import com.datastax.driver.core.ConsistencyLevel;
 import com.datastax.driver.core.HostDistance;
 import com.datastax.driver.core.PoolingOptions;
+import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.ProtocolOptions.Compression;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.SocketOptions;
@@ -21,13 +27,30 @@ import com.datastax.driver.core.policies.LatencyAwarePolicy;
 import com.datastax.driver.core.policies.LoadBalancingPolicy;
 import com.datastax.driver.core.policies.RoundRobinPolicy;
 import com.datastax.driver.core.policies.TokenAwarePolicy;
+import com.google.common.base.Objects;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.wizecommerce.hecuba.HecubaConstants;
 import com.wizecommerce.hecuba.datastax.SessionCachingKey.ClusterCachingKey;
+import com.wizecommerce.hecuba.util.ConfigUtils;
 
 /**
  * This class is to be used for internal purposes of hecuba client. This <b>singleton</b> implementation will
  * cache cluster and sessions according to datastax driver rules. i.e Use one Cluster instance per (physical)
  * cluster (per application lifetime). Use at most one Session per keyspace
  * 
+ * The statements prepared on a session are cached with it, so the managers of the column families of a keyspace
+ * share a single statement cache of {@link HecubaConstants#DATASTAX_STATEMENT_CACHE_MAX_SIZE} statements.
+ * 
  * @author anschauhan
  *
  */
@@ -35,9 +58,13 @@ import com.wizecommerce.hecuba.datastax.SessionCachingKey.ClusterCachingKey;
 public class DataStaxBasedSessionObjectFactory {
 
 	private static final Logger logger = LoggerFactory.getLogger(DataStaxBasedSessionObjectFactory.class);
-	final private Map<ClusterCachingKey, Cluster> clusterCache = new HashMap<>();
-	final private Map<SessionCachingKey, Session> sessionCache = new HashMap<>();
-	final private Map<SessionCachingKey, AtomicInteger> usersPerSession = new HashMap<>();
+	final private ConcurrentMap<ClusterCachingKey, Supplier<Cluster>> clusterCache = new ConcurrentHashMap<>();
+	final private ConcurrentMap<SessionCachingKey, SessionHandle> sessionCache = new ConcurrentHashMap<>();
+
+	// Sessions of different keyspaces are connected in parallel, without blocking the callers that find theirs
+	// already connected.
+	final private ExecutorService connectExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+			.setNameFormat("hecuba-session-connector-%d").setDaemon(true).build());
 
 	// Initializing egarly since its very light weight, until clusters and session are built. Guarantees
 	// thread safety.
@@ -58,117 +85,237 @@ public class DataStaxBasedSessionObjectFactory {
 	 * @return
 	 */
 	public Session getSession(SessionCachingKey key) {
-		Session session = sessionCache.get(key);
-		if (session == null) {
-			synchronized (sessionCache) {
-				// Double check locking
-				if (session == null) {
-					Cluster cluster = getCluster(key.getClusterKey());
-					session = cluster.connect(key.getKeySpace());
-					sessionCache.put(key, session);
-					usersPerSession.put(key, new AtomicInteger());
-					logger.info("New session created with properties: "+key);
+		final ListenableFuture<Session> session = getSessionAsync(key);
+		try {
+			return Uninterruptibles.getUninterruptibly(session);
+		} catch (ExecutionException e) {
+			throw Throwables.propagate(e.getCause());
+		}
+	}
+
+	/**
+	 * Same as {@link #getSession(SessionCachingKey)}, except the session is connected in the background if it is
+	 * not connected yet. Call returnSession() everytime the returned future succeeds.
+	 * 
+	 * @param key
+	 * @return
+	 */
+	public ListenableFuture<Session> getSessionAsync(final SessionCachingKey key) {
+		while (true) {
+			SessionHandle handle = sessionCache.get(key);
+			if (handle == null) {
+				final SessionHandle newHandle = new SessionHandle();
+				handle = sessionCache.putIfAbsent(key, newHandle);
+				if (handle == null) {
+					connectExecutor.execute(new Runnable() {
+						@Override
+						public void run() {
+							try {
+								final Session session = getCluster(key.getClusterKey()).connect(key.getKeySpace());
+								logger.info("New session created with properties: " + key);
+								newHandle.session.set(session);
+							} catch (Throwable t) {
+								// Let the next caller try again.
+								sessionCache.remove(key, newHandle);
+								newHandle.session.setException(t);
+							}
+						}
+					});
+					return newHandle.session;
 				}
 			}
+
+			if (handle.acquire()) {
+				return handle.session;
+			}
+			// The last user returned the session while we were getting it, so it's being closed.
+			sessionCache.remove(key, handle);
 		}
-		usersPerSession.get(key).incrementAndGet();
-		return session;
 	}
 
-	public void returnSession(SessionCachingKey key) {
-		int count = usersPerSession.get(key).decrementAndGet();
-		if (count <= 0) {
-			Session session = sessionCache.remove(key);
-			//Synchronize so we don't close already closed session.
-			synchronized (usersPerSession) {
-				if (session != null) {
-					session.close();
+	/**
+	 * @param key - key of a session which is in use, see {@link #getSession(SessionCachingKey)}.
+	 * 
+	 * @return the query prepared on the session, with the given consistency level and tracing.
+	 */
+	public PreparedStatement getPreparedStatement(SessionCachingKey key, String query,
+			ConsistencyLevel consistencyLevel, boolean tracingEnabled) {
+		final SessionHandle handle = sessionCache.get(key);
+		if (handle == null) {
+			throw new IllegalStateException("No session is in use for " + key);
+		}
+		return handle.statements.getUnchecked(new StatementCachingKey(query, consistencyLevel, tracingEnabled));
+	}
+
+	public void returnSession(final SessionCachingKey key) {
+		final SessionHandle handle = sessionCache.get(key);
+		if (handle != null && handle.release()) {
+			sessionCache.remove(key, handle);
+			// Only sessions that connected are returned, so this doesn't block.
+			Futures.getUnchecked(handle.session).closeAsync();
+			logger.info("Session closed with properties: " + key);
+		}
+	}
+
+	private Cluster getCluster(final ClusterCachingKey key) {
+		Supplier<Cluster> cluster = clusterCache.get(key);
+		if (cluster == null) {
+			// Memoized, so that only the supplier that makes it into the cache builds a cluster, and only once.
+			final Supplier<Cluster> newCluster = Suppliers.memoize(new Supplier<Cluster>() {
+				@Override
+				public Cluster get() {
+					return buildCluster(key);
 				}
+			});
+			cluster = clusterCache.putIfAbsent(key, newCluster);
+			if (cluster == null) {
+				cluster = newCluster;
 			}
 		}
+		return cluster.get();
 	}
 
-	private Cluster getCluster(ClusterCachingKey key) {
-		// No need of synchronizing here as getSession is already synchronized.
-		Cluster cluster = clusterCache.get(key);
-		if (cluster == null) {
-			synchronized (clusterCache) {
-				if (cluster == null) {
-					Map<String, Object> properties = key.getProperties();
-					LoadBalancingPolicy loadBalancingPolicy;
-					Object property = properties.get("dataCenter");
-					if (property != null) {
-						loadBalancingPolicy = new DCAwareRoundRobinPolicy((String) property);
-
-					} else {
-						loadBalancingPolicy = new RoundRobinPolicy();
-					}
-					loadBalancingPolicy = new TokenAwarePolicy(loadBalancingPolicy);
-					loadBalancingPolicy = LatencyAwarePolicy.builder(loadBalancingPolicy).build();
-
-					Builder builder = Cluster.builder().addContactPoints(key.getLocationUrls())
-							.withLoadBalancingPolicy(loadBalancingPolicy);
-
-					property = properties.get("port");
-					if (property != null) {
-						builder.withPort((Integer) property);
-					}
-
-					property = properties.get("username");
-					if (property != null) {
-						Object pass = properties.get("password");
-						if (pass != null) {
-							builder.withCredentials((String) property, (String) pass);
-						}
-					}
+	private Cluster buildCluster(ClusterCachingKey key) {
+		Map<String, Object> properties = key.getProperties();
+		LoadBalancingPolicy loadBalancingPolicy;
+		Object property = properties.get("dataCenter");
+		if (property != null) {
+			loadBalancingPolicy = new DCAwareRoundRobinPolicy((String) property);
 
-					property = properties.get("compressionEnabled");
-					if (property != null && (Boolean) property) {
+		} else {
+			loadBalancingPolicy = new RoundRobinPolicy();
+		}
+		loadBalancingPolicy = new TokenAwarePolicy(loadBalancingPolicy);
+		loadBalancingPolicy = LatencyAwarePolicy.builder(loadBalancingPolicy).build();
+		loadBalancingPolicy = new HedgingLoadBalancingPolicy(loadBalancingPolicy);
+
+		Builder builder = Cluster.builder().addContactPoints(key.getLocationUrls())
+				.withLoadBalancingPolicy(loadBalancingPolicy);
 
-						builder.withCompression(Compression.LZ4);
-					}
+		property = properties.get("port");
+		if (property != null) {
+			builder.withPort((Integer) property);
+		}
 
-					SocketOptions socketOptions = null;
-					property = properties.get("readTimeout");
-					if (property != null) {
-						socketOptions = new SocketOptions();
+		property = properties.get("username");
+		if (property != null) {
+			Object pass = properties.get("password");
+			if (pass != null) {
+				builder.withCredentials((String) property, (String) pass);
+			}
+		}
 
-						socketOptions.setReadTimeoutMillis((Integer) property);
-					}
+		property = properties.get("compressionEnabled");
+		if (property != null && (Boolean) property) {
 
-					property = properties.get("connectTimeout");
-					if (property != null) {
-						if (socketOptions == null) {
-							socketOptions = new SocketOptions();
-						}
-						socketOptions.setConnectTimeoutMillis((Integer) property);
-
-					}
-
-					if (socketOptions != null) {
-						builder.withSocketOptions(socketOptions);
-					}
-
-					PoolingOptions poolingOptions = null;
-					property = properties.get("maxConnectionsPerHost");
-					if (property != null) {
-						poolingOptions = new PoolingOptions();
-						Integer maxConnectionsPerHost = (Integer) property;
-						poolingOptions.setMaxConnectionsPerHost(HostDistance.REMOTE, maxConnectionsPerHost);
-						poolingOptions.setMaxConnectionsPerHost(HostDistance.LOCAL, maxConnectionsPerHost);
-					}
-
-					if (poolingOptions != null) {
-						builder.withPoolingOptions(poolingOptions);
-					}
-
-					cluster = builder.build();
-					clusterCache.put(key, cluster);
-					logger.info("New cluster created with properties: "+key);
-				}
+			builder.withCompression(Compression.LZ4);
+		}
+
+		SocketOptions socketOptions = null;
+		property = properties.get("readTimeout");
+		if (property != null) {
+			socketOptions = new SocketOptions();
+
+			socketOptions.setReadTimeoutMillis((Integer) property);
+		}
+
+		property = properties.get("connectTimeout");
+		if (property != null) {
+			if (socketOptions == null) {
+				socketOptions = new SocketOptions();
 			}
+			socketOptions.setConnectTimeoutMillis((Integer) property);
+
+		}
+
+		if (socketOptions != null) {
+			builder.withSocketOptions(socketOptions);
+		}
+
+		PoolingOptions poolingOptions = null;
+		property = properties.get("maxConnectionsPerHost");
+		if (property != null) {
+			poolingOptions = new PoolingOptions();
+			Integer maxConnectionsPerHost = (Integer) property;
+			poolingOptions.setMaxConnectionsPerHost(HostDistance.REMOTE, maxConnectionsPerHost);
+			poolingOptions.setMaxConnectionsPerHost(HostDistance.LOCAL, maxConnectionsPerHost);
 		}
+
+		if (poolingOptions != null) {
+			builder.withPoolingOptions(poolingOptions);
+		}
+
+		Cluster cluster = builder.build();
+		logger.info("New cluster created with properties: "+key);
 		return cluster;
 	}
 
+	/**
+	 * A session with the number of its users. Once that drops to 0 the session is closed and can't be acquired any
+	 * more.
+	 */
+	private static class SessionHandle {
+		final SettableFuture<Session> session = SettableFuture.create();
+		final AtomicInteger users = new AtomicInteger(1);
+		final LoadingCache<StatementCachingKey, PreparedStatement> statements = CacheBuilder.newBuilder().maximumSize(
+				ConfigUtils.getInstance().getConfiguration().getInt(HecubaConstants.DATASTAX_STATEMENT_CACHE_MAX_SIZE,
+						1000)).build(new CacheLoader<StatementCachingKey, PreparedStatement>() {
+			@Override
+			public PreparedStatement load(StatementCachingKey key) throws Exception {
+				// statements are only prepared by the users of a connected session.
+				PreparedStatement stmt = Futures.getUnchecked(session).prepare(key.query);
+				stmt.setConsistencyLevel(key.consistencyLevel);
+				if (key.tracingEnabled) {
+					stmt.enableTracing();
+				}
+				return stmt;
+			}
+		});
+
+		boolean acquire() {
+			while (true) {
+				final int count = users.get();
+				if (count <= 0) {
+					return false;
+				}
+				if (users.compareAndSet(count, count + 1)) {
+					return true;
+				}
+			}
+		}
+
+		/**
+		 * @return whether this was the last user.
+		 */
+		boolean release() {
+			return users.decrementAndGet() == 0;
+		}
+	}
+
+	private static class StatementCachingKey {
+		final String query;
+		final ConsistencyLevel consistencyLevel;
+		final boolean tracingEnabled;
+
+		StatementCachingKey(String query, ConsistencyLevel consistencyLevel, boolean tracingEnabled) {
+			this.query = query;
+			this.consistencyLevel = consistencyLevel;
+			this.tracingEnabled = tracingEnabled;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(query, consistencyLevel, tracingEnabled);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof StatementCachingKey)) {
+				return false;
+			}
+			final StatementCachingKey other = (StatementCachingKey) obj;
+			return query.equals(other.query) && consistencyLevel == other.consistencyLevel
+					&& tracingEnabled == other.tracingEnabled;
+		}
+	}
 }
@@ -5,9 +5,13 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
@@ -21,6 +25,7 @@ import org.joda.time.format.ISODateTimeFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.datastax.driver.core.BatchStatement;
 import com.datastax.driver.core.BoundStatement;
 import com.datastax.driver.core.ConsistencyLevel;
 import com.datastax.driver.core.DataType;
@@ -28,31 +33,43 @@ import com.datastax.driver.core.DataType.Name;
 import com.datastax.driver.core.ExecutionInfo;
 import com.datastax.driver.core.Host;
 import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.Metadata;
 import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.QueryTrace;
 import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
 import com.datastax.driver.core.TableMetadata;
+import com.google.common.base.Function;
 import com.google.common.base.Splitter;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.wizecommerce.hecuba.AsyncSecondaryIndexWriter;
 import com.wizecommerce.hecuba.CassandraColumn;
 import com.wizecommerce.hecuba.CassandraParamsBean;
 import com.wizecommerce.hecuba.CassandraResultSet;
 import com.wizecommerce.hecuba.HecubaClientManager;
 import com.wizecommerce.hecuba.HecubaConstants;
+import com.wizecommerce.hecuba.RowScanCallback;
+import com.wizecommerce.hecuba.TokenRange;
+import com.wizecommerce.hecuba.datastax.DataStaxStatementTemplates.Template;
 import com.wizecommerce.hecuba.util.ClientManagerUtils;
 import com.wizecommerce.hecuba.util.ConfigUtils;
+import com.wizecommerce.hecuba.util.Murmur3Tokens;
 
 public class DataStaxBasedSharedHecubaClientManager<K> extends HecubaClientManager<K> {
 	private static final Logger logger = LoggerFactory.getLogger(DataStaxBasedHecubaClientManager.class);
-	private static final Configuration configuration = ConfigUtils.getInstance().getConfiguration();
-	private static final int statementCacheMaxSize = configuration.getInt(
-			HecubaConstants.DATASTAX_STATEMENT_CACHE_MAX_SIZE, 1000);
 	private static final DateTimeFormatter DATE_FORMATTER = ISODateTimeFormat.hourMinuteSecondMillis();
 
 	private DataType keyType;
@@ -63,44 +80,25 @@ public class DataStaxBasedSharedHecubaClientManager<K> extends HecubaClientManag
 	private ConsistencyLevel readConsistencyLevel;
 	private ConsistencyLevel writeConsistencyLevel;
 
-	private int statementFetchSize;
+	// rows fetched per page. Result sets fetch the following pages as they are iterated, so this bounds the memory an
+	// open result set takes; zero or less fetches everything at once.
+	private int statementFetchSize = 5000;
+	private int multiGetChunkSize;
+	private int multiGetParallelism;
 
 	private boolean tracingEnabled;
 
 	private Session session;
+	// null if the load balancing policy of the cluster does not hedge.
+	private HedgingLoadBalancingPolicy hedgingPolicy;
+	// set while a hedge is being sent, see sendHedge.
+	private final ThreadLocal<Boolean> sendingHedge = new ThreadLocal<>();
 
 	private String keyColumn;
 	private String secondaryIndexKeyColumn;
-	private SessionCachingKey sessionKey;
 
-	// We'll let each column family cache its own prepared statements. Some queries might be rebuilt when
-	// there are multiple threads running but caching these statements per session might be an overkill as it
-	// shares many properties that we may required per column family like cacheSize, consistencyLeve,
-	// tracingEnabled.
-	private LoadingCache<String, PreparedStatement> readStatementCache = CacheBuilder.newBuilder()
-			.maximumSize(statementCacheMaxSize).build(new CacheLoader<String, PreparedStatement>() {
-				@Override
-				public PreparedStatement load(String query) throws Exception {
-					PreparedStatement stmt = session.prepare(query);
-					stmt.setConsistencyLevel(readConsistencyLevel);
-					if (tracingEnabled) {
-						stmt.enableTracing();
-					}
-					return stmt;
-				}
-			});
-	private LoadingCache<String, PreparedStatement> writeStatementCache = CacheBuilder.newBuilder()
-			.maximumSize(statementCacheMaxSize).build(new CacheLoader<String, PreparedStatement>() {
-				@Override
-				public PreparedStatement load(String query) throws Exception {
-					PreparedStatement stmt = session.prepare(query);
-					stmt.setConsistencyLevel(writeConsistencyLevel);
-					if (tracingEnabled) {
-						stmt.enableTracing();
-					}
-					return stmt;
-				}
-			});
+	private DataStaxStatementTemplates templates;
+	private SessionCachingKey sessionKey;
 
 	public DataStaxBasedSharedHecubaClientManager(CassandraParamsBean parameters, DataType keyType) {
 		super(parameters);
@@ -162,14 +160,29 @@ public class DataStaxBasedSharedHecubaClientManager<K> extends HecubaClientManag
 		tracingEnabled = configuration.getBoolean(HecubaConstants.DATASTAX_TRACING_ENABLED, tracingEnabled);
 		statementFetchSize = configuration.getInteger(HecubaConstants.DATASTAX_STATEMENT_FETCH_SIZE,
 				statementFetchSize);
+		multiGetChunkSize = configuration.getInt(HecubaConstants.DATASTAX_MULTIGET_CHUNK_SIZE, 0);
+		multiGetParallelism = configuration.getInt(HecubaConstants.DATASTAX_MULTIGET_PARALLELISM, 16);
 
 		key.setClusterProperties(sessionProperties);
 		session = DataStaxBasedSessionObjectFactory.getInstance().getSession(key);
+		hedgingPolicy = HedgingLoadBalancingPolicy.of(session.getCluster());
+		sessionKey = key;
 
 		keyColumn = getKeyColumn(columnFamily);
 
 		secondaryIndexKeyColumn = getKeyColumn(secondaryIndexColumnFamily);
 
+		templates = new DataStaxStatementTemplates(session, columnFamily, keyColumn, secondaryIndexColumnFamily,
+				secondaryIndexKeyColumn, readConsistencyLevel, writeConsistencyLevel, tracingEnabled);
+
+		secondaryIndexWriter = createSecondaryIndexWriter(parameters.getColumnFamily(),
+				new AsyncSecondaryIndexWriter.BatchWriter<K>() {
+					@Override
+					public void write(List<AsyncSecondaryIndexWriter.IndexMutation<K>> mutations) {
+						writeSecondaryIndexes(mutations);
+					}
+				});
+
 		logger.info("{}", ToStringBuilder.reflectionToString(this));
 	}
 
@@ -215,65 +228,44 @@ public class DataStaxBasedSharedHecubaClientManager<K> extends HecubaClientManag
 
 	@Override
 	public void deleteColumn(K key, String columnName) {
-		StringBuilder builder = new StringBuilder();
-		List<Object> values = new ArrayList<>();
-
-		builder.append("BEGIN UNLOGGED BATCH\n");
+		BatchStatement batch = newBatch();
 
 		if (isSecondaryIndexByColumnNameEnabledForColumn(columnName)) {
-			builder.append("\tDELETE FROM " + secondaryIndexColumnFamily + " where "
-					+ secondaryIndexKeyColumn + " = ? and column1 = ?;\n");
-			values.add(getSecondaryIndexKey(columnName, ""));
-			values.add(convertKey(key));
+			deleteSecondaryIndex(batch, getSecondaryIndexKey(columnName, ""), key, -1);
 		}
 
 		if (isSecondaryIndexByColumnNameAndValueEnabledForColumn(columnName)) {
-			String oldValue = readString(key, columnName);
-			builder.append("\tDELETE FROM " + secondaryIndexColumnFamily + " where "
-					+ secondaryIndexKeyColumn + " = ? and column1 = ?;\n");
-			values.add(getSecondaryIndexKey(columnName, oldValue));
-			values.add(convertKey(key));
+			String oldValue = getIndexedValue(key, columnName);
+			deleteSecondaryIndex(batch, getSecondaryIndexKey(columnName, oldValue), key, -1);
 		}
 
-		builder.append("\tDELETE FROM " + columnFamily + " WHERE " + keyColumn + " = ? and column1 = ?;\n");
-		values.add(convertKey(key));
-		values.add(columnName);
+		batch.add(templates.get(Template.DELETE_COLUMN).bind(convertKey(key), columnName));
 
-		builder.append("APPLY BATCH;");
-
-		write(builder.toString(), values.toArray());
+		write(batch);
+		setIndexedValue(key, columnName, null);
 	}
 
 	@Override
 	public void deleteColumns(K key, List<String> columnNames) {
-		StringBuilder builder = new StringBuilder();
-		List<Object> values = new ArrayList<>();
-
-		builder.append("BEGIN UNLOGGED BATCH\n");
+		BatchStatement batch = newBatch();
 
 		try {
 			if (isSecondaryIndexByColumnNameAndValueEnabled || isSecondaryIndexesByColumnNamesEnabled) {
 				// Find obsolete secondary indexes
-				CassandraResultSet<K, String> oldValues = readColumns(key, columnNames);
+				Map<String, String> oldValues = getIndexedValues(key, getColumnsIndexedByNameAndValue(columnNames));
 				List<String> secondaryIndexesToDelete = new ArrayList<>();
 				for (String columnName : columnNames) {
 					if (isSecondaryIndexByColumnNameEnabledForColumn(columnName)) {
 						secondaryIndexesToDelete.add(getSecondaryIndexKey(columnName, ""));
 					}
 					if (isSecondaryIndexByColumnNameAndValueEnabledForColumn(columnName)) {
-						secondaryIndexesToDelete.add(getSecondaryIndexKey(columnName,
-								oldValues.getString(columnName)));
+						secondaryIndexesToDelete.add(getSecondaryIndexKey(columnName, oldValues.get(columnName)));
 					}
 				}
 
 				// Delete obsolete secondary indexes
-				if (secondaryIndexesToDelete.size() > 0) {
-					for (String secondaryIndexKey : secondaryIndexesToDelete) {
-						builder.append("\tDELETE FROM " + secondaryIndexColumnFamily + " WHERE "
-								+ secondaryIndexKeyColumn + " = ? and column1 = ?;\n");
-						values.add(secondaryIndexKey);
-						values.add(convertKey(key));
-					}
+				for (String secondaryIndexKey : secondaryIndexesToDelete) {
+					deleteSecondaryIndex(batch, secondaryIndexKey, key, -1);
 				}
 			}
 
@@ -281,24 +273,20 @@ public class DataStaxBasedSharedHecubaClientManager<K> extends HecubaClientManag
 			throw new RuntimeException(e);
 		}
 
+		PreparedStatement deleteColumn = templates.get(Template.DELETE_COLUMN);
 		for (String columnName : columnNames) {
-			builder.append("\tDELETE FROM " + columnFamily + " where " + keyColumn
-					+ " = ? and column1 = ?;\n");
-			values.add(convertKey(key));
-			values.add(columnName);
+			batch.add(deleteColumn.bind(convertKey(key), columnName));
 		}
 
-		builder.append("APPLY BATCH;");
-
-		write(builder.toString(), values.toArray());
+		write(batch);
+		for (String columnName : columnNames) {
+			setIndexedValue(key, columnName, null);
+		}
 	}
 
 	@Override
 	public void deleteRow(K key, long timestamp) {
-		StringBuilder builder = new StringBuilder();
-		List<Object> values = new ArrayList<>();
-
-		builder.append("BEGIN UNLOGGED BATCH\n");
+		BatchStatement batch = newBatch();
 
 		if (isSecondaryIndexByColumnNameAndValueEnabled || isSecondaryIndexesByColumnNamesEnabled) {
 			try {
@@ -311,52 +299,33 @@ public class DataStaxBasedSharedHecubaClientManager<K> extends HecubaClientManag
 							secondaryIndexesToDelete.add(getSecondaryIndexKey(columnName, ""));
 						}
 						if (isSecondaryIndexByColumnNameAndValueEnabledForColumn(columnName)) {
-							secondaryIndexesToDelete.add(getSecondaryIndexKey(columnName,
-									oldValues.getString(columnName)));
+							secondaryIndexesToDelete.add(getSecondaryIndexKey(columnName, oldValues.getString(columnName)));
 						}
 					}
 				}
 
 				// Delete obsolete secondary indexes
-				if (secondaryIndexesToDelete.size() > 0) {
-					for (String secondaryIndexKey : secondaryIndexesToDelete) {
-						builder.append("\tDELETE FROM " + secondaryIndexColumnFamily);
-
-						if (timestamp > 0) {
-							builder.append(" USING TIMESTAMP ?");
-							values.add(timestamp);
-						}
-
-						builder.append(" WHERE " + secondaryIndexKeyColumn + " = ? and column1 = ?;\n");
-						values.add(secondaryIndexKey);
-						values.add(convertKey(key));
-					}
+				for (String secondaryIndexKey : secondaryIndexesToDelete) {
+					deleteSecondaryIndex(batch, secondaryIndexKey, key, timestamp);
 				}
 			} catch (Exception e) {
 				throw new RuntimeException(e);
 			}
 		}
 
-		builder.append("\tDELETE FROM " + columnFamily);
-
 		if (timestamp > 0) {
-			builder.append(" USING TIMESTAMP ?");
-			values.add(timestamp);
+			batch.add(templates.get(Template.DELETE_ROW_USING_TIMESTAMP).bind(timestamp, convertKey(key)));
+		} else {
+			batch.add(templates.get(Template.DELETE_ROW).bind(convertKey(key)));
 		}
 
-		builder.append(" WHERE " + keyColumn + " = ?;\n");
-		values.add(convertKey(key));
-
-		builder.append("APPLY BATCH;");
-
-		write(builder.toString(), values.toArray());
+		write(batch);
+		invalidateIndexedValues(key);
 	}
 
 	@Override
 	public Long getCounterValue(K key, String counterColumnName) {
-		final String query = "select * from " + columnFamily + " where " + keyColumn + " = ? and column1 = ?";
-
-		CassandraResultSet<K, String> result = read(query, null, null,
+		CassandraResultSet<K, String> result = read(templates.get(Template.READ_COLUMN), null, null,
 				ImmutableMap.of(counterColumnName, DataType.counter()), convertKey(key), counterColumnName);
 
 		if (result.hasResults()) {
@@ -368,16 +337,7 @@ public class DataStaxBasedSharedHecubaClientManager<K> extends HecubaClientManag
 
 	@Override
 	public void updateCounter(K key, String counterColumnName, long value) {
-		StringBuilder builder = new StringBuilder();
-		List<Object> values = new ArrayList<>();
-
-		builder.append("UPDATE " + columnFamily + " set value = value + ? where " + keyColumn
-				+ " = ? and column1 = ?");
-		values.add(value);
-		values.add(convertKey(key));
-		values.add(counterColumnName);
-
-		write(builder.toString(), values.toArray());
+		write(templates.get(Template.UPDATE_COUNTER), value, convertKey(key), counterColumnName);
 	}
 
 	@Override
@@ -392,17 +352,16 @@ public class DataStaxBasedSharedHecubaClientManager<K> extends HecubaClientManag
 
 	@Override
 	public CassandraResultSet<K, String> readAllColumns(K key) throws Exception {
-		final String query = "select * from " + columnFamily + " where " + keyColumn + " = ?";
-
-		return read(query, convertKey(key));
+		return read(templates.get(Template.READ_ROW), convertKey(key));
 	}
 
 	@Override
 	public CassandraResultSet<K, String> readAllColumns(Set<K> keys) throws Exception {
-		final String query = "select * from " + columnFamily + " where " + keyColumn + " in ?";
-
-		return read(query, convertKeys(keys));
+		if (isMultiGetByReplica(keys)) {
+			return toResultSet(readByReplica(templates.get(Template.READ_ROWS), keys));
+		}
 
+		return read(templates.get(Template.READ_ROWS), convertKeys(keys));
 	}
 
 	@Override
@@ -430,12 +389,7 @@ public class DataStaxBasedSharedHecubaClientManager<K> extends HecubaClientManag
 
 	@Override
 	public CassandraColumn readColumnInfo(K key, String columnName) {
-		final String query = "select " + keyColumn + ", column1, value, writetime(value), ttl(value) from "
-				+ columnFamily + " where " + keyColumn + " = ? and column1 = ?";
-
-		PreparedStatement stmt = readStatementCache.getUnchecked(query);
-
-		BoundStatement bind = stmt.bind(convertKey(key), columnName);
+		BoundStatement bind = templates.get(Template.READ_COLUMN_INFO).bind(convertKey(key), columnName);
 		ResultSet rs = session.execute(bind);
 
 		Iterator<Row> iterator = rs.iterator();
@@ -456,12 +410,7 @@ public class DataStaxBasedSharedHecubaClientManager<K> extends HecubaClientManag
 			return readAllColumns(key);
 		}
 
-		final String query = "select * from " + columnFamily + " where " + keyColumn
-				+ " = ? and column1 in ?";
-
-		CassandraResultSet<K, String> result = read(query, convertKey(key), columnNames);
-
-		return result;
+		return read(templates.get(Template.READ_COLUMNS), convertKey(key), columnNames);
 	}
 
 	@Override
@@ -470,83 +419,52 @@ public class DataStaxBasedSharedHecubaClientManager<K> extends HecubaClientManag
 			return readAllColumns(keys);
 		}
 
-		final String query = "select * from " + columnFamily + " where " + keyColumn
-				+ " in ? and column1 in ?";
-
-		CassandraResultSet<K, String> result = read(query, convertKeys(keys), columnNames);
+		if (isMultiGetByReplica(keys)) {
+			return toResultSet(readByReplica(templates.get(Template.READ_ROWS_COLUMNS), keys, columnNames));
+		}
 
-		return result;
+		return read(templates.get(Template.READ_ROWS_COLUMNS), convertKeys(keys), columnNames);
 	}
 
 	@Override
-	public CassandraResultSet<K, String> readColumnSlice(K key, String start, String end, boolean reversed,
-			int count) {
-		List<Object> values = new ArrayList<>();
-		StringBuilder builder = new StringBuilder();
-		builder.append("select * from " + columnFamily + " where " + keyColumn + " = ?");
+	public CassandraResultSet<K, String> readColumnSlice(K key, String start, String end, boolean reversed, int count) {
+		List<Object> values = new ArrayList<>(4);
 		values.add(convertKey(key));
 
 		if (start != null) {
-			if (reversed) {
-				builder.append(" and column1 <= ?");
-			} else {
-				builder.append(" and column1 >= ?");
-			}
 			values.add(start);
 		}
 
 		if (end != null) {
-			if (reversed) {
-				builder.append(" and column1 >= ?");
-			} else {
-				builder.append(" and column1 <= ?");
-			}
 			values.add(end);
 		}
 
-		if (reversed) {
-			builder.append(" order by column1 desc");
-		}
-
 		if (count > 0) {
-			builder.append(" limit ?");
 			values.add(count);
 		}
 
-		return read(builder.toString(), values.toArray());
+		PreparedStatement stmt = templates.getSlice(false, start != null, end != null, reversed, count > 0);
+		return read(stmt, values.toArray());
 	}
 
 	@Override
-	public CassandraResultSet<K, String> readColumnSlice(Set<K> keys, String start, String end,
-			boolean reversed) {
-		// CQL3 does not support column slice count limit anymore (they used to have FIRST N), so removing
-		// support for "count"
+	public CassandraResultSet<K, String> readColumnSlice(Set<K> keys, String start, String end, boolean reversed) {
+		// CQL3 does not support column slice count limit anymore (they used to have FIRST N), so removing support for "count"
 
-		List<Object> values = new ArrayList<>();
-		StringBuilder builder = new StringBuilder();
-		builder.append("select * from " + columnFamily + " where " + keyColumn + " in ?");
+		List<Object> values = new ArrayList<>(3);
 		values.add(convertKeys(keys));
 
 		if (start != null) {
-			if (reversed) {
-				builder.append(" and column1 <= ?");
-			} else {
-				builder.append(" and column1 >= ?");
-			}
 			values.add(start);
 		}
 
 		if (end != null) {
-			if (reversed) {
-				builder.append(" and column1 >= ?");
-			} else {
-				builder.append(" and column1 <= ?");
-			}
 			values.add(end);
 		}
 
 		// If reversed we'll just reverse internally, since Cassandra doesn't preserve key order
-		CassandraResultSet<K, String> resultSet = read(builder.toString(), values.toArray());
+		PreparedStatement stmt = templates.getSlice(true, start != null, end != null, reversed, false);
+		CassandraResultSet<K, String> resultSet = read(stmt, values.toArray());
 		if (reversed) {
 			resultSet = new ReversedColumnsCassandraResultSet<>(resultSet);
 		}
@@ -556,9 +474,7 @@ public class DataStaxBasedSharedHecubaClientManager<K> extends HecubaClientManag
 
 	@Override
 	public String readString(K key, String columnName) {
-		final String query = "select * from " + columnFamily + " where " + keyColumn + " = ? and column1 = ?";
-
-		CassandraResultSet<K, String> result = read(query, convertKey(key), columnName);
+		CassandraResultSet<K, String> result = read(templates.get(Template.READ_COLUMN), convertKey(key), columnName);
 
 		if (result.hasResults()) {
 			return result.getString(columnName);
@@ -586,6 +502,17 @@ public class DataStaxBasedSharedHecubaClientManager<K> extends HecubaClientManag
 	@Override
 	public CassandraResultSet<K, String>
 			retrieveBySecondaryIndex(String columnName, List<String> columnValue) {
+		if (isIndexJoinEnabled()) {
+			Set<String> secondaryIndexKeys = new LinkedHashSet<>();
+			for (String value : columnValue) {
+				secondaryIndexKeys.add(getSecondaryIndexKey(columnName, value));
+			}
+
+			CassandraResultSet<K, String> keysResultSet = read(templates.get(Template.READ_SECONDARY_INDEXES),
+					DataType.ascii(), keyType, ImmutableMap.of("*", keyType), new ArrayList<>(secondaryIndexKeys));
+			return readAllColumnsBySecondaryIndex(keysResultSet);
+		}
+
 		Map<String, List<K>> columnValueToKeysMap = retrieveKeysBySecondaryIndex(columnName, columnValue);
 		if (MapUtils.isNotEmpty(columnValueToKeysMap)) {
 			Set<K> keys = new HashSet<>();
@@ -607,6 +534,13 @@ public class DataStaxBasedSharedHecubaClientManager<K> extends HecubaClientManag
 
 	@Override
 	public CassandraResultSet<K, String> retrieveBySecondaryIndex(String columnName, String columnValue) {
+		if (isIndexJoinEnabled()) {
+			CassandraResultSet<K, String> keysResultSet = read(templates.get(Template.READ_SECONDARY_INDEX),
+					DataType.ascii(), keyType, ImmutableMap.of("*", keyType), getSecondaryIndexKey(columnName,
+							columnValue));
+			return readAllColumnsBySecondaryIndex(keysResultSet);
+		}
+
 		List<K> keys = retrieveKeysBySecondaryIndex(columnName, columnValue);
 
 		if (CollectionUtils.isNotEmpty(keys)) {
@@ -623,6 +557,40 @@ public class DataStaxBasedSharedHecubaClientManager<K> extends HecubaClientManag
 		return null;
 	}
 
+	/**
+	 * Reads the rows of the keys in the given secondary index rows while the index rows are still being paged in.
+	 *
+	 * @return the rows, null if there are none.
+	 */
+	private CassandraResultSet<K, String> readAllColumnsBySecondaryIndex(final CassandraResultSet<K, String> keysResultSet) {
+		Iterator<K> keys = new AbstractIterator<K>() {
+			private Iterator<String> row = keysResultSet.hasResults() ? keysResultSet.getColumnNames().iterator()
+					: Iterators.<String> emptyIterator();
+
+			@SuppressWarnings("unchecked")
+			@Override
+			protected K computeNext() {
+				while (!row.hasNext()) {
+					if (!keysResultSet.hasNextResult()) {
+						return endOfData();
+					}
+					keysResultSet.nextResult();
+					row = keysResultSet.getColumnNames().iterator();
+				}
+
+				String key = row.next();
+				return keyType == DataType.bigint() ? (K) NumberUtils.createLong(key) : (K) key;
+			}
+		};
+
+		try {
+			CassandraResultSet<K, String> allColumns = readAllColumnsByIndexJoin(keys);
+			return allColumns.hasResults() ? allColumns : null;
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	@Override
 	public List<K> retrieveKeysByColumnNameBasedSecondaryIndex(String columnName) {
 		return retrieveKeysBySecondaryIndex(columnName, (String) null);
@@ -631,17 +599,14 @@ public class DataStaxBasedSharedHecubaClientManager<K> extends HecubaClientManag
 	@SuppressWarnings("unchecked")
 	@Override
 	public Map<String, List<K>> retrieveKeysBySecondaryIndex(String columnName, List<String> columnValues) {
-		final String query = "select * from " + secondaryIndexColumnFamily + " where "
-				+ secondaryIndexKeyColumn + " in ?";
-
 		Map<String, String> secondaryIndexKeys = new HashMap<>();
 		for (String columnValue : columnValues) {
 			secondaryIndexKeys.put(getSecondaryIndexKey(columnName, columnValue), columnValue);
 		}
 
 		Map<String, List<K>> mapToKeys = new HashMap<>();
-		CassandraResultSet<K, String> keysResultSet = read(query, DataType.ascii(), keyType,
-				ImmutableMap.of("*", keyType), new ArrayList<>(secondaryIndexKeys.keySet()));
+		CassandraResultSet<K, String> keysResultSet = read(templates.get(Template.READ_SECONDARY_INDEXES), DataType.ascii(),
+				keyType, ImmutableMap.of("*", keyType), new ArrayList<>(secondaryIndexKeys.keySet()));
 		while (keysResultSet.hasResults()) {
 			List<K> keys = new ArrayList<>();
 			for (String key : keysResultSet.getColumnNames()) {
@@ -671,10 +636,8 @@ public class DataStaxBasedSharedHecubaClientManager<K> extends HecubaClientManag
 	@SuppressWarnings("unchecked")
 	@Override
 	public List<K> retrieveKeysBySecondaryIndex(String columnName, String columnValue) {
-		final String query = "select * from " + secondaryIndexColumnFamily + " where "
-				+ secondaryIndexKeyColumn + " = ?";
-		CassandraResultSet<K, String> keysResultSet = read(query, DataType.ascii(), keyType,
-				ImmutableMap.of("*", keyType), getSecondaryIndexKey(columnName, columnValue));
+		CassandraResultSet<K, String> keysResultSet = read(templates.get(Template.READ_SECONDARY_INDEX), DataType.ascii(),
+				keyType, ImmutableMap.of("*", keyType), getSecondaryIndexKey(columnName, columnValue));
 		List<K> keys = new ArrayList<>();
 		if (keysResultSet.hasResults()) {
 			for (String key : keysResultSet.getColumnNames()) {
@@ -693,83 +656,170 @@ public class DataStaxBasedSharedHecubaClientManager<K> extends HecubaClientManag
 
 	@Override
 	public void updateByteBuffer(K key, String columnName, ByteBuffer value) {
-		StringBuilder builder = new StringBuilder();
-		List<Object> values = new ArrayList<>();
-
-		builder.append("INSERT INTO " + columnFamily + " (" + keyColumn + ", column1, value) values (?,?,?)");
-		values.add(convertKey(key));
-		values.add(columnName);
-		values.add(value);
-
-		write(builder.toString(), values.toArray());
+		write(templates.get(Template.INSERT), convertKey(key), columnName, value);
 	}
 
 	@Override
-	public void updateRow(K key, Map<String, Object> row, Map<String, Long> timestamps,
-			Map<String, Integer> ttls) throws Exception {
-		StringBuilder builder = new StringBuilder();
-		List<Object> values = new ArrayList<>();
-
+	public void updateRow(K key, Map<String, Object> row, Map<String, Long> timestamps, Map<String, Integer> ttls) throws Exception {
 		updateSecondaryIndexes(key, row, timestamps, ttls);
 
-		builder.append("BEGIN UNLOGGED BATCH\n");
+		BatchStatement batch = newBatch();
 
 		for (Map.Entry<String, Object> entry : row.entrySet()) {
-			builder.append("\tINSERT INTO " + columnFamily + " (" + keyColumn
-					+ ", column1, value) values (?,?,?)");
-			values.add(convertKey(key));
-			values.add(entry.getKey());
-			String valueToInsert = ClientManagerUtils.getInstance().convertValueForStorage(entry.getValue());
-			values.add(valueToInsert);
+			String valueToInsert = ClientManagerUtils.getInstance().convertValueForStorage(entry.getKey(), entry.getValue());
 
 			Long timestamp = timestamps != null ? timestamps.get(entry.getKey()) : null;
 			Integer ttl = ttls != null ? ttls.get(entry.getKey()) : null;
 
-			if (timestamp != null && timestamp > 0 && ttl != null && ttl > 0) {
-				builder.append(" USING TIMESTAMP ? and TTL ?");
-				values.add(timestamp);
-				values.add(ttl);
-			} else if (timestamp != null && timestamp > 0) {
-				builder.append(" USING TIMESTAMP ?");
-				values.add(timestamp);
-			} else if (ttl != null && ttl > 0) {
-				builder.append(" USING TTL ?");
-				values.add(ttl);
-			}
-
-			builder.append(";\n");
+			batch.add(bindInsert(key, entry.getKey(), valueToInsert, timestamp != null ? timestamp : -1, ttl != null ? ttl : -1));
 		}
 
-		builder.append("APPLY BATCH;");
-
-		write(builder.toString(), values.toArray());
+		write(batch);
 	}
 
 	@Override
 	public void updateString(K key, String columnName, String value, long timestamp, int ttl) {
-		StringBuilder builder = new StringBuilder();
-		List<Object> values = new ArrayList<>();
-
 		updateSecondaryIndexes(key, columnName, value, timestamp, ttl);
 
-		builder.append("INSERT INTO " + columnFamily + " (" + keyColumn + ", column1, value) values (?,?,?)");
-		values.add(convertKey(key));
-		values.add(columnName);
-		values.add(value);
+		write(bindInsert(key, columnName, value, timestamp, ttl));
+	}
+
+	private BoundStatement bindInsert(K key, String columnName, Object value, long timestamp, int ttl) {
+		return templates.getInsert(timestamp, ttl).bind(getInsertValues(convertKey(key), columnName, value, timestamp, ttl));
+	}
+
+	private void insertSecondaryIndex(BatchStatement batch, String secondaryIndexKey, K key, long timestamp, int ttl) {
+		if (secondaryIndexWriter != null) {
+			secondaryIndexWriter.insert(secondaryIndexKey, key, timestamp, ttl);
+		} else {
+			batch.add(bindSecondaryIndexInsert(secondaryIndexKey, key, timestamp, ttl));
+		}
+	}
+
+	private void deleteSecondaryIndex(BatchStatement batch, String secondaryIndexKey, K key, long timestamp) {
+		if (secondaryIndexWriter != null) {
+			secondaryIndexWriter.delete(secondaryIndexKey, key, timestamp);
+		} else {
+			batch.add(bindSecondaryIndexDelete(secondaryIndexKey, key, timestamp));
+		}
+	}
+
+	private void writeSecondaryIndexes(List<AsyncSecondaryIndexWriter.IndexMutation<K>> mutations) {
+		BatchStatement batch = newBatch();
+		for (AsyncSecondaryIndexWriter.IndexMutation<K> mutation : mutations) {
+			if (mutation.isDeletion()) {
+				batch.add(bindSecondaryIndexDelete(mutation.getSecondaryIndexKey(), mutation.getKey(), mutation.getTimestamp()));
+			} else {
+				batch.add(bindSecondaryIndexInsert(mutation.getSecondaryIndexKey(), mutation.getKey(), mutation.getTimestamp(),
+						mutation.getTtl()));
+			}
+		}
+		write(batch);
+	}
+
+	private BoundStatement bindSecondaryIndexInsert(String secondaryIndexKey, K key, long timestamp, int ttl) {
+		Object convertedKey = convertKey(key);
+		return templates.getSecondaryIndexInsert(timestamp, ttl).bind(
+				getInsertValues(secondaryIndexKey, convertedKey, convertedKey, timestamp, ttl));
+	}
+
+	private BoundStatement bindSecondaryIndexDelete(String secondaryIndexKey, K key, long timestamp) {
+		if (timestamp > 0) {
+			return templates.get(Template.DELETE_SECONDARY_INDEX_USING_TIMESTAMP).bind(timestamp, secondaryIndexKey,
+					convertKey(key));
+		}
+		return templates.get(Template.DELETE_SECONDARY_INDEX).bind(secondaryIndexKey, convertKey(key));
+	}
 
+	private static Object[] getInsertValues(Object key, Object column, Object value, long timestamp, int ttl) {
 		if (timestamp > 0 && ttl > 0) {
-			builder.append(" USING TIMESTAMP ? and TTL ?");
-			values.add(timestamp);
-			values.add(ttl);
+			return new Object[] { key, column, value, timestamp, ttl };
 		} else if (timestamp > 0) {
-			builder.append(" USING TIMESTAMP ?");
-			values.add(timestamp);
+			return new Object[] { key, column, value, timestamp };
 		} else if (ttl > 0) {
-			builder.append(" USING TTL ?");
-			values.add(ttl);
+			return new Object[] { key, column, value, ttl };
+		}
+		return new Object[] { key, column, value };
+	}
+
+	// ====================================================
+	// Asynchronous API
+	// ====================================================
+
+	@Override
+	public ListenableFuture<CassandraResultSet<K, String>> readAllColumnsAsync(K key) {
+		return readAsync(templates.get(Template.READ_ROW), convertKey(key));
+	}
+
+	@Override
+	public ListenableFuture<CassandraResultSet<K, String>> readAllColumnsAsync(Set<K> keys) {
+		if (isMultiGetByReplica(keys)) {
+			return toResultSetAsync(readByReplica(templates.get(Template.READ_ROWS), keys));
+		}
+
+		return readAsync(templates.get(Template.READ_ROWS), convertKeys(keys));
+	}
+
+	@Override
+	public ListenableFuture<CassandraResultSet<K, String>> readColumnsAsync(K key, List<String> columnNames) {
+		if (CollectionUtils.isEmpty(columnNames)) {
+			return readAllColumnsAsync(key);
+		}
+
+		return readAsync(templates.get(Template.READ_COLUMNS), convertKey(key), columnNames);
+	}
+
+	@Override
+	public ListenableFuture<CassandraResultSet<K, String>> readColumnsAsync(Set<K> keys, List<String> columnNames) {
+		if (CollectionUtils.isEmpty(columnNames)) {
+			return readAllColumnsAsync(keys);
+		}
+
+		if (isMultiGetByReplica(keys)) {
+			return toResultSetAsync(readByReplica(templates.get(Template.READ_ROWS_COLUMNS), keys, columnNames));
+		}
+
+		return readAsync(templates.get(Template.READ_ROWS_COLUMNS), convertKeys(keys), columnNames);
+	}
+
+	@Override
+	public ListenableFuture<String> readStringAsync(K key, final String columnName) {
+		return Futures.transform(readAsync(templates.get(Template.READ_COLUMN), convertKey(key), columnName),
+				new Function<CassandraResultSet<K, String>, String>() {
+					@Override
+					public String apply(CassandraResultSet<K, String> result) {
+						return result.hasResults() ? result.getString(columnName) : null;
+					}
+				});
+	}
+
+	@Override
+	public ListenableFuture<Long> getCounterValueAsync(K key, final String counterColumnName) {
+		return Futures.transform(
+				readAsync(templates.get(Template.READ_COLUMN), null, null,
+						ImmutableMap.of(counterColumnName, DataType.counter()), convertKey(key), counterColumnName),
+				new Function<CassandraResultSet<K, String>, Long>() {
+					@Override
+					public Long apply(CassandraResultSet<K, String> result) {
+						return result.hasResults() ? result.getLong(counterColumnName) : null;
+					}
+				});
+	}
+
+	@Override
+	public ListenableFuture<Void> updateStringAsync(K key, String columnName, String value, long timestamp, int ttl) {
+		if (isSecondaryIndexByColumnNameAndValueEnabledForColumn(columnName)
+				|| isSecondaryIndexByColumnNameEnabledForColumn(columnName)) {
+			// maintaining the index needs a read of the old value first, which the blocking path already handles.
+			return super.updateStringAsync(key, columnName, value, timestamp, ttl);
 		}
 
-		write(builder.toString(), values.toArray());
+		return writeAsync(bindInsert(key, columnName, value, timestamp, ttl));
+	}
+
+	@Override
+	public ListenableFuture<Void> updateCounterAsync(K key, String counterColumnName, long value) {
+		return writeAsync(templates.get(Template.UPDATE_COUNTER), value, convertKey(key), counterColumnName);
 	}
 
 	private void updateSecondaryIndexes(K key, Map<String, Object> row, Map<String, Long> timestamps,
@@ -797,12 +847,9 @@ public class DataStaxBasedSharedHecubaClientManager<K> extends HecubaClientManag
 		}
 
 		if (CollectionUtils.isNotEmpty(secondaryColumnsChanged)) {
-			Map<String, String> oldValues = new HashMap<>();
+			Map<String, String> oldValues;
 			try {
-				CassandraResultSet<K, String> readColumns = readColumns(key, secondaryColumnsChanged);
-				for (String column : readColumns.getColumnNames()) {
-					oldValues.put(column, readColumns.getString(column));
-				}
+				oldValues = getIndexedValues(key, secondaryColumnsChanged);
 			} catch (Exception e) {
 				throw new RuntimeException(e);
 			}
@@ -816,7 +863,7 @@ public class DataStaxBasedSharedHecubaClientManager<K> extends HecubaClientManag
 
 	private void updateSecondaryIndexes(K key, String columnName, String value, long timestamp, int ttl) {
 		if (isSecondaryIndexByColumnNameAndValueEnabledForColumn(columnName)) {
-			String oldValue = readString(key, columnName);
+			String oldValue = getIndexedValue(key, columnName);
 			updateSecondaryIndexes(key, columnName, value, timestamp, ttl, oldValue);
 		}
 
@@ -825,107 +872,72 @@ public class DataStaxBasedSharedHecubaClientManager<K> extends HecubaClientManag
 		}
 	}
 
-	private void updateSecondaryIndexes(K key, Map<String, Object> row, Map<String, Long> timestamps,
-			Map<String, Integer> ttls, List<String> columnsChanged, Map<String, String> oldValues) {
-		StringBuilder builder = new StringBuilder();
-		List<Object> values = new ArrayList<>();
-
-		builder.append("BEGIN UNLOGGED BATCH\n");
+	private void updateSecondaryIndexes(K key, Map<String, Object> row, Map<String, Long> timestamps, Map<String, Integer> ttls, List<String> columnsChanged,
+			Map<String, String> oldValues) {
+		BatchStatement batch = newBatch();
 
 		for (String columnName : columnsChanged) {
+			Long timestamp = timestamps != null ? timestamps.get(columnName) : null;
+			Integer ttl = ttls != null ? ttls.get(columnName) : null;
+
 			String oldValue = oldValues != null ? oldValues.get(columnName) : null;
 			if (!StringUtils.isBlank(oldValue) && !"null".equalsIgnoreCase(oldValue)) {
-				// Delete old value if there is one (if it's null we'll just be writing it again down below
-				// with updated TS and TTL)
-				builder.append("\tDELETE FROM " + secondaryIndexColumnFamily);
-
-				Long timestamp = timestamps != null ? timestamps.get(columnName) : null;
-				if (timestamp != null && timestamp > 0) {
-					builder.append(" USING TIMESTAMP ?");
-					values.add(timestamp);
-				}
-
-				builder.append(" where " + secondaryIndexKeyColumn + " = ? and column1 = ?;\n");
-				values.add(getSecondaryIndexKey(columnName, oldValue));
-				values.add(convertKey(key));
+				// Delete old value if there is one (if it's null we'll just be writing it again down below with updated TS and TTL)
+				deleteSecondaryIndex(batch, getSecondaryIndexKey(columnName, oldValue), key, timestamp != null ? timestamp : -1);
 			}
 
 			Object value = row != null ? row.get(columnName) : null;
-			String valueToInsert = ClientManagerUtils.getInstance().convertValueForStorage(value);
+			String valueToInsert = ClientManagerUtils.getInstance().convertValueForStorage(columnName, value);
 
 			// Insert New Value
-			builder.append("\tINSERT INTO " + secondaryIndexColumnFamily + " (" + secondaryIndexKeyColumn
-					+ ", column1, value) values (?,?,?)");
-			values.add(getSecondaryIndexKey(columnName, valueToInsert));
-			values.add(convertKey(key));
-			values.add(convertKey(key));
-
-			Long timestamp = timestamps != null ? timestamps.get(columnName) : null;
-			Integer ttl = ttls != null ? ttls.get(columnName) : null;
-			if (timestamp != null && timestamp > 0 && ttl != null && ttl > 0) {
-				builder.append(" USING TIMESTAMP ? and TTL ?");
-				values.add(timestamp);
-				values.add(ttl);
-			} else if (timestamp != null && timestamp > 0) {
-				builder.append(" USING TIMESTAMP ?");
-				values.add(timestamp);
-			} else if (ttl != null && ttl > 0) {
-				builder.append(" USING TTL ?");
-				values.add(ttl);
-			}
-			builder.append(";\n");
+			insertSecondaryIndex(batch, getSecondaryIndexKey(columnName, valueToInsert), key, timestamp != null ? timestamp : -1,
+					ttl != null ? ttl : -1);
 		}
 
-		builder.append("APPLY BATCH;");
+		write(batch);
 
-		write(builder.toString(), values.toArray());
+		if (row != null) {
+			for (String columnName : columnsChanged) {
+				setIndexedValue(key, columnName, ClientManagerUtils.getInstance().convertValueForStorage(columnName, row.get(columnName)));
+			}
+		}
 	}
 
-	private void updateSecondaryIndexes(K key, String columnName, String value, long timestamp, int ttl,
-			String oldValue) {
-		StringBuilder builder = new StringBuilder();
-		List<Object> values = new ArrayList<>();
-
-		builder.append("BEGIN UNLOGGED BATCH\n");
+	private void updateSecondaryIndexes(K key, String columnName, String value, long timestamp, int ttl, String oldValue) {
+		BatchStatement batch = newBatch();
 
 		if (!StringUtils.isBlank(oldValue) && !"null".equalsIgnoreCase(oldValue)) {
-			// Delete old value if there is one (if it's null we'll just be writing it again down below with
-			// updated TS and TTL)
-			builder.append("\tDELETE FROM " + secondaryIndexColumnFamily);
-
-			if (timestamp > 0) {
-				builder.append(" USING TIMESTAMP ?");
-				values.add(timestamp);
-			}
-
-			builder.append(" where " + secondaryIndexKeyColumn + " = ? and column1 = ?;\n");
-			values.add(getSecondaryIndexKey(columnName, oldValue));
-			values.add(convertKey(key));
+			// Delete old value if there is one (if it's null we'll just be writing it again down below with updated TS and TTL)
+			deleteSecondaryIndex(batch, getSecondaryIndexKey(columnName, oldValue), key, timestamp);
 		}
 
 		// Insert New Value
-		builder.append("\tINSERT INTO " + secondaryIndexColumnFamily + " (" + secondaryIndexKeyColumn
-				+ ", column1, value) values (?,?,?)");
-		values.add(getSecondaryIndexKey(columnName, value));
-		values.add(convertKey(key));
-		values.add(convertKey(key));
+		insertSecondaryIndex(batch, getSecondaryIndexKey(columnName, value), key, timestamp, ttl);
 
-		if (timestamp > 0 && ttl > 0) {
-			builder.append(" USING TIMESTAMP ? and TTL ?");
-			values.add(timestamp);
-			values.add(ttl);
-		} else if (timestamp > 0) {
-			builder.append(" USING TIMESTAMP ?");
-			values.add(timestamp);
-		} else if (ttl > 0) {
-			builder.append(" USING TTL ?");
-			values.add(ttl);
-		}
-		builder.append(";\n");
+		write(batch);
+		setIndexedValue(key, columnName, value);
+	}
+
+	@Override
+	protected void scanRange(TokenRange range, int pageSize, RowScanCallback<K> callback) throws Exception {
+		// the driver fetches the following pages as the rows are consumed.
+		BoundStatement bind = bindRead(templates.get(Template.SCAN_TOKEN_RANGE), range.getStart(), range.getEnd());
+		bind.setFetchSize(pageSize);
+
+		long startTimeNanos = System.nanoTime();
+		ResultSet rs = session.execute(bind);
+		long durationNanos = System.nanoTime() - startTimeNanos;
 
-		builder.append("APPLY BATCH;");
+		logExecutionInfo(rs, durationNanos);
 
-		write(builder.toString(), values.toArray());
+		CassandraResultSet<K, String> rows = new DataStaxCassandraResultSet<K>(rs, keyType, null, null, durationNanos);
+		while (rows.hasResults()) {
+			callback.onRow(range, Murmur3Tokens.getToken(keyType.serialize(convertKey(rows.getKey()))), rows);
+			if (!rows.hasNextResult()) {
+				break;
+			}
+			rows.nextResult();
+		}
 	}
 
 	private Object convertKey(K key) {
@@ -955,15 +967,204 @@ public class DataStaxBasedSharedHecubaClientManager<K> extends HecubaClientManag
 	}
 
 	private CassandraResultSet<K, String> read(String query, Object... values) {
-		return read(query, null, null, null, values);
+		// the column families of the keyspace share the statement cache of its session.
+		return read(DataStaxBasedSessionObjectFactory.getInstance().getPreparedStatement(sessionKey, query,
+				readConsistencyLevel, tracingEnabled), null, null, null, values);
+	}
+
+	private CassandraResultSet<K, String> read(PreparedStatement stmt, Object... values) {
+		return read(stmt, null, null, null, values);
 	}
 
-	private CassandraResultSet<K, String> read(String query, DataType keyType, DataType columnType,
+	private CassandraResultSet<K, String> read(PreparedStatement stmt, DataType keyType, DataType columnType,
 			Map<String, DataType> valueTypes, Object... values) {
-		logger.debug("query = {} : values = {}", query, values);
-		PreparedStatement stmt = readStatementCache.getUnchecked(query);
+		BoundStatement bind = bindRead(stmt, values);
+
+		long startTimeNanos = System.nanoTime();
+		ResultSet rs = session.execute(bind);
+		long durationNanos = System.nanoTime() - startTimeNanos;
+
+		logExecutionInfo(rs, durationNanos);
+
+		return new DataStaxCassandraResultSet<K>(rs, ObjectUtils.defaultIfNull(keyType, this.keyType), columnType,
+				valueTypes, durationNanos);
+	}
+
+	private ListenableFuture<CassandraResultSet<K, String>> readAsync(PreparedStatement stmt, Object... values) {
+		return readAsync(stmt, null, null, null, values);
+	}
+
+	private ListenableFuture<CassandraResultSet<K, String>> readAsync(PreparedStatement stmt, DataType keyType,
+			DataType columnType, Map<String, DataType> valueTypes, Object... values) {
+		return executeReadAsync(bindRead(stmt, values), keyType, columnType, valueTypes);
+	}
+
+	private ListenableFuture<CassandraResultSet<K, String>> executeReadAsync(BoundStatement bind, DataType keyType,
+			final DataType columnType, final Map<String, DataType> valueTypes) {
+		final DataType resultKeyType = ObjectUtils.defaultIfNull(keyType, this.keyType);
+		final long startTimeNanos = System.nanoTime();
+		ResultSetFuture future = session.executeAsync(bind);
+
+		return ResultSetExecutor.transform(future, new Function<ResultSet, CassandraResultSet<K, String>>() {
+			@Override
+			public CassandraResultSet<K, String> apply(ResultSet rs) {
+				long durationNanos = System.nanoTime() - startTimeNanos;
 
-		BoundStatement bind = stmt.bind(values);
+				logExecutionInfo(rs, durationNanos);
+
+				return new DataStaxCassandraResultSet<K>(rs, resultKeyType, columnType, valueTypes, durationNanos);
+			}
+		});
+	}
+
+	/**
+	 * Marks the statements of the read as a hedge, which the load balancing policy sends to another replica than the
+	 * read sent before, see {@link HedgingLoadBalancingPolicy}.
+	 */
+	@Override
+	protected <T> ListenableFuture<T> sendHedge(Callable<ListenableFuture<T>> read) throws Exception {
+		sendingHedge.set(Boolean.TRUE);
+		try {
+			return read.call();
+		} finally {
+			sendingHedge.remove();
+		}
+	}
+
+	private boolean isMultiGetByReplica(Set<K> keys) {
+		return multiGetChunkSize > 0 && keys.size() > 1;
+	}
+
+	/**
+	 * Splits a multi-get into one "key in ?" query per replica, and per chunk of multiGetChunkSize keys within a
+	 * replica. Each query is routed to the replica owning its keys, and at most multiGetParallelism of them are in
+	 * flight at a time. This keeps a large multi-get from being scattered and gathered by a single coordinator. Off
+	 * unless {@link HecubaConstants#DATASTAX_MULTIGET_CHUNK_SIZE} is set.
+	 *
+	 * @param stmt   - statement taking the list of keys as its first value
+	 * @param keys   - keys to read
+	 * @param values - values bound after the list of keys
+	 *
+	 * @return a future for each of the queries issued.
+	 */
+	private List<ListenableFuture<CassandraResultSet<K, String>>> readByReplica(PreparedStatement stmt, Set<K> keys,
+			Object... values) {
+		Metadata metadata = session.getCluster().getMetadata();
+
+		// group the keys by their primary replica, remembering the routing key of one of them for each group.
+		Map<Host, List<Object>> keysByReplica = new HashMap<>();
+		Map<Host, ByteBuffer> routingKeys = new HashMap<>();
+		for (K key : keys) {
+			Object convertedKey = convertKey(key);
+			ByteBuffer routingKey = keyType.serialize(convertedKey);
+			Set<Host> replicas = metadata.getReplicas(keyspace, routingKey);
+			Host replica = replicas.isEmpty() ? null : replicas.iterator().next();
+
+			List<Object> replicaKeys = keysByReplica.get(replica);
+			if (replicaKeys == null) {
+				replicaKeys = new ArrayList<>();
+				keysByReplica.put(replica, replicaKeys);
+				routingKeys.put(replica, routingKey);
+			}
+			replicaKeys.add(convertedKey);
+		}
+
+		List<BoundStatement> binds = new ArrayList<>();
+		for (Map.Entry<Host, List<Object>> entry : keysByReplica.entrySet()) {
+			for (List<Object> chunk : Lists.partition(entry.getValue(), multiGetChunkSize)) {
+				Object[] chunkValues = new Object[values.length + 1];
+				chunkValues[0] = chunk;
+				System.arraycopy(values, 0, chunkValues, 1, values.length);
+
+				BoundStatement bind = bindRead(new RoutedBoundStatement(stmt, routingKeys.get(entry.getKey())), chunkValues);
+				binds.add(bind);
+			}
+		}
+
+		List<SettableFuture<CassandraResultSet<K, String>>> futures = new ArrayList<>(binds.size());
+		for (int i = 0; i < binds.size(); i++) {
+			futures.add(SettableFuture.<CassandraResultSet<K, String>> create());
+		}
+
+		// the first queries are issued right away and each of the others once one of them completes, so that neither
+		// the caller nor the threads completing the queries ever wait for the others.
+		AtomicInteger next = new AtomicInteger();
+		for (int i = 0; i < Math.min(Math.max(multiGetParallelism, 1), binds.size()); i++) {
+			readNextChunk(binds, futures, next);
+		}
+
+		return new ArrayList<ListenableFuture<CassandraResultSet<K, String>>>(futures);
+	}
+
+	private void readNextChunk(final List<BoundStatement> binds,
+			final List<SettableFuture<CassandraResultSet<K, String>>> futures, final AtomicInteger next) {
+		final int index = next.getAndIncrement();
+		if (index >= binds.size()) {
+			return;
+		}
+
+		final SettableFuture<CassandraResultSet<K, String>> result = futures.get(index);
+		final ListenableFuture<CassandraResultSet<K, String>> future;
+		try {
+			future = executeReadAsync(binds.get(index), null, null, null);
+		} catch (RuntimeException e) {
+			result.setException(e);
+			readNextChunk(binds, futures, next);
+			return;
+		}
+
+		Futures.addCallback(future, new FutureCallback<CassandraResultSet<K, String>>() {
+			@Override
+			public void onSuccess(CassandraResultSet<K, String> resultSet) {
+				result.set(resultSet);
+				readNextChunk(binds, futures, next);
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				result.setException(t);
+				readNextChunk(binds, futures, next);
+			}
+		});
+	}
+
+	/**
+	 * @return a result set over the results of the given queries, waiting on each of them only when the caller
+	 *         iterates up to it.
+	 */
+	private CassandraResultSet<K, String> toResultSet(List<ListenableFuture<CassandraResultSet<K, String>>> futures) {
+		return new CompositeCassandraResultSet<>(Lists.transform(futures,
+				new Function<ListenableFuture<CassandraResultSet<K, String>>, CassandraResultSet<K, String>>() {
+					@Override
+					public CassandraResultSet<K, String> apply(ListenableFuture<CassandraResultSet<K, String>> future) {
+						try {
+							return Uninterruptibles.getUninterruptibly(future);
+						} catch (ExecutionException e) {
+							throw Throwables.propagate(e.getCause());
+						}
+					}
+				}));
+	}
+
+	private ListenableFuture<CassandraResultSet<K, String>> toResultSetAsync(
+			List<ListenableFuture<CassandraResultSet<K, String>>> futures) {
+		return Futures.transform(Futures.allAsList(futures),
+				new Function<List<CassandraResultSet<K, String>>, CassandraResultSet<K, String>>() {
+					@Override
+					public CassandraResultSet<K, String> apply(List<CassandraResultSet<K, String>> resultSets) {
+						return new CompositeCassandraResultSet<>(resultSets);
+					}
+				});
+	}
+
+	private BoundStatement bindRead(PreparedStatement stmt, Object... values) {
+		return bindRead(sendingHedge.get() != null ? new HedgedBoundStatement(stmt) : new BoundStatement(stmt), values);
+	}
+
+	private BoundStatement bindRead(BoundStatement bind, Object... values) {
+		logger.debug("query = {} : values = {}", bind.preparedStatement().getQueryString(), values);
+
+		bind.bind(values);
 
 		if (statementFetchSize > 0) {
 			bind.setFetchSize(statementFetchSize);
@@ -971,34 +1172,70 @@ public class DataStaxBasedSharedHecubaClientManager<K> extends HecubaClientManag
 			bind.setFetchSize(Integer.MAX_VALUE);
 		}
 
-		long startTimeNanos = System.nanoTime();
-		ResultSet rs = session.execute(bind);
-		long durationNanos = System.nanoTime() - startTimeNanos;
+		return bind;
+	}
 
-		ExecutionInfo executionInfo = rs.getExecutionInfo();
-		Host queriedHost = executionInfo.getQueriedHost();
-		logger.debug("queried host = {}", queriedHost);
+	private void write(PreparedStatement stmt, Object... values) {
+		write(bindWrite(stmt, values));
+	}
 
-		if (tracingEnabled) {
-			QueryTrace queryTrace = executionInfo.getQueryTrace();
-			if (queryTrace != null) {
-				if (logger.isDebugEnabled()) {
-					logger.debug("{}", toString(queryTrace));
-				}
-			}
+	private void write(Statement stmt) {
+		ResultSet rs = session.execute(stmt);
+
+		logExecutionInfo(rs);
+	}
+
+	private void write(BatchStatement batch) {
+		logger.debug("batch of {} statements", batch.getStatements().size());
+		if (batch.getStatements().isEmpty()) {
+			return;
 		}
 
-		return new DataStaxCassandraResultSet<K>(rs, ObjectUtils.defaultIfNull(keyType, this.keyType),
-				columnType, valueTypes, durationNanos);
+		write((Statement) batch);
 	}
 
-	private void write(String query, Object... values) {
-		logger.debug("query = {} : values = {}", query, values);
-		PreparedStatement stmt = writeStatementCache.getUnchecked(query);
+	private ListenableFuture<Void> writeAsync(PreparedStatement stmt, Object... values) {
+		return writeAsync(bindWrite(stmt, values));
+	}
 
-		BoundStatement bind = stmt.bind(values);
-		ResultSet rs = session.execute(bind);
+	private ListenableFuture<Void> writeAsync(Statement stmt) {
+		ResultSetFuture future = session.executeAsync(stmt);
+
+		return Futures.transform(future, new Function<ResultSet, Void>() {
+			@Override
+			public Void apply(ResultSet rs) {
+				logExecutionInfo(rs);
+				return null;
+			}
+		});
+	}
+
+	private BoundStatement bindWrite(PreparedStatement stmt, Object... values) {
+		logger.debug("query = {} : values = {}", stmt.getQueryString(), values);
+
+		return stmt.bind(values);
+	}
+
+	private BatchStatement newBatch() {
+		BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+		batch.setConsistencyLevel(writeConsistencyLevel);
+		if (tracingEnabled) {
+			batch.enableTracing();
+		}
+		return batch;
+	}
+
+	/**
+	 * Logs the execution info of a read, and records its latency as that of the host which answered it.
+	 */
+	private void logExecutionInfo(ResultSet rs, long durationNanos) {
+		logExecutionInfo(rs);
+		if (hedgingPolicy != null) {
+			hedgingPolicy.recordLatency(rs.getExecutionInfo().getQueriedHost(), durationNanos);
+		}
+	}
 
+	private void logExecutionInfo(ResultSet rs) {
 		ExecutionInfo executionInfo = rs.getExecutionInfo();
 		Host queriedHost = executionInfo.getQueriedHost();
 		logger.debug("queried host = {}", queriedHost);
@@ -1036,6 +1273,8 @@ public class DataStaxBasedSharedHecubaClientManager<K> extends HecubaClientManag
 
 	@Override
 	public void shutDown() {
+		shutDownSecondaryIndexWriter();
+		shutDownAsyncExecutor();
 		DataStaxBasedSessionObjectFactory.getInstance().returnSession(sessionKey);
 	}
 }
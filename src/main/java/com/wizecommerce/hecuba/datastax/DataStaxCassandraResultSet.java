@@ -1,27 +1,46 @@
 package com.wizecommerce.hecuba.datastax;
 
 import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 import org.apache.commons.lang3.builder.ToStringBuilder;
 
 import com.datastax.driver.core.ColumnDefinitions.Definition;
 import com.datastax.driver.core.*;
-import com.google.common.base.Objects;
 import com.wizecommerce.hecuba.AbstractCassandraResultSet;
 
+/**
+ * Groups the (key, column1, value) rows of a CQL result into Hecuba rows.
+ *
+ * Rows are kept compact: column names are decoded once per result set, values are kept as the serialized bytes the
+ * driver read and decoded on first use, and the containers of the current and next rows are reused as the result set
+ * moves on. Iterating a large multi-get therefore allocates little beyond the values actually read.
+ */
 public class DataStaxCassandraResultSet<K> extends AbstractCassandraResultSet<K, String> {
+	// names beyond this many are decoded for every row, so that results with distinct columns per row (e.g. secondary
+	// index rows) do not grow the dictionary without bound.
+	private static final int MAX_COLUMN_NAMES = 1024;
+
 	private ResultSet rs;
 	private Iterator<Row> rowIterator;
 	private DataType keyType;
-	private String keyColumn;
+	private int keyIndex;
 	private DataType columnType;
+	private int columnIndex;
 	private Map<String, DataType> valueTypes = new HashMap<>();
-	private Map<String, Object> currentRow = new LinkedHashMap<>();
-	private Map<String, Object> nextRow = new LinkedHashMap<>();
+	private int valueIndex;
+	private DataType defaultValueType;
+	private Map<ByteBuffer, String> columnNames = new HashMap<>();
+	private CompactRow currentRow = new CompactRow();
+	private CompactRow nextRow = new CompactRow();
 	private K currentKey;
+	private ByteBuffer currentKeyBytes;
 	private K nextKey;
+	private ByteBuffer nextKeyBytes;
 	private long durationNanos;
+	private int prefetchThreshold;
 
 	public DataStaxCassandraResultSet(ResultSet rs, DataType keyType, DataType columnType, Map<String, DataType> valueTypes, long durationNanos) {
 		this.rs = rs;
@@ -30,56 +49,106 @@ public class DataStaxCassandraResultSet<K> extends AbstractCassandraResultSet<K,
 		this.keyType = keyType;
 		this.columnType = columnType;
 		this.valueTypes = valueTypes;
-		this.keyColumn = getKeyColumn();
+
+		ColumnDefinitions definitions = rs.getColumnDefinitions();
+		this.keyIndex = getKeyIndex(definitions);
+		this.columnIndex = indexOf(definitions, "column1");
+		this.valueIndex = indexOf(definitions, "value");
+
+		// values without a type of their own are decoded as the value column is declared.
+		this.defaultValueType = valueTypes != null ? valueTypes.get("*") : null;
+		if (defaultValueType == null && valueIndex >= 0) {
+			defaultValueType = definitions.getType(valueIndex);
+		}
+
+		// the first page tells the page size. Once half of a page is left, the next one is fetched in the background.
+		this.prefetchThreshold = rs.isFullyFetched() ? 0 : rs.getAvailableWithoutFetching() / 2;
 
 		extractRow();
 	}
 
-	private String getKeyColumn() {
+	private int getKeyIndex(ColumnDefinitions definitions) {
 		// TODO: Ideally we'd use ColumnDefinitions.contains...but it's throwing out of bounds exception
-		for (Definition definition : rs.getColumnDefinitions()) {
-			for (String keyColumn : new String[] { "KEY", "key" }) {
-				if (keyColumn.equals(definition.getName())) {
-					return keyColumn;
-				}
+		for (String keyColumn : new String[] { "KEY", "key" }) {
+			int index = indexOf(definitions, keyColumn);
+			if (index >= 0) {
+				return index;
 			}
 		}
 
 		throw new RuntimeException("Can't determine key column from metadata");
 	}
 
+	private static int indexOf(ColumnDefinitions definitions, String column) {
+		int index = 0;
+		for (Definition definition : definitions) {
+			if (column.equals(definition.getName())) {
+				return index;
+			}
+			index++;
+		}
+		return -1;
+	}
+
 	@SuppressWarnings("unchecked")
 	private void extractRow() {
 		while (rowIterator.hasNext()) {
 			Row row = rowIterator.next();
+			prefetch();
 
-			K key = (K) getValue(row, keyColumn, keyType);
-
-			if (currentKey == null) {
-				currentKey = key;
+			// keys are compared as the bytes they were read as and only decoded once per Hecuba row.
+			ByteBuffer keyBytes = row.getBytesUnsafe(keyIndex);
+			if (currentKeyBytes == null) {
+				currentKeyBytes = keyBytes;
+				currentKey = (K) getValue(row, keyIndex, keyType);
 			}
 
-			String column = getValue(row, "column1", columnType).toString();
-			DataType valueType = null;
-			if (valueTypes != null) {
-				valueType = valueTypes.get(column);
-				if (valueType == null) {
-					valueType = valueTypes.get("*");
-				}
-			}
-			Object value = getValue(row, "value", valueType);
+			String column = getColumnName(row);
+			ByteBuffer value = valueIndex >= 0 ? row.getBytesUnsafe(valueIndex) : null;
 
-			if (Objects.equal(key, currentKey)) {
-				currentRow.put(column, value);
+			if (keyBytes.equals(currentKeyBytes)) {
+				currentRow.add(column, value, getValueType(column));
 			} else {
-				nextRow.put(column, value);
-				nextKey = key;
+				nextRow.add(column, value, getValueType(column));
+				nextKeyBytes = keyBytes;
+				nextKey = (K) getValue(row, keyIndex, keyType);
 				break;
 			}
 		}
 	}
 
-	private Object getValue(Row row, String column, DataType dataType) {
+	private String getColumnName(Row row) {
+		ByteBuffer bytes = row.getBytesUnsafe(columnIndex);
+		String column = columnNames.get(bytes);
+		if (column == null) {
+			column = getValue(row, columnIndex, columnType).toString();
+			if (columnNames.size() < MAX_COLUMN_NAMES) {
+				// copied, so that the dictionary does not hold on to the page the name was read from.
+				byte[] copy = new byte[bytes.remaining()];
+				bytes.duplicate().get(copy);
+				columnNames.put(ByteBuffer.wrap(copy), column);
+			}
+		}
+		return column;
+	}
+
+	private DataType getValueType(String column) {
+		if (valueTypes != null) {
+			DataType valueType = valueTypes.get(column);
+			if (valueType != null) {
+				return valueType;
+			}
+		}
+		return defaultValueType;
+	}
+
+	private void prefetch() {
+		if (prefetchThreshold > 0 && rs.getAvailableWithoutFetching() == prefetchThreshold && !rs.isFullyFetched()) {
+			rs.fetchMoreResults();
+		}
+	}
+
+	private Object getValue(Row row, int column, DataType dataType) {
 		if (dataType == null) {
 			return row.getString(column);
 		}
@@ -124,11 +193,16 @@ public class DataStaxCassandraResultSet<K> extends AbstractCassandraResultSet<K,
 	}
 
 	public void next() {
+		CompactRow row = currentRow;
+		row.clear();
+
 		currentKey = nextKey;
+		currentKeyBytes = nextKeyBytes;
 		currentRow = nextRow;
 
 		nextKey = null;
-		nextRow = new LinkedHashMap<>();
+		nextKeyBytes = null;
+		nextRow = row;
 
 		extractRow();
 	}
@@ -163,12 +237,12 @@ public class DataStaxCassandraResultSet<K> extends AbstractCassandraResultSet<K,
 
 	@Override
 	public UUID getUUID(String columnName) {
-		return (UUID) currentRow.get(columnName);
+		return (UUID) currentRow.getValue(columnName);
 	}
 
 	@Override
 	public String getString(String columnName) {
-		Object value = currentRow.get(columnName);
+		Object value = currentRow.getValue(columnName);
 
 		if (value == null) {
 			return null;
@@ -183,6 +257,15 @@ public class DataStaxCassandraResultSet<K> extends AbstractCassandraResultSet<K,
 		return result;
 	}
 
+	/**
+	 * Text values are returned as the bytes they were read as and values of typed columns as they decode to, so that
+	 * numbers are neither decoded to nor formatted as strings only to be parsed again.
+	 */
+	@Override
+	protected Object getRawValue(String columnName) {
+		return currentRow.getRawValue(columnName);
+	}
+
 	@Override
 	public byte[] getByteArray(String columnName) {
 		String value = getString(columnName);
@@ -194,16 +277,152 @@ public class DataStaxCassandraResultSet<K> extends AbstractCassandraResultSet<K,
 
 	@Override
 	public Collection<String> getColumnNames() {
-		return currentRow.keySet();
+		return currentRow.getNames();
 	}
 
 	@Override
 	public boolean hasResults() {
-		return !currentRow.isEmpty();
+		return currentRow.size > 0;
 	}
 
 	@Override
 	public String toString() {
 		return new ToStringBuilder(this).append("key", currentKey).append("currentRow", currentRow).append("hasNextResult", hasNextResult()).toString();
 	}
+
+	/**
+	 * The cells of a row, kept as the serialized values the driver read and decoded on first use.
+	 */
+	private static final class CompactRow {
+		// rows with more columns than this are looked up through a hash index rather than scanned.
+		private static final int MAX_SCANNED_SIZE = 8;
+
+		private String[] names = new String[MAX_SCANNED_SIZE];
+		private ByteBuffer[] values = new ByteBuffer[MAX_SCANNED_SIZE];
+		private DataType[] types = new DataType[MAX_SCANNED_SIZE];
+		private Object[] decoded = new Object[MAX_SCANNED_SIZE];
+		private int size;
+
+		// open addressing table of (position + 1) by name, built on the first lookup after the row changed.
+		private int[] index = new int[0];
+		private boolean indexed;
+
+		void add(String name, ByteBuffer value, DataType type) {
+			if (size == names.length) {
+				names = Arrays.copyOf(names, size * 2);
+				values = Arrays.copyOf(values, size * 2);
+				types = Arrays.copyOf(types, size * 2);
+				decoded = Arrays.copyOf(decoded, size * 2);
+			}
+			names[size] = name;
+			values[size] = value;
+			types[size] = type;
+			size++;
+			indexed = false;
+		}
+
+		void clear() {
+			Arrays.fill(names, 0, size, null);
+			Arrays.fill(values, 0, size, null);
+			Arrays.fill(types, 0, size, null);
+			Arrays.fill(decoded, 0, size, null);
+			size = 0;
+			indexed = false;
+		}
+
+		List<String> getNames() {
+			return Arrays.asList(Arrays.copyOf(names, size));
+		}
+
+		Object getValue(String name) {
+			final int position = indexOf(name);
+			if (position < 0 || values[position] == null) {
+				return null;
+			}
+			if (decoded[position] == null) {
+				decoded[position] = isText(types[position]) ? StandardCharsets.UTF_8.decode(values[position].duplicate())
+						.toString() : types[position].deserialize(values[position].duplicate());
+			}
+			return decoded[position];
+		}
+
+		Object getRawValue(String name) {
+			final int position = indexOf(name);
+			if (position >= 0 && decoded[position] == null && isText(types[position])) {
+				return values[position];
+			}
+			return getValue(name);
+		}
+
+		private static boolean isText(DataType type) {
+			if (type == null) {
+				return true;
+			}
+			switch (type.getName()) {
+			case ASCII:
+			case VARCHAR:
+			case TEXT:
+				return true;
+			default:
+				return false;
+			}
+		}
+
+		private int indexOf(String name) {
+			if (size <= MAX_SCANNED_SIZE) {
+				for (int i = 0; i < size; i++) {
+					if (names[i].equals(name)) {
+						return i;
+					}
+				}
+				return -1;
+			}
+
+			if (!indexed) {
+				buildIndex();
+			}
+			final int mask = index.length - 1;
+			for (int slot = hash(name) & mask; index[slot] != 0; slot = (slot + 1) & mask) {
+				final int position = index[slot] - 1;
+				if (names[position].equals(name)) {
+					return position;
+				}
+			}
+			return -1;
+		}
+
+		private void buildIndex() {
+			// at most half full, so that probes stay short.
+			final int capacity = Integer.highestOneBit(size * 2 - 1) << 1;
+			if (index.length < capacity) {
+				index = new int[capacity];
+			} else {
+				Arrays.fill(index, 0);
+			}
+
+			final int mask = index.length - 1;
+			for (int i = 0; i < size; i++) {
+				int slot = hash(names[i]) & mask;
+				while (index[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				index[slot] = i + 1;
+			}
+			indexed = true;
+		}
+
+		private static int hash(String name) {
+			final int hash = name.hashCode();
+			return hash ^ (hash >>> 16);
+		}
+
+		@Override
+		public String toString() {
+			final Map<String, Object> row = new LinkedHashMap<>();
+			for (int i = 0; i < size; i++) {
+				row.put(names[i], getValue(names[i]));
+			}
+			return row.toString();
+		}
+	}
 }
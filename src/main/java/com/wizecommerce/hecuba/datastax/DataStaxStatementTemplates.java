@@ -0,0 +1,243 @@
+package com.wizecommerce.hecuba.datastax;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Session;
+
+/**
+ * The fixed set of CQL statements the DataStax client managers issue against a column family and its secondary index
+ * column family. Every statement shape is prepared once and kept in an array indexed by its {@link Template}, so the
+ * per-call path only binds values.
+ *
+ * Statements are prepared on first use rather than up front, since not every shape is valid for every column family
+ * (e.g. INSERT is rejected on counter column families and the secondary index column family may not exist).
+ */
+final class DataStaxStatementTemplates {
+
+	enum Template {
+		READ_ROW(true),
+		READ_ROWS(true),
+		READ_COLUMN(true),
+		READ_COLUMNS(true),
+		READ_ROWS_COLUMNS(true),
+		READ_COLUMN_INFO(true),
+		SCAN_TOKEN_RANGE(true),
+		INSERT(false),
+		INSERT_USING_TIMESTAMP(false),
+		INSERT_USING_TTL(false),
+		INSERT_USING_TIMESTAMP_AND_TTL(false),
+		UPDATE_COUNTER(false),
+		DELETE_COLUMN(false),
+		DELETE_ROW(false),
+		DELETE_ROW_USING_TIMESTAMP(false),
+		READ_SECONDARY_INDEX(true),
+		READ_SECONDARY_INDEXES(true),
+		INSERT_SECONDARY_INDEX(false),
+		INSERT_SECONDARY_INDEX_USING_TIMESTAMP(false),
+		INSERT_SECONDARY_INDEX_USING_TTL(false),
+		INSERT_SECONDARY_INDEX_USING_TIMESTAMP_AND_TTL(false),
+		DELETE_SECONDARY_INDEX(false),
+		DELETE_SECONDARY_INDEX_USING_TIMESTAMP(false);
+
+		private final boolean read;
+
+		private Template(boolean read) {
+			this.read = read;
+		}
+	}
+
+	// column slice shapes are indexed by a bit mask of the optional clauses they have.
+	private static final int SLICE_START = 1;
+	private static final int SLICE_END = 2;
+	private static final int SLICE_REVERSED = 4;
+	private static final int SLICE_LIMIT = 8;
+	private static final int SLICE_MULTIPLE_KEYS = 16;
+
+	private final Session session;
+	private final String columnFamily;
+	private final String keyColumn;
+	private final String secondaryIndexColumnFamily;
+	private final String secondaryIndexKeyColumn;
+	private final ConsistencyLevel readConsistencyLevel;
+	private final ConsistencyLevel writeConsistencyLevel;
+	private final boolean tracingEnabled;
+
+	private final AtomicReferenceArray<PreparedStatement> statements = new AtomicReferenceArray<>(Template.values().length);
+	private final AtomicReferenceArray<PreparedStatement> sliceStatements = new AtomicReferenceArray<>(SLICE_MULTIPLE_KEYS << 1);
+
+	DataStaxStatementTemplates(Session session, String columnFamily, String keyColumn, String secondaryIndexColumnFamily,
+			String secondaryIndexKeyColumn, ConsistencyLevel readConsistencyLevel, ConsistencyLevel writeConsistencyLevel,
+			boolean tracingEnabled) {
+		this.session = session;
+		this.columnFamily = columnFamily;
+		this.keyColumn = keyColumn;
+		this.secondaryIndexColumnFamily = secondaryIndexColumnFamily;
+		this.secondaryIndexKeyColumn = secondaryIndexKeyColumn;
+		this.readConsistencyLevel = readConsistencyLevel;
+		this.writeConsistencyLevel = writeConsistencyLevel;
+		this.tracingEnabled = tracingEnabled;
+	}
+
+	PreparedStatement get(Template template) {
+		PreparedStatement stmt = statements.get(template.ordinal());
+		if (stmt == null) {
+			// Two threads may race to prepare the same statement, which is harmless; the driver hands back the same id.
+			stmt = prepare(getQuery(template), template.read);
+			statements.set(template.ordinal(), stmt);
+		}
+		return stmt;
+	}
+
+	/**
+	 * @return the INSERT taking (key, column1, value) followed by the timestamp and/or ttl, if they are set.
+	 */
+	PreparedStatement getInsert(long timestamp, int ttl) {
+		if (timestamp > 0 && ttl > 0) {
+			return get(Template.INSERT_USING_TIMESTAMP_AND_TTL);
+		} else if (timestamp > 0) {
+			return get(Template.INSERT_USING_TIMESTAMP);
+		} else if (ttl > 0) {
+			return get(Template.INSERT_USING_TTL);
+		}
+		return get(Template.INSERT);
+	}
+
+	/**
+	 * @return the secondary index INSERT taking (index key, column1, value) followed by the timestamp and/or ttl, if
+	 *         they are set.
+	 */
+	PreparedStatement getSecondaryIndexInsert(long timestamp, int ttl) {
+		if (timestamp > 0 && ttl > 0) {
+			return get(Template.INSERT_SECONDARY_INDEX_USING_TIMESTAMP_AND_TTL);
+		} else if (timestamp > 0) {
+			return get(Template.INSERT_SECONDARY_INDEX_USING_TIMESTAMP);
+		} else if (ttl > 0) {
+			return get(Template.INSERT_SECONDARY_INDEX_USING_TTL);
+		}
+		return get(Template.INSERT_SECONDARY_INDEX);
+	}
+
+	/**
+	 * @return the column slice SELECT taking the key (or list of keys) followed by the start, end and limit, if they
+	 *         are set. Multiple key slices are never ordered nor limited.
+	 */
+	PreparedStatement getSlice(boolean multipleKeys, boolean hasStart, boolean hasEnd, boolean reversed, boolean hasLimit) {
+		int shape = 0;
+		if (hasStart) {
+			shape |= SLICE_START;
+		}
+		if (hasEnd) {
+			shape |= SLICE_END;
+		}
+		if (reversed) {
+			shape |= SLICE_REVERSED;
+		}
+		if (multipleKeys) {
+			shape |= SLICE_MULTIPLE_KEYS;
+		} else if (hasLimit) {
+			shape |= SLICE_LIMIT;
+		}
+
+		PreparedStatement stmt = sliceStatements.get(shape);
+		if (stmt == null) {
+			stmt = prepare(getSliceQuery(shape), true);
+			sliceStatements.set(shape, stmt);
+		}
+		return stmt;
+	}
+
+	private PreparedStatement prepare(String query, boolean read) {
+		PreparedStatement stmt = session.prepare(query);
+		stmt.setConsistencyLevel(read ? readConsistencyLevel : writeConsistencyLevel);
+		if (tracingEnabled) {
+			stmt.enableTracing();
+		}
+		return stmt;
+	}
+
+	private String getQuery(Template template) {
+		switch (template) {
+		case READ_ROW:
+			return "select * from " + columnFamily + " where " + keyColumn + " = ?";
+		case READ_ROWS:
+			return "select * from " + columnFamily + " where " + keyColumn + " in ?";
+		case READ_COLUMN:
+			return "select * from " + columnFamily + " where " + keyColumn + " = ? and column1 = ?";
+		case READ_COLUMNS:
+			return "select * from " + columnFamily + " where " + keyColumn + " = ? and column1 in ?";
+		case READ_ROWS_COLUMNS:
+			return "select * from " + columnFamily + " where " + keyColumn + " in ? and column1 in ?";
+		case READ_COLUMN_INFO:
+			return "select " + keyColumn + ", column1, value, writetime(value), ttl(value) from " + columnFamily + " where "
+					+ keyColumn + " = ? and column1 = ?";
+		case SCAN_TOKEN_RANGE:
+			return "select * from " + columnFamily + " where token(" + keyColumn + ") > ? and token(" + keyColumn
+					+ ") <= ?";
+		case INSERT:
+			return "INSERT INTO " + columnFamily + " (" + keyColumn + ", column1, value) values (?,?,?)";
+		case INSERT_USING_TIMESTAMP:
+			return getQuery(Template.INSERT) + " USING TIMESTAMP ?";
+		case INSERT_USING_TTL:
+			return getQuery(Template.INSERT) + " USING TTL ?";
+		case INSERT_USING_TIMESTAMP_AND_TTL:
+			return getQuery(Template.INSERT) + " USING TIMESTAMP ? and TTL ?";
+		case UPDATE_COUNTER:
+			return "UPDATE " + columnFamily + " set value = value + ? where " + keyColumn + " = ? and column1 = ?";
+		case DELETE_COLUMN:
+			return "DELETE FROM " + columnFamily + " where " + keyColumn + " = ? and column1 = ?";
+		case DELETE_ROW:
+			return "DELETE FROM " + columnFamily + " WHERE " + keyColumn + " = ?";
+		case DELETE_ROW_USING_TIMESTAMP:
+			return "DELETE FROM " + columnFamily + " USING TIMESTAMP ? WHERE " + keyColumn + " = ?";
+		case READ_SECONDARY_INDEX:
+			return "select * from " + secondaryIndexColumnFamily + " where " + secondaryIndexKeyColumn + " = ?";
+		case READ_SECONDARY_INDEXES:
+			return "select * from " + secondaryIndexColumnFamily + " where " + secondaryIndexKeyColumn + " in ?";
+		case INSERT_SECONDARY_INDEX:
+			return "INSERT INTO " + secondaryIndexColumnFamily + " (" + secondaryIndexKeyColumn + ", column1, value) values (?,?,?)";
+		case INSERT_SECONDARY_INDEX_USING_TIMESTAMP:
+			return getQuery(Template.INSERT_SECONDARY_INDEX) + " USING TIMESTAMP ?";
+		case INSERT_SECONDARY_INDEX_USING_TTL:
+			return getQuery(Template.INSERT_SECONDARY_INDEX) + " USING TTL ?";
+		case INSERT_SECONDARY_INDEX_USING_TIMESTAMP_AND_TTL:
+			return getQuery(Template.INSERT_SECONDARY_INDEX) + " USING TIMESTAMP ? and TTL ?";
+		case DELETE_SECONDARY_INDEX:
+			return "DELETE FROM " + secondaryIndexColumnFamily + " where " + secondaryIndexKeyColumn + " = ? and column1 = ?";
+		case DELETE_SECONDARY_INDEX_USING_TIMESTAMP:
+			return "DELETE FROM " + secondaryIndexColumnFamily + " USING TIMESTAMP ? where " + secondaryIndexKeyColumn
+					+ " = ? and column1 = ?";
+		default:
+			throw new IllegalArgumentException("Unhandled template: " + template);
+		}
+	}
+
+	private String getSliceQuery(int shape) {
+		boolean reversed = (shape & SLICE_REVERSED) != 0;
+
+		StringBuilder builder = new StringBuilder();
+		builder.append("select * from " + columnFamily + " where " + keyColumn);
+		builder.append((shape & SLICE_MULTIPLE_KEYS) != 0 ? " in ?" : " = ?");
+
+		if ((shape & SLICE_START) != 0) {
+			builder.append(reversed ? " and column1 <= ?" : " and column1 >= ?");
+		}
+
+		if ((shape & SLICE_END) != 0) {
+			builder.append(reversed ? " and column1 >= ?" : " and column1 <= ?");
+		}
+
+		if ((shape & SLICE_MULTIPLE_KEYS) == 0) {
+			if (reversed) {
+				builder.append(" order by column1 desc");
+			}
+
+			if ((shape & SLICE_LIMIT) != 0) {
+				builder.append(" limit ?");
+			}
+		}
+
+		return builder.toString();
+	}
+}
@@ -0,0 +1,15 @@
+package com.wizecommerce.hecuba.datastax;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.PreparedStatement;
+
+/**
+ * A bound statement sent as the hedge of the same read sent before, which {@link HedgingLoadBalancingPolicy} sends to
+ * another host than the read.
+ */
+class HedgedBoundStatement extends BoundStatement {
+
+	HedgedBoundStatement(PreparedStatement statement) {
+		super(statement);
+	}
+}
@@ -0,0 +1,140 @@
+package com.wizecommerce.hecuba.datastax;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.HostDistance;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.policies.LoadBalancingPolicy;
+
+/**
+ * Sends the hedges of reads ({@link HedgedBoundStatement}) to another host than the one the reads went to.
+ *
+ * The plan of a read is that of the wrapped policy, whose first host is the one the read went to as long as the
+ * policy picks the same host for the same routing key, as the token aware policy does. The plan of a hedge has that
+ * host last, and the others ordered by their recent latency, so that the hedge goes to the fastest of the other
+ * replicas. The latencies are those recorded by the client managers, see {@link #recordLatency(Host, long)}; hosts
+ * with none keep the order of the wrapped policy, after those with some.
+ */
+class HedgingLoadBalancingPolicy implements LoadBalancingPolicy {
+	// weight of the latest request in the average latency of a host.
+	private static final double LATENCY_ALPHA = 0.2;
+
+	private final LoadBalancingPolicy childPolicy;
+	private final ConcurrentMap<Host, HostLatency> latencies = new ConcurrentHashMap<>();
+
+	HedgingLoadBalancingPolicy(LoadBalancingPolicy childPolicy) {
+		this.childPolicy = childPolicy;
+	}
+
+	/**
+	 * @return the policy of the given cluster, null if it does not hedge.
+	 */
+	static HedgingLoadBalancingPolicy of(Cluster cluster) {
+		final LoadBalancingPolicy policy = cluster.getConfiguration().getPolicies().getLoadBalancingPolicy();
+		return policy instanceof HedgingLoadBalancingPolicy ? (HedgingLoadBalancingPolicy) policy : null;
+	}
+
+	/**
+	 * Records the latency of a request answered by the given host, e.g. the queried host of its execution info.
+	 */
+	void recordLatency(Host host, long latencyNanos) {
+		if (host == null) {
+			return;
+		}
+		HostLatency latency = latencies.get(host);
+		if (latency == null) {
+			final HostLatency newLatency = new HostLatency();
+			latency = latencies.putIfAbsent(host, newLatency);
+			if (latency == null) {
+				latency = newLatency;
+			}
+		}
+		latency.record(latencyNanos);
+	}
+
+	/**
+	 * @return the recent average latency of the given host, or zero if none has been recorded.
+	 */
+	double getLatencyNanos(Host host) {
+		final HostLatency latency = latencies.get(host);
+		return latency == null ? 0 : latency.latencyNanos;
+	}
+
+	@Override
+	public void init(Cluster cluster, Collection<Host> hosts) {
+		childPolicy.init(cluster, hosts);
+	}
+
+	@Override
+	public HostDistance distance(Host host) {
+		return childPolicy.distance(host);
+	}
+
+	@Override
+	public Iterator<Host> newQueryPlan(String loggedKeyspace, Statement statement) {
+		final Iterator<Host> plan = childPolicy.newQueryPlan(loggedKeyspace, statement);
+		if (!(statement instanceof HedgedBoundStatement) || !plan.hasNext()) {
+			return plan;
+		}
+
+		final Host first = plan.next();
+		final List<Host> hosts = new ArrayList<>();
+		while (plan.hasNext()) {
+			hosts.add(plan.next());
+		}
+		// a stable sort, so that the hosts with no latency yet keep their order.
+		Collections.sort(hosts, new Comparator<Host>() {
+			@Override
+			public int compare(Host host, Host other) {
+				return Double.compare(getSortingLatency(host), getSortingLatency(other));
+			}
+		});
+		hosts.add(first);
+		return hosts.iterator();
+	}
+
+	private double getSortingLatency(Host host) {
+		final HostLatency latency = latencies.get(host);
+		return latency == null ? Double.MAX_VALUE : latency.latencyNanos;
+	}
+
+	@Override
+	public void onUp(Host host) {
+		childPolicy.onUp(host);
+	}
+
+	@Override
+	public void onDown(Host host) {
+		childPolicy.onDown(host);
+	}
+
+	@Override
+	public void onAdd(Host host) {
+		childPolicy.onAdd(host);
+	}
+
+	@Override
+	public void onRemove(Host host) {
+		latencies.remove(host);
+		childPolicy.onRemove(host);
+	}
+
+	private static class HostLatency {
+		// updated without synchronization, losing a sample now and then is harmless.
+		private volatile double latencyNanos;
+
+		void record(long latency) {
+			final double average = latencyNanos;
+			latencyNanos = average == 0 ? latency : average + LATENCY_ALPHA * (latency - average);
+		}
+	}
+}
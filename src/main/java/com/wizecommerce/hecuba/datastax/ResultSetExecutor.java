@@ -0,0 +1,57 @@
+package com.wizecommerce.hecuba.datastax;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.datastax.driver.core.ResultSet;
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Turns the result sets of asynchronous queries into Hecuba result sets without blocking the driver's I/O threads,
+ * which complete the queries.
+ *
+ * Reading a result set which is not fully fetched may block on fetching its next page, which would hang an I/O
+ * thread. Those are read by threads of their own, which queue the results rather than run them on, or block, the
+ * thread handing them over. Fully fetched result sets are read right away.
+ */
+final class ResultSetExecutor {
+	private static final int THREADS = 32;
+
+	private static final ListeningExecutorService executor;
+
+	static {
+		final ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactoryBuilder().setDaemon(true).setNameFormat(
+						"hecuba-datastax-results-%d").build());
+		threadPoolExecutor.allowCoreThreadTimeOut(true);
+		executor = MoreExecutors.listeningDecorator(threadPoolExecutor);
+	}
+
+	private ResultSetExecutor() {
+	}
+
+	static <T> ListenableFuture<T> transform(ListenableFuture<ResultSet> future, final Function<ResultSet, T> function) {
+		return Futures.transform(future, new AsyncFunction<ResultSet, T>() {
+			@Override
+			public ListenableFuture<T> apply(final ResultSet rs) {
+				if (rs.isFullyFetched()) {
+					return Futures.immediateFuture(function.apply(rs));
+				}
+				return executor.submit(new Callable<T>() {
+					@Override
+					public T call() {
+						return function.apply(rs);
+					}
+				});
+			}
+		});
+	}
+}
@@ -118,6 +118,26 @@ public class ReversedColumnsCassandraResultSet<K, N> implements CassandraResultS
 		return delegate.getDouble(fieldName, defaultDouble);
 	}
 
+	@Override
+	public long getLongValue(N fieldName, long defaultLong) {
+		return delegate.getLongValue(fieldName, defaultLong);
+	}
+
+	@Override
+	public int getIntValue(N fieldName, int defaultInt) {
+		return delegate.getIntValue(fieldName, defaultInt);
+	}
+
+	@Override
+	public double getDoubleValue(N fieldName, double defaultDouble) {
+		return delegate.getDoubleValue(fieldName, defaultDouble);
+	}
+
+	@Override
+	public boolean getBooleanValue(N fieldName, boolean defaultValue) {
+		return delegate.getBooleanValue(fieldName, defaultValue);
+	}
+
 	@Override
 	public byte[] getByteArray(N fieldName) {
 		return delegate.getByteArray(fieldName);
@@ -0,0 +1,24 @@
+package com.wizecommerce.hecuba.datastax;
+
+import java.nio.ByteBuffer;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.PreparedStatement;
+
+/**
+ * A bound statement with an explicit routing key. The driver can't compute one for "key in ?" queries, so this lets
+ * the token aware policy send a multi-get whose keys share a replica straight to that replica.
+ */
+class RoutedBoundStatement extends BoundStatement {
+	private final ByteBuffer routingKey;
+
+	RoutedBoundStatement(PreparedStatement statement, ByteBuffer routingKey) {
+		super(statement);
+		this.routingKey = routingKey;
+	}
+
+	@Override
+	public ByteBuffer getRoutingKey() {
+		return routingKey;
+	}
+}
@@ -0,0 +1,207 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wizecommerce.hecuba.hector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import me.prettyprint.cassandra.connection.HConnectionManager;
+import me.prettyprint.cassandra.serializers.StringSerializer;
+import me.prettyprint.cassandra.service.template.ColumnFamilyTemplate;
+import me.prettyprint.cassandra.service.template.ThriftColumnFamilyTemplate;
+import me.prettyprint.hector.api.Keyspace;
+import me.prettyprint.hector.api.Serializer;
+
+/**
+ * The column family templates of a Hector client manager, one per pool of Cassandra hosts, and the choice of the
+ * template each request goes through.
+ *
+ * Requests go through the better of two templates picked at random ("power of two choices"), the one with the lower
+ * product of the requests it has in flight and its average latency. This spreads the load as evenly as always
+ * picking the least loaded template, without scanning them all on every request, and keeps a slow host from
+ * accumulating requests. Templates all of whose hosts Hector has marked as down are left out until Hector brings a
+ * host back, unless all of the templates are down.
+ *
+ * Every {@link #acquire()} must be followed by a {@link Member#release(long)} of the member it returns.
+ */
+public class ColumnFamilyTemplatePool<K> {
+	// weight of the latest request in the average latency of a template.
+	private static final double LATENCY_ALPHA = 0.2;
+	private static final long DOWNED_HOSTS_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private final List<Member<K>> members = new CopyOnWriteArrayList<>();
+	private volatile long nextDownedHostsRefresh = System.nanoTime();
+
+	/**
+	 * @param keyspace          - keyspace of the template.
+	 * @param template          - template of the column family.
+	 * @param connectionManager - connection manager of the Hector cluster the keyspace belongs to, which tells which of
+	 *                          its hosts are down.
+	 */
+	public void add(Keyspace keyspace, ColumnFamilyTemplate<K, String> template, HConnectionManager connectionManager) {
+		members.add(new Member<>(keyspace, template, connectionManager));
+	}
+
+	/**
+	 * @return a pool with a template of the given column family for each template of this pool, going through the same
+	 *         keyspaces and connection pools.
+	 */
+	public ColumnFamilyTemplatePool<K> forColumnFamily(String columnFamily, Serializer<K> keySerializer) {
+		final ColumnFamilyTemplatePool<K> pool = new ColumnFamilyTemplatePool<>();
+		for (Member<K> member : members) {
+			pool.add(member.keyspace, new ThriftColumnFamilyTemplate<K, String>(member.keyspace, columnFamily,
+					keySerializer, StringSerializer.get()), member.connectionManager);
+		}
+		return pool;
+	}
+
+	public int size() {
+		return members.size();
+	}
+
+	/**
+	 * @return the number of requests in flight through the templates of this pool.
+	 */
+	public int getInFlight() {
+		int inFlight = 0;
+		for (Member<K> member : members) {
+			inFlight += member.inFlight.get();
+		}
+		return inFlight;
+	}
+
+	public List<ColumnFamilyTemplate<K, String>> getTemplates() {
+		final List<ColumnFamilyTemplate<K, String>> templates = new ArrayList<>(members.size());
+		for (Member<K> member : members) {
+			templates.add(member.template);
+		}
+		return templates;
+	}
+
+	/**
+	 * @return the template the next request should go through, counted as in flight until it is released.
+	 */
+	public Member<K> acquire() {
+		final List<Member<K>> members = this.members;
+		final int size = members.size();
+		if (size == 0) {
+			throw new IllegalStateException("No column family templates have been configured");
+		}
+
+		final Member<K> chosen;
+		if (size == 1) {
+			chosen = members.get(0);
+		} else {
+			refreshDownedHosts(members);
+			chosen = choose(members, size);
+		}
+
+		chosen.inFlight.incrementAndGet();
+		return chosen;
+	}
+
+	private Member<K> choose(List<Member<K>> members, int size) {
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+		final int firstIndex = random.nextInt(size);
+		final Member<K> first = members.get(firstIndex);
+		final int secondOffset = random.nextInt(size - 1);
+
+		// the second pick skips the templates which are down, so that it can stand in for a first pick which is down.
+		Member<K> second = null;
+		for (int i = 0; i < size - 1; i++) {
+			final Member<K> candidate = members.get((firstIndex + 1 + (secondOffset + i) % (size - 1)) % size);
+			if (!candidate.down) {
+				second = candidate;
+				break;
+			}
+		}
+
+		if (second == null) {
+			return first;
+		}
+		if (first.down) {
+			return second;
+		}
+		return second.getCost() < first.getCost() ? second : first;
+	}
+
+	private void refreshDownedHosts(List<Member<K>> members) {
+		final long now = System.nanoTime();
+		if (now - nextDownedHostsRefresh < 0) {
+			return;
+		}
+		nextDownedHostsRefresh = now + DOWNED_HOSTS_REFRESH_NANOS;
+
+		// Hector takes the hosts it marks as down out of its active hosts until they are back.
+		for (Member<K> member : members) {
+			member.down = member.connectionManager.getHosts().isEmpty() && !member.connectionManager.getDownedHosts()
+					.isEmpty();
+		}
+	}
+
+	public static class Member<K> {
+		private final Keyspace keyspace;
+		private final ColumnFamilyTemplate<K, String> template;
+		private final HConnectionManager connectionManager;
+
+		private final AtomicInteger inFlight = new AtomicInteger();
+		// updated without synchronization, losing a sample now and then is harmless.
+		private volatile double latencyNanos;
+		private volatile boolean down;
+
+		Member(Keyspace keyspace, ColumnFamilyTemplate<K, String> template, HConnectionManager connectionManager) {
+			this.keyspace = keyspace;
+			this.template = template;
+			this.connectionManager = connectionManager;
+		}
+
+		public ColumnFamilyTemplate<K, String> getTemplate() {
+			return template;
+		}
+
+		public int getInFlight() {
+			return inFlight.get();
+		}
+
+		public double getLatencyNanos() {
+			return latencyNanos;
+		}
+
+		public boolean isDown() {
+			return down;
+		}
+
+		/**
+		 * Ends a request through this template.
+		 *
+		 * @param startNanos - {@link System#nanoTime()} when the request was sent.
+		 */
+		public void release(long startNanos) {
+			final long latency = System.nanoTime() - startNanos;
+			final double average = latencyNanos;
+			latencyNanos = average == 0 ? latency : average + LATENCY_ALPHA * (latency - average);
+			inFlight.decrementAndGet();
+		}
+
+		private double getCost() {
+			// templates without a latency yet are tried first, the least busy of them first.
+			return (inFlight.get() + 1) * Math.max(latencyNanos, 1);
+		}
+	}
+}
@@ -19,6 +19,9 @@ package com.wizecommerce.hecuba.hector;
 
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 import me.prettyprint.cassandra.connection.HConnectionManager;
 import me.prettyprint.cassandra.model.IndexedSlicesQuery;
@@ -26,6 +29,7 @@ import me.prettyprint.cassandra.model.thrift.ThriftCounterColumnQuery;
 import me.prettyprint.cassandra.serializers.StringSerializer;
 import me.prettyprint.cassandra.service.CassandraHost;
 import me.prettyprint.cassandra.service.CassandraHostConfigurator;
+import me.prettyprint.cassandra.service.ThriftCluster;
 import me.prettyprint.cassandra.service.template.ColumnFamilyResult;
 import me.prettyprint.cassandra.service.template.ColumnFamilyTemplate;
 import me.prettyprint.cassandra.service.template.ColumnFamilyUpdater;
@@ -48,9 +52,11 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.exception.ExceptionUtils;
 
 import com.google.common.base.Joiner;
+import com.google.common.collect.Iterables;
 import com.wizecommerce.hecuba.*;
 import com.wizecommerce.hecuba.util.ClientManagerUtils;
 import com.wizecommerce.hecuba.util.ConfigUtils;
+import com.wizecommerce.hecuba.util.Murmur3Tokens;
 
 /**
  * Configuring Hector Clients:
@@ -61,18 +67,32 @@ import com.wizecommerce.hecuba.util.ConfigUtils;
  * com.wizecommerce.hecuba.hectorpools.retrydownedhostsinseconds
  * com.wizecommerce.hecuba.hectorpools.thriftsockettimeout
  * com.wizecommerce.hecuba.hectorpools.usethriftframedtransport
+ * com.wizecommerce.hecuba.hectorpools.draintimeoutinseconds
  *
  * @author Eran Chinthaka Withana
  */
 
 public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
-	private List<ColumnFamilyTemplate<K, String>> columnFamilyTemplates;
+	// the column family requests go to and everything they go through, replaced as a whole when the manager is
+	// switched to another column family or reconfigured, so that each request sees a consistent set. Requests read it
+	// once.
+	private volatile ColumnFamilySnapshot<K> snapshot;
+	// held while the snapshot is replaced, so that switching column families and reconfiguring do not undo each other.
+	private final Object snapshotLock = new Object();
+	// templates of the column families the manager has been switched to, which all share the cluster and keyspace.
+	private final ConcurrentMap<String, ColumnFamilyTemplatePool<K>> templatesByColumnFamily = new ConcurrentHashMap<>();
+	// nodes given to configureOurColumnFamilyTemplatePool, null if it has not been called, and the clusters of their
+	// templates, which are replaced together with the templates.
+	private volatile String[] templatePorts;
+	private volatile String[] templateLocationURLs;
+	private volatile List<Cluster> templateClusters = Collections.emptyList();
+	// Hector shares the clusters of the same name, so the managers of the column families of a keyspace share its
+	// pools, which are shut down with the last of them.
+	private static final Map<Cluster, Integer> clusterUsers = new IdentityHashMap<>();
 	private ConsistencyLevelPolicy consistencyLevel;
-	private Keyspace keysp;
-	private Cluster cluster;
+	private volatile Cluster cluster;
 	private HectorClientConfiguration hectorClientConfiguration;
 	protected Serializer<K> keySerializer;
-	protected ThriftColumnFamilyTemplate<String, K> secondaryIndexedColumnFamilyTemplate;
 
 
 	public HectorBasedHecubaClientManager(CassandraParamsBean parameters, Serializer<K> keySerializer) {
@@ -86,6 +106,13 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 
 		configureHectorSpecificProperties();
 		reConfigureParameters();
+
+		secondaryIndexWriter = createSecondaryIndexWriter(columnFamily, new AsyncSecondaryIndexWriter.BatchWriter<K>() {
+			@Override
+			public void write(List<AsyncSecondaryIndexWriter.IndexMutation<K>> mutations) {
+				writeSecondaryIndexes(mutations);
+			}
+		});
 	}
 
 
@@ -111,27 +138,35 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 	 * @param value      - value to be inserted.
 	 */
 	public void updateString(K key, String columnName, String value) {
+		final ColumnFamilySnapshot<K> snapshot = this.snapshot;
 
 		// update the secondary index, if needed
-		updateSecondaryIndexes(key, columnName, value, -1, -1);
+		updateSecondaryIndexes(snapshot, key, columnName, value, -1, -1);
 
-		final ColumnFamilyTemplate<K, String> columnFamilyLocal = getColumnFamily();
-		final ColumnFamilyUpdater<K, String> updater = columnFamilyLocal.createUpdater(key);
-		updater.setString(columnName, value);
-		columnFamilyLocal.update(updater);
+		final long start = System.nanoTime();
+		final ColumnFamilyTemplatePool.Member<K> member = snapshot.templates.acquire();
+		try {
+			final ColumnFamilyTemplate<K, String> columnFamilyLocal = member.getTemplate();
+			final ColumnFamilyUpdater<K, String> updater = columnFamilyLocal.createUpdater(key);
+			updater.setString(columnName, value);
+			columnFamilyLocal.update(updater);
+		} finally {
+			member.release(start);
+		}
 
 
 	}
 
 	public void updateString(K key, String columnName, String value, long timestamp, int ttl) {
+		final ColumnFamilySnapshot<K> snapshot = this.snapshot;
 
 		// update the secondary index, if needed
-		updateSecondaryIndexes(key, columnName, value, timestamp, ttl);
+		updateSecondaryIndexes(snapshot, key, columnName, value, timestamp, ttl);
 
 		try {
-			final Mutator<K> mutator = HFactory.createMutator(keysp, keySerializer);
+			final Mutator<K> mutator = HFactory.createMutator(snapshot.keyspace, keySerializer);
 
-			addInsertionToMutator(key, columnName, value, timestamp, ttl, mutator);
+			addInsertionToMutator(snapshot, key, columnName, value, timestamp, ttl, mutator);
 
 			final MutationResult mutationResult = mutator.execute();
 
@@ -149,26 +184,27 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 
 	}
 
-	private void updateSecondaryIndexes(K key, String columnName, String value, long timestamp, int ttl) {
+	private void updateSecondaryIndexes(ColumnFamilySnapshot<K> snapshot, K key, String columnName, String value,
+			long timestamp, int ttl) {
 		// update the column name and value based secondary index, if needed
 		if (isSecondaryIndexByColumnNameAndValueEnabled) {
-			updateSecondaryIndexColumn(key, columnName, value, timestamp, ttl);
+			updateSecondaryIndexColumn(snapshot, key, columnName, value, timestamp, ttl);
 		}
 
 		// update the column name based secondary index, if needed
 		if (isSecondaryIndexesByColumnNamesEnabled) {
-			updateSecondaryIndexByColumNames(key, columnName, timestamp, ttl);
+			updateSecondaryIndexByColumNames(snapshot, key, columnName, timestamp, ttl);
 		}
 	}
 
-	private void addInsertionToMutator(K key, String columnName, String value, long timestamp, int ttl,
-			Mutator<K> mutator) {
+	private void addInsertionToMutator(ColumnFamilySnapshot<K> snapshot, K key, String columnName, String value,
+			long timestamp, int ttl, Mutator<K> mutator) {
 		if (ttl > 0) {
-			mutator.addInsertion(key, columnFamily, HFactory.createColumn(columnName, value, timestamp > 0 ? timestamp :
-				keysp.createClock(), ttl, StringSerializer.get(), StringSerializer.get()));
+			mutator.addInsertion(key, snapshot.columnFamily, HFactory.createColumn(columnName, value, timestamp > 0 ?
+				timestamp : snapshot.keyspace.createClock(), ttl, StringSerializer.get(), StringSerializer.get()));
 		} else {
-			mutator.addInsertion(key, columnFamily, HFactory.createColumn(columnName, value, timestamp > 0 ? timestamp :
-				keysp.createClock(), StringSerializer.get(), StringSerializer.get()));
+			mutator.addInsertion(key, snapshot.columnFamily, HFactory.createColumn(columnName, value, timestamp > 0 ?
+				timestamp : snapshot.keyspace.createClock(), StringSerializer.get(), StringSerializer.get()));
 		}
 	}
 
@@ -180,10 +216,16 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 	 * @param value      - value to be inserted.
 	 */
 	public void updateByteBuffer(K key, String columnName, ByteBuffer value) {
-		final ColumnFamilyTemplate<K, String> columnFamilyLocal = getColumnFamily();
-		final ColumnFamilyUpdater<K, String> updater = columnFamilyLocal.createUpdater(key);
-		updater.setByteBuffer(columnName, value);
-		columnFamilyLocal.update(updater);
+		final long start = System.nanoTime();
+		final ColumnFamilyTemplatePool.Member<K> member = snapshot.templates.acquire();
+		try {
+			final ColumnFamilyTemplate<K, String> columnFamilyLocal = member.getTemplate();
+			final ColumnFamilyUpdater<K, String> updater = columnFamilyLocal.createUpdater(key);
+			updater.setByteBuffer(columnName, value);
+			columnFamilyLocal.update(updater);
+		} finally {
+			member.release(start);
+		}
 	}
 
 	/**
@@ -193,47 +235,59 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 	 * @param columnName - name of the column to be deleted.
 	 */
 	public void deleteColumn(K key, String columnName) {
-		final ColumnFamilyTemplate<K, String> columnFamily1 = getColumnFamily();
-		final HColumn<String, String> oldValue = readColumn(key, columnName);
+		final ColumnFamilySnapshot<K> snapshot = this.snapshot;
+		final Mutator<String> secondaryIndexMutator = HFactory.createMutator(snapshot.keyspace, StringSerializer.get());
 
 		// is this insertion involves a change to secondary indexes
-		if (isSecondaryIndexByColumnNameAndValueEnabled && Collections.binarySearch(columnsToIndexOnColumnNameAndValue,
-				columnName) >= 0 &&
-				oldValue != null) {
-			secondaryIndexedColumnFamilyTemplate.deleteColumn(getSecondaryIndexKey(columnName, oldValue.getValue()),
-					key);
+		if (isSecondaryIndexByColumnNameAndValueEnabledForColumn(columnName)) {
+			final String oldValue = getIndexedValue(key, columnName);
+			if (oldValue != null) {
+				addSecondaryIndexDeletion(snapshot, secondaryIndexMutator, getSecondaryIndexKey(columnName, oldValue),
+						key, -1);
+			}
 		}
 
-		if (isSecondaryIndexesByColumnNamesEnabled && columnName.matches(secondaryIdxByColumnPattern)) {
-			secondaryIndexedColumnFamilyTemplate.deleteColumn(getSecondaryIndexKey(columnName, ""), key);
+		if (isSecondaryIndexByColumnNameEnabledForColumn(columnName)) {
+			addSecondaryIndexDeletion(snapshot, secondaryIndexMutator, getSecondaryIndexKey(columnName, ""), key, -1);
 		}
 
-		columnFamily1.deleteColumn(key, columnName);
+		if (secondaryIndexMutator.getPendingMutationCount() > 0) {
+			secondaryIndexMutator.execute();
+		}
+		final long start = System.nanoTime();
+		final ColumnFamilyTemplatePool.Member<K> member = snapshot.templates.acquire();
+		try {
+			member.getTemplate().deleteColumn(key, columnName);
+		} finally {
+			member.release(start);
+		}
+		setIndexedValue(key, columnName, null);
 	}
 
 	public void deleteRow(K key, long timestamp) {
-		timestamp = timestamp > 0 ? timestamp : keysp.createClock();
+		final ColumnFamilySnapshot<K> snapshot = this.snapshot;
+		timestamp = timestamp > 0 ? timestamp : snapshot.keyspace.createClock();
 
 		if (isSecondaryIndexByColumnNameAndValueEnabled || isSecondaryIndexesByColumnNamesEnabled) {
 
-			final Mutator<String> secondaryIndexMutator = HFactory.createMutator(keysp, StringSerializer.get());
-			String secondaryIndexCF = secondaryIndexedColumnFamilyTemplate.getColumnFamily();
+			final Mutator<String> secondaryIndexMutator = HFactory.createMutator(snapshot.keyspace,
+					StringSerializer.get());
 
 			if (isSecondaryIndexByColumnNameAndValueEnabled) {
 				// first read the old values of columns.
 				final CassandraResultSet<K, String> oldValues = readColumns(key, columnsToIndexOnColumnNameAndValue);
 				for (String columnName : columnsToIndexOnColumnNameAndValue) {
-					secondaryIndexMutator.addDeletion(getSecondaryIndexKey(columnName, oldValues.getString(columnName)),
-							secondaryIndexCF, key, keySerializer, timestamp);
+					addSecondaryIndexDeletion(snapshot, secondaryIndexMutator, getSecondaryIndexKey(columnName,
+							oldValues.getString(columnName)), key, timestamp);
 				}
 			}
 
 			if (isSecondaryIndexesByColumnNamesEnabled) {
 				final CassandraResultSet<K, String> oldValues = readAllColumns(key);
 				for (String columnName : oldValues.getColumnNames()) {
-					if (columnName.matches(secondaryIdxByColumnPattern)) {
-						secondaryIndexMutator.addDeletion(getSecondaryIndexKey(columnName, ""), secondaryIndexCF, key,
-								keySerializer, timestamp);
+					if (isSecondaryIndexByColumnNameEnabledForColumn(columnName)) {
+						addSecondaryIndexDeletion(snapshot, secondaryIndexMutator, getSecondaryIndexKey(columnName, ""),
+								key, timestamp);
 					}
 				}
 			}
@@ -241,13 +295,15 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 		}
 
 		// now delete the row from main CF
-		Mutator<K> mutator = HFactory.createMutator(keysp, keySerializer);
-		mutator.addDeletion(key, columnFamily, null, StringSerializer.get(), timestamp).execute();
+		Mutator<K> mutator = HFactory.createMutator(snapshot.keyspace, keySerializer);
+		mutator.addDeletion(key, snapshot.columnFamily, null, StringSerializer.get(), timestamp).execute();
+		invalidateIndexedValues(key);
 	}
 
 	@Override
 	public void updateRow(K key, Map<String, Object> row, Map<String, Long> timestamps, Map<String, Integer> ttls) throws HectorException {
-		final Mutator<K> m = HFactory.createMutator(keysp, keySerializer);
+		final ColumnFamilySnapshot<K> snapshot = this.snapshot;
+		final Mutator<K> m = HFactory.createMutator(snapshot.keyspace, keySerializer);
 
 		List<String> secondaryColumnsChanged = null;
 		List<String> secondaryIndexByColumnNameChanges = null;
@@ -261,15 +317,15 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 		for (String columnName : row.keySet()) {
 			final Object value = row.get(columnName);
 
-			String valueToInsert = ClientManagerUtils.getInstance().convertValueForStorage(value);
+			String valueToInsert = ClientManagerUtils.getInstance().convertValueForStorage(columnName, value);
 
-			addInsertionToMutator(key, columnName, valueToInsert, timestampsDefined && timestamps.get(columnName) !=
-					null ? timestamps.get(columnName) : -1, ttlsDefined && ttls.get(columnName) != null ? ttls.get(
-							columnName) : -1, m);
+			addInsertionToMutator(snapshot, key, columnName, valueToInsert, timestampsDefined && timestamps.get(
+					columnName) != null ? timestamps.get(columnName) : -1, ttlsDefined && ttls.get(columnName) != null ?
+							ttls.get(columnName) : -1, m);
 
 			// is this insertion involves a change to secondary indexes
 			if (isSecondaryIndexByColumnNameAndValueEnabled) {
-				if (Collections.binarySearch(columnsToIndexOnColumnNameAndValue, columnName) >= 0) {
+				if (isSecondaryIndexByColumnNameAndValueEnabledForColumn(columnName)) {
 
 					// doing a late initialization here.
 					if (secondaryColumnsChanged == null) {
@@ -295,12 +351,12 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 
 		if (isSecondaryIndexByColumnNameAndValueEnabled && secondaryColumnsChanged != null &&
 				secondaryColumnsChanged.size() > 0) {
-			updateSecondaryIndexes(key, row, secondaryColumnsChanged, ttls);
+			updateSecondaryIndexes(snapshot, key, row, secondaryColumnsChanged, ttls);
 		}
 
 		if (isSecondaryIndexesByColumnNamesEnabled && secondaryIndexByColumnNameChanges != null &&
 				secondaryIndexByColumnNameChanges.size() > 0) {
-			updateColumnNameBasedSecondaryIndices(key, secondaryIndexByColumnNameChanges, ttls);
+			updateColumnNameBasedSecondaryIndices(snapshot, key, secondaryIndexByColumnNameChanges, ttls);
 		}
 
 
@@ -318,10 +374,10 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 
 	}
 
-	private void updateColumnNameBasedSecondaryIndices(K key, List<String> secondaryIndexByColumnNameChanges, Map<String, Integer> ttls) {
+	private void updateColumnNameBasedSecondaryIndices(ColumnFamilySnapshot<K> snapshot, K key,
+			List<String> secondaryIndexByColumnNameChanges, Map<String, Integer> ttls) {
 
-		final Mutator<String> secondaryIndexMutator = HFactory.createMutator(keysp, StringSerializer.get());
-		String secondaryIndexCF = secondaryIndexedColumnFamilyTemplate.getColumnFamily();
+		final Mutator<String> secondaryIndexMutator = HFactory.createMutator(snapshot.keyspace, StringSerializer.get());
 
 		boolean ttlsDefined = MapUtils.isNotEmpty(ttls);
 
@@ -330,13 +386,8 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 			if (ttlsDefined && ttls.get(secondaryIndexByColumnName) != null) {
 				ttl = ttls.get(secondaryIndexByColumnName);
 			}
-			HColumn<K, K> hColumn;
-			if (ttl > 0) {
-				hColumn = HFactory.createColumn(key, key, keysp.createClock(), ttl, keySerializer, keySerializer);
-			} else {
-				hColumn = HFactory.createColumn(key, key, keysp.createClock(), keySerializer, keySerializer);
-			}
-			secondaryIndexMutator.addInsertion(getSecondaryIndexKey(secondaryIndexByColumnName, ""), secondaryIndexCF, hColumn);
+			addSecondaryIndexInsertion(snapshot, secondaryIndexMutator, getSecondaryIndexKey(secondaryIndexByColumnName,
+					""), key, -1, ttl);
 		}
 		MutationResult execute = secondaryIndexMutator.execute();
 		log.debug(secondaryIndexByColumnNameChanges.size() + " secondary Indexes got updated for the key " + key.toString() +
@@ -344,25 +395,30 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 
 	}
 
-	protected void updateSecondaryIndexes(K key, Map<String, Object> allColumnsToBeChanged,
-			List<String> secondaryColumnsChanged, Map<String, Integer> ttls) {
+	private void updateSecondaryIndexes(ColumnFamilySnapshot<K> snapshot, K key,
+			Map<String, Object> allColumnsToBeChanged, List<String> secondaryColumnsChanged,
+			Map<String, Integer> ttls) {
 
-		final Mutator<String> secondaryIndexMutator = HFactory.createMutator(keysp, StringSerializer.get());
-		String secondaryIndexCF = secondaryIndexedColumnFamilyTemplate.getColumnFamily();
+		final Mutator<String> secondaryIndexMutator = HFactory.createMutator(snapshot.keyspace, StringSerializer.get());
 
 		// first retrieve the values of these columns from the current row.
 		if (secondaryColumnsChanged.size() == 1) {
 			String columnName = secondaryColumnsChanged.get(0);
-			String oldValue = readString(key, columnName);
+			String oldValue = getIndexedValue(key, columnName);
 			log.debug("Updating secondary index for Key = " + key + " column = " + columnName);
-			prepareMutatorForSecondaryIndexUpdate(key, allColumnsToBeChanged, secondaryIndexMutator, secondaryIndexCF,
+			prepareMutatorForSecondaryIndexUpdate(snapshot, key, allColumnsToBeChanged, secondaryIndexMutator,
 					columnName, oldValue, ttls);
 		} else {
-			CassandraResultSet<K, String> oldValues = readColumns(key, secondaryColumnsChanged);
+			Map<String, String> oldValues;
+			try {
+				oldValues = getIndexedValues(key, secondaryColumnsChanged);
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
 			for (String columnName : secondaryColumnsChanged) {
-				String oldValue = oldValues.getString(columnName);
-				prepareMutatorForSecondaryIndexUpdate(key, allColumnsToBeChanged, secondaryIndexMutator,
-						secondaryIndexCF, columnName, oldValue, ttls);
+				String oldValue = oldValues.get(columnName);
+				prepareMutatorForSecondaryIndexUpdate(snapshot, key, allColumnsToBeChanged, secondaryIndexMutator,
+						columnName, oldValue, ttls);
 			}
 		}
 
@@ -371,15 +427,19 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 		log.debug(secondaryColumnsChanged.size() + " secondary Indexes got updated for the key " + key.toString() +
 				". Exec Time = " +
 				execute.getExecutionTimeMicro() + ", Host used = " + execute.getHostUsed());
+
+		for (String columnName : secondaryColumnsChanged) {
+			setIndexedValue(key, columnName, allColumnsToBeChanged.get(columnName).toString());
+		}
 	}
 
-	private void prepareMutatorForSecondaryIndexUpdate(K key, Map<String, Object> allColumnsToBeChanged,
-			Mutator<String> secondaryIndexMutator, String secondaryIndexCF,
+	private void prepareMutatorForSecondaryIndexUpdate(ColumnFamilySnapshot<K> snapshot, K key,
+			Map<String, Object> allColumnsToBeChanged, Mutator<String> secondaryIndexMutator,
 			String columnName, String oldValue, Map<String, Integer> ttls) {
 		if (!StringUtils.isBlank(oldValue) && !"null".equalsIgnoreCase(oldValue)) {
 			// delete those indexes first
-			secondaryIndexMutator.addDeletion(getSecondaryIndexKey(columnName, oldValue), secondaryIndexCF, key,
-					keySerializer);
+			addSecondaryIndexDeletion(snapshot, secondaryIndexMutator, getSecondaryIndexKey(columnName, oldValue), key,
+					-1);
 		}
 
 		int ttl = -1;
@@ -388,33 +448,30 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 		}
 
 		// add the new ones
-		if (ttl > 0) {
-			secondaryIndexMutator.addInsertion(getSecondaryIndexKey(columnName, allColumnsToBeChanged.get(columnName)
-					.toString()), secondaryIndexCF, HFactory.createColumn(key, key, keysp.createClock(), ttl, keySerializer, keySerializer));
-		} else {
-			secondaryIndexMutator.addInsertion(getSecondaryIndexKey(columnName, allColumnsToBeChanged.get(columnName)
-					.toString()), secondaryIndexCF, HFactory.createColumn(key, key, keysp.createClock(), keySerializer, keySerializer));
-		}
+		addSecondaryIndexInsertion(snapshot, secondaryIndexMutator, getSecondaryIndexKey(columnName,
+				allColumnsToBeChanged.get(columnName).toString()), key, -1, ttl);
 	}
 
-	private void updateSecondaryIndexByColumNames(K key, String columnName, long timestamp, int ttl) {
+	private void updateSecondaryIndexByColumNames(ColumnFamilySnapshot<K> snapshot, K key, String columnName,
+			long timestamp, int ttl) {
 		// here, there is nothing to retrieve first and delete because the secondary index is based on the name of the
 		// column and not on the value.
 		if (isSecondaryIndexByColumnNameEnabledForColumn(columnName)) {
-			updateSecondaryIndexColumnFamily(key, columnName, "", timestamp, ttl, "");
+			updateSecondaryIndexColumnFamily(snapshot, key, columnName, "", timestamp, ttl, "");
 		}
 	}
 
-	protected void updateSecondaryIndexColumn(K key, String columnName, String columnValue, long timestamp, int ttl) {
+	private void updateSecondaryIndexColumn(ColumnFamilySnapshot<K> snapshot, K key, String columnName,
+			String columnValue, long timestamp, int ttl) {
 
-		if (Collections.binarySearch(columnsToIndexOnColumnNameAndValue, columnName) >= 0) {
+		if (isSecondaryIndexByColumnNameAndValueEnabledForColumn(columnName)) {
 
 			// first retrieve the old value of this column to delete it from the secondary index.
-			HColumn<String, String> oldColumn = getColumnFamily().querySingleColumn(key, columnName,
-					StringSerializer.get());
+			String oldValue = getIndexedValue(key, columnName);
 
-			updateSecondaryIndexColumnFamily(key, columnName, columnValue, timestamp, ttl,
-					oldColumn != null ? oldColumn.getValue() : "");
+			updateSecondaryIndexColumnFamily(snapshot, key, columnName, columnValue, timestamp, ttl,
+					oldValue != null ? oldValue : "");
+			setIndexedValue(key, columnName, columnValue);
 		}
 
 	}
@@ -433,29 +490,19 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 	 *                       to
 	 *                       delete the previous secondary index.
 	 */
-	private void updateSecondaryIndexColumnFamily(K key, String columnName, String columnValue, long timestamp, int ttl,
-			String oldColumnValue) {
-		final Mutator<String> secondaryIndexMutator = HFactory.createMutator(keysp, StringSerializer.get());
-		String secondaryIndexCF = secondaryIndexedColumnFamilyTemplate.getColumnFamily();
+	private void updateSecondaryIndexColumnFamily(ColumnFamilySnapshot<K> snapshot, K key, String columnName,
+			String columnValue, long timestamp, int ttl, String oldColumnValue) {
+		final Mutator<String> secondaryIndexMutator = HFactory.createMutator(snapshot.keyspace, StringSerializer.get());
 
 		// enqueue a deletion to the secondary index to remove the previous value of this column.
 		if (!StringUtils.isBlank(oldColumnValue) && !"null".equalsIgnoreCase(oldColumnValue)) {
-			secondaryIndexMutator.addDeletion(getSecondaryIndexKey(columnName, oldColumnValue), secondaryIndexCF, key,
-					keySerializer);
+			addSecondaryIndexDeletion(snapshot, secondaryIndexMutator, getSecondaryIndexKey(columnName,
+					oldColumnValue), key, -1);
 		}
 
 		// add the new value to the secondary index CF. Make sure to handle the TTLs properly.
-		if (ttl > 0) {
-			secondaryIndexMutator.addInsertion(getSecondaryIndexKey(columnName, columnValue), secondaryIndexCF,
-					HFactory.createColumn(key, key,
-							timestamp > 0 ? timestamp : keysp.createClock(),
-									ttl, keySerializer, keySerializer));
-		} else {
-			secondaryIndexMutator.addInsertion(getSecondaryIndexKey(columnName, columnValue), secondaryIndexCF,
-					HFactory.createColumn(key, key,
-							timestamp > 0 ? timestamp : keysp.createClock(),
-									keySerializer, keySerializer));
-		}
+		addSecondaryIndexInsertion(snapshot, secondaryIndexMutator, getSecondaryIndexKey(columnName, columnValue), key,
+				timestamp, ttl);
 
 
 		// execute everything (the deletion and the insertion) together
@@ -465,10 +512,75 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 				execute.getExecutionTimeMicro() + ", Host used = " + execute.getHostUsed());
 	}
 
+	/**
+	 * Adds an insertion to the given secondary index mutator, or hands it to the asynchronous secondary index writer
+	 * if there is one.
+	 */
+	private void addSecondaryIndexInsertion(ColumnFamilySnapshot<K> snapshot, Mutator<String> secondaryIndexMutator,
+			String secondaryIndexKey, K key, long timestamp, int ttl) {
+		if (secondaryIndexWriter != null) {
+			secondaryIndexWriter.insert(secondaryIndexKey, key, timestamp, ttl);
+			return;
+		}
+
+		final HColumn<K, K> column;
+		if (ttl > 0) {
+			column = HFactory.createColumn(key, key, timestamp > 0 ? timestamp : snapshot.keyspace.createClock(), ttl,
+					keySerializer, keySerializer);
+		} else {
+			column = HFactory.createColumn(key, key, timestamp > 0 ? timestamp : snapshot.keyspace.createClock(),
+					keySerializer, keySerializer);
+		}
+		secondaryIndexMutator.addInsertion(secondaryIndexKey, snapshot.secondaryIndexTemplate.getColumnFamily(),
+				column);
+	}
+
+	/**
+	 * Adds a deletion to the given secondary index mutator, or hands it to the asynchronous secondary index writer if
+	 * there is one.
+	 */
+	private void addSecondaryIndexDeletion(ColumnFamilySnapshot<K> snapshot, Mutator<String> secondaryIndexMutator,
+			String secondaryIndexKey, K key, long timestamp) {
+		if (secondaryIndexWriter != null) {
+			secondaryIndexWriter.delete(secondaryIndexKey, key, timestamp);
+		} else if (timestamp > 0) {
+			secondaryIndexMutator.addDeletion(secondaryIndexKey, snapshot.secondaryIndexTemplate.getColumnFamily(),
+					key, keySerializer, timestamp);
+		} else {
+			secondaryIndexMutator.addDeletion(secondaryIndexKey, snapshot.secondaryIndexTemplate.getColumnFamily(),
+					key, keySerializer);
+		}
+	}
+
+	private void writeSecondaryIndexes(List<AsyncSecondaryIndexWriter.IndexMutation<K>> mutations) {
+		final ColumnFamilySnapshot<K> snapshot = this.snapshot;
+		final Mutator<String> secondaryIndexMutator = HFactory.createMutator(snapshot.keyspace, StringSerializer.get());
+		final String secondaryIndexCF = snapshot.secondaryIndexTemplate.getColumnFamily();
+
+		for (AsyncSecondaryIndexWriter.IndexMutation<K> mutation : mutations) {
+			final long timestamp = mutation.getTimestamp() > 0 ? mutation.getTimestamp() : snapshot.keyspace
+					.createClock();
+			if (mutation.isDeletion()) {
+				secondaryIndexMutator.addDeletion(mutation.getSecondaryIndexKey(), secondaryIndexCF, mutation.getKey(),
+						keySerializer, timestamp);
+			} else if (mutation.getTtl() > 0) {
+				secondaryIndexMutator.addInsertion(mutation.getSecondaryIndexKey(), secondaryIndexCF, HFactory
+						.createColumn(mutation.getKey(), mutation.getKey(), timestamp, mutation.getTtl(), keySerializer,
+								keySerializer));
+			} else {
+				secondaryIndexMutator.addInsertion(mutation.getSecondaryIndexKey(), secondaryIndexCF, HFactory
+						.createColumn(mutation.getKey(), mutation.getKey(), timestamp, keySerializer, keySerializer));
+			}
+		}
+
+		MutationResult execute = secondaryIndexMutator.execute();
+		log.debug(mutations.size() + " secondary index mutations written. Exec Time = " +
+				execute.getExecutionTimeMicro() + ", Host used = " + execute.getHostUsed());
+	}
+
 	public CassandraResultSet<K, String> retrieveBySecondaryIndex(String columnName, String columnValue) {
 		// first some fact checking, before going to Cassandra
-		if (isSecondaryIndexByColumnNameAndValueEnabled && Collections.binarySearch(columnsToIndexOnColumnNameAndValue,
-				columnName) >= 0) {
+		if (isSecondaryIndexByColumnNameAndValueEnabledForColumn(columnName)) {
 			return retrieveFromSecondaryIndex(columnName, columnValue);
 		}
 
@@ -478,8 +590,7 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 	@Override
 	public CassandraResultSet<K, String> retrieveBySecondaryIndex(String columnName, List<String> columnValues) {
 		// first some fact checking, before going to Cassandra
-		if (isSecondaryIndexByColumnNameAndValueEnabled && Collections.binarySearch(columnsToIndexOnColumnNameAndValue,
-				columnName) >= 0) {
+		if (isSecondaryIndexByColumnNameAndValueEnabledForColumn(columnName)) {
 			return retrieveFromSecondaryIndex(columnName, columnValues);
 		}
 		return null;
@@ -490,6 +601,10 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 		Map<String, List<K>> keysMap = retrieveKeysFromSecondaryIndex(columnName, columnValues);
 
 		if (MapUtils.isNotEmpty(keysMap)) {
+			if (isIndexJoinEnabled()) {
+				return readAllColumnsByIndexJoin(Iterables.concat(keysMap.values()).iterator());
+			}
+
 			Set<K> keys = new HashSet<>();
 			for (List<K> keysForColValue : keysMap.values()) {
 				keys.addAll(keysForColValue);
@@ -510,7 +625,7 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 
 	@Override
 	public CassandraResultSet<K, String> retrieveByColumnNameBasedSecondaryIndex(String columnName) {
-		if (StringUtils.isNotEmpty(columnName) && columnName.matches(secondaryIdxByColumnPattern)) {
+		if (isSecondaryIndexByColumnNameEnabledForColumn(columnName)) {
 			return retrieveFromSecondaryIndex(columnName, "");
 		}
 
@@ -521,25 +636,63 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 	@Override
 	public CassandraResultSet readAllColumnsBySecondaryIndex(Map<String, String> parameters, int limit) {
 		//TODO: Replace with {@link RangeSlicesQuery}
-		IndexedSlicesQuery<String, String, String> indexedSlicesQuery = HFactory.createIndexedSlicesQuery(keysp,
-				StringSerializer.get(), StringSerializer.get(), StringSerializer.get());
+		final ColumnFamilySnapshot<K> snapshot = this.snapshot;
+		IndexedSlicesQuery<String, String, String> indexedSlicesQuery = HFactory.createIndexedSlicesQuery(
+				snapshot.keyspace, StringSerializer.get(), StringSerializer.get(), StringSerializer.get());
 
 		for (Map.Entry<String, String> entry : parameters.entrySet()) {
 			indexedSlicesQuery.addEqualsExpression(entry.getKey(), entry.getValue());
 		}
 		indexedSlicesQuery.setRange("", "", false, limit);
 
-		indexedSlicesQuery.setColumnFamily(this.columnFamily);
+		indexedSlicesQuery.setColumnFamily(snapshot.columnFamily);
 		QueryResult<OrderedRows<String, String, String>> result = indexedSlicesQuery.execute();
 		return new HectorRowSliceResultSet(result);
 	}
 
+	@Override
+	protected void scanRange(TokenRange range, int pageSize, RowScanCallback<K> callback) throws Exception {
+		final ColumnFamilySnapshot<K> snapshot = this.snapshot;
+		final int columnCount = maxColumnCount > 0 ? maxColumnCount : Integer.MAX_VALUE;
+
+		// pages start after the token of the last row of the previous page, as Cassandra's own Hadoop input does.
+		long start = range.getStart();
+		while (start < range.getEnd()) {
+			RangeSlicesQuery<K, String, String> query = HFactory.createRangeSlicesQuery(snapshot.keyspace,
+					keySerializer, StringSerializer.get(), StringSerializer.get());
+			query.setColumnFamily(snapshot.columnFamily).setTokens(null, Long.toString(start), Long.toString(
+					range.getEnd())).setRange(null, null, false, columnCount).setRowCount(pageSize);
+			OrderedRows<K, String, String> rows = query.execute().get();
+
+			for (Row<K, String, String> row : rows) {
+				start = Murmur3Tokens.getToken(keySerializer.toByteBuffer(row.getKey()));
+
+				// deleted rows are returned without columns until they are compacted away.
+				List<HColumn<String, String>> columns = row.getColumnSlice().getColumns();
+				if (columns.isEmpty()) {
+					continue;
+				}
+
+				Map<String, String> values = new LinkedHashMap<>();
+				for (HColumn<String, String> column : columns) {
+					values.put(column.getName(), column.getValue());
+				}
+				callback.onRow(range, start, new CassandraMapResultSet<K, String>(row.getKey(), values));
+			}
+
+			if (rows.getCount() < pageSize) {
+				break;
+			}
+		}
+	}
+
 	@Override
 	public Long getCounterValue(K key, String counterColumnName) {
-		CounterQuery<K, String> counter = new ThriftCounterColumnQuery<K, String>(keysp, keySerializer,
+		final ColumnFamilySnapshot<K> snapshot = this.snapshot;
+		CounterQuery<K, String> counter = new ThriftCounterColumnQuery<K, String>(snapshot.keyspace, keySerializer,
 				StringSerializer.get());
-		QueryResult<HCounterColumn<String>> columnQueryResult = counter.setColumnFamily(columnFamily).setKey(key)
-				.setName(counterColumnName).execute();
+		QueryResult<HCounterColumn<String>> columnQueryResult = counter.setColumnFamily(snapshot.columnFamily).setKey(
+				key).setName(counterColumnName).execute();
 		if (columnQueryResult != null && columnQueryResult.get() != null) {
 			Long value = columnQueryResult.get().getValue();
 			return value != null ? value : 0L;
@@ -550,8 +703,9 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 
 	@Override
 	public void updateCounter(K key, String counterColumnName, long value) {
-		final Mutator<K> m = HFactory.createMutator(keysp, keySerializer);
-		m.incrementCounter(key, getColumnFamilyName(), counterColumnName, value);
+		final ColumnFamilySnapshot<K> snapshot = this.snapshot;
+		final Mutator<K> m = HFactory.createMutator(snapshot.keyspace, keySerializer);
+		m.incrementCounter(key, snapshot.columnFamily, counterColumnName, value);
 	}
 
 	@Override
@@ -570,7 +724,7 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 			if (maxColumnCount > 0) {
 				return readColumnSlice(key, null, null, false, maxColumnCount);
 			} else {
-				ColumnFamilyResult<K, String> queriedColumns = getColumnFamily().queryColumns(key);
+				ColumnFamilyResult<K, String> queriedColumns = queryRow(key, null);
 				if (isClientAdapterDebugMessagesEnabled) {
 					log.info("Row retrieved from Cassandra. Exec Time (micro-sec) = " +
 							queriedColumns.getExecutionTimeMicro() +
@@ -591,10 +745,11 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 		}
 	}
 
-	private CassandraResultSet<String, K> readSiColumnSlice(String key, boolean reversed, int count) {
-		SliceQuery<String, K, K> sliceQuery = HFactory.createSliceQuery(keysp, secondaryIndexedColumnFamilyTemplate
-				.getKeySerializer(), keySerializer, keySerializer).setColumnFamily(
-						secondaryIndexedColumnFamilyTemplate.getColumnFamily()).setRange(null, null, reversed, count).setKey(
+	private CassandraResultSet<String, K> readSiColumnSlice(ColumnFamilySnapshot<K> snapshot, String key,
+			boolean reversed, int count) {
+		SliceQuery<String, K, K> sliceQuery = HFactory.createSliceQuery(snapshot.keyspace, snapshot
+				.secondaryIndexTemplate.getKeySerializer(), keySerializer, keySerializer).setColumnFamily(
+						snapshot.secondaryIndexTemplate.getColumnFamily()).setRange(null, null, reversed, count).setKey(
 								key);
 
 
@@ -608,10 +763,11 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 		return new HectorColumnSliceResultSet<String, K, K>(queriedResult);
 	}
 
-	private CassandraResultSet<String, K> readSiColumnSlice(List<String> keys, boolean reversed, int count) {
-		MultigetSliceQuery<String, K, K> multiGetSliceResult = HFactory.createMultigetSliceQuery(keysp,
-				secondaryIndexedColumnFamilyTemplate.getKeySerializer(), keySerializer, keySerializer).setColumnFamily(
-						secondaryIndexedColumnFamilyTemplate.getColumnFamily()).setRange(
+	private CassandraResultSet<String, K> readSiColumnSlice(ColumnFamilySnapshot<K> snapshot, List<String> keys,
+			boolean reversed, int count) {
+		MultigetSliceQuery<String, K, K> multiGetSliceResult = HFactory.createMultigetSliceQuery(snapshot.keyspace,
+				snapshot.secondaryIndexTemplate.getKeySerializer(), keySerializer, keySerializer).setColumnFamily(
+						snapshot.secondaryIndexTemplate.getColumnFamily()).setRange(
 								null, null, reversed, count).setKeys(keys);
 
 
@@ -628,10 +784,11 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 
 	@Override
 	public CassandraResultSet<K, String> readColumnSlice(K key, String start, String end, boolean reversed, int count) {
-		SliceQuery<K, String, String> sliceQuery = HFactory.createSliceQuery(keysp, keySerializer,
+		final ColumnFamilySnapshot<K> snapshot = this.snapshot;
+		SliceQuery<K, String, String> sliceQuery = HFactory.createSliceQuery(snapshot.keyspace, keySerializer,
 				StringSerializer.get(),
 				StringSerializer.get()).setColumnFamily(
-						columnFamily).setRange(start, end, reversed, count).setKey(key);
+						snapshot.columnFamily).setRange(start, end, reversed, count).setKey(key);
 
 		QueryResult<ColumnSlice<String, String>> queriedResult = sliceQuery.execute();
 
@@ -647,7 +804,7 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 	public CassandraResultSet<K, String> readColumns(K key, List<String> columns) throws HectorException {
 		ColumnFamilyResult<K, String> queriedColumns;
 		try {
-			queriedColumns = getColumnFamily().queryColumns(key, columns);
+			queriedColumns = queryRow(key, columns);
 			if (isClientAdapterDebugMessagesEnabled) {
 				log.info(columns.size() + " columns retrieved from Cassandra. Exec Time = " +
 						queriedColumns.getExecutionTimeMicro() + ", Host used = " +
@@ -679,7 +836,13 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 	private HColumn<String, String> readColumn(K key, String columnName) {
 		HColumn<String, String> result = null;
 		try {
-			result = getColumnFamily().querySingleColumn(key, columnName, StringSerializer.get());
+			final long start = System.nanoTime();
+			final ColumnFamilyTemplatePool.Member<K> member = snapshot.templates.acquire();
+			try {
+				result = member.getTemplate().querySingleColumn(key, columnName, StringSerializer.get());
+			} finally {
+				member.release(start);
+			}
 		} catch (Exception e) {
 
 		}
@@ -696,17 +859,82 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 		reConfigureParameters();
 	}
 
+	/**
+	 * Adds the connection pools of the new nodes to the cluster and drains and closes those of the nodes which are no
+	 * longer listed, leaving the pools of the other nodes alone. If other managers go through the same cluster, it is
+	 * left alone and this manager moves to a cluster of its own instead. The templates of
+	 * {@link #configureOurColumnFamilyTemplatePool(String[], String[])} are rebuilt for the new nodes.
+	 */
 	public void setLocationURL(String locationURL) {
 		this.locationURLs = locationURL;
-		reConfigureParameters();
+		final Cluster currentCluster = cluster;
+		if (currentCluster == null) {
+			reConfigureParameters();
+			return;
+		}
+
+		if (templateLocationURLs != null) {
+			final String paramSeparator = ConfigUtils.getInstance().getConfiguration().getString(
+					HecubaConstants.GLOBAL_PROP_NAME_PREFIX + ".hecuba.path.separator", ":");
+			templatePorts = ports.split(paramSeparator);
+			templateLocationURLs = locationURLs.split(paramSeparator);
+		}
+
+		final CassandraHostConfigurator cassandraHostConfigurator = createCassandraConfigurator();
+		cassandraHostConfigurator.setHosts(getListOfNodesAndPorts(locationURLs, ports));
+
+		if (isShared(currentCluster)) {
+			useCluster(acquireCluster(createCluster(cassandraHostConfigurator, false)));
+			log.info("Hector pool of " + clusterName + " is shared, moved to a pool of its own covering "
+					+ locationURLs);
+			return;
+		}
+
+		final Set<CassandraHost> hosts = new HashSet<>(Arrays.asList(cassandraHostConfigurator.buildCassandraHosts()));
+		final HConnectionManager connectionManager = currentCluster.getConnectionManager();
+		final Set<CassandraHost> currentHosts = new HashSet<>(connectionManager.getHosts());
+		currentHosts.addAll(connectionManager.getDownedHosts());
+		for (CassandraHost host : hosts) {
+			if (!currentHosts.contains(host)) {
+				connectionManager.addCassandraHost(host);
+			}
+		}
+		for (CassandraHost host : currentHosts) {
+			if (!hosts.contains(host)) {
+				connectionManager.removeCassandraHost(host);
+			}
+		}
+		log.info("Hector pool of " + clusterName + " now covers " + hosts);
+
+		if (templateLocationURLs != null) {
+			useCluster(acquireCluster(currentCluster));
+		}
 	}
 
 	/**
+	 * Switches the manager to another column family of the keyspace. The templates of the column families go through
+	 * the same connection pools, and are kept for when the manager is switched back.
+	 *
 	 * @param columnFamily the columnFamily to set
 	 */
 	public void setColumnFamily(String columnFamily) {
-		this.columnFamily = columnFamily;
-		reConfigureParameters();
+		synchronized (snapshotLock) {
+			this.columnFamily = columnFamily;
+			final ColumnFamilySnapshot<K> currentSnapshot = snapshot;
+			if (currentSnapshot == null) {
+				reConfigureParameters();
+				return;
+			}
+
+			ColumnFamilyTemplatePool<K> templates = templatesByColumnFamily.get(columnFamily);
+			if (templates == null) {
+				templates = currentSnapshot.templates.forColumnFamily(columnFamily, keySerializer);
+				templatesByColumnFamily.put(columnFamily, templates);
+			}
+
+			snapshot = new ColumnFamilySnapshot<>(columnFamily, currentSnapshot.keyspace, templates,
+					createSecondaryIndexTemplate(columnFamily, currentSnapshot.keyspace));
+		}
 	}
 
 	private void configureHectorSpecificProperties() {
@@ -724,40 +952,162 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 	}
 
 	private void reConfigureParameters() {
-
-		columnFamilyTemplates = new ArrayList<>();
-		configureHectorPools();
-	}
-
-	private void configureHectorPools() {
-
 		final String listOfNodesAndPorts = getListOfNodesAndPorts(locationURLs, ports);
 
 		CassandraHostConfigurator cassandraHostConfigurator = createCassandraConfigurator();
 		cassandraHostConfigurator.setHosts(listOfNodesAndPorts);
 		log.info("Hector pool created for " + listOfNodesAndPorts);
 
+		useCluster(acquireCluster(createCluster(cassandraHostConfigurator, true)));
+	}
+
+	/**
+	 * @param shared - whether to get the cluster Hector shares by the cluster name, instead of one of this manager's own.
+	 */
+	private Cluster createCluster(CassandraHostConfigurator cassandraHostConfigurator, boolean shared) {
+		Map<String, String> accessMap = null;
 		if (StringUtils.isNotBlank(username) && StringUtils.isNotBlank(password)) {
-			Map<String, String> accessMap = new HashMap<>();
+			accessMap = new HashMap<>();
 			accessMap.put("username", this.username);
 			accessMap.put("password", this.password);
-			cluster = HFactory.getOrCreateCluster(clusterName, cassandraHostConfigurator, accessMap);
-		} else {
-			cluster = HFactory.getOrCreateCluster(clusterName, cassandraHostConfigurator);
 		}
 
-		keysp = HFactory.createKeyspace(keyspace, cluster, consistencyLevel);
+		if (shared) {
+			return accessMap == null ? HFactory.getOrCreateCluster(clusterName, cassandraHostConfigurator) :
+					HFactory.getOrCreateCluster(clusterName, cassandraHostConfigurator, accessMap);
+		}
+		return accessMap == null ? new ThriftCluster(clusterName, cassandraHostConfigurator) : new ThriftCluster(
+				clusterName, cassandraHostConfigurator, accessMap);
+	}
+
+	/**
+	 * Moves the manager to the given, acquired, cluster along with the templates of the nodes of
+	 * {@link #configureOurColumnFamilyTemplatePool(String[], String[])}, and releases the clusters it used before once
+	 * the requests which went through them are done.
+	 */
+	private void useCluster(Cluster newCluster) {
+		synchronized (snapshotLock) {
+			final Cluster previousCluster = cluster;
+			final List<Cluster> previousTemplateClusters = templateClusters;
+			final ColumnFamilySnapshot<K> previousSnapshot = snapshot;
+			final ColumnFamilyTemplatePool<K> previousTemplates = previousSnapshot == null ? null :
+					previousSnapshot.templates;
+
+			final Keyspace newKeyspace = HFactory.createKeyspace(keyspace, newCluster, consistencyLevel);
+
+			final ColumnFamilyTemplatePool<K> templates = new ColumnFamilyTemplatePool<>();
+			templates.add(newKeyspace, new ThriftColumnFamilyTemplate<K, String>(newKeyspace, columnFamily,
+					keySerializer, StringSerializer.get()), newCluster.getConnectionManager());
+			final List<Cluster> newTemplateClusters = templateLocationURLs == null ? Collections.<Cluster>emptyList() :
+					addNodeTemplates(templates, columnFamily, templatePorts, templateLocationURLs);
+			final ColumnFamilySnapshot<K> newSnapshot = new ColumnFamilySnapshot<>(columnFamily, newKeyspace, templates,
+					createSecondaryIndexTemplate(columnFamily, newKeyspace));
+
+			// everything is built before any of it is used, so requests keep going through the previous pools
+			// meanwhile.
+			templatesByColumnFamily.clear();
+			templatesByColumnFamily.put(columnFamily, templates);
+			cluster = newCluster;
+			templateClusters = newTemplateClusters;
+			snapshot = newSnapshot;
+
+			// the clusters still in use are acquired again above, so releasing them right away leaves them open.
+			final List<Cluster> previousClusters = new ArrayList<>();
+			for (Cluster previous : Iterables.concat(Collections.singleton(previousCluster),
+					previousTemplateClusters)) {
+				if (previous == null) {
+					continue;
+				}
+				if (previous == newCluster || newTemplateClusters.contains(previous)) {
+					releaseCluster(previous);
+				} else {
+					previousClusters.add(previous);
+				}
+			}
+			if (!previousClusters.isEmpty()) {
+				drainClusters(previousClusters, previousTemplates);
+			}
+		}
+	}
+
+	private static boolean isShared(Cluster cluster) {
+		synchronized (clusterUsers) {
+			final Integer users = clusterUsers.get(cluster);
+			return users != null && users > 1;
+		}
+	}
+
+	private static Cluster acquireCluster(Cluster cluster) {
+		synchronized (clusterUsers) {
+			final Integer users = clusterUsers.get(cluster);
+			clusterUsers.put(cluster, users == null ? 1 : users + 1);
+		}
+		return cluster;
+	}
+
+	/**
+	 * Shuts the given cluster down if no other manager uses it.
+	 */
+	private static void releaseCluster(Cluster cluster) {
+		synchronized (clusterUsers) {
+			final Integer users = clusterUsers.get(cluster);
+			if (users != null && users > 1) {
+				clusterUsers.put(cluster, users - 1);
+				return;
+			}
+			clusterUsers.remove(cluster);
+		}
+		if (HFactory.getCluster(cluster.getName()) == cluster) {
+			HFactory.shutdownCluster(cluster);
+		} else {
+			// a cluster of a manager's own, which Hector does not know of.
+			cluster.getConnectionManager().shutdown();
+		}
+	}
 
-		columnFamilyTemplates.add(new ThriftColumnFamilyTemplate<K, String>(keysp, columnFamily, keySerializer, StringSerializer.get()));
+	/**
+	 * Releases the clusters the manager no longer uses once the requests which went through them are done, or once
+	 * {@link HecubaConstants#HECTOR_DRAIN_TIMEOUT_SECONDS} have passed.
+	 */
+	private void drainClusters(final List<Cluster> previousClusters,
+			final ColumnFamilyTemplatePool<K> previousTemplates) {
+		final long timeoutMillis = TimeUnit.SECONDS.toMillis(ConfigUtils.getInstance().getConfiguration().getInteger(
+				HecubaConstants.HECTOR_DRAIN_TIMEOUT_SECONDS, 30));
+		final Thread drainer = new Thread("hecuba-hector-drain-" + previousClusters.get(0).getName()) {
+			@Override
+			public void run() {
+				final long deadline = System.currentTimeMillis() + timeoutMillis;
+				try {
+					while (previousTemplates != null && previousTemplates.getInFlight() > 0 && System
+							.currentTimeMillis() < deadline) {
+						Thread.sleep(100);
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				for (Cluster previousCluster : previousClusters) {
+					releaseCluster(previousCluster);
+					log.info("Hector pool of " + previousCluster.getName() + " released");
+				}
+			}
+		};
+		drainer.setDaemon(true);
+		drainer.start();
+	}
 
-		// now, if we have secondary indexed columns, then go ahead and create its own column family template.
+	/**
+	 * @return the template of the secondary index column family of the given column family, null if it has no
+	 *         secondary indexes.
+	 */
+	private ThriftColumnFamilyTemplate<String, K> createSecondaryIndexTemplate(String columnFamily,
+			Keyspace keyspace) {
 		if (isSecondaryIndexesByColumnNamesEnabled || (columnsToIndexOnColumnNameAndValue != null && columnsToIndexOnColumnNameAndValue.size() > 0)) {
 			String secondaryIndexColumnFamilyProperty = HecubaConstants.getSecondaryIndexColumnFamilyProperty(columnFamily);
 			String defaultSecondaryIndexColumnFamily = columnFamily + HecubaConstants.SECONDARY_INDEX_CF_NAME_SUFFIX;
 			String secondaryIndexedColumnFamily = ConfigUtils.getInstance().getConfiguration().getString(secondaryIndexColumnFamilyProperty, defaultSecondaryIndexColumnFamily);
-			secondaryIndexedColumnFamilyTemplate = new ThriftColumnFamilyTemplate<String, K>(keysp, secondaryIndexedColumnFamily, StringSerializer.get(), keySerializer);
+			return new ThriftColumnFamilyTemplate<String, K>(keyspace, secondaryIndexedColumnFamily, StringSerializer.get(), keySerializer);
 		}
-
+		return null;
 	}
 
 
@@ -782,7 +1132,23 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 		return cassandraHostConfigurator;
 	}
 
+	/**
+	 * Adds a column family template per given node, each with a connection pool of its own, to the templates requests
+	 * are balanced across, see {@link ColumnFamilyTemplatePool}. The nodes replace those of earlier calls, and follow
+	 * {@link #setLocationURL(String)} from then on.
+	 */
 	public void configureOurColumnFamilyTemplatePool(String[] splittedPorts, String[] splittedLocationURLs) {
+		templatePorts = splittedPorts;
+		templateLocationURLs = splittedLocationURLs;
+		useCluster(acquireCluster(cluster));
+	}
+
+	/**
+	 * @return the acquired clusters of the templates added for the given nodes.
+	 */
+	private List<Cluster> addNodeTemplates(ColumnFamilyTemplatePool<K> templates, String columnFamily,
+			String[] splittedPorts, String[] splittedLocationURLs) {
+		final List<Cluster> nodeClusters = new ArrayList<>();
 		final CassandraHostConfigurator cassandraHostConfigurator = createCassandraConfigurator();
 		for (int index = 0; index < splittedLocationURLs.length; index++) {
 			String locationURL = splittedLocationURLs[index];
@@ -795,12 +1161,19 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 				port = "9160";
 			}
 
-			cassandraHostConfigurator.setHosts(locationURL + ":" + port);
-			cluster = HFactory.getOrCreateCluster(clusterName, cassandraHostConfigurator);
-			keysp = HFactory.createKeyspace(keyspace, cluster, consistencyLevel);
-			columnFamilyTemplates.add(new ThriftColumnFamilyTemplate<K, String>(keysp, columnFamily, keySerializer,
-					StringSerializer.get()));
+			// Hector shares the clusters of the same name, so each node needs a name of its own to get its own pool.
+			// Their only host is in their name, so they are never re-hosted.
+			final String host = locationURL + ":" + port;
+			cassandraHostConfigurator.setHosts(host);
+			final Cluster templateCluster = acquireCluster(HFactory.getOrCreateCluster(clusterName + "-" + host,
+					cassandraHostConfigurator));
+			nodeClusters.add(templateCluster);
+
+			final Keyspace templateKeyspace = HFactory.createKeyspace(keyspace, templateCluster, consistencyLevel);
+			templates.add(templateKeyspace, new ThriftColumnFamilyTemplate<K, String>(templateKeyspace, columnFamily,
+					keySerializer, StringSerializer.get()), templateCluster.getConnectionManager());
 		}
+		return nodeClusters;
 	}
 
 	public Cluster getCluster() {
@@ -808,11 +1181,41 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 	}
 
 	public List<ColumnFamilyTemplate<K, String>> getColumnFamilyTemplates() {
-		return columnFamilyTemplates;
+		return snapshot.templates.getTemplates();
+	}
+
+	ColumnFamilyTemplatePool<K> getColumnFamilyTemplatePool() {
+		return snapshot.templates;
+	}
+
+	/**
+	 * Reads the given columns of a row, all of them if columnNames is null, through the least loaded of the column
+	 * family templates.
+	 */
+	private ColumnFamilyResult<K, String> queryRow(K key, List<String> columnNames) {
+		final long start = System.nanoTime();
+		final ColumnFamilyTemplatePool.Member<K> member = snapshot.templates.acquire();
+		try {
+			return columnNames == null ? member.getTemplate().queryColumns(key) : member.getTemplate().queryColumns(
+					key, columnNames);
+		} finally {
+			member.release(start);
+		}
 	}
 
-	ColumnFamilyTemplate<K, String> getColumnFamily() {
-		return columnFamilyTemplates.get(0);
+	/**
+	 * Reads the given columns of the given rows, all of them if columnNames is null, through the least loaded of the
+	 * column family templates.
+	 */
+	private ColumnFamilyResult<K, String> queryRows(Set<K> keys, List<String> columnNames) {
+		final long start = System.nanoTime();
+		final ColumnFamilyTemplatePool.Member<K> member = snapshot.templates.acquire();
+		try {
+			return columnNames == null ? member.getTemplate().queryColumns(keys) : member.getTemplate().queryColumns(
+					keys, columnNames, null);
+		} finally {
+			member.release(start);
+		}
 	}
 
 	/**
@@ -826,7 +1229,7 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 			if (maxColumnCount > 0) {
 				return readColumnSlice(keys, null, null, false);
 			} else {
-				ColumnFamilyResult<K, String> queriedColumns = getColumnFamily().queryColumns(keys);
+				ColumnFamilyResult<K, String> queriedColumns = queryRows(keys, null);
 				if (isClientAdapterDebugMessagesEnabled) {
 					log.info("Rows retrieved from Cassandra [Hector] (for " + keys.size() + " keys). Exec Time " +
 							"(micro-sec) = " + queriedColumns.getExecutionTimeMicro() + ", Host used = " +
@@ -846,9 +1249,11 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 
 	@Override
 	public CassandraResultSet<K, String> readColumnSlice(Set<K> keys, String start, String end, boolean reversed) {
-		MultigetSliceQuery<K, String, String> multigetSliceQuery = HFactory.createMultigetSliceQuery(keysp,
-				keySerializer, StringSerializer.get(), StringSerializer.get()).setColumnFamily(columnFamily).setRange(
-						start, end, reversed, Integer.MAX_VALUE).setKeys(keys);
+		final ColumnFamilySnapshot<K> snapshot = this.snapshot;
+		MultigetSliceQuery<K, String, String> multigetSliceQuery = HFactory.createMultigetSliceQuery(snapshot.keyspace,
+				keySerializer, StringSerializer.get(), StringSerializer.get()).setColumnFamily(snapshot.columnFamily)
+						.setRange(start, end, reversed, maxColumnCount > 0 ? maxColumnCount : Integer.MAX_VALUE)
+						.setKeys(keys);
 
 		QueryResult<Rows<K, String, String>> queriedResult = multigetSliceQuery.execute();
 
@@ -865,7 +1270,7 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 		if (CollectionUtils.isNotEmpty(columnNames)) {
 			ColumnFamilyResult<K, String> queriedColumns;
 			try {
-				queriedColumns = getColumnFamily().queryColumns(keys, columnNames, null);
+				queriedColumns = queryRows(keys, columnNames);
 				if (isClientAdapterDebugMessagesEnabled) {
 					log.info(columnNames.size() + " columns retrieved from Cassandra [Hector] for " + keys.size() +
 							" keys . Exec Time (micro-sec) = " + queriedColumns.getExecutionTimeMicro() +
@@ -895,8 +1300,7 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 	@Override
 	public List<K> retrieveKeysBySecondaryIndex(String columnName, String columnValue) {
 		// first some fact checking, before going to Cassandra
-		if (isSecondaryIndexByColumnNameAndValueEnabled && Collections.binarySearch(columnsToIndexOnColumnNameAndValue,
-				columnName) >= 0) {
+		if (isSecondaryIndexByColumnNameAndValueEnabledForColumn(columnName)) {
 			return retrieveKeysFromSecondaryIndex(columnName, columnValue);
 		}
 		return null;
@@ -906,8 +1310,7 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 	public Map<String, List<K>> retrieveKeysBySecondaryIndex(String columnName,
 			List<String> columnValues) {
 		// first some fact checking, before going to Cassandra
-		if (isSecondaryIndexByColumnNameAndValueEnabled && Collections.binarySearch(columnsToIndexOnColumnNameAndValue,
-				columnName) >= 0) {
+		if (isSecondaryIndexByColumnNameAndValueEnabledForColumn(columnName)) {
 			return retrieveKeysFromSecondaryIndex(columnName, columnValues);
 		}
 		return null;
@@ -915,20 +1318,21 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 
 	@Override
 	public List<K> retrieveKeysByColumnNameBasedSecondaryIndex(String columnName) {
-		if (StringUtils.isNotEmpty(columnName) && columnName.matches(secondaryIdxByColumnPattern)) {
+		if (isSecondaryIndexByColumnNameEnabledForColumn(columnName)) {
 			return retrieveKeysFromSecondaryIndex(columnName, "");
 		}
 		return null;
 	}
 
 	private List<K> retrieveKeysFromSecondaryIndex(String columnName, String columnValue) {
+		final ColumnFamilySnapshot<K> snapshot = this.snapshot;
 		String secondaryIndexKey = getSecondaryIndexKey(columnName, columnValue);
 		CassandraResultSet<String, K> columns;
 		try {
 			if (maxSiColumnCount > 0) {
-				columns = readSiColumnSlice(secondaryIndexKey, false, maxSiColumnCount);
+				columns = readSiColumnSlice(snapshot, secondaryIndexKey, false, maxSiColumnCount);
 			} else {
-				columns = new HectorResultSet<String, K>(secondaryIndexedColumnFamilyTemplate.queryColumns(
+				columns = new HectorResultSet<String, K>(snapshot.secondaryIndexTemplate.queryColumns(
 						secondaryIndexKey));
 			}
 
@@ -955,14 +1359,15 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 	}
 
 	private Map<String, List<K>> retrieveKeysFromSecondaryIndex(String columnName, List<String> columnValues) {
+		final ColumnFamilySnapshot<K> snapshot = this.snapshot;
 		List<String> secondaryIndexKeys = getSecondaryIndexKeys(columnName, columnValues);
 
 		CassandraResultSet<String, K> resultSet;
 		try {
 			if (maxSiColumnCount > 0) {
-				resultSet = readSiColumnSlice(secondaryIndexKeys, false, maxSiColumnCount);
+				resultSet = readSiColumnSlice(snapshot, secondaryIndexKeys, false, maxSiColumnCount);
 			} else {
-				resultSet = new HectorResultSet<>(secondaryIndexedColumnFamilyTemplate.queryColumns(secondaryIndexKeys));
+				resultSet = new HectorResultSet<>(snapshot.secondaryIndexTemplate.queryColumns(secondaryIndexKeys));
 			}
 
 			if (isClientAdapterDebugMessagesEnabled) {
@@ -1026,6 +1431,31 @@ public class HectorBasedHecubaClientManager<K> extends HecubaClientManager<K> {
 
 	@Override
 	public void shutDown() {
-		HFactory.shutdownCluster(cluster);
+		shutDownSecondaryIndexWriter();
+		shutDownAsyncExecutor();
+		releaseCluster(cluster);
+		for (Cluster templateCluster : templateClusters) {
+			releaseCluster(templateCluster);
+		}
+		templateClusters = Collections.emptyList();
+	}
+
+	/**
+	 * The column family requests go to, the keyspace they go through, the templates of its nodes and the template of
+	 * its secondary index column family, which is null if it has no secondary indexes.
+	 */
+	private static final class ColumnFamilySnapshot<K> {
+		private final String columnFamily;
+		private final Keyspace keyspace;
+		private final ColumnFamilyTemplatePool<K> templates;
+		private final ThriftColumnFamilyTemplate<String, K> secondaryIndexTemplate;
+
+		ColumnFamilySnapshot(String columnFamily, Keyspace keyspace, ColumnFamilyTemplatePool<K> templates,
+				ThriftColumnFamilyTemplate<String, K> secondaryIndexTemplate) {
+			this.columnFamily = columnFamily;
+			this.keyspace = keyspace;
+			this.templates = templates;
+			this.secondaryIndexTemplate = secondaryIndexTemplate;
+		}
 	}
 }
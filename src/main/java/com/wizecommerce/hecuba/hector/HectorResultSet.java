@@ -84,6 +84,12 @@ public class HectorResultSet<K, N> extends AbstractCassandraResultSet<K, N> impl
 		return originalColFamResult.getHostUsed();
 	}
 
+	@Override
+	protected Object getRawValue(N fieldName) {
+		final HColumn<N, ByteBuffer> column = originalColFamResult.getColumn(fieldName);
+		return column == null ? null : column.getValueBytes();
+	}
+
 	@Override
 	public byte[] getByteArray(N fieldName) {
 		return originalColFamResult.getByteArray(fieldName);
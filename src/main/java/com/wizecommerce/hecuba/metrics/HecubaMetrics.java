@@ -0,0 +1,150 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wizecommerce.hecuba.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.base.Joiner;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.wizecommerce.hecuba.HecubaConstants;
+import com.wizecommerce.hecuba.util.ConfigUtils;
+
+/**
+ * The registry of the {@link OperationMetrics} of every backend, column family and operation.
+ *
+ * Metrics are published as MBeans named "com.wizecommerce.hecuba:type=OperationMetrics,backend=..,columnFamily=..,
+ * operation=..", unless {@link HecubaConstants#METRICS_JMX_ENABLED} is false, and to the registered
+ * {@link HecubaMetricsReporter}s every {@link HecubaConstants#METRICS_REPORT_INTERVAL_SECONDS} seconds (60 by
+ * default).
+ */
+public class HecubaMetrics {
+	private static final Logger log = Logger.getLogger(HecubaMetrics.class);
+
+	private static final HecubaMetrics instance = new HecubaMetrics();
+
+	private final ConcurrentMap<List<Object>, OperationMetrics> metrics = new ConcurrentHashMap<>();
+	private final List<HecubaMetricsReporter> reporters = new CopyOnWriteArrayList<>();
+	private ScheduledExecutorService reportingExecutor;
+
+	private HecubaMetrics() {
+	}
+
+	public static HecubaMetrics getInstance() {
+		return instance;
+	}
+
+	/**
+	 * @return the metrics of the given operation, created and published on first use.
+	 */
+	public OperationMetrics getOperationMetrics(String backend, String columnFamily, HecubaOperation operation) {
+		final List<Object> name = Arrays.<Object> asList(backend, columnFamily, operation);
+
+		OperationMetrics operationMetrics = metrics.get(name);
+		if (operationMetrics == null) {
+			final OperationMetrics newOperationMetrics = new OperationMetrics(backend, columnFamily, operation);
+			operationMetrics = metrics.putIfAbsent(name, newOperationMetrics);
+			if (operationMetrics == null) {
+				operationMetrics = newOperationMetrics;
+				registerMBean(operationMetrics);
+			}
+		}
+		return operationMetrics;
+	}
+
+	public Collection<OperationMetrics> getOperationMetrics() {
+		return Collections.unmodifiableCollection(metrics.values());
+	}
+
+	public synchronized void addReporter(HecubaMetricsReporter reporter) {
+		reporters.add(reporter);
+
+		if (reportingExecutor == null) {
+			final long intervalSeconds = ConfigUtils.getInstance().getConfiguration().getLong(
+					HecubaConstants.METRICS_REPORT_INTERVAL_SECONDS, 60);
+			reportingExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true)
+					.setNameFormat("hecuba-metrics-reporter").build());
+			reportingExecutor.scheduleAtFixedRate(new Runnable() {
+				@Override
+				public void run() {
+					report();
+				}
+			}, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+		}
+	}
+
+	public synchronized void removeReporter(HecubaMetricsReporter reporter) {
+		reporters.remove(reporter);
+
+		if (reporters.isEmpty() && reportingExecutor != null) {
+			reportingExecutor.shutdown();
+			reportingExecutor = null;
+		}
+	}
+
+	/**
+	 * Sends the metrics since the previous report to every reporter.
+	 */
+	public void report() {
+		final List<OperationMetricsSnapshot> snapshots = new ArrayList<>(metrics.size());
+		for (OperationMetrics operationMetrics : metrics.values()) {
+			snapshots.add(operationMetrics.snapshot());
+		}
+
+		for (HecubaMetricsReporter reporter : reporters) {
+			try {
+				reporter.report(Collections.unmodifiableList(snapshots));
+			} catch (RuntimeException e) {
+				log.error("Metrics reporter " + reporter + " failed", e);
+			}
+		}
+	}
+
+	private void registerMBean(OperationMetrics operationMetrics) {
+		if (!ConfigUtils.getInstance().getConfiguration().getBoolean(HecubaConstants.METRICS_JMX_ENABLED, true)) {
+			return;
+		}
+
+		try {
+			final ObjectName objectName = new ObjectName(Joiner.on(",").join(
+					"com.wizecommerce.hecuba:type=OperationMetrics",
+					"backend=" + quoteIfNeeded(operationMetrics.getBackend()),
+					"columnFamily=" + quoteIfNeeded(operationMetrics.getColumnFamily()),
+					"operation=" + operationMetrics.getOperation()));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(operationMetrics, objectName);
+		} catch (Exception e) {
+			log.warn("Could not publish the metrics of " + operationMetrics.getOperation() + " on " +
+					operationMetrics.getColumnFamily() + " through JMX", e);
+		}
+	}
+
+	private String quoteIfNeeded(String value) {
+		return value.matches("[\\w.-]+") ? value : ObjectName.quote(value);
+	}
+}
@@ -0,0 +1,30 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wizecommerce.hecuba.metrics;
+
+import java.util.List;
+
+/**
+ * Receives the metrics of every operation at the interval given by
+ * {@link com.wizecommerce.hecuba.HecubaConstants#METRICS_REPORT_INTERVAL_SECONDS}, e.g. to forward them to a
+ * monitoring system. Reporters are called one after the other on a single thread, so they should not block for long.
+ */
+public interface HecubaMetricsReporter {
+
+	/**
+	 * @param snapshots - metrics of every operation which has been used, for the interval since the previous report.
+	 */
+	void report(List<OperationMetricsSnapshot> snapshots);
+}
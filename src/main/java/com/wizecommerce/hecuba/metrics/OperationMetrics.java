@@ -0,0 +1,229 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wizecommerce.hecuba.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Latencies and counts of one type of operation of one column family of one backend.
+ *
+ * Recording neither allocates nor locks: latencies go into an HdrHistogram {@link Recorder} and counts into atomic
+ * counters. Latencies are kept in microseconds, whichever backend measured them, with two significant digits and up
+ * to an hour; longer operations are recorded as an hour.
+ */
+public class OperationMetrics implements OperationMetricsMBean {
+	private static final long HIGHEST_TRACKABLE_LATENCY = TimeUnit.HOURS.toMicros(1);
+	private static final int SIGNIFICANT_DIGITS = 2;
+
+	private final String backend;
+	private final String columnFamily;
+	private final HecubaOperation operation;
+
+	private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_LATENCY, SIGNIFICANT_DIGITS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong errorCount = new AtomicLong();
+	private final AtomicLong rowCount = new AtomicLong();
+	private final AtomicLong columnCount = new AtomicLong();
+	private final AtomicLong byteCount = new AtomicLong();
+	private final AtomicLong hedgeCount = new AtomicLong();
+	private final AtomicLong hedgeWinCount = new AtomicLong();
+
+	// guarded by this: what has been taken from the recorder, in total and since the last report.
+	private Histogram intervalLatencies;
+	private final Histogram totalLatencies = new Histogram(HIGHEST_TRACKABLE_LATENCY, SIGNIFICANT_DIGITS);
+	private final Histogram unreportedLatencies = new Histogram(HIGHEST_TRACKABLE_LATENCY, SIGNIFICANT_DIGITS);
+	private long reportedCount;
+	private long reportedErrorCount;
+	private long reportedRowCount;
+	private long reportedColumnCount;
+	private long reportedByteCount;
+	private long reportedHedgeCount;
+	private long reportedHedgeWinCount;
+
+	OperationMetrics(String backend, String columnFamily, HecubaOperation operation) {
+		this.backend = backend;
+		this.columnFamily = columnFamily;
+		this.operation = operation;
+	}
+
+	public String getBackend() {
+		return backend;
+	}
+
+	public String getColumnFamily() {
+		return columnFamily;
+	}
+
+	public HecubaOperation getOperation() {
+		return operation;
+	}
+
+	/**
+	 * Records a successful operation.
+	 *
+	 * @param startNanos - System.nanoTime() at the start of the operation.
+	 * @param rows       - number of rows read or written.
+	 * @param columns    - number of columns read or written.
+	 * @param bytes      - number of bytes (characters of the values) read or written, 0 if unknown.
+	 */
+	public void record(long startNanos, int rows, int columns, long bytes) {
+		recordLatency(startNanos);
+		count.incrementAndGet();
+		if (rows > 0) {
+			rowCount.addAndGet(rows);
+		}
+		if (columns > 0) {
+			columnCount.addAndGet(columns);
+		}
+		if (bytes > 0) {
+			byteCount.addAndGet(bytes);
+		}
+	}
+
+	/**
+	 * Records a failed operation.
+	 *
+	 * @param startNanos - System.nanoTime() at the start of the operation.
+	 */
+	public void recordError(long startNanos) {
+		recordLatency(startNanos);
+		count.incrementAndGet();
+		errorCount.incrementAndGet();
+	}
+
+	/**
+	 * Records a duplicate request sent to hedge a slow one, see
+	 * {@link com.wizecommerce.hecuba.HedgingHecubaClientManager}.
+	 *
+	 * @param won - whether the duplicate request answered first.
+	 */
+	public void recordHedge(boolean won) {
+		hedgeCount.incrementAndGet();
+		if (won) {
+			hedgeWinCount.incrementAndGet();
+		}
+	}
+
+	private void recordLatency(long startNanos) {
+		final long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+		recorder.recordValue(Math.max(0, Math.min(micros, HIGHEST_TRACKABLE_LATENCY)));
+	}
+
+	/**
+	 * @return the metrics since the previous call.
+	 */
+	public synchronized OperationMetricsSnapshot snapshot() {
+		takeRecordedLatencies();
+
+		final long count = this.count.get();
+		final long errorCount = this.errorCount.get();
+		final long rowCount = this.rowCount.get();
+		final long columnCount = this.columnCount.get();
+		final long byteCount = this.byteCount.get();
+		final long hedgeCount = this.hedgeCount.get();
+		final long hedgeWinCount = this.hedgeWinCount.get();
+
+		final OperationMetricsSnapshot snapshot = new OperationMetricsSnapshot(backend, columnFamily, operation,
+				count - reportedCount, errorCount - reportedErrorCount, rowCount - reportedRowCount,
+				columnCount - reportedColumnCount, byteCount - reportedByteCount, hedgeCount - reportedHedgeCount,
+				hedgeWinCount - reportedHedgeWinCount, unreportedLatencies.copy());
+
+		unreportedLatencies.reset();
+		reportedCount = count;
+		reportedErrorCount = errorCount;
+		reportedRowCount = rowCount;
+		reportedColumnCount = columnCount;
+		reportedByteCount = byteCount;
+		reportedHedgeCount = hedgeCount;
+		reportedHedgeWinCount = hedgeWinCount;
+
+		return snapshot;
+	}
+
+	private void takeRecordedLatencies() {
+		intervalLatencies = recorder.getIntervalHistogram(intervalLatencies);
+		totalLatencies.add(intervalLatencies);
+		unreportedLatencies.add(intervalLatencies);
+	}
+
+	private Histogram getTotalLatencies() {
+		takeRecordedLatencies();
+		return totalLatencies;
+	}
+
+	@Override
+	public long getCount() {
+		return count.get();
+	}
+
+	@Override
+	public long getErrorCount() {
+		return errorCount.get();
+	}
+
+	@Override
+	public long getRowCount() {
+		return rowCount.get();
+	}
+
+	@Override
+	public long getColumnCount() {
+		return columnCount.get();
+	}
+
+	@Override
+	public long getByteCount() {
+		return byteCount.get();
+	}
+
+	@Override
+	public long getHedgeCount() {
+		return hedgeCount.get();
+	}
+
+	@Override
+	public long getHedgeWinCount() {
+		return hedgeWinCount.get();
+	}
+
+	@Override
+	public synchronized double getMeanLatency() {
+		return getTotalLatencies().getMean();
+	}
+
+	@Override
+	public synchronized long get50thPercentileLatency() {
+		return getTotalLatencies().getValueAtPercentile(50);
+	}
+
+	@Override
+	public synchronized long get99thPercentileLatency() {
+		return getTotalLatencies().getValueAtPercentile(99);
+	}
+
+	@Override
+	public synchronized long get999thPercentileLatency() {
+		return getTotalLatencies().getValueAtPercentile(99.9);
+	}
+
+	@Override
+	public synchronized long getMaxLatency() {
+		return getTotalLatencies().getMaxValue();
+	}
+}
@@ -0,0 +1,45 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wizecommerce.hecuba.metrics;
+
+/**
+ * The JMX view of {@link OperationMetrics}: totals since the metrics were created, latencies in microseconds.
+ */
+public interface OperationMetricsMBean {
+
+	long getCount();
+
+	long getErrorCount();
+
+	long getRowCount();
+
+	long getColumnCount();
+
+	long getByteCount();
+
+	long getHedgeCount();
+
+	long getHedgeWinCount();
+
+	double getMeanLatency();
+
+	long get50thPercentileLatency();
+
+	long get99thPercentileLatency();
+
+	long get999thPercentileLatency();
+
+	long getMaxLatency();
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wizecommerce.hecuba.metrics;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * The metrics of an operation over one reporting interval. Latencies are in microseconds.
+ */
+public class OperationMetricsSnapshot {
+	private final String backend;
+	private final String columnFamily;
+	private final HecubaOperation operation;
+	private final long count;
+	private final long errorCount;
+	private final long rowCount;
+	private final long columnCount;
+	private final long byteCount;
+	private final long hedgeCount;
+	private final long hedgeWinCount;
+	private final Histogram latencies;
+
+	OperationMetricsSnapshot(String backend, String columnFamily, HecubaOperation operation, long count,
+			long errorCount, long rowCount, long columnCount, long byteCount, long hedgeCount, long hedgeWinCount,
+			Histogram latencies) {
+		this.backend = backend;
+		this.columnFamily = columnFamily;
+		this.operation = operation;
+		this.count = count;
+		this.errorCount = errorCount;
+		this.rowCount = rowCount;
+		this.columnCount = columnCount;
+		this.byteCount = byteCount;
+		this.hedgeCount = hedgeCount;
+		this.hedgeWinCount = hedgeWinCount;
+		this.latencies = latencies;
+	}
+
+	public String getBackend() {
+		return backend;
+	}
+
+	public String getColumnFamily() {
+		return columnFamily;
+	}
+
+	public HecubaOperation getOperation() {
+		return operation;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getErrorCount() {
+		return errorCount;
+	}
+
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	public long getColumnCount() {
+		return columnCount;
+	}
+
+	public long getByteCount() {
+		return byteCount;
+	}
+
+	public long getHedgeCount() {
+		return hedgeCount;
+	}
+
+	public long getHedgeWinCount() {
+		return hedgeWinCount;
+	}
+
+	/**
+	 * @return the latencies of the operations of the interval, successful or not, in microseconds.
+	 */
+	public Histogram getLatencies() {
+		return latencies;
+	}
+}
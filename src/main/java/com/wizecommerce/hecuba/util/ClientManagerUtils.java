@@ -1,9 +1,5 @@
 package com.wizecommerce.hecuba.util;
 
-import java.util.Date;
-
-import com.wizecommerce.hecuba.HecubaConstants;
-
 public class ClientManagerUtils {
 	private static final ClientManagerUtils instance = new ClientManagerUtils();
 
@@ -15,14 +11,14 @@ public class ClientManagerUtils {
 	}
 
 	public String convertValueForStorage(Object input) {
-		if (input == null) {
-			return "null";
-		}
-
-		if (input instanceof Date) {
-			return HecubaConstants.DATE_FORMATTER.print(((Date) input).getTime());
-		}
+		return convertValueForStorage(null, input);
+	}
 
-		return input.toString();
+	/**
+	 * Converts a value of the given column to the string stored in Cassandra, using the codec registered for the column
+	 * with {@link HecubaValueCodecs}, if any.
+	 */
+	public String convertValueForStorage(String columnName, Object input) {
+		return HecubaValueCodecs.getInstance().encode(columnName, input);
 	}
 }
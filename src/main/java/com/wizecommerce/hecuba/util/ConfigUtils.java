@@ -134,6 +134,7 @@ public class ConfigUtils {
 
 	public static ConfigUtils getInstance(Configuration configuration) {
 		mainConfiguration = configuration;
+		HecubaValueCodecs.getInstance().reloadConfiguration();
 		return ourInstance;
 	}
 
@@ -0,0 +1,25 @@
+package com.wizecommerce.hecuba.util;
+
+/**
+ * Converts the values of a column to and from the strings stored in Cassandra.
+ *
+ * Codecs are registered for column names or patterns of column names with {@link HecubaValueCodecs}, and are used
+ * when rows are written with updateRow or the typed update methods and when values are read with the typed getters of
+ * the result sets.
+ *
+ * @param <T> - type of the values
+ */
+public interface HecubaValueCodec<T> {
+
+	/**
+	 * @return the string to store for the given (non-null) value.
+	 */
+	String encode(T value);
+
+	/**
+	 * @return the value of the given (non-null) stored string.
+	 *
+	 * @throws IllegalArgumentException if the string is not a valid encoding of a value.
+	 */
+	T decode(String value);
+}
@@ -0,0 +1,253 @@
+package com.wizecommerce.hecuba.util;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.wizecommerce.hecuba.HecubaConstants;
+
+/**
+ * The registry of {@link HecubaValueCodec}s, and the codecs used for columns without one.
+ *
+ * Without a registered codec values are stored as their toString(), and dates in the format given by
+ * {@link HecubaConstants#VALUE_CODEC_DATE_FORMAT}: either "legacy", {@link HecubaConstants#DATE_FORMATTER}, which is
+ * the default, or "millis", the number of milliseconds since the epoch. The latter is both smaller and much cheaper
+ * to parse. Dates are read in either format regardless of the setting, so that columns can be migrated to the new
+ * format while they are being read. The format is read when the configuration is set with
+ * {@link ConfigUtils#getInstance(org.apache.commons.configuration.Configuration)}, and again on
+ * {@link #reloadConfiguration()}.
+ */
+public class HecubaValueCodecs {
+	public static final HecubaValueCodec<Long> LONG = new HecubaValueCodec<Long>() {
+		@Override
+		public String encode(Long value) {
+			return value.toString();
+		}
+
+		@Override
+		public Long decode(String value) {
+			return Long.parseLong(value);
+		}
+	};
+
+	public static final HecubaValueCodec<Integer> INTEGER = new HecubaValueCodec<Integer>() {
+		@Override
+		public String encode(Integer value) {
+			return value.toString();
+		}
+
+		@Override
+		public Integer decode(String value) {
+			return Integer.parseInt(value);
+		}
+	};
+
+	public static final HecubaValueCodec<Double> DOUBLE = new HecubaValueCodec<Double>() {
+		@Override
+		public String encode(Double value) {
+			return value.toString();
+		}
+
+		@Override
+		public Double decode(String value) {
+			return Double.parseDouble(value);
+		}
+	};
+
+	public static final HecubaValueCodec<Float> FLOAT = new HecubaValueCodec<Float>() {
+		@Override
+		public String encode(Float value) {
+			return value.toString();
+		}
+
+		@Override
+		public Float decode(String value) {
+			return Float.parseFloat(value);
+		}
+	};
+
+	public static final HecubaValueCodec<Boolean> BOOLEAN = new HecubaValueCodec<Boolean>() {
+		@Override
+		public String encode(Boolean value) {
+			return value ? "true" : "false";
+		}
+
+		@Override
+		public Boolean decode(String value) {
+			return "true".equalsIgnoreCase(value) || "1".equals(value);
+		}
+	};
+
+	/**
+	 * Stores dates in the {@link HecubaConstants#DATE_FORMATTER} format.
+	 */
+	public static final HecubaValueCodec<Date> LEGACY_DATE = new DateCodec(false);
+
+	/**
+	 * Stores dates as the number of milliseconds since the epoch.
+	 */
+	public static final HecubaValueCodec<Date> MILLIS_DATE = new DateCodec(true);
+
+	// after the codecs, which the constructor reads.
+	private static final HecubaValueCodecs instance = new HecubaValueCodecs();
+
+	private static final int PATTERN_CODEC_MATCHES_MAX_SIZE = 10000;
+
+	private final Map<String, HecubaValueCodec<?>> columnCodecs = new ConcurrentHashMap<>();
+	private final List<Map.Entry<Pattern, HecubaValueCodec<?>>> patternCodecs = new CopyOnWriteArrayList<>();
+	// the codec matched by the patternCodecs, if any, for the column names seen lately, so that reads and writes do not
+	// run the expressions for every column. Replaced whenever the codecs are.
+	private volatile Cache<String, Optional<HecubaValueCodec<?>>> patternCodecMatches = newPatternCodecMatches();
+
+	private volatile HecubaValueCodec<Date> dateCodec;
+
+	private HecubaValueCodecs() {
+		reloadConfiguration();
+	}
+
+	public static HecubaValueCodecs getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Uses the given codec for the values of the columns with the given name.
+	 */
+	public void register(String columnName, HecubaValueCodec<?> codec) {
+		columnCodecs.put(columnName, codec);
+		patternCodecMatches = newPatternCodecMatches();
+	}
+
+	/**
+	 * Uses the given codec for the values of the columns whose names match the given regular expression, unless a
+	 * codec is registered for the name itself. Patterns are matched in the order they were registered.
+	 */
+	public void registerPattern(String columnNamePattern, HecubaValueCodec<?> codec) {
+		patternCodecs.add(new SimpleImmutableEntry<Pattern, HecubaValueCodec<?>>(Pattern.compile(columnNamePattern),
+				codec));
+		patternCodecMatches = newPatternCodecMatches();
+	}
+
+	public void clear() {
+		columnCodecs.clear();
+		patternCodecs.clear();
+		patternCodecMatches = newPatternCodecMatches();
+	}
+
+	/**
+	 * Reads the {@link HecubaConstants#VALUE_CODEC_DATE_FORMAT} again, e.g. after it was changed in the configuration.
+	 */
+	public void reloadConfiguration() {
+		final String dateFormat = ConfigUtils.getInstance().getConfiguration().getString(
+				HecubaConstants.VALUE_CODEC_DATE_FORMAT, "legacy");
+		dateCodec = "millis".equalsIgnoreCase(dateFormat) ? MILLIS_DATE : LEGACY_DATE;
+	}
+
+	public boolean hasCodecs() {
+		return !columnCodecs.isEmpty() || !patternCodecs.isEmpty();
+	}
+
+	/**
+	 * @return the codec registered for the given column, null if there is none.
+	 */
+	public HecubaValueCodec<?> getCodec(String columnName) {
+		if (columnName == null || !hasCodecs()) {
+			return null;
+		}
+
+		final HecubaValueCodec<?> codec = columnCodecs.get(columnName);
+		if (codec != null || patternCodecs.isEmpty()) {
+			return codec;
+		}
+
+		// read before the patterns, so that a match is never cached with codecs it was not matched against.
+		final Cache<String, Optional<HecubaValueCodec<?>>> matches = patternCodecMatches;
+		Optional<HecubaValueCodec<?>> match = matches.getIfPresent(columnName);
+		if (match == null) {
+			match = Optional.absent();
+			for (Map.Entry<Pattern, HecubaValueCodec<?>> patternCodec : patternCodecs) {
+				if (patternCodec.getKey().matcher(columnName).matches()) {
+					match = Optional.<HecubaValueCodec<?>> of(patternCodec.getValue());
+					break;
+				}
+			}
+			matches.put(columnName, match);
+		}
+		return match.orNull();
+	}
+
+	/**
+	 * @return the string to store for a value of the given column.
+	 */
+	@SuppressWarnings("unchecked")
+	public String encode(String columnName, Object value) {
+		if (value == null) {
+			return "null";
+		}
+
+		final HecubaValueCodec<Object> codec = (HecubaValueCodec<Object>) getCodec(columnName);
+		if (codec != null) {
+			return codec.encode(value);
+		}
+
+		if (value instanceof Date) {
+			return getDateCodec().encode((Date) value);
+		}
+
+		return value.toString();
+	}
+
+	/**
+	 * Decodes a stored string of the given column with the codec registered for the column, or the given one if there
+	 * is none.
+	 *
+	 * @throws IllegalArgumentException if the string is not a valid encoding of a value.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T decode(String columnName, String value, HecubaValueCodec<T> defaultCodec) {
+		final HecubaValueCodec<?> codec = getCodec(columnName);
+		return codec != null ? (T) codec.decode(value) : defaultCodec.decode(value);
+	}
+
+	/**
+	 * @return the codec of dates without a registered codec.
+	 */
+	public HecubaValueCodec<Date> getDateCodec() {
+		return dateCodec;
+	}
+
+	private static Cache<String, Optional<HecubaValueCodec<?>>> newPatternCodecMatches() {
+		return CacheBuilder.newBuilder().maximumSize(PATTERN_CODEC_MATCHES_MAX_SIZE).build();
+	}
+
+	private static class DateCodec implements HecubaValueCodec<Date> {
+		private final boolean millis;
+
+		DateCodec(boolean millis) {
+			this.millis = millis;
+		}
+
+		@Override
+		public String encode(Date value) {
+			return millis ? Long.toString(value.getTime()) : HecubaConstants.DATE_FORMATTER.print(value.getTime());
+		}
+
+		@Override
+		public Date decode(String value) {
+			// the legacy format always starts with the name of the day, so anything numeric is in milliseconds.
+			final String digits = value.startsWith("-") ? value.substring(1) : value;
+			if (!digits.isEmpty() && StringUtils.isNumeric(digits)) {
+				return new Date(Long.parseLong(value));
+			}
+			return HecubaConstants.DATE_FORMATTER.parseDateTime(value).toDate();
+		}
+	}
+}
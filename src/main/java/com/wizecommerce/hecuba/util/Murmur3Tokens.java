@@ -0,0 +1,140 @@
+package com.wizecommerce.hecuba.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Computes the tokens Cassandra's Murmur3Partitioner gives to row keys, so that rows read by token range can be
+ * placed on the ring without asking the cluster.
+ *
+ * This is a port of the first half of MurmurHash3_x64_128 as Cassandra implements it, including its sign extension of
+ * the trailing bytes, which makes it differ from the reference implementation for some keys.
+ */
+public final class Murmur3Tokens {
+	public static final long MINIMUM_TOKEN = Long.MIN_VALUE;
+	public static final long MAXIMUM_TOKEN = Long.MAX_VALUE;
+
+	private static final long C1 = 0x87c37b91114253d5L;
+	private static final long C2 = 0x4cf5ad432745937fL;
+
+	private Murmur3Tokens() {
+	}
+
+	/**
+	 * @param key the serialized row key, from its position to its limit, which are left untouched.
+	 *
+	 * @return the token of the row key.
+	 */
+	public static long getToken(ByteBuffer key) {
+		if (key.remaining() == 0) {
+			return MINIMUM_TOKEN;
+		}
+
+		// the minimum token is reserved, so Cassandra moves the keys hashing to it next to it.
+		final long hash = hash(key, key.position(), key.remaining());
+		return hash == MINIMUM_TOKEN ? MAXIMUM_TOKEN : hash;
+	}
+
+	private static long hash(ByteBuffer key, int offset, int length) {
+		final int blocks = length >> 4;
+
+		long h1 = 0;
+		long h2 = 0;
+
+		for (int i = 0; i < blocks; i++) {
+			long k1 = getBlock(key, offset, i * 2);
+			long k2 = getBlock(key, offset, i * 2 + 1);
+
+			k1 *= C1;
+			k1 = Long.rotateLeft(k1, 31);
+			k1 *= C2;
+			h1 ^= k1;
+
+			h1 = Long.rotateLeft(h1, 27);
+			h1 += h2;
+			h1 = h1 * 5 + 0x52dce729;
+
+			k2 *= C2;
+			k2 = Long.rotateLeft(k2, 33);
+			k2 *= C1;
+			h2 ^= k2;
+
+			h2 = Long.rotateLeft(h2, 31);
+			h2 += h1;
+			h2 = h2 * 5 + 0x38495ab5;
+		}
+
+		final int tail = offset + (blocks << 4);
+		long k1 = 0;
+		long k2 = 0;
+
+		switch (length & 15) {
+		case 15:
+			k2 ^= ((long) key.get(tail + 14)) << 48;
+		case 14:
+			k2 ^= ((long) key.get(tail + 13)) << 40;
+		case 13:
+			k2 ^= ((long) key.get(tail + 12)) << 32;
+		case 12:
+			k2 ^= ((long) key.get(tail + 11)) << 24;
+		case 11:
+			k2 ^= ((long) key.get(tail + 10)) << 16;
+		case 10:
+			k2 ^= ((long) key.get(tail + 9)) << 8;
+		case 9:
+			k2 ^= key.get(tail + 8);
+			k2 *= C2;
+			k2 = Long.rotateLeft(k2, 33);
+			k2 *= C1;
+			h2 ^= k2;
+		case 8:
+			k1 ^= ((long) key.get(tail + 7)) << 56;
+		case 7:
+			k1 ^= ((long) key.get(tail + 6)) << 48;
+		case 6:
+			k1 ^= ((long) key.get(tail + 5)) << 40;
+		case 5:
+			k1 ^= ((long) key.get(tail + 4)) << 32;
+		case 4:
+			k1 ^= ((long) key.get(tail + 3)) << 24;
+		case 3:
+			k1 ^= ((long) key.get(tail + 2)) << 16;
+		case 2:
+			k1 ^= ((long) key.get(tail + 1)) << 8;
+		case 1:
+			k1 ^= key.get(tail);
+			k1 *= C1;
+			k1 = Long.rotateLeft(k1, 31);
+			k1 *= C2;
+			h1 ^= k1;
+		}
+
+		h1 ^= length;
+		h2 ^= length;
+
+		h1 += h2;
+		h2 += h1;
+
+		h1 = mix(h1);
+		h2 = mix(h2);
+
+		return h1 + h2;
+	}
+
+	private static long getBlock(ByteBuffer key, int offset, int index) {
+		final int blockOffset = offset + (index << 3);
+		long block = 0;
+		for (int i = 7; i >= 0; i--) {
+			block = (block << 8) | (key.get(blockOffset + i) & 0xffL);
+		}
+		return block;
+	}
+
+	private static long mix(long k) {
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+		return k;
+	}
+}
@@ -0,0 +1,187 @@
+package com.wizecommerce.hecuba.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses primitive values straight from the stored representation of a column value, without creating a String or a
+ * boxed result.
+ *
+ * Values may be given as a {@link CharSequence}, a {@link ByteBuffer} holding the UTF-8 bytes of the text (from its
+ * position to its limit, which are left untouched), a {@link Number} or a {@link Boolean}. Missing values, the stored
+ * "null" and values that cannot be parsed give the default value, like the primitive defaulting getters of
+ * {@link com.wizecommerce.hecuba.CassandraResultSet}.
+ */
+public final class PrimitiveValueParser {
+
+	// mantissas up to 2^53 and powers of ten up to 10^22 are exact doubles.
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+			1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	private PrimitiveValueParser() {
+	}
+
+	public static long parseLong(Object value, long defaultValue) {
+		if (value instanceof Number) {
+			return ((Number) value).longValue();
+		}
+
+		final int length = length(value);
+		if (length == 0 || isNull(value, length)) {
+			return defaultValue;
+		}
+
+		int i = 0;
+		final boolean negative = charAt(value, 0) == '-';
+		if (negative || charAt(value, 0) == '+') {
+			if (length == 1) {
+				return defaultValue;
+			}
+			i++;
+		}
+
+		// accumulated negatively, so that Long.MIN_VALUE does not overflow.
+		long result = 0;
+		for (; i < length; i++) {
+			final int digit = charAt(value, i) - '0';
+			if (digit < 0 || digit > 9 || result < (Long.MIN_VALUE + digit) / 10) {
+				return defaultValue;
+			}
+			result = result * 10 - digit;
+		}
+
+		if (negative) {
+			return result;
+		}
+		return result == Long.MIN_VALUE ? defaultValue : -result;
+	}
+
+	public static int parseInt(Object value, int defaultValue) {
+		if (value instanceof Number) {
+			return ((Number) value).intValue();
+		}
+
+		final long result = parseLong(value, Long.MIN_VALUE);
+		return result < Integer.MIN_VALUE || result > Integer.MAX_VALUE ? defaultValue : (int) result;
+	}
+
+	public static double parseDouble(Object value, double defaultValue) {
+		if (value instanceof Number) {
+			return ((Number) value).doubleValue();
+		}
+
+		final int length = length(value);
+		if (length == 0 || isNull(value, length)) {
+			return defaultValue;
+		}
+
+		int i = 0;
+		final boolean negative = charAt(value, 0) == '-';
+		if (negative || charAt(value, 0) == '+') {
+			i++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int fractionDigits = -1;
+		for (; i < length; i++) {
+			final char c = charAt(value, i);
+			if (c == '.' && fractionDigits < 0) {
+				fractionDigits = 0;
+				continue;
+			}
+
+			final int digit = c - '0';
+			if (digit < 0 || digit > 9 || mantissa > (MAX_EXACT_MANTISSA - digit) / 10) {
+				// exponents, NaN, Infinity, too many digits etc.
+				return parseDoubleSlowly(value, defaultValue);
+			}
+			mantissa = mantissa * 10 + digit;
+			digits++;
+			if (fractionDigits >= 0) {
+				fractionDigits++;
+			}
+		}
+
+		if (digits == 0 || fractionDigits >= POWERS_OF_TEN.length) {
+			return parseDoubleSlowly(value, defaultValue);
+		}
+
+		// both operands are exact, so the division is correctly rounded.
+		final double result = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+		return negative ? -result : result;
+	}
+
+	/**
+	 * @return true for "true" (in any case) and "1", false for anything else.
+	 */
+	public static boolean parseBoolean(Object value, boolean defaultValue) {
+		if (value instanceof Boolean) {
+			return (Boolean) value;
+		}
+		if (value instanceof Number) {
+			return ((Number) value).longValue() == 1;
+		}
+
+		final int length = length(value);
+		if (length == 0 || isNull(value, length)) {
+			return defaultValue;
+		}
+
+		if (length == 1) {
+			return charAt(value, 0) == '1';
+		}
+		return length == 4 && matchesIgnoreCase(value, "true");
+	}
+
+	private static double parseDoubleSlowly(Object value, double defaultValue) {
+		try {
+			return Double.parseDouble(toString(value));
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	private static int length(Object value) {
+		if (value instanceof CharSequence) {
+			return ((CharSequence) value).length();
+		}
+		if (value instanceof ByteBuffer) {
+			return ((ByteBuffer) value).remaining();
+		}
+		return 0;
+	}
+
+	/**
+	 * Bytes of multi-byte UTF-8 characters come out as characters no number or boolean contains, which is all the
+	 * parsers need.
+	 */
+	private static char charAt(Object value, int index) {
+		if (value instanceof CharSequence) {
+			return ((CharSequence) value).charAt(index);
+		}
+		final ByteBuffer buffer = (ByteBuffer) value;
+		return (char) (buffer.get(buffer.position() + index) & 0xff);
+	}
+
+	private static boolean isNull(Object value, int length) {
+		return length == 4 && matchesIgnoreCase(value, "null");
+	}
+
+	private static boolean matchesIgnoreCase(Object value, String expected) {
+		for (int i = 0; i < expected.length(); i++) {
+			if (Character.toLowerCase(charAt(value, i)) != expected.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static String toString(Object value) {
+		if (value instanceof ByteBuffer) {
+			return StandardCharsets.UTF_8.decode(((ByteBuffer) value).duplicate()).toString();
+		}
+		return value.toString();
+	}
+}
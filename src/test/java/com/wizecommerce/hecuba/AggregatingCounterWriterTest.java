@@ -0,0 +1,133 @@
+package com.wizecommerce.hecuba;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
+
+public class AggregatingCounterWriterTest {
+
+	private HecubaClientManager<Long> clientManager;
+
+	@SuppressWarnings("unchecked")
+	@Before
+	public void setup() {
+		clientManager = mock(HecubaClientManager.class);
+		when(clientManager.getColumnFamilyName()).thenReturn("MyColumnFamily");
+		when(clientManager.updateCounterAsync(anyLong(), anyString(), anyLong())).thenReturn(
+				Futures.<Void> immediateFuture(null));
+	}
+
+	@Test
+	public void testUpdatesAreSummed() throws Exception {
+		final AggregatingCounterWriter<Long> writer = new AggregatingCounterWriter<>(clientManager, 1000000, 60000);
+
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < 1000; j++) {
+						writer.incrementCounter(1L, "clicks");
+						writer.updateCounter(2L, "clicks", 2);
+					}
+					writer.decrementCounter(1L, "clicks");
+				}
+			});
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		when(clientManager.getCounterValue(1L, "clicks")).thenReturn(10L);
+		assertEquals(3996, writer.getPendingValue(1L, "clicks"));
+		assertEquals(4006L, (long) writer.getCounterValue(1L, "clicks"));
+
+		writer.flush();
+		verify(clientManager).updateCounterAsync(1L, "clicks", 3996);
+		verify(clientManager).updateCounterAsync(2L, "clicks", 8000);
+		assertEquals(2, writer.getWrittenCount());
+		assertEquals(0, writer.getPendingValue(1L, "clicks"));
+		writer.close();
+	}
+
+	@Test
+	public void testPendingUpdatesAreFlushed() throws Exception {
+		final CountDownLatch written = new CountDownLatch(2);
+		when(clientManager.updateCounterAsync(anyLong(), anyString(), anyLong())).thenAnswer(
+				new Answer<Object>() {
+					@Override
+					public Object answer(InvocationOnMock invocation) {
+						written.countDown();
+						return Futures.<Void> immediateFuture(null);
+					}
+				});
+
+		// by the threshold.
+		AggregatingCounterWriter<Long> writer = new AggregatingCounterWriter<>(clientManager, 1, 60000);
+		writer.incrementCounter(1L, "clicks");
+		writer.close();
+
+		// and by the interval.
+		writer = new AggregatingCounterWriter<>(clientManager, 1000000, 10);
+		writer.incrementCounter(2L, "clicks");
+		assertTrue(written.await(5, TimeUnit.SECONDS));
+		writer.close();
+
+		verify(clientManager).updateCounterAsync(1L, "clicks", 1);
+		verify(clientManager).updateCounterAsync(2L, "clicks", 1);
+	}
+
+	@Test
+	public void testFailedUpdatesAreDropped() throws Exception {
+		SettableFuture<Void> write = SettableFuture.create();
+		when(clientManager.updateCounterAsync(3L, "clicks", 5)).thenReturn(write);
+
+		final AggregatingCounterWriter<Long> writer = new AggregatingCounterWriter<>(clientManager, 1000000, 60000);
+		writer.updateCounter(3L, "clicks", 5);
+		Thread flush = new Thread() {
+			@Override
+			public void run() {
+				try {
+					writer.flush();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		flush.start();
+
+		// counted until the write completes.
+		verify(clientManager, timeout(5000)).updateCounterAsync(3L, "clicks", 5);
+		assertEquals(5, writer.getPendingValue(3L, "clicks"));
+
+		write.setException(new IllegalStateException("write failed"));
+		flush.join(5000);
+		assertEquals(0, writer.getPendingValue(3L, "clicks"));
+		assertEquals(1, writer.getFailedCount());
+		writer.close();
+
+		try {
+			writer.incrementCounter(3L, "clicks");
+			fail();
+		} catch (IllegalStateException e) {
+			// closed
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package com.wizecommerce.hecuba;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.wizecommerce.hecuba.AsyncSecondaryIndexWriter.IndexMutation;
+
+public class AsyncSecondaryIndexWriterTest {
+
+	private final List<List<IndexMutation<Long>>> batches = Collections.synchronizedList(
+			new ArrayList<List<IndexMutation<Long>>>());
+	private final CountDownLatch writing = new CountDownLatch(1);
+	private AsyncSecondaryIndexWriter<Long> writer;
+
+	@After
+	public void tearDown() {
+		writing.countDown();
+		if (writer != null) {
+			writer.shutDown();
+		}
+	}
+
+	@Test
+	public void testQueuedMutationsAreCoalesced() throws Exception {
+		writer = new AsyncSecondaryIndexWriter<>("test", new AsyncSecondaryIndexWriter.BatchWriter<Long>() {
+			@Override
+			public void write(List<IndexMutation<Long>> mutations) throws Exception {
+				// hold the first batch back so that the rest of them queue up behind it.
+				writing.await();
+				batches.add(mutations);
+			}
+		}, 100, 10);
+
+		writer.insert("column:value_0", 0L, -1, -1);
+		while (writer.getPendingCount() > 0) {
+			Thread.sleep(10);
+		}
+
+		writer.insert("column:value_1", 1L, -1, -1);
+		writer.delete("column:value_1", 1L, -1);
+		writer.insert("column:value_2", 1L, -1, 60);
+		writer.insert("column:value_2", 1L, -1, 120);
+		assertEquals(2, writer.getPendingCount());
+
+		writing.countDown();
+		writer.flush();
+
+		assertEquals(2, batches.size());
+		List<IndexMutation<Long>> mutations = batches.get(1);
+		assertEquals(2, mutations.size());
+		assertEquals("column:value_1", mutations.get(0).getSecondaryIndexKey());
+		assertTrue(mutations.get(0).isDeletion());
+		assertEquals("column:value_2", mutations.get(1).getSecondaryIndexKey());
+		assertEquals(120, mutations.get(1).getTtl());
+	}
+
+	@Test
+	public void testOlderTimestampsDoNotReplaceNewerOnes() throws Exception {
+		writer = new AsyncSecondaryIndexWriter<>("test", new AsyncSecondaryIndexWriter.BatchWriter<Long>() {
+			@Override
+			public void write(List<IndexMutation<Long>> mutations) throws Exception {
+				writing.await();
+				batches.add(mutations);
+			}
+		}, 100, 10);
+
+		writer.insert("column:value_0", 0L, -1, -1);
+		while (writer.getPendingCount() > 0) {
+			Thread.sleep(10);
+		}
+
+		writer.delete("column:value_1", 1L, 2000);
+		writer.insert("column:value_1", 1L, 1000, -1);
+
+		writing.countDown();
+		writer.flush();
+
+		assertTrue(batches.get(1).get(0).isDeletion());
+		assertEquals(2000, batches.get(1).get(0).getTimestamp());
+	}
+}
@@ -0,0 +1,157 @@
+package com.wizecommerce.hecuba;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Mockito.*;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+public class BufferedHecubaWriterTest {
+
+	private HecubaClientManager<Long> clientManager;
+
+	@SuppressWarnings("unchecked")
+	@Before
+	public void setup() {
+		clientManager = mock(HecubaClientManager.class);
+		when(clientManager.getColumnFamilyName()).thenReturn("MyColumnFamily");
+		when(clientManager.updateRowAsync(anyLong(), anyMapOf(String.class, Object.class),
+				anyMapOf(String.class, Long.class), anyMapOf(String.class, Integer.class))).thenReturn(
+				Futures.<Void> immediateFuture(null));
+	}
+
+	@Test
+	public void testUpdatesOfARowAreMerged() throws Exception {
+		BufferedHecubaWriter<Long> writer = new BufferedHecubaWriter<>(clientManager, 100, 100, 60000, 10);
+		ListenableFuture<Void> first = writer.update(1L, "column_1", "value_1");
+		writer.update(1L, "column_2", 2L, 1000, 60);
+		writer.update(1L, "column_1", "value_1_updated");
+		writer.update(1L, "column_2", 1L, 999, -1);
+		ListenableFuture<Void> other = writer.update(2L, "column_1", "value_2");
+		assertEquals(2, writer.getBufferedCount());
+		assertFalse(first.isDone());
+
+		writer.flush();
+
+		assertTrue(first.isDone());
+		assertTrue(other.isDone());
+		verify(clientManager).updateRowAsync(1L, ImmutableMap.<String, Object> of("column_1", "value_1_updated",
+				"column_2", 2L), ImmutableMap.of("column_2", 1000L), ImmutableMap.of("column_2", 60));
+		verify(clientManager).updateRowAsync(2L, ImmutableMap.<String, Object> of("column_1", "value_2"), null, null);
+		assertEquals(2, writer.getWrittenCount());
+		writer.close();
+	}
+
+	@Test
+	public void testFullStripesAndLingeringRowsAreWritten() throws Exception {
+		BufferedHecubaWriter<Long> writer = new BufferedHecubaWriter<>(clientManager, 1, 1, 60000, 10);
+		assertTrue(writer.update(1L, "column_1", "value_1").isDone());
+		writer.close();
+
+		writer = new BufferedHecubaWriter<>(clientManager, 100, 100, 10, 10);
+		writer.update(2L, "column_1", "value_1").get(5, TimeUnit.SECONDS);
+		assertEquals(0, writer.getBufferedCount());
+		writer.close();
+	}
+
+	@Test
+	public void testFailuresAreReported() throws Exception {
+		when(clientManager.updateRowAsync(eq(3L), anyMapOf(String.class, Object.class),
+				anyMapOf(String.class, Long.class), anyMapOf(String.class, Integer.class))).thenReturn(
+				Futures.<Void> immediateFailedFuture(new IllegalStateException("write failed")));
+
+		BufferedHecubaWriter<Long> writer = new BufferedHecubaWriter<>(clientManager, 100, 100, 60000, 10);
+		ListenableFuture<Void> failed = writer.update(3L, "column_1", "value_1");
+		writer.close();
+
+		try {
+			failed.get();
+			fail();
+		} catch (ExecutionException e) {
+			assertEquals("write failed", e.getCause().getMessage());
+		}
+		assertEquals(1, writer.getFailedCount());
+
+		try {
+			writer.update(3L, "column_1", "value_1");
+			fail();
+		} catch (IllegalStateException e) {
+			// closed.
+		}
+	}
+
+	@Test
+	public void testWritesOfARowAreNotReordered() throws Exception {
+		SettableFuture<Void> firstWrite = SettableFuture.create();
+		when(clientManager.updateRowAsync(anyLong(), anyMapOf(String.class, Object.class),
+				anyMapOf(String.class, Long.class), anyMapOf(String.class, Integer.class))).thenReturn(firstWrite,
+				Futures.<Void> immediateFuture(null));
+
+		BufferedHecubaWriter<Long> writer = new BufferedHecubaWriter<>(clientManager, 1, 1, 60000, 10);
+		writer.update(1L, "column_1", "value_1");
+		ListenableFuture<Void> second = writer.update(1L, "column_1", "value_2");
+
+		verify(clientManager, times(1)).updateRowAsync(anyLong(), anyMapOf(String.class, Object.class),
+				anyMapOf(String.class, Long.class), anyMapOf(String.class, Integer.class));
+		assertFalse(second.isDone());
+
+		firstWrite.set(null);
+		assertTrue(second.isDone());
+		verify(clientManager).updateRowAsync(1L, Collections.<String, Object> singletonMap("column_1", "value_2"),
+				null, null);
+		writer.close();
+	}
+
+	@Test
+	public void testWritesOfARowTakenWhileWritesAreBlockedAreNotReordered() throws Exception {
+		SettableFuture<Void> otherWrite = SettableFuture.create();
+		SettableFuture<Void> firstWrite = SettableFuture.create();
+		when(clientManager.updateRowAsync(anyLong(), anyMapOf(String.class, Object.class),
+				anyMapOf(String.class, Long.class), anyMapOf(String.class, Integer.class))).thenReturn(otherWrite,
+				firstWrite, Futures.<Void> immediateFuture(null));
+
+		// a write of another row takes the only permit.
+		final BufferedHecubaWriter<Long> writer = new BufferedHecubaWriter<>(clientManager, 1, 1, 60000, 1);
+		writer.update(2L, "column_1", "value_1");
+
+		Thread first = new Thread() {
+			@Override
+			public void run() {
+				writer.update(1L, "column_1", "value_1");
+			}
+		};
+		first.start();
+		while (first.getState() != Thread.State.WAITING) {
+			Thread.sleep(1);
+		}
+
+		// taken after the first, but not blocked as it waits for the first to be written.
+		ListenableFuture<Void> second = writer.update(1L, "column_1", "value_2");
+		assertFalse(second.isDone());
+
+		otherWrite.set(null);
+		first.join(5000);
+		assertFalse(second.isDone());
+		firstWrite.set(null);
+		assertTrue(second.isDone());
+
+		InOrder inOrder = inOrder(clientManager);
+		inOrder.verify(clientManager).updateRowAsync(1L, Collections.<String, Object> singletonMap("column_1",
+				"value_1"), null, null);
+		inOrder.verify(clientManager).updateRowAsync(1L, Collections.<String, Object> singletonMap("column_1",
+				"value_2"), null, null);
+		writer.close();
+	}
+}
@@ -0,0 +1,157 @@
+package com.wizecommerce.hecuba;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anySetOf;
+import static org.mockito.Mockito.*;
+
+import java.util.*;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.google.common.collect.ImmutableMap;
+
+public class CachingHecubaClientManagerTest {
+
+	private HecubaClientManager<Long> delegate;
+	private CachingHecubaClientManager<Long> cachingManager;
+
+	@SuppressWarnings("unchecked")
+	@Before
+	public void setup() throws Exception {
+		delegate = mock(HecubaClientManager.class);
+		when(delegate.readAllColumns(1L)).thenReturn(row(1L, ImmutableMap.of("column_1", "value_1", "column_2", "value_2")));
+		when(delegate.readAllColumns(2L)).thenReturn(new CassandraMapResultSet<Long, String>(new HashMap<String, String>()));
+
+		CassandraParamsBean parameters = new CassandraParamsBean();
+		parameters.setColumnFamily("MyColumnFamily");
+		cachingManager = new CachingHecubaClientManager<>(parameters, delegate);
+	}
+
+	@Test
+	public void testReadsAreServedFromTheCachedRow() throws Exception {
+		assertEquals("value_1", cachingManager.readString(1L, "column_1"));
+		assertEquals("value_2", cachingManager.readString(1L, "column_2"));
+		assertNull(cachingManager.readString(1L, "column_3"));
+
+		CassandraResultSet<Long, String> resultSet = cachingManager.readColumns(1L, Arrays.asList("column_2"));
+		assertEquals(Long.valueOf(1L), resultSet.getKey());
+		assertEquals(Collections.singleton("column_2"), new HashSet<>(resultSet.getColumnNames()));
+
+		resultSet = cachingManager.readAllColumns(1L);
+		assertEquals(2, resultSet.getColumnNames().size());
+
+		verify(delegate, times(1)).readAllColumns(1L);
+		assertEquals(1, cachingManager.getRowCacheStats().missCount());
+		assertEquals(4, cachingManager.getRowCacheStats().hitCount());
+	}
+
+	@Test
+	public void testMissingRowsAreCached() throws Exception {
+		assertNull(cachingManager.readString(2L, "column_1"));
+		assertFalse(cachingManager.readAllColumns(2L).hasResults());
+
+		verify(delegate, times(1)).readAllColumns(2L);
+	}
+
+	@Test
+	public void testWritesInvalidate() throws Exception {
+		assertEquals("value_1", cachingManager.readString(1L, "column_1"));
+
+		cachingManager.updateString(1L, "column_1", "value_3");
+		verify(delegate).updateString(1L, "column_1", "value_3", -1, -1);
+
+		assertEquals("value_1", cachingManager.readString(1L, "column_1"));
+		cachingManager.deleteRow(1L);
+		verify(delegate).deleteRow(anyLong(), anyLong());
+
+		assertEquals("value_1", cachingManager.readString(1L, "column_1"));
+		verify(delegate, times(3)).readAllColumns(1L);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testMultiGetReadsOnlyMissingKeys() throws Exception {
+		cachingManager.readString(1L, "column_1");
+
+		when(delegate.readAllColumns(anySetOf(Long.class))).thenReturn(row(3L, ImmutableMap.of("column_1", "value_3")));
+
+		CassandraResultSet<Long, String> resultSet = cachingManager.readColumns(new HashSet<>(Arrays.asList(1L, 3L, 4L)),
+				Arrays.asList("column_1"));
+		Map<Long, String> values = new HashMap<>();
+		assertTrue(resultSet.hasResults());
+		while (true) {
+			values.put(resultSet.getKey(), resultSet.getString("column_1"));
+			if (!resultSet.hasNextResult()) {
+				break;
+			}
+			resultSet.nextResult();
+		}
+
+		assertEquals(ImmutableMap.of(1L, "value_1", 3L, "value_3"), values);
+		verify(delegate).readAllColumns(new HashSet<>(Arrays.asList(3L, 4L)));
+
+		// 4 is known not to exist now.
+		assertNull(cachingManager.readString(4L, "column_1"));
+		verify(delegate, never()).readAllColumns(4L);
+	}
+
+	@Test
+	public void testRowsReadBeforeAWriteAreNotCached() throws Exception {
+		when(delegate.readAllColumns(5L)).thenAnswer(new Answer<CassandraResultSet<Long, String>>() {
+			@Override
+			public CassandraResultSet<Long, String> answer(InvocationOnMock invocation) throws Throwable {
+				// a write lands while the row is being read.
+				cachingManager.updateString(5L, "column_1", "value_2");
+				return row(5L, ImmutableMap.of("column_1", "value_1"));
+			}
+		});
+
+		assertEquals("value_1", cachingManager.readString(5L, "column_1"));
+		assertEquals("value_1", cachingManager.readString(5L, "column_1"));
+		verify(delegate, times(2)).readAllColumns(5L);
+	}
+
+	@Test
+	public void testColumnsMissingFromATruncatedRowAreRead() throws Exception {
+		CassandraParamsBean parameters = new CassandraParamsBean();
+		parameters.setColumnFamily("MyColumnFamily");
+		parameters.setMaxColumnCount(2);
+		cachingManager = new CachingHecubaClientManager<>(parameters, delegate);
+		when(delegate.readString(1L, "column_3")).thenReturn("value_3");
+		when(delegate.readColumns(1L, Arrays.asList("column_3"))).thenReturn(row(1L, ImmutableMap.of("column_3", "value_3")));
+
+		assertEquals("value_1", cachingManager.readString(1L, "column_1"));
+		assertEquals("value_3", cachingManager.readString(1L, "column_3"));
+
+		CassandraResultSet<Long, String> resultSet = cachingManager.readColumns(1L, Arrays.asList("column_1", "column_3"));
+		assertEquals("value_1", resultSet.getString("column_1"));
+		assertEquals("value_3", resultSet.getString("column_3"));
+
+		verify(delegate, times(1)).readAllColumns(1L);
+
+		// rows shorter than maxColumnCount are complete.
+		assertNull(cachingManager.readString(2L, "column_3"));
+		verify(delegate, never()).readString(2L, "column_3");
+	}
+
+	@Test
+	public void testSwitchingColumnFamiliesEmptiesTheCache() throws Exception {
+		assertEquals("value_1", cachingManager.readString(1L, "column_1"));
+
+		cachingManager.setColumnFamily("OtherColumnFamily");
+		verify(delegate).setColumnFamily("OtherColumnFamily");
+		assertEquals("OtherColumnFamily", cachingManager.getColumnFamilyName());
+		assertEquals(0, cachingManager.getRowCacheSize());
+
+		assertEquals("value_1", cachingManager.readString(1L, "column_1"));
+		verify(delegate, times(2)).readAllColumns(1L);
+	}
+
+	private CassandraResultSet<Long, String> row(Long key, Map<String, String> columns) {
+		return new CassandraMapResultSet<Long, String>(key, columns);
+	}
+}
@@ -17,6 +17,8 @@ package com.wizecommerce.hecuba;
 import static org.junit.Assert.*;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.collections.CollectionUtils;
@@ -26,6 +28,7 @@ import org.junit.Test;
 
 import com.google.common.collect.Lists;
 import com.wizecommerce.hecuba.util.CassandraTestBase;
+import com.wizecommerce.hecuba.util.ConfigUtils;
 
 public abstract class HecubaCassandraManagerTestBase extends CassandraTestBase {
 
@@ -205,6 +208,91 @@ public abstract class HecubaCassandraManagerTestBase extends CassandraTestBase {
 
 	}
 
+	@Test
+	public void testSecondaryIndexWithValueCache() throws Exception {
+		CassandraParamsBean bean = getDefaultCassandraParamsBean();
+		bean.setSiColumns("MySecondaryKey_1:MySecondaryKey_2");
+
+		final String enabledProperty = HecubaConstants.getSecondaryIndexValueCacheProperties(bean.getColumnFamily(),
+				HecubaConstants.SECONDARY_INDEX_VALUE_CACHE_ENABLED)[1];
+		ConfigUtils.getInstance().getConfiguration().setProperty(enabledProperty, "true");
+
+		HecubaClientManager<Long> cassandraManager;
+		try {
+			cassandraManager = getHecubaClientManager(bean);
+		} finally {
+			ConfigUtils.getInstance().getConfiguration().clearProperty(enabledProperty);
+		}
+
+		HashMap<String, Object> row = new HashMap<String, Object>();
+		row.put("column_1", "value_1");
+		row.put("MySecondaryKey_1", "MySecondaryKey_1_value_1");
+		row.put("MySecondaryKey_2", "MySecondaryKey_2_value_1");
+		cassandraManager.updateRow(5678L, row);
+
+		// the previous values of these come from the cache, but the index has to move along all the same.
+		cassandraManager.updateString(5678L, "MySecondaryKey_1", "MySecondaryKey_1_value_2");
+		row = new HashMap<String, Object>();
+		row.put("MySecondaryKey_1", "MySecondaryKey_1_value_3");
+		row.put("MySecondaryKey_2", "MySecondaryKey_2_value_3");
+		cassandraManager.updateRow(5678L, row);
+
+		assertNull(cassandraManager.retrieveBySecondaryIndex("MySecondaryKey_1", "MySecondaryKey_1_value_1"));
+		assertNull(cassandraManager.retrieveBySecondaryIndex("MySecondaryKey_1", "MySecondaryKey_1_value_2"));
+		assertNull(cassandraManager.retrieveBySecondaryIndex("MySecondaryKey_2", "MySecondaryKey_2_value_1"));
+		assertEquals(Arrays.asList(5678L), cassandraManager.retrieveKeysBySecondaryIndex("MySecondaryKey_1",
+				"MySecondaryKey_1_value_3"));
+		assertEquals(Arrays.asList(5678L), cassandraManager.retrieveKeysBySecondaryIndex("MySecondaryKey_2",
+				"MySecondaryKey_2_value_3"));
+
+		cassandraManager.deleteColumn(5678L, "MySecondaryKey_1");
+		assertNull(cassandraManager.retrieveBySecondaryIndex("MySecondaryKey_1", "MySecondaryKey_1_value_3"));
+
+		// and a value written after the column was deleted is indexed once, without anything left behind.
+		cassandraManager.updateString(5678L, "MySecondaryKey_1", "MySecondaryKey_1_value_4");
+		assertEquals(Arrays.asList(5678L), cassandraManager.retrieveKeysBySecondaryIndex("MySecondaryKey_1",
+				"MySecondaryKey_1_value_4"));
+
+		cassandraManager.deleteRow(5678L);
+		assertNull(cassandraManager.retrieveBySecondaryIndex("MySecondaryKey_1", "MySecondaryKey_1_value_4"));
+		assertNull(cassandraManager.retrieveBySecondaryIndex("MySecondaryKey_2", "MySecondaryKey_2_value_3"));
+	}
+
+	@Test
+	public void testSecondaryIndexWithAsyncWriter() throws Exception {
+		CassandraParamsBean bean = getDefaultCassandraParamsBean();
+		bean.setSiColumns("MySecondaryKey_1:MySecondaryKey_2");
+
+		final String asyncProperty = HecubaConstants.getSecondaryIndexWriterProperties(bean.getColumnFamily(),
+				HecubaConstants.SECONDARY_INDEX_WRITER_ASYNC)[1];
+		ConfigUtils.getInstance().getConfiguration().setProperty(asyncProperty, "true");
+
+		HecubaClientManager<Long> cassandraManager;
+		try {
+			cassandraManager = getHecubaClientManager(bean);
+		} finally {
+			ConfigUtils.getInstance().getConfiguration().clearProperty(asyncProperty);
+		}
+
+		for (long key = 6000; key < 6010; key++) {
+			HashMap<String, Object> row = new HashMap<String, Object>();
+			row.put("column_1", "value_1");
+			row.put("MySecondaryKey_1", "MySecondaryKey_1_value_1");
+			cassandraManager.updateRow(key, row);
+			cassandraManager.updateString(key, "MySecondaryKey_1", "MySecondaryKey_1_value_2");
+			cassandraManager.updateString(key, "MySecondaryKey_2", "MySecondaryKey_2_value_" + key);
+		}
+		cassandraManager.deleteColumn(6009L, "MySecondaryKey_1");
+		cassandraManager.flushSecondaryIndexes();
+
+		assertNull(cassandraManager.retrieveBySecondaryIndex("MySecondaryKey_1", "MySecondaryKey_1_value_1"));
+		List<Long> keys = cassandraManager.retrieveKeysBySecondaryIndex("MySecondaryKey_1", "MySecondaryKey_1_value_2");
+		assertEquals(9, keys.size());
+		assertFalse(keys.contains(6009L));
+		assertEquals(Arrays.asList(6009L), cassandraManager.retrieveKeysBySecondaryIndex("MySecondaryKey_2",
+				"MySecondaryKey_2_value_6009"));
+	}
+
 	/**
 	 * testSecondaryIndexWithUpdatesToMultipleColumns
 	 * 
@@ -1123,6 +1211,146 @@ public abstract class HecubaCassandraManagerTestBase extends CassandraTestBase {
 		assertTrue(-1456 == cassandraManager.readDouble(1234L, "test_column_3"));
 	}
 
+	@Test
+	public void testReadStrings() throws Exception {
+		HecubaClientManager<Long> cassandraManager = getHecubaClientManager();
+
+		for (long key = 7300; key < 7303; key++) {
+			Map<String, Object> row = new HashMap<String, Object>();
+			row.put("column_1", "value_1_" + key);
+			row.put("column_2", "value_2_" + key);
+			cassandraManager.updateRow(key, row);
+		}
+		cassandraManager.updateString(7303L, "column_2", "value_2_7303");
+
+		assertEquals("value_1_7300", cassandraManager.readString(7300L, "column_1"));
+		assertNull(cassandraManager.readString(7303L, "column_1"));
+		assertNull(cassandraManager.readColumnInfo(7303L, "column_1"));
+		assertEquals("value_2_7303", cassandraManager.readColumnInfo(7303L, "column_2").getValue());
+
+		Map<Long, String> values = cassandraManager.readStrings(new HashSet<Long>(Arrays.asList(7300L, 7301L, 7302L,
+				7303L, 7304L)), "column_1");
+		assertEquals(3, values.size());
+		for (long key = 7300; key < 7303; key++) {
+			assertEquals("value_1_" + key, values.get(key));
+		}
+	}
+
+	@Test
+	public void testMultiGetWideRows() throws Exception {
+		HecubaClientManager<Long> cassandraManager = getHecubaClientManager();
+
+		Set<Long> keys = new HashSet<Long>();
+		for (long key = 7500; key < 7505; key++) {
+			Map<String, Object> row = new HashMap<String, Object>();
+			for (int column = 0; column < 20; column++) {
+				row.put("column_" + column, key * 100 + column);
+			}
+			cassandraManager.updateRow(key, row);
+			keys.add(key);
+		}
+		cassandraManager.updateString(7505L, "column_1", "null");
+		keys.add(7505L);
+
+		CassandraResultSet<Long, String> rows = cassandraManager.readAllColumns(keys);
+		Set<Long> readKeys = new HashSet<Long>();
+		while (true) {
+			long key = rows.getKey();
+			readKeys.add(key);
+			if (key == 7505L) {
+				assertEquals(Arrays.asList("column_1"), new ArrayList<String>(rows.getColumnNames()));
+				assertNull(rows.getString("column_1"));
+				assertEquals(-1L, rows.getLongValue("column_1", -1L));
+			} else {
+				assertEquals(20, rows.getColumnNames().size());
+				for (int column = 19; column >= 0; column--) {
+					assertEquals(String.valueOf(key * 100 + column), rows.getString("column_" + column));
+					assertEquals(key * 100 + column, rows.getLongValue("column_" + column, -1L));
+				}
+				assertNull(rows.getString("column_20"));
+				assertTrue(rows.hasColumn("column_19"));
+			}
+
+			if (!rows.hasNextResult()) {
+				break;
+			}
+			rows.nextResult();
+		}
+		assertEquals(keys, readKeys);
+	}
+
+	@Test
+	public void testScan() throws Exception {
+		HecubaClientManager<Long> cassandraManager = getHecubaClientManager();
+
+		for (long key = 7400; key < 7420; key++) {
+			cassandraManager.updateString(key, "column_1", "value_" + key);
+		}
+		cassandraManager.deleteRow(7419L);
+
+		final Map<Long, String> values = new ConcurrentHashMap<Long, String>();
+		final Map<TokenRange, Long> lastTokens = new ConcurrentHashMap<TokenRange, Long>();
+		final Set<Long> tokens = new ConcurrentSkipListSet<Long>();
+		final Set<TokenRange> scannedRanges = Collections.newSetFromMap(new ConcurrentHashMap<TokenRange, Boolean>());
+		RowScanCallback<Long> callback = new RowScanCallback<Long>() {
+			@Override
+			public void onRow(TokenRange range, long token, CassandraResultSet<Long, String> row) {
+				assertTrue(range.contains(token));
+				Long lastToken = lastTokens.put(range, token);
+				assertTrue(lastToken == null || lastToken < token);
+				tokens.add(token);
+				assertNull(values.put(row.getKey(), row.getString("column_1")));
+			}
+
+			@Override
+			public void onRangeScanned(TokenRange range) {
+				scannedRanges.add(range);
+			}
+		};
+
+		// small pages, so that ranges take several of them.
+		List<TokenRange> ranges = TokenRange.fullRing().split(4);
+		cassandraManager.scan(ranges, 2, 3, callback);
+
+		assertEquals(new HashSet<TokenRange>(ranges), scannedRanges);
+		assertEquals(19, values.size());
+		for (long key = 7400; key < 7419; key++) {
+			assertEquals("value_" + key, values.get(key));
+		}
+
+		// resuming after a row gives the rows after it.
+		long resumeToken = new ArrayList<Long>(tokens).get(4);
+		values.clear();
+		cassandraManager.scan(Collections.singletonList(new TokenRange(resumeToken, Long.MAX_VALUE)), 1, 3, callback);
+		assertEquals(19 - 5, values.size());
+	}
+
+	@Test
+	public void testPrimitiveGetters() throws Exception {
+		HecubaClientManager<Long> cassandraManager = getHecubaClientManager();
+
+		Map<String, Object> columnValues = new HashMap<String, Object>();
+		columnValues.put("long_column", -112233445566778899L);
+		columnValues.put("int_column", 1245);
+		columnValues.put("double_column", 12112.121);
+		columnValues.put("boolean_column", true);
+		columnValues.put("string_column", "Nextag");
+		columnValues.put("null_column", null);
+		cassandraManager.updateRow(7200L, columnValues);
+
+		CassandraResultSet<Long, String> result = cassandraManager.readAllColumns(7200L);
+		assertEquals(-112233445566778899L, result.getLongValue("long_column", -1L));
+		assertEquals(1245, result.getIntValue("int_column", -1));
+		assertEquals(12112.121, result.getDoubleValue("double_column", -1.0), 0.0);
+		assertTrue(result.getBooleanValue("boolean_column", false));
+
+		assertEquals(-1L, result.getLongValue("string_column", -1L));
+		assertEquals(-1, result.getIntValue("null_column", -1));
+		assertEquals(-1.0, result.getDoubleValue("missing_column", -1.0), 0.0);
+		assertTrue(result.getBooleanValue("missing_column", true));
+		assertFalse(result.getBooleanValue("string_column", true));
+	}
+
 	@Test
 	public void testUpdateRow() throws Exception {
 		HecubaClientManager<Long> cassandraManager = getHecubaClientManager();
@@ -1194,6 +1422,41 @@ public abstract class HecubaCassandraManagerTestBase extends CassandraTestBase {
 		assertEquals(null, cassandraManager.readString(12312L, "test_column_3"));
 	}
 
+	@Test
+	public void testAsyncOperations() throws Exception {
+		HecubaClientManager<Long> cassandraManager = getHecubaClientManager();
+
+		Map<String, Object> columnValues = new HashMap<String, Object>();
+		columnValues.put("test_column_1", "value_1");
+		columnValues.put("test_column_2", "value_2");
+		cassandraManager.updateRowAsync(4567L, columnValues, null, null).get(10, TimeUnit.SECONDS);
+		cassandraManager.updateStringAsync(4568L, "test_column_1", "value_3", -1, -1).get(10, TimeUnit.SECONDS);
+
+		assertEquals("value_1", cassandraManager.readStringAsync(4567L, "test_column_1").get(10, TimeUnit.SECONDS));
+		assertEquals(null, cassandraManager.readStringAsync(4567L, "test_column_3").get(10, TimeUnit.SECONDS));
+
+		CassandraResultSet<Long, String> result = cassandraManager.readAllColumnsAsync(4567L).get(10, TimeUnit.SECONDS);
+		assertTrue(result.hasResults());
+		assertEquals(2, result.getColumnNames().size());
+		assertEquals("value_2", result.getString("test_column_2"));
+
+		result = cassandraManager.readColumnsAsync(new HashSet<Long>(Arrays.asList(4567L, 4568L)), Arrays.asList("test_column_1"))
+				.get(10, TimeUnit.SECONDS);
+		Map<Long, String> values = new HashMap<Long, String>();
+		while (result.hasResults()) {
+			values.put(result.getKey(), result.getString("test_column_1"));
+			if (!result.hasNextResult()) {
+				break;
+			}
+			result.nextResult();
+		}
+		assertEquals("value_1", values.get(4567L));
+		assertEquals("value_3", values.get(4568L));
+
+		cassandraManager.deleteRowAsync(4567L, -1).get(10, TimeUnit.SECONDS);
+		assertFalse(cassandraManager.readAllColumnsAsync(4567L).get(10, TimeUnit.SECONDS).hasResults());
+	}
+
 	/**
 	 * testUpdateStringWithNoTimestampOrTTL
 	 */
@@ -0,0 +1,72 @@
+package com.wizecommerce.hecuba;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class HecubaKeyspaceRegistryTest {
+
+	private List<CassandraParamsBean> createdParameters;
+	private HecubaKeyspaceRegistry<Long> registry;
+
+	@Before
+	public void setup() {
+		CassandraParamsBean parameters = new CassandraParamsBean();
+		parameters.setClustername("MyCluster");
+		parameters.setKeyspace("MyKeyspace");
+		parameters.setLocationURLs("localhost");
+
+		createdParameters = new ArrayList<>();
+		registry = new HecubaKeyspaceRegistry<Long>(parameters, Long.class) {
+			@SuppressWarnings("unchecked")
+			@Override
+			protected HecubaClientManager<Long> createClientManager(CassandraParamsBean parameters) {
+				createdParameters.add(parameters);
+				return mock(HecubaClientManager.class);
+			}
+		};
+	}
+
+	@Test
+	public void testClientManagersAreCreatedOncePerColumnFamily() {
+		HecubaClientManager<Long> first = registry.getClientManager("FirstColumnFamily");
+		HecubaClientManager<Long> second = registry.getClientManager("SecondColumnFamily");
+
+		assertNotSame(first, second);
+		assertSame(first, registry.getClientManager("FirstColumnFamily"));
+		assertSame(second, registry.getClientManager("SecondColumnFamily"));
+		assertEquals(2, registry.getClientManagers().size());
+
+		assertEquals(2, createdParameters.size());
+		assertEquals("FirstColumnFamily", createdParameters.get(0).getColumnFamily());
+		assertEquals("MyKeyspace", createdParameters.get(0).getKeyspace());
+		assertEquals("MyCluster", createdParameters.get(0).getClustername());
+		assertEquals("SecondColumnFamily", createdParameters.get(1).getColumnFamily());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testColumnFamilyOfAnotherKeyspace() {
+		CassandraParamsBean parameters = new CassandraParamsBean();
+		parameters.setKeyspace("AnotherKeyspace");
+		parameters.setColumnFamily("MyColumnFamily");
+		registry.getClientManager(parameters);
+	}
+
+	@Test
+	public void testShutDown() {
+		HecubaClientManager<Long> first = registry.getClientManager("FirstColumnFamily");
+		HecubaClientManager<Long> second = registry.getClientManager("SecondColumnFamily");
+
+		registry.shutDown();
+
+		verify(first).shutDown();
+		verify(second).shutDown();
+		assertTrue(registry.getClientManagers().isEmpty());
+		assertNotSame(first, registry.getClientManager("FirstColumnFamily"));
+	}
+}
@@ -0,0 +1,153 @@
+package com.wizecommerce.hecuba;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.configuration.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.wizecommerce.hecuba.metrics.HecubaMetrics;
+import com.wizecommerce.hecuba.metrics.HecubaOperation;
+import com.wizecommerce.hecuba.metrics.OperationMetrics;
+import com.wizecommerce.hecuba.util.ConfigUtils;
+
+public class HedgingHecubaClientManagerTest {
+
+	private static int columnFamilyCount;
+
+	private String columnFamily;
+	private HecubaClientManager<Long> delegate;
+
+	@SuppressWarnings("unchecked")
+	@Before
+	public void setup() throws Exception {
+		delegate = mock(HecubaClientManager.class);
+		// hedges are sent as they would be by a backend which can't route them.
+		when(delegate.sendHedge(any(Callable.class))).thenAnswer(new Answer<Object>() {
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				return ((Callable<?>) invocation.getArguments()[0]).call();
+			}
+		});
+
+		// the metrics are global, so every test gets a column family of its own.
+		columnFamily = "HedgedColumnFamily" + columnFamilyCount++;
+		Configuration configuration = ConfigUtils.getInstance().getConfiguration();
+		configuration.setProperty(getProperty(HecubaConstants.HEDGED_READS_MIN_DELAY_MILLIS), "10");
+		configuration.setProperty(getProperty(HecubaConstants.HEDGED_READS_BUDGET_PERCENT), "100");
+	}
+
+	@After
+	public void tearDown() {
+		Configuration configuration = ConfigUtils.getInstance().getConfiguration();
+		configuration.clearProperty(getProperty(HecubaConstants.HEDGED_READS_MIN_DELAY_MILLIS));
+		configuration.clearProperty(getProperty(HecubaConstants.HEDGED_READS_BUDGET_PERCENT));
+	}
+
+	@Test
+	public void testSlowReadsAreHedged() throws Exception {
+		SettableFuture<String> slowRead = SettableFuture.create();
+		when(delegate.readStringAsync(1L, "column_1")).thenReturn(slowRead, Futures.immediateFuture("value_1"));
+
+		HedgingHecubaClientManager<Long> hedgingManager = getHedgingManager();
+		assertEquals("value_1", hedgingManager.readStringAsync(1L, "column_1").get(1, TimeUnit.SECONDS));
+		verify(delegate, times(2)).readStringAsync(1L, "column_1");
+		verify(delegate).sendHedge(any(Callable.class));
+
+		slowRead.set("value_1");
+		OperationMetrics reads = getOperationMetrics(HecubaOperation.READ);
+		// the hedge is counted once it has answered the caller.
+		waitForHedges(reads, 1);
+		assertEquals(1, reads.getHedgeCount());
+		assertEquals(1, reads.getHedgeWinCount());
+	}
+
+	@Test
+	public void testFastReadsAreNotHedged() throws Exception {
+		when(delegate.readStringAsync(1L, "column_1")).thenReturn(Futures.immediateFuture("value_1"));
+
+		HedgingHecubaClientManager<Long> hedgingManager = getHedgingManager();
+		for (int i = 0; i < 10; i++) {
+			assertEquals("value_1", hedgingManager.readString(1L, "column_1"));
+		}
+		Thread.sleep(50);
+
+		verify(delegate, times(10)).readStringAsync(1L, "column_1");
+		assertEquals(0, getOperationMetrics(HecubaOperation.READ).getHedgeCount());
+	}
+
+	@Test
+	public void testHedgesAreCappedByTheBudget() throws Exception {
+		@SuppressWarnings("unchecked")
+		ListenableFuture<String>[] slowReads = new ListenableFuture[10];
+		for (int i = 0; i < slowReads.length; i++) {
+			slowReads[i] = SettableFuture.create();
+		}
+		when(delegate.readStringAsync(1L, "column_1")).thenReturn(slowReads[0], slowReads);
+
+		ConfigUtils.getInstance().getConfiguration().setProperty(
+				getProperty(HecubaConstants.HEDGED_READS_BUDGET_PERCENT), "50");
+		HedgingHecubaClientManager<Long> hedgingManager = getHedgingManager();
+		for (int i = 0; i < 4; i++) {
+			hedgingManager.readStringAsync(1L, "column_1");
+		}
+		Thread.sleep(200);
+
+		// 4 reads at 50% earn 2 hedges.
+		verify(delegate, times(6)).readStringAsync(1L, "column_1");
+	}
+
+	@Test
+	public void testFailedReadsFailOnceEveryReadFailed() throws Exception {
+		SettableFuture<String> failingRead = SettableFuture.create();
+		when(delegate.readStringAsync(1L, "column_1")).thenReturn(failingRead,
+				Futures.<String> immediateFailedFuture(new IllegalStateException("hedge failed")));
+
+		HedgingHecubaClientManager<Long> hedgingManager = getHedgingManager();
+		ListenableFuture<String> read = hedgingManager.readStringAsync(1L, "column_1");
+		Thread.sleep(100);
+		assertFalse(read.isDone());
+
+		failingRead.setException(new IllegalStateException("read failed"));
+		try {
+			read.get(1, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertEquals("read failed", e.getCause().getMessage());
+		}
+		assertEquals(1, getOperationMetrics(HecubaOperation.READ).getHedgeCount());
+		assertEquals(0, getOperationMetrics(HecubaOperation.READ).getHedgeWinCount());
+	}
+
+	private void waitForHedges(OperationMetrics metrics, long count) throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + 1000;
+		while (metrics.getHedgeCount() < count && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+	}
+
+	private HedgingHecubaClientManager<Long> getHedgingManager() {
+		CassandraParamsBean parameters = new CassandraParamsBean();
+		parameters.setColumnFamily(columnFamily);
+		return new HedgingHecubaClientManager<>(parameters, delegate, "TEST");
+	}
+
+	private String getProperty(String option) {
+		return HecubaConstants.getHedgedReadProperties(columnFamily, option)[1];
+	}
+
+	private OperationMetrics getOperationMetrics(HecubaOperation operation) {
+		return HecubaMetrics.getInstance().getOperationMetrics("TEST", columnFamily, operation);
+	}
+}
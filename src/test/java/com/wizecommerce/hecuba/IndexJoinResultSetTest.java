@@ -0,0 +1,123 @@
+package com.wizecommerce.hecuba;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anySetOf;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.wizecommerce.hecuba.datastax.CompositeCassandraResultSet;
+
+public class IndexJoinResultSetTest {
+
+	private HecubaClientManager<Long> clientManager;
+	private List<Set<Long>> chunks;
+	private Set<Long> missingKeys;
+
+	@SuppressWarnings("unchecked")
+	@Before
+	public void setup() {
+		chunks = Collections.synchronizedList(new ArrayList<Set<Long>>());
+		missingKeys = new HashSet<>();
+
+		clientManager = mock(HecubaClientManager.class);
+		when(clientManager.readAllColumnsAsync(anySetOf(Long.class))).thenAnswer(
+				new Answer<ListenableFuture<CassandraResultSet<Long, String>>>() {
+					@Override
+					public ListenableFuture<CassandraResultSet<Long, String>> answer(InvocationOnMock invocation) {
+						Set<Long> chunk = (Set<Long>) invocation.getArguments()[0];
+						chunks.add(chunk);
+						return Futures.immediateFuture(read(chunk));
+					}
+				});
+	}
+
+	private CassandraResultSet<Long, String> read(Set<Long> keys) {
+		List<CassandraResultSet<Long, String>> rows = new ArrayList<>();
+		for (Long key : keys) {
+			if (!missingKeys.contains(key)) {
+				rows.add(new CassandraMapResultSet<Long, String>(key, ImmutableMap.of("value", "v" + key)));
+			}
+		}
+		if (rows.isEmpty()) {
+			return new CassandraMapResultSet<>(Collections.<String, String> emptyMap());
+		}
+		return new CompositeCassandraResultSet<>(rows);
+	}
+
+	private Set<Long> readKeys(CassandraResultSet<Long, String> resultSet) {
+		Set<Long> keys = new HashSet<>();
+		if (resultSet.hasResults()) {
+			while (true) {
+				assertEquals("v" + resultSet.getKey(), resultSet.getString("value"));
+				assertTrue("read twice: " + resultSet.getKey(), keys.add(resultSet.getKey()));
+				if (!resultSet.hasNextResult()) {
+					break;
+				}
+				resultSet.nextResult();
+			}
+		}
+		return keys;
+	}
+
+	@Test
+	public void testChunks() {
+		List<Long> keys = Arrays.asList(1L, 2L, 3L, 2L, 4L, 5L, 1L, 6L, 7L);
+		IndexJoinResultSet<Long> resultSet = new IndexJoinResultSet<>(clientManager, keys.iterator(), 3, 2);
+
+		assertEquals(new HashSet<>(keys), readKeys(resultSet));
+		assertEquals(Arrays.asList(new HashSet<>(Arrays.asList(1L, 2L, 3L)), new HashSet<>(Arrays.asList(4L, 5L, 6L)),
+				Collections.singleton(7L)), chunks);
+	}
+
+	@Test
+	public void testMissingRows() {
+		missingKeys.addAll(Arrays.asList(1L, 2L, 5L, 6L));
+		IndexJoinResultSet<Long> resultSet = new IndexJoinResultSet<>(clientManager, Arrays.asList(1L, 2L, 3L, 4L, 5L,
+				6L).iterator(), 2, 1);
+
+		assertEquals(new HashSet<>(Arrays.asList(3L, 4L)), readKeys(resultSet));
+		assertEquals(3, chunks.size());
+	}
+
+	@Test
+	public void testNoKeys() {
+		IndexJoinResultSet<Long> resultSet = new IndexJoinResultSet<>(clientManager,
+				Collections.<Long> emptyIterator(), 10, 4);
+
+		assertFalse(resultSet.hasResults());
+		assertFalse(resultSet.hasNextResult());
+		assertTrue(chunks.isEmpty());
+	}
+
+	@Test
+	public void testReadAhead() {
+		List<Long> keys = new ArrayList<>();
+		for (long key = 0; key < 10; key++) {
+			keys.add(key);
+		}
+		IndexJoinResultSet<Long> resultSet = new IndexJoinResultSet<>(clientManager, keys.iterator(), 1, 3);
+
+		// the first chunk is being iterated while the next three are read.
+		assertEquals(4, chunks.size());
+		assertEquals(0L, (long) resultSet.getKey());
+
+		assertTrue(resultSet.hasNextResult());
+		resultSet.nextResult();
+		assertEquals(1L, (long) resultSet.getKey());
+		assertEquals(5, chunks.size());
+	}
+}
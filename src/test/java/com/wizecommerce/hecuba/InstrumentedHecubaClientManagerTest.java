@@ -0,0 +1,153 @@
+package com.wizecommerce.hecuba;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.Futures;
+import com.wizecommerce.hecuba.metrics.HecubaMetrics;
+import com.wizecommerce.hecuba.metrics.HecubaMetricsReporter;
+import com.wizecommerce.hecuba.metrics.HecubaOperation;
+import com.wizecommerce.hecuba.metrics.OperationMetrics;
+import com.wizecommerce.hecuba.metrics.OperationMetricsSnapshot;
+import com.wizecommerce.hecuba.util.ConfigUtils;
+
+public class InstrumentedHecubaClientManagerTest {
+
+	private static int columnFamilyCount;
+
+	private String columnFamily;
+	private HecubaClientManager<Long> delegate;
+	private InstrumentedHecubaClientManager<Long> instrumentedManager;
+
+	@SuppressWarnings("unchecked")
+	@Before
+	public void setup() throws Exception {
+		delegate = mock(HecubaClientManager.class);
+		when(delegate.readString(1L, "column_1")).thenReturn("value_1");
+		when(delegate.readString(2L, "column_1")).thenThrow(new RuntimeException("timed out"));
+		when(delegate.readAllColumns(anySetOf(Long.class))).thenReturn(
+				new CassandraMapResultSet<Long, String>(new HashMap<String, String>()));
+		when(delegate.getCounterValueAsync(1L, "counter")).thenReturn(Futures.immediateFuture(5L));
+
+		// the metrics are global, so every test gets a column family of its own.
+		columnFamily = "InstrumentedColumnFamily" + columnFamilyCount++;
+		CassandraParamsBean parameters = new CassandraParamsBean();
+		parameters.setColumnFamily(columnFamily);
+		instrumentedManager = new InstrumentedHecubaClientManager<>(parameters, delegate, "TEST");
+	}
+
+	@Test
+	public void testReadsAreRecorded() throws Exception {
+		assertEquals("value_1", instrumentedManager.readString(1L, "column_1"));
+		try {
+			instrumentedManager.readString(2L, "column_1");
+			fail();
+		} catch (RuntimeException e) {
+			assertEquals("timed out", e.getMessage());
+		}
+		instrumentedManager.readAllColumns(ImmutableSet.of(1L, 2L, 3L));
+
+		OperationMetrics reads = getOperationMetrics(HecubaOperation.READ);
+		assertEquals(2, reads.getCount());
+		assertEquals(1, reads.getErrorCount());
+		assertEquals(1, reads.getRowCount());
+		assertEquals(7, reads.getByteCount());
+		assertTrue(reads.getMaxLatency() >= reads.get50thPercentileLatency());
+
+		OperationMetrics multiGets = getOperationMetrics(HecubaOperation.MULTIGET);
+		assertEquals(1, multiGets.getCount());
+		assertEquals(3, multiGets.getRowCount());
+	}
+
+	@Test
+	public void testWritesAndAsyncOperationsAreRecorded() throws Exception {
+		Map<String, Object> row = new HashMap<>();
+		row.put("column_1", "value_1");
+		row.put("column_2", 12L);
+		instrumentedManager.updateRow(1L, row, null, null);
+		verify(delegate).updateRow(1L, row, null, null);
+
+		assertEquals(Long.valueOf(5L), instrumentedManager.getCounterValueAsync(1L, "counter").get());
+
+		OperationMetrics writes = getOperationMetrics(HecubaOperation.WRITE);
+		assertEquals(1, writes.getCount());
+		assertEquals(2, writes.getColumnCount());
+		assertEquals(7, writes.getByteCount());
+		assertEquals(1, getOperationMetrics(HecubaOperation.COUNTER).getCount());
+	}
+
+	@Test
+	public void testSnapshotsAreIntervals() throws Exception {
+		final List<OperationMetricsSnapshot> reported = new ArrayList<>();
+		HecubaMetricsReporter reporter = new HecubaMetricsReporter() {
+			@Override
+			public void report(List<OperationMetricsSnapshot> snapshots) {
+				for (OperationMetricsSnapshot snapshot : snapshots) {
+					if (columnFamily.equals(snapshot.getColumnFamily())
+							&& snapshot.getOperation() == HecubaOperation.READ) {
+						reported.add(snapshot);
+					}
+				}
+			}
+		};
+
+		HecubaMetrics metrics = HecubaMetrics.getInstance();
+		metrics.addReporter(reporter);
+		try {
+			instrumentedManager.readString(1L, "column_1");
+			instrumentedManager.readString(1L, "column_1");
+			metrics.report();
+			instrumentedManager.readString(1L, "column_1");
+			metrics.report();
+		} finally {
+			metrics.removeReporter(reporter);
+		}
+
+		assertEquals(2, reported.size());
+		assertEquals(2, reported.get(0).getCount());
+		assertEquals(2, reported.get(0).getLatencies().getTotalCount());
+		assertEquals(1, reported.get(1).getCount());
+		assertEquals(1, reported.get(1).getLatencies().getTotalCount());
+		assertEquals(3, getOperationMetrics(HecubaOperation.READ).getCount());
+	}
+
+	@Test
+	public void testMetricsAreDisabledByDefault() {
+		assertFalse(InstrumentedHecubaClientManager.isEnabled(columnFamily));
+		ConfigUtils.getInstance().getConfiguration().setProperty(
+				HecubaConstants.getMetricsProperties(columnFamily, HecubaConstants.METRICS_ENABLED)[1], "true");
+		assertTrue(InstrumentedHecubaClientManager.isEnabled(columnFamily));
+	}
+
+	@Test
+	public void testConfigurationIsPassedOn() throws Exception {
+		final String otherColumnFamily = columnFamily + "Other";
+		instrumentedManager.setColumnFamily(otherColumnFamily);
+		instrumentedManager.setClusterName("OtherCluster");
+		instrumentedManager.setLocationURL("127.0.0.2");
+		instrumentedManager.setColumnsToIndexOnColumnNameAndValue(Arrays.asList("column_1"));
+
+		verify(delegate).setColumnFamily(otherColumnFamily);
+		verify(delegate).setClusterName("OtherCluster");
+		verify(delegate).setLocationURL("127.0.0.2");
+		verify(delegate).setColumnsToIndexOnColumnNameAndValue(Arrays.asList("column_1"));
+		assertEquals(otherColumnFamily, instrumentedManager.getColumnFamilyName());
+
+		// reads are recorded for the column family switched to.
+		instrumentedManager.readString(1L, "column_1");
+		assertEquals(0, getOperationMetrics(HecubaOperation.READ).getCount());
+		assertEquals(1, HecubaMetrics.getInstance().getOperationMetrics("TEST", otherColumnFamily, HecubaOperation.READ)
+				.getCount());
+	}
+
+	private OperationMetrics getOperationMetrics(HecubaOperation operation) {
+		return HecubaMetrics.getInstance().getOperationMetrics("TEST", columnFamily, operation);
+	}
+}
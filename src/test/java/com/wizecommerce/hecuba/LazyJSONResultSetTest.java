@@ -0,0 +1,111 @@
+package com.wizecommerce.hecuba;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Date;
+
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.junit.Test;
+
+import com.google.gson.JsonElement;
+
+public class LazyJSONResultSetTest {
+
+	private static final String JSON = "{\"name\":\"hecuba\",\"empty\":\"\",\"count\":42,\"price\":12.5,"
+			+ "\"enabled\":true,\"missing\":null,\"date\":1400000000000,\"nested\":{\"a\":[1,2]},"
+			+ "\"bytes\":\"aGVjdWJh\"}";
+
+	@Test
+	public void testGettersMatchJsonSimple() {
+		final JSONResultSet expected = new JSONResultSet((JSONObject) JSONValue.parse(JSON));
+		final JSONResultSet actual = new LazyJSONResultSet(JSON);
+
+		assertEquals(expected.getString("name"), actual.getString("name"));
+		assertEquals(expected.getString("empty", "default"), actual.getString("empty", "default"));
+		assertEquals(expected.getString("other", "default"), actual.getString("other", "default"));
+		assertEquals(expected.getInteger("count"), actual.getInteger("count"));
+		assertEquals(expected.getLong("count"), actual.getLong("count"));
+		assertEquals(expected.getLong("missing", 7L), actual.getLong("missing", 7L));
+		assertEquals(expected.getDouble("price"), actual.getDouble("price"));
+		assertEquals(expected.getBoolean("enabled"), actual.getBoolean("enabled"));
+		assertEquals(expected.getByte("count"), actual.getByte("count"));
+		assertEquals(expected.getDate("date"), actual.getDate("date"));
+		assertEquals(new Date(1400000000000L), actual.getDate("date"));
+	}
+
+	@Test
+	public void testPrimitiveGetters() {
+		final LazyJSONResultSet resultSet = new LazyJSONResultSet(JSON.getBytes(StandardCharsets.UTF_8));
+
+		assertEquals(42L, resultSet.getLongValue("count", -1L));
+		assertEquals(42, resultSet.getIntValue("count", -1));
+		assertEquals(12.5, resultSet.getDoubleValue("price", -1.0), 0.0);
+		assertEquals(12.5f, resultSet.getFloat("price"), 0.0f);
+		assertTrue(resultSet.getBooleanValue("enabled", false));
+		assertEquals(-1L, resultSet.getLongValue("name", -1L));
+		assertEquals(-1L, resultSet.getLongValue("missing", -1L));
+		assertEquals(-1L, resultSet.getLongValue("other", -1L));
+		assertEquals("hecuba", new String(resultSet.getByteArray("bytes"), StandardCharsets.UTF_8));
+		assertTrue(resultSet.getValue("nested") instanceof JsonElement);
+		assertEquals("{\"a\":[1,2]}", resultSet.getString("nested"));
+	}
+
+	@Test
+	public void testFieldsAreDecodedAsTheyAreRead() {
+		// everything after the field read is left alone, so the invalid end is only noticed once it is read.
+		final LazyJSONResultSet resultSet = new LazyJSONResultSet("{\"name\":\"hecuba\",\"count\":42,\"broken\":");
+
+		assertEquals("hecuba", resultSet.getString("name"));
+		assertEquals(42, resultSet.getIntValue("count", -1));
+		assertEquals("hecuba", resultSet.getString("name"));
+		try {
+			resultSet.getString("other");
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testFromColumn() {
+		final ByteBuffer buffer = ByteBuffer.wrap(("xx" + JSON).getBytes(StandardCharsets.UTF_8));
+		buffer.position(2);
+		final CassandraResultSet<Long, String> columns = new CassandraMapResultSet<Long, String>(Collections
+				.singletonMap("json", JSON)) {
+			@Override
+			protected Object getRawValue(String fieldName) {
+				return "json".equals(fieldName) ? buffer : null;
+			}
+		};
+
+		final LazyJSONResultSet resultSet = LazyJSONResultSet.fromColumn(columns, "json");
+		assertEquals("hecuba", resultSet.getString("name"));
+		assertEquals(42L, resultSet.getLongValue("count", -1L));
+		assertEquals(2, buffer.position());
+		assertNull(LazyJSONResultSet.fromColumn(columns, "other"));
+
+		final CassandraResultSet<Long, String> stringColumns = new CassandraMapResultSet<>(Collections
+				.<String, String> singletonMap("json", JSON));
+		assertEquals("hecuba", LazyJSONResultSet.fromColumn(stringColumns, "json").getString("name"));
+	}
+
+	@Test
+	public void testFromColumnWithStoredNull() {
+		final CassandraResultSet<Long, String> columns = new CassandraMapResultSet<Long, String>(Collections
+				.singletonMap("json", "null")) {
+			@Override
+			protected Object getRawValue(String fieldName) {
+				return "json".equals(fieldName) ? ByteBuffer.wrap("null".getBytes(StandardCharsets.UTF_8)) : null;
+			}
+		};
+		assertNull(LazyJSONResultSet.fromColumn(columns, "json"));
+
+		final CassandraResultSet<Long, String> stringColumns = new CassandraMapResultSet<>(Collections
+				.<String, String> singletonMap("json", "null"));
+		assertNull(LazyJSONResultSet.fromColumn(stringColumns, "json"));
+	}
+}
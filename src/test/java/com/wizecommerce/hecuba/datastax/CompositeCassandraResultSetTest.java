@@ -0,0 +1,38 @@
+package com.wizecommerce.hecuba.datastax;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.wizecommerce.hecuba.CassandraMapResultSet;
+import com.wizecommerce.hecuba.CassandraResultSet;
+
+public class CompositeCassandraResultSetTest {
+
+	@Test
+	public void testHasNextResultCanBeCalledRepeatedly() {
+		List<CassandraResultSet<Long, String>> delegates = new ArrayList<>();
+		for (long key = 1; key <= 3; key++) {
+			delegates.add(new CassandraMapResultSet<Long, String>(key, Collections.singletonMap("column", "value"
+					+ key)));
+		}
+		CompositeCassandraResultSet<Long> resultSet = new CompositeCassandraResultSet<>(delegates);
+
+		List<Long> keys = new ArrayList<>();
+		assertTrue(resultSet.hasResults());
+		keys.add(resultSet.getKey());
+		while (resultSet.hasNextResult() && resultSet.hasNextResult()) {
+			resultSet.nextResult();
+			keys.add(resultSet.getKey());
+		}
+
+		assertEquals(3, keys.size());
+		assertEquals(Long.valueOf(1), keys.get(0));
+		assertEquals(Long.valueOf(2), keys.get(1));
+		assertEquals(Long.valueOf(3), keys.get(2));
+	}
+}
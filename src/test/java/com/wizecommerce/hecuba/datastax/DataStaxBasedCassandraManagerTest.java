@@ -1,11 +1,25 @@
 package com.wizecommerce.hecuba.datastax;
 
-import java.util.Map;
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.configuration.Configuration;
+import org.junit.Test;
 
 import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.Session;
 import com.wizecommerce.hecuba.CassandraParamsBean;
+import com.wizecommerce.hecuba.CassandraResultSet;
 import com.wizecommerce.hecuba.HecubaCassandraManagerTestBase;
 import com.wizecommerce.hecuba.HecubaClientManager;
+import com.wizecommerce.hecuba.HecubaConstants;
+import com.wizecommerce.hecuba.util.ConfigUtils;
 
 public class DataStaxBasedCassandraManagerTest extends HecubaCassandraManagerTestBase {
 
@@ -23,4 +37,131 @@ public class DataStaxBasedCassandraManagerTest extends HecubaCassandraManagerTes
 		return new DataStaxBasedHecubaClientManager<>(params, DataType.bigint());
 	}
 
+	@Test
+	public void testMultiGetInChunks() throws Exception {
+		Configuration configuration = ConfigUtils.getInstance().getConfiguration();
+		configuration.setProperty(HecubaConstants.DATASTAX_MULTIGET_CHUNK_SIZE, 3);
+		configuration.setProperty(HecubaConstants.DATASTAX_MULTIGET_PARALLELISM, 2);
+
+		HecubaClientManager<Long> cassandraManager;
+		try {
+			cassandraManager = getHecubaClientManager();
+		} finally {
+			configuration.clearProperty(HecubaConstants.DATASTAX_MULTIGET_CHUNK_SIZE);
+			configuration.clearProperty(HecubaConstants.DATASTAX_MULTIGET_PARALLELISM);
+		}
+
+		Set<Long> keys = new HashSet<Long>();
+		for (long key = 7000; key < 7010; key++) {
+			Map<String, Object> row = new HashMap<String, Object>();
+			row.put("column_1", "value_1_" + key);
+			row.put("column_2", "value_2_" + key);
+			cassandraManager.updateRow(key, row);
+			keys.add(key);
+		}
+
+		// one key too many, which is not in the column family.
+		keys.add(7010L);
+
+		assertRows(cassandraManager.readAllColumns(keys), 7000, 7010, 2);
+		assertRows(cassandraManager.readColumns(keys, Arrays.asList("column_2")), 7000, 7010, 1);
+		assertRows(cassandraManager.readAllColumnsAsync(keys).get(10, TimeUnit.SECONDS), 7000, 7010, 2);
+	}
+
+	@Test
+	public void testPagedReads() throws Exception {
+		Configuration configuration = ConfigUtils.getInstance().getConfiguration();
+		configuration.setProperty(HecubaConstants.DATASTAX_STATEMENT_FETCH_SIZE, 3);
+		configuration.setProperty(HecubaConstants.DATASTAX_MULTIGET_CHUNK_SIZE, 0);
+
+		HecubaClientManager<Long> cassandraManager;
+		try {
+			cassandraManager = getHecubaClientManager();
+		} finally {
+			configuration.clearProperty(HecubaConstants.DATASTAX_STATEMENT_FETCH_SIZE);
+			configuration.clearProperty(HecubaConstants.DATASTAX_MULTIGET_CHUNK_SIZE);
+		}
+
+		// rows wider than a page, so that both rows and the result set span pages.
+		Set<Long> keys = new HashSet<Long>();
+		for (long key = 7100; key < 7105; key++) {
+			Map<String, Object> row = new HashMap<String, Object>();
+			for (int column = 0; column < 10; column++) {
+				row.put("column_" + column, "value_" + column + "_" + key);
+			}
+			cassandraManager.updateRow(key, row);
+			keys.add(key);
+		}
+
+		assertEquals(10, cassandraManager.readAllColumns(7100L).getColumnNames().size());
+		assertRows(cassandraManager.readAllColumns(keys), 7100, 7105, 10);
+		assertRows(cassandraManager.readAllColumnsAsync(keys).get(10, TimeUnit.SECONDS), 7100, 7105, 10);
+	}
+
+	@Test
+	public void testSharedSessions() throws Exception {
+		final Map<String, Object> properties = new HashMap<String, Object>();
+		properties.put("dataCenter", DATACENTER);
+		properties.put("port", Integer.parseInt(CQL_PORT));
+		final SessionCachingKey key = new SessionCachingKey(new String[] { LOCATION }, '"' + KEYSPACE + '"',
+				properties);
+		final DataStaxBasedSessionObjectFactory sessionFactory = DataStaxBasedSessionObjectFactory.getInstance();
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<Session>> futures = new ArrayList<Future<Session>>();
+		try {
+			for (int i = 0; i < 16; i++) {
+				futures.add(executor.submit(new Callable<Session>() {
+					@Override
+					public Session call() throws Exception {
+						return sessionFactory.getSession(key);
+					}
+				}));
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		Set<Session> sessions = Collections.newSetFromMap(new IdentityHashMap<Session, Boolean>());
+		for (Future<Session> future : futures) {
+			sessions.add(future.get(30, TimeUnit.SECONDS));
+		}
+		assertEquals(1, sessions.size());
+		Session session = sessions.iterator().next();
+
+		for (int i = 0; i < 15; i++) {
+			sessionFactory.returnSession(key);
+		}
+		assertFalse(session.isClosed());
+
+		sessionFactory.returnSession(key);
+		Session newSession = sessionFactory.getSession(key);
+		try {
+			assertNotSame(session, newSession);
+			assertFalse(newSession.isClosed());
+		} finally {
+			sessionFactory.returnSession(key);
+		}
+	}
+
+	private void assertRows(CassandraResultSet<Long, String> result, long fromKey, long toKey, int columnCount) {
+		Set<Long> keysRead = new HashSet<Long>();
+		assertTrue(result.hasResults());
+		while (true) {
+			Long key = result.getKey();
+			assertTrue(keysRead.add(key));
+			assertEquals(columnCount, result.getColumnNames().size());
+			assertEquals("value_2_" + key, result.getString("column_2"));
+
+			if (!result.hasNextResult()) {
+				break;
+			}
+			result.nextResult();
+		}
+
+		for (long key = fromKey; key < toKey; key++) {
+			assertTrue(keysRead.contains(key));
+		}
+		assertEquals(toKey - fromKey, keysRead.size());
+	}
 }
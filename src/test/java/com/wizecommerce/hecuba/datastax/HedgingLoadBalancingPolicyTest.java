@@ -0,0 +1,73 @@
+package com.wizecommerce.hecuba.datastax;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.internal.util.reflection.Whitebox;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.policies.LoadBalancingPolicy;
+import com.google.common.collect.Lists;
+
+public class HedgingLoadBalancingPolicyTest {
+
+	private Host first;
+	private Host second;
+	private Host third;
+	private HedgingLoadBalancingPolicy policy;
+
+	@Before
+	public void setup() {
+		first = mockHost("127.0.0.1");
+		second = mockHost("127.0.0.2");
+		third = mockHost("127.0.0.3");
+
+		LoadBalancingPolicy childPolicy = mock(LoadBalancingPolicy.class);
+		when(childPolicy.newQueryPlan(anyString(), any(Statement.class))).thenAnswer(
+				new Answer<Object>() {
+					@Override
+					public Object answer(InvocationOnMock invocation) {
+						return Arrays.asList(first, second, third).iterator();
+					}
+				});
+		policy = new HedgingLoadBalancingPolicy(childPolicy);
+	}
+
+	@Test
+	public void testReadsKeepThePlanOfTheWrappedPolicy() {
+		assertEquals(Arrays.asList(first, second, third), getPlan(mock(Statement.class)));
+	}
+
+	@Test
+	public void testHedgesGoToTheFastestOtherHost() {
+		HedgedBoundStatement hedge = mock(HedgedBoundStatement.class);
+		// the hosts with no latency keep their order.
+		assertEquals(Arrays.asList(second, third, first), getPlan(hedge));
+
+		policy.recordLatency(first, 1000);
+		policy.recordLatency(second, 3000);
+		policy.recordLatency(third, 2000);
+		assertEquals(Arrays.asList(third, second, first), getPlan(hedge));
+		assertEquals(2000, policy.getLatencyNanos(third), 0);
+	}
+
+	// hosts can only be built by the driver, and compare by their address.
+	private Host mockHost(String address) {
+		Host host = mock(Host.class);
+		Whitebox.setInternalState(host, "address", new InetSocketAddress(address, 9042));
+		return host;
+	}
+
+	private List<Host> getPlan(Statement statement) {
+		return Lists.newArrayList(policy.newQueryPlan("keyspace", statement));
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wizecommerce.hecuba.hector;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import me.prettyprint.cassandra.connection.HConnectionManager;
+import me.prettyprint.cassandra.service.CassandraHost;
+import me.prettyprint.cassandra.serializers.LongSerializer;
+import me.prettyprint.cassandra.service.template.ColumnFamilyTemplate;
+import me.prettyprint.hector.api.Keyspace;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class ColumnFamilyTemplatePoolTest {
+
+	private ColumnFamilyTemplatePool<Long> pool;
+	private List<ColumnFamilyTemplate<Long, String>> templates;
+	private List<CassandraHost> hosts;
+	// the hosts Hector has marked as down, which it takes out of the active hosts.
+	private Set<CassandraHost> downedHosts;
+
+	@SuppressWarnings("unchecked")
+	@Before
+	public void setup() {
+		downedHosts = new HashSet<>();
+
+		pool = new ColumnFamilyTemplatePool<>();
+		templates = new ArrayList<>();
+		hosts = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			final CassandraHost host = new CassandraHost("host" + i + ":9160");
+			HConnectionManager connectionManager = mock(HConnectionManager.class);
+			when(connectionManager.getHosts()).thenAnswer(new Answer<Set<CassandraHost>>() {
+				@Override
+				public Set<CassandraHost> answer(InvocationOnMock invocation) {
+					return downedHosts.contains(host) ? Collections.<CassandraHost> emptySet() : Collections
+							.singleton(host);
+				}
+			});
+			when(connectionManager.getDownedHosts()).thenAnswer(new Answer<Set<CassandraHost>>() {
+				@Override
+				public Set<CassandraHost> answer(InvocationOnMock invocation) {
+					return downedHosts.contains(host) ? Collections.singleton(host) : Collections
+							.<CassandraHost> emptySet();
+				}
+			});
+
+			ColumnFamilyTemplate<Long, String> template = mock(ColumnFamilyTemplate.class);
+			pool.add(mock(Keyspace.class), template, connectionManager);
+			templates.add(template);
+			hosts.add(host);
+		}
+	}
+
+	private int[] acquire(int requests, boolean release) {
+		int[] counts = new int[templates.size()];
+		for (int i = 0; i < requests; i++) {
+			ColumnFamilyTemplatePool.Member<Long> member = pool.acquire();
+			counts[templates.indexOf(member.getTemplate())]++;
+			if (release) {
+				member.release(System.nanoTime());
+			}
+		}
+		return counts;
+	}
+
+	@Test
+	public void testSpreadsRequests() {
+		assertEquals(4, pool.size());
+		assertEquals(templates, pool.getTemplates());
+
+		int[] counts = acquire(400, false);
+		for (int count : counts) {
+			assertTrue("unbalanced: " + count, count >= 95 && count <= 105);
+		}
+	}
+
+	@Test
+	public void testAvoidsSlowTemplates() {
+		// a request through the first template took ten seconds.
+		ColumnFamilyTemplatePool.Member<Long> slow;
+		do {
+			slow = pool.acquire();
+			slow.release(System.nanoTime() - (slow.getTemplate() == templates.get(0) ? TimeUnit.SECONDS.toNanos(10)
+					: 0));
+		} while (slow.getTemplate() != templates.get(0));
+
+		int[] counts = acquire(1000, true);
+		assertEquals(0, counts[0]);
+		assertEquals(1000, counts[1] + counts[2] + counts[3]);
+	}
+
+	@Test
+	public void testSkipsDownedHosts() throws Exception {
+		downedHosts.add(hosts.get(0));
+		downedHosts.add(hosts.get(1));
+
+		int[] counts = acquire(1000, false);
+		assertEquals(0, counts[0]);
+		assertEquals(0, counts[1]);
+		assertEquals(1000, counts[2] + counts[3]);
+
+		// with every host down requests still go out, Hector may have brought one back in the meantime.
+		downedHosts.addAll(hosts);
+		Thread.sleep(1100);
+		counts = acquire(1000, true);
+		assertEquals(1000, counts[0] + counts[1] + counts[2] + counts[3]);
+	}
+
+	@Test
+	public void testForColumnFamily() {
+		ColumnFamilyTemplatePool<Long> otherPool = pool.forColumnFamily("OtherColumnFamily", LongSerializer.get());
+
+		assertEquals(4, otherPool.size());
+		for (ColumnFamilyTemplate<Long, String> template : otherPool.getTemplates()) {
+			assertEquals("OtherColumnFamily", template.getColumnFamily());
+		}
+
+		ColumnFamilyTemplatePool.Member<Long> member = otherPool.acquire();
+		assertEquals(1, otherPool.getInFlight());
+		assertEquals(0, pool.getInFlight());
+		member.release(System.nanoTime());
+		assertEquals(0, otherPool.getInFlight());
+	}
+}
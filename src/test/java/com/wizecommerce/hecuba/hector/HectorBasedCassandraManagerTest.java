@@ -14,9 +14,14 @@
 
 package com.wizecommerce.hecuba.hector;
 
+import static org.junit.Assert.*;
+
 import java.util.Map;
 
 import me.prettyprint.cassandra.serializers.LongSerializer;
+import me.prettyprint.hector.api.Cluster;
+
+import org.junit.Test;
 
 import com.wizecommerce.hecuba.CassandraParamsBean;
 import com.wizecommerce.hecuba.HecubaCassandraManagerTestBase;
@@ -38,4 +43,72 @@ public class HectorBasedCassandraManagerTest extends HecubaCassandraManagerTestB
 		return new HectorBasedHecubaClientManager<Long>(paramsBean, LongSerializer.get());
 	}
 
+	@Test
+	public void testSetColumnFamily() {
+		// a cluster name of its own, as setLocationURL only re-hosts clusters no other manager uses.
+		final CassandraParamsBean params = getDefaultCassandraParamsBean();
+		params.setClustername(getClass().getSimpleName());
+		HectorBasedHecubaClientManager<Long> cassandraManager = (HectorBasedHecubaClientManager<Long>)
+				getHecubaClientManager(params);
+		final String columnFamily = cassandraManager.getColumnFamilyName();
+		final ColumnFamilyTemplatePool<Long> templates = cassandraManager.getColumnFamilyTemplatePool();
+		final Cluster cluster = cassandraManager.getCluster();
+
+		cassandraManager.updateString(1L, "column", "first");
+
+		// switching column families keeps the connection pools.
+		cassandraManager.setColumnFamily(getClass().getSimpleName());
+		assertSame(cluster, cassandraManager.getCluster());
+		assertEquals(getClass().getSimpleName(), cassandraManager.getColumnFamilyTemplates().get(0).getColumnFamily());
+		assertNull(cassandraManager.readString(1L, "column"));
+		cassandraManager.updateString(1L, "column", "second");
+		assertEquals("second", cassandraManager.readString(1L, "column"));
+		// writes through mutators go to the new column family too.
+		cassandraManager.updateString(2L, "column", "second", -1, -1);
+		assertEquals("second", cassandraManager.readString(2L, "column"));
+		cassandraManager.deleteRow(1L, -1);
+		assertNull(cassandraManager.readString(1L, "column"));
+
+		cassandraManager.setColumnFamily(columnFamily);
+		assertSame(templates, cassandraManager.getColumnFamilyTemplatePool());
+		assertEquals("first", cassandraManager.readString(1L, "column"));
+		assertNull(cassandraManager.readString(2L, "column"));
+
+		cassandraManager.setLocationURL(LOCATION);
+		assertSame(cluster, cassandraManager.getCluster());
+		assertSame(templates, cassandraManager.getColumnFamilyTemplatePool());
+		assertEquals("first", cassandraManager.readString(1L, "column"));
+	}
+
+	@Test
+	public void testReconfigureSharedCluster() {
+		final CassandraParamsBean params = getDefaultCassandraParamsBean();
+		params.setClustername(getClass().getSimpleName() + "Shared");
+		HectorBasedHecubaClientManager<Long> first = (HectorBasedHecubaClientManager<Long>) getHecubaClientManager(
+				params);
+		HectorBasedHecubaClientManager<Long> second = (HectorBasedHecubaClientManager<Long>) getHecubaClientManager(
+				params);
+		final Cluster cluster = first.getCluster();
+		assertSame(cluster, second.getCluster());
+
+		second.configureOurColumnFamilyTemplatePool(new String[] { PORT }, new String[] { LOCATION });
+		assertEquals(2, second.getColumnFamilyTemplatePool().size());
+		second.updateString(1L, "column", "value");
+
+		// the cluster is shared, so the second manager moves to a cluster of its own with its node templates.
+		second.setLocationURL(LOCATION);
+		assertSame(cluster, first.getCluster());
+		assertNotSame(cluster, second.getCluster());
+		assertEquals(2, second.getColumnFamilyTemplatePool().size());
+		assertEquals("value", second.readString(1L, "column"));
+		assertEquals("value", first.readString(1L, "column"));
+
+		second.setClusterName(getClass().getSimpleName() + "Other");
+		assertEquals(2, second.getColumnFamilyTemplatePool().size());
+		assertEquals("value", second.readString(1L, "column"));
+
+		second.shutDown();
+		assertEquals("value", first.readString(1L, "column"));
+		first.shutDown();
+	}
 }
@@ -0,0 +1,86 @@
+package com.wizecommerce.hecuba.util;
+
+import static org.junit.Assert.*;
+
+import java.util.Date;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.wizecommerce.hecuba.HecubaConstants;
+
+public class HecubaValueCodecsTest {
+
+	private final HecubaValueCodecs codecs = HecubaValueCodecs.getInstance();
+
+	@After
+	public void tearDown() {
+		codecs.clear();
+		ConfigUtils.getInstance().getConfiguration().clearProperty(HecubaConstants.VALUE_CODEC_DATE_FORMAT);
+		codecs.reloadConfiguration();
+	}
+
+	@Test
+	public void testDefaultEncoding() {
+		final Date date = new Date(1400000000000L);
+
+		assertEquals("null", codecs.encode("column", null));
+		assertEquals("42", codecs.encode("column", 42L));
+		assertEquals(HecubaConstants.DATE_FORMATTER.print(date.getTime()), codecs.encode("column", date));
+
+		ConfigUtils.getInstance().getConfiguration().setProperty(HecubaConstants.VALUE_CODEC_DATE_FORMAT, "millis");
+		assertEquals(HecubaConstants.DATE_FORMATTER.print(date.getTime()), codecs.encode("column", date));
+		codecs.reloadConfiguration();
+		assertEquals("1400000000000", codecs.encode("column", date));
+	}
+
+	@Test
+	public void testDatesAreReadInEitherFormat() {
+		final Date date = new Date(1400000000000L);
+
+		assertEquals(date, HecubaValueCodecs.LEGACY_DATE.decode("1400000000000"));
+		assertEquals(date, HecubaValueCodecs.MILLIS_DATE.decode(HecubaConstants.DATE_FORMATTER.print(date.getTime())));
+		assertEquals(new Date(-1000L), HecubaValueCodecs.MILLIS_DATE.decode("-1000"));
+	}
+
+	@Test
+	public void testRegisteredCodecs() {
+		final HecubaValueCodec<Long> hexCodec = new HecubaValueCodec<Long>() {
+			@Override
+			public String encode(Long value) {
+				return Long.toHexString(value);
+			}
+
+			@Override
+			public Long decode(String value) {
+				return Long.parseLong(value, 16);
+			}
+		};
+		codecs.register("id", hexCodec);
+		codecs.registerPattern("price_.*", hexCodec);
+
+		assertEquals("ff", codecs.encode("id", 255L));
+		assertEquals("ff", codecs.encode("price_usd", 255L));
+		assertEquals("255", codecs.encode("count", 255L));
+
+		assertEquals(Long.valueOf(255L), codecs.decode("price_usd", "ff", HecubaValueCodecs.LONG));
+		assertEquals(Long.valueOf(255L), codecs.decode("count", "255", HecubaValueCodecs.LONG));
+	}
+
+	@Test
+	public void testCodecsRegisteredAfterReadsAreUsed() {
+		codecs.registerPattern("price_.*", HecubaValueCodecs.LONG);
+		assertNull(codecs.getCodec("count"));
+		assertNull(codecs.getCodec("count"));
+
+		codecs.registerPattern("count", HecubaValueCodecs.INTEGER);
+		assertSame(HecubaValueCodecs.INTEGER, codecs.getCodec("count"));
+		assertSame(HecubaValueCodecs.LONG, codecs.getCodec("price_usd"));
+
+		codecs.register("price_usd", HecubaValueCodecs.DOUBLE);
+		assertSame(HecubaValueCodecs.DOUBLE, codecs.getCodec("price_usd"));
+
+		codecs.clear();
+		assertNull(codecs.getCodec("count"));
+	}
+}
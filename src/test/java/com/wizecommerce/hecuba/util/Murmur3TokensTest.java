@@ -0,0 +1,38 @@
+package com.wizecommerce.hecuba.util;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.apache.cassandra.dht.Murmur3Partitioner;
+import org.junit.Test;
+
+public class Murmur3TokensTest {
+
+	@Test
+	public void testGetToken() {
+		Murmur3Partitioner partitioner = new Murmur3Partitioner();
+		Random random = new Random(42);
+
+		// every tail length, with bytes of both signs.
+		for (int length = 1; length < 70; length++) {
+			byte[] key = new byte[length];
+			random.nextBytes(key);
+			assertEquals(partitioner.getToken(ByteBuffer.wrap(key)).token, (Long) Murmur3Tokens.getToken(ByteBuffer
+					.wrap(key)));
+		}
+
+		for (long key : new long[] { 0, 1, -1, 7300, Long.MIN_VALUE, Long.MAX_VALUE }) {
+			ByteBuffer bytes = (ByteBuffer) ByteBuffer.allocate(8).putLong(key).flip();
+			assertEquals(partitioner.getToken(bytes).token, (Long) Murmur3Tokens.getToken(bytes));
+		}
+
+		ByteBuffer text = StandardCharsets.UTF_8.encode("hecuba");
+		assertEquals(partitioner.getToken(text).token, (Long) Murmur3Tokens.getToken(text));
+		assertEquals(0, text.position());
+
+		assertEquals(Long.MIN_VALUE, Murmur3Tokens.getToken(ByteBuffer.allocate(0)));
+	}
+}
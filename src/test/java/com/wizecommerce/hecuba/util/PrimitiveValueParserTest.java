@@ -0,0 +1,72 @@
+package com.wizecommerce.hecuba.util;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class PrimitiveValueParserTest {
+
+	@Test
+	public void testParseLong() {
+		for (String value : new String[] { "0", "-1", "+42", "123456789123456789", String.valueOf(Long.MAX_VALUE),
+				String.valueOf(Long.MIN_VALUE) }) {
+			assertEquals(value, Long.parseLong(value), PrimitiveValueParser.parseLong(value, -7L));
+			assertEquals(value, Long.parseLong(value), PrimitiveValueParser.parseLong(bytes(value), -7L));
+		}
+
+		for (String value : new String[] { "", "-", "null", "NULL", "1.5", "abc", "9223372036854775808",
+				"-9223372036854775809" }) {
+			assertEquals(value, -7L, PrimitiveValueParser.parseLong(value, -7L));
+			assertEquals(value, -7L, PrimitiveValueParser.parseLong(bytes(value), -7L));
+		}
+		assertEquals(-7L, PrimitiveValueParser.parseLong(null, -7L));
+		assertEquals(42L, PrimitiveValueParser.parseLong(42, -7L));
+	}
+
+	@Test
+	public void testParseInt() {
+		assertEquals(Integer.MIN_VALUE, PrimitiveValueParser.parseInt(String.valueOf(Integer.MIN_VALUE), -7));
+		assertEquals(-7, PrimitiveValueParser.parseInt(String.valueOf(Integer.MAX_VALUE + 1L), -7));
+		assertEquals(-7, PrimitiveValueParser.parseInt(String.valueOf(Long.MIN_VALUE), -7));
+		assertEquals(1245, PrimitiveValueParser.parseInt(bytes("1245"), -7));
+	}
+
+	@Test
+	public void testParseDouble() {
+		for (String value : new String[] { "0", "-0", "0.0", "1245.1245", "-1.55", "12112.121", ".5", "1.",
+				"0.1234567890123456789", "123456789012345678901234", "1e10", "-2.5E-3", "NaN", "-Infinity",
+				"4.9E-324", "1.7976931348623157E308" }) {
+			final double expected = Double.parseDouble(value);
+			assertEquals(value, Double.doubleToLongBits(expected),
+					Double.doubleToLongBits(PrimitiveValueParser.parseDouble(value, -7.0)));
+			assertEquals(value, Double.doubleToLongBits(expected),
+					Double.doubleToLongBits(PrimitiveValueParser.parseDouble(bytes(value), -7.0)));
+		}
+
+		for (String value : new String[] { "", ".", "-", "null", "1.2.3", "abc" }) {
+			assertEquals(value, -7.0, PrimitiveValueParser.parseDouble(value, -7.0), 0.0);
+		}
+	}
+
+	@Test
+	public void testParseBoolean() {
+		assertTrue(PrimitiveValueParser.parseBoolean("true", false));
+		assertTrue(PrimitiveValueParser.parseBoolean(bytes("TRUE"), false));
+		assertTrue(PrimitiveValueParser.parseBoolean("1", false));
+		assertFalse(PrimitiveValueParser.parseBoolean("false", true));
+		assertFalse(PrimitiveValueParser.parseBoolean("yes", true));
+		assertTrue(PrimitiveValueParser.parseBoolean("null", true));
+		assertTrue(PrimitiveValueParser.parseBoolean(null, true));
+		assertTrue(PrimitiveValueParser.parseBoolean(Boolean.TRUE, false));
+	}
+
+	private ByteBuffer bytes(String value) {
+		// an offset buffer, to make sure that parsing starts at the position.
+		final ByteBuffer buffer = ByteBuffer.wrap(("xx" + value).getBytes(StandardCharsets.UTF_8));
+		buffer.position(2);
+		return buffer;
+	}
+}